@@ -769,6 +769,10 @@ public interface OptionConstants {
                                 new KeyStrokeOption("",null), 
                                 to.vector(KeyStroke.getKeyStroke(KeyEvent.VK_T, MASK)));
   
+  /** The key binding for running all tests, including those unaffected by changes since they last passed. */
+  public static final VectorOption<KeyStroke> KEY_RUN_ALL_TESTS =
+    new VectorOption<KeyStroke>("key.run.all.tests", new KeyStrokeOption("",null), to.vector());
+  
   /** The key binding for generating javadoc for all documents */
   public static final VectorOption<KeyStroke> KEY_JAVADOC_ALL =
     new VectorOption<KeyStroke>("key.javadoc.all", 
@@ -1461,6 +1465,10 @@ public interface OptionConstants {
   public static final BooleanOption SHOW_PATH_WARNINGS = 
     new BooleanOption("show.path.warnings", Boolean.FALSE);
   
+  /** Whether Compile All and Compile Project only recompile stale files and the files that depend on them */
+  public static final BooleanOption INCREMENTAL_COMPILATION = 
+    new BooleanOption("incremental.compilation", Boolean.TRUE);
+  
   /** Default compiler to use
     * Stores the name of the compiler to use, set by changing the selection in
     * the ForcedChoiceOption created by COMPILER_PREFERENCE_CONTROL.evaluate()
@@ -1577,6 +1585,10 @@ public interface OptionConstants {
   public static final BooleanOption DYNAMICJAVA_REQUIRE_VARIABLE_TYPE =
     new BooleanOption("dynamicjava.require.variable.type", Boolean.TRUE);
   
+  /** Whether to compile the bodies of methods declared in the Interactions Pane to bytecode. */
+  public static final BooleanOption DYNAMICJAVA_COMPILE_METHOD_BODIES =
+    new BooleanOption("dynamicjava.compile.method.bodies", Boolean.FALSE);
+  
   
   /** Dynamic Java access control. */
   public static final ArrayList<String> DYNAMICJAVA_ACCESS_CONTROL_CHOICES =
@@ -1674,6 +1686,10 @@ public interface OptionConstants {
   public static final NonNegativeIntegerOption BROWSER_HISTORY_MAX_SIZE =
     new NonNegativeIntegerOption("browser.history.max.size", Integer.valueOf(50));
   
+  /** Memory budget in megabytes for the unmodified documents kept in memory by the document cache (0 for unlimited). */
+  public static final NonNegativeIntegerOption DOCUMENT_CACHE_MEMORY_BUDGET =
+    new NonNegativeIntegerOption("document.cache.memory.budget", Integer.valueOf(64));
+  
   /** Whether to also list files with fully qualified paths.
     */
   public static final BooleanOption DIALOG_GOTOFILE_FULLY_QUALIFIED =
@@ -1874,6 +1890,10 @@ public interface OptionConstants {
   public static final ForcedChoiceOption DELETE_LL_CLASS_FILES =
     new ForcedChoiceOption("delete.ll.class.files", DeleteLLClassFileChoices.ALWAYS, DELETE_LL_CLASS_FILES_CHOICES);
   
+  /** Whether to skip checking and converting language level files whose generated .java file is newer. */
+  public static final BooleanOption SKIP_UP_TO_DATE_LL_FILES = 
+    new BooleanOption("skip.up.to.date.ll.files", Boolean.FALSE);
+  
   /** File extension registration choices. */
   public static final ArrayList<String> FILE_EXT_REGISTRATION_CHOICES =
     FileExtRegistrationChoices.evaluate();
@@ -1927,6 +1947,13 @@ public interface OptionConstants {
   /** The concurrent test checks that ConcJUnit should perform. */
   public static final ForcedChoiceOption CONCJUNIT_CHECKS_ENABLED =
     new ForcedChoiceOption("concjunit.checks.enabled", ConcJUnitCheckChoices.NONE, concJUnitCheckChoices);
+  
+  /** The number of threads on which test classes are run; 1 runs them sequentially. */
+  public static final NonNegativeIntegerOption JUNIT_PARALLEL_THREADS =
+    new NonNegativeIntegerOption("junit.parallel.threads", Integer.valueOf(1));
+  
+  /** Whether to record the classes each test class loads, and only run the test classes affected by changes. */
+  public static final BooleanOption JUNIT_TEST_IMPACT = new BooleanOption("junit.test.impact", Boolean.FALSE);
 
   /** A version suffix that describes custom additions to DrJava. */
   public static final StringOption CUSTOM_DRJAVA_JAR_VERSION_SUFFIX = new StringOption("custom.drjava.jar.version.suffix", "");
@@ -41,6 +41,7 @@ import edu.rice.cs.drjava.config.OptionConstants;
 import edu.rice.cs.drjava.config.OptionEvent;
 import edu.rice.cs.drjava.config.OptionListener;
 
+import edu.rice.cs.drjava.model.definitions.UndoTextArena;
 import edu.rice.cs.drjava.model.definitions.indent.Indenter;
 import edu.rice.cs.drjava.model.definitions.reducedmodel.BraceInfo;
 import edu.rice.cs.drjava.model.definitions.reducedmodel.ReducedModelControl;
@@ -54,10 +55,14 @@ import edu.rice.cs.util.swing.Utilities;
 import edu.rice.cs.util.text.SwingDocument;
 
 import java.awt.EventQueue;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Set;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.SortedMap;
@@ -68,6 +73,9 @@ import javax.swing.text.AbstractDocument;
 import javax.swing.text.AttributeSet;
 import javax.swing.text.BadLocationException;
 import javax.swing.text.Position;
+import javax.swing.undo.AbstractUndoableEdit;
+import javax.swing.undo.CannotRedoException;
+import javax.swing.undo.CannotUndoException;
 
 import static edu.rice.cs.drjava.model.definitions.reducedmodel.ReducedModelStates.*;
 
@@ -99,8 +107,8 @@ public abstract class AbstractDJDocument extends SwingDocument implements DJDocu
   protected static final HashSet<String> _primTypes = _makePrimTypes();
   /** The default indent setting. */
   protected volatile int _indent = 2;
-  /** Initial number of elements in _queryCache (see below). */
-  private static final int INIT_CACHE_SIZE = 0x10000;  // 16**4 = 16384 
+  /** Maximum number of entries in _queryCache (see below); when it is exceeded, the cache is flushed. */
+  private static final int MAX_CACHE_SIZE = 0x10000;  // 16**4 = 65536 
   /** Constant specifying how large pos must be before incremental analysis is applied in posInBlockComment */
   public static final int POS_THRESHOLD = 10000; 
 //  /** Constant specifying how large pos must be before incremental analysis is applied in posInParenPhrase */
@@ -123,15 +131,19 @@ public abstract class AbstractDJDocument extends SwingDocument implements DJDocu
     * purposes. */
   protected volatile int _currentLocation = 0;
   
-  /* The fields _queryCache, _offsetToQueries, and _cacheModified function as an extension of the reduced model. 
-   * When enabled in blockIndent, this data structure caches calls to the reduced model to speed up indent performance.
-   * Must be cleared every time the document is changed.  Use by calling _checkCache, _storeInCache, and _clearCache.
-   * When _queryCache = null, the cache is disabled.
+  /* The fields _queryCache and _offsetToQueries function as an extension of the reduced model.  This data structure
+   * caches calls to the reduced model to speed up indent performance.  It lives as long as the document and is
+   * invalidated incrementally: every change to the document at offset k (including undo and redo) drops exactly the
+   * queries whose answers depend on text at or after k.  Use by calling _checkCache, _storeInCache, and _clearCache.
+   * Both fields are protected by the lock on _queryCache.
    */
-  private volatile HashMap<Query, Object> _queryCache;
+  private final HashMap<Query, Object> _queryCache = new HashMap<Query, Object>();
   
   /** Records the set of queries (as a list) for each offset. */
-  private volatile SortedMap<Integer, List<Query>> _offsetToQueries;
+  private final SortedMap<Integer, List<Query>> _offsetToQueries = new TreeMap<Integer, List<Query>>();
+  
+  /** The highlight runs of each line, used for painting.  Invalidated along with _queryCache by _clearCache. */
+  private final HighlightRunCache _highlightRuns = new HighlightRunCache(this);
   
   /** The instance of the indent decision tree used by Definitions documents. */
   private volatile Indenter _indenter;
@@ -157,8 +169,6 @@ public abstract class AbstractDJDocument extends SwingDocument implements DJDocu
     */
   protected AbstractDJDocument(Indenter indenter) { 
     _indenter = indenter;
-    _queryCache = null;
-    _offsetToQueries = null;
     _initNewIndenter();
 //     System.err.println("AbstractDJDocument constructor with indent level " + indenter.getIndentLevel() 
 //    + " invoked on " + this);
@@ -231,6 +241,7 @@ public abstract class AbstractDJDocument extends SwingDocument implements DJDocu
   public void setKeywords(Set<String> keywords) {
     _keywords.clear();
     _keywords.addAll(keywords);
+    _highlightRuns.clear();
   }
   
   /** Create a set of Java/GJ primitive types for special coloring.
@@ -273,6 +284,10 @@ public abstract class AbstractDJDocument extends SwingDocument implements DJDocu
     return v;
   }
   
+  /** @return the cache of the highlight runs of each line, as returned by getHighlightStatus.  ONLY used in the
+    * event thread. */
+  public HighlightRunCache getHighlightRuns() { return _highlightRuns; }
+  
   /** Distinguishes keywords from normal text in the given HighlightStatus element. Specifically, it looks to see
     * if the given text contains a keyword. If it does, it splits the HighlightStatus block into separate blocks
     * so that each keyword has its own block. This process identifies all keywords in the given block.
@@ -695,7 +710,10 @@ public abstract class AbstractDJDocument extends SwingDocument implements DJDocu
     
     setCurrentLocation(origPos);    // Restore the state of the reduced model;
     
-    if (i == text.length()) reducedPos = -1; // No matching char was found
+    if (i == text.length()) {  // No matching char was found
+      _storeInCache(key, -1, Integer.MAX_VALUE);  // Any change to the document invalidates this result!
+      return -1;
+    }
     _storeInCache(key, reducedPos, reducedPos);
     // Return position of matching char or ERROR_INDEX (-1)     
     return reducedPos;  
@@ -929,8 +947,7 @@ public abstract class AbstractDJDocument extends SwingDocument implements DJDocu
    * @return the object in the cache associated with key; null if not in the cache.
    */
   protected Object _checkCache(final Query key) {
-    if (_queryCache == null) return null;
-    return _queryCache.get(key); 
+    synchronized(_queryCache) { return _queryCache.get(key); }
   }
   
   /** Stores the given result in the helper method cache. 
@@ -943,28 +960,34 @@ public abstract class AbstractDJDocument extends SwingDocument implements DJDocu
    *                unchanged, the query should return the same answer.
    */
   protected void _storeInCache(final Query query, final Object answer, final int offset) {
-    if (_queryCache == null) return;
-    _queryCache.put(query, answer);
-    _addToOffsetsToQueries(query, offset);
+    synchronized(_queryCache) {
+      if (_queryCache.size() >= MAX_CACHE_SIZE) {
+        _queryCache.clear();
+        _offsetToQueries.clear();
+      }
+      _queryCache.put(query, answer);
+      _addToOffsetsToQueries(query, offset);
+    }
   }
   
   /** Clears the memozing cache of queries with offset {@literal >=} than 
-   * specified value.  Should be called every time the document is modified. 
+   * specified value.  Called by every command that modifies the reduced model, so the cache is cleared on undo and
+   * redo as well as on ordinary edits.  Takes time proportional to the number of queries removed.
    * @param offset the offset beyond which to clear
    */
   protected void _clearCache(int offset) {
-    if (_queryCache == null) return;
-    
-    if (offset <= 0) {
-      _queryCache.clear();
-      _offsetToQueries.clear();
-      return;
-    }
-    // The Integer[] copy of the key set is required to avoid ConcurrentModifiationExceptions.  Ugh!
-    Integer[] deadOffsets = _offsetToQueries.tailMap(offset).keySet().toArray(new Integer[0]);
-    for (int i: deadOffsets) {
-      for (Query query: _offsetToQueries.get(i)) _queryCache.remove(query);  // remove query entry from cache
-      _offsetToQueries.remove(i);   // remove query bucket for i from offsetToQueries table
+    _highlightRuns.invalidate(offset);
+    synchronized(_queryCache) {
+      if (offset <= 0) {
+        _queryCache.clear();
+        _offsetToQueries.clear();
+        return;
+      }
+      Iterator<List<Query>> deadBuckets = _offsetToQueries.tailMap(offset).values().iterator();
+      while (deadBuckets.hasNext()) {
+        for (Query query: deadBuckets.next()) _queryCache.remove(query);  // remove query entry from cache
+        deadBuckets.remove();   // remove query bucket from offsetToQueries table
+      }
     }
   }
   
@@ -1049,10 +1072,6 @@ public abstract class AbstractDJDocument extends SwingDocument implements DJDocu
   private void _indentBlock(final int start, final int end, Indenter.IndentReason reason, ProgressMonitor pm)
     throws OperationCanceledException, BadLocationException {
     
-    // Set up the query cache;
-    _queryCache = new HashMap<Query, Object>(INIT_CACHE_SIZE);
-    _offsetToQueries = new TreeMap<Integer, List<Query>>();
-    
     // Keep marker at the end. This Position will be the correct endpoint no matter how we change 
     // the doc doing the indentLine calls.
     final Position endPos = this.createUnwrappedPosition(end);
@@ -1080,10 +1099,6 @@ public abstract class AbstractDJDocument extends SwingDocument implements DJDocu
       walker += _reduced.getDistToNextNewline() + 1;
 //      _indentInProgress = false;
     }
-    
-    // disable the query cache
-    _queryCache = null;
-    _offsetToQueries = null;
   }
   
   /** Indents a line using the Indenter.  Public ONLY for testing purposes. 
@@ -1247,8 +1262,11 @@ public abstract class AbstractDJDocument extends SwingDocument implements DJDocu
       }
       setCurrentLocation(oldPos);  // restore old position
       
-      if (i == -1) matchIndex = -1;
-      _storeInCache(key, matchIndex, Math.max(pos - 1, matchIndex));
+      if (i == -1) {
+        matchIndex = -1;
+        _storeInCache(key, matchIndex, Math.max(pos - 1, lineEnd));  // any change to this line invalidates the result
+      }
+      else _storeInCache(key, matchIndex, Math.max(pos - 1, matchIndex));
     }
     catch (BadLocationException e) { throw new UnexpectedException(e); }
     
@@ -1800,14 +1818,13 @@ public abstract class AbstractDJDocument extends SwingDocument implements DJDocu
       final int length = chng.getLength();
       final String str = getText(offset, length);
       
-      if (length > 0) _clearCache(offset);    // Selectively clear the query cache
-      
       Runnable doCommand = 
         (length == 1) ? new CharInsertCommand(offset, str.charAt(0)) : new InsertCommand(offset, str);
-      RemoveCommand undoCommand = new UninsertCommand(offset, length, str);
       
       // add the undo/redo
-      addUndoRedo(chng, undoCommand, doCommand);
+      UndoTextArena arena = getUndoTextArena();
+      if (arena != null) chng.addEdit(new ReducedModelEdit(arena, offset, length, arena.append(str), true));
+      else addUndoRedo(chng, new UninsertCommand(offset, length, str), doCommand);
       //chng.addEdit(new CommandUndoableEdit(undoCommand, doCommand));
       // actually do the insert
       doCommand.run();  // This method runs in the updating thread with exclusive access to the updated document
@@ -1837,13 +1854,12 @@ public abstract class AbstractDJDocument extends SwingDocument implements DJDocu
       final String removedText = getText(offset, length);
       super.removeUpdate(chng);
       
-      if (length > 0) _clearCache(offset);  // Selectively clear the query cache
-      
       Runnable doCommand = new RemoveCommand(offset, length, removedText);
-      Runnable undoCommand = new UnremoveCommand(offset, removedText);
       
       // add the undo/redo info
-      addUndoRedo(chng, undoCommand, doCommand);
+      UndoTextArena arena = getUndoTextArena();
+      if (arena != null) chng.addEdit(new ReducedModelEdit(arena, offset, length, arena.append(removedText), false));
+      else addUndoRedo(chng, new UnremoveCommand(offset, removedText), doCommand);
       // actually do the removal from the reduced model
       doCommand.run();
     }
@@ -1851,7 +1867,16 @@ public abstract class AbstractDJDocument extends SwingDocument implements DJDocu
   }
   
   /** @return the byte image (as written to a file) of this document. */
-  public byte[] getBytes() { return getText().getBytes(); }
+  public byte[] getBytes() {
+    try {
+      // encode directly from a view of the text instead of first copying it into a String
+      ByteBuffer buf = Charset.defaultCharset().encode(CharBuffer.wrap(getCharSequence(0, getLength())));
+      byte[] result = new byte[buf.remaining()];
+      buf.get(result);
+      return result;
+    }
+    catch (BadLocationException e) { throw new UnexpectedException(e); }
+  }
   
   public void clear() {
     try { remove(0, getLength()); }
@@ -1889,6 +1914,12 @@ public abstract class AbstractDJDocument extends SwingDocument implements DJDocu
   protected abstract void addUndoRedo(AbstractDocument.DefaultDocumentEvent chng, Runnable undoCommand, 
                                       Runnable doCommand);
   
+  /** @return the arena in which the undo history of this document stores the text of edits, or null if edits are not
+    * recorded in such a history.  If there is an arena, insertUpdate and removeUpdate add a compact ReducedModelEdit
+    * to each document event instead of passing a pair of commands to addUndoRedo.
+    */
+  protected UndoTextArena getUndoTextArena() { return null; }
+  
   //Checks if the document is closed, and then throws an error if it is.
   
   //-------- INNER CLASSES ------------
@@ -1928,9 +1959,10 @@ public abstract class AbstractDJDocument extends SwingDocument implements DJDocu
       _text = text;
     }
     
-    /** Inserts chars in reduced model and moves location to end of insert; cache has already been cleared. */
+    /** Inserts chars in reduced model and moves location to end of insert; selectively clears the query cache. */
     public void run() {
       
+      if (_text.length() > 0) _clearCache(_offset);
       _reduced.move(_offset - _currentLocation);  
       int len = _text.length();
       // Record any change to line numbering
@@ -1968,9 +2000,10 @@ public abstract class AbstractDJDocument extends SwingDocument implements DJDocu
       _ch = ch;
     }
     
-    /** Inserts chars in reduced model and moves location to end of insert; cache has already been cleared. */
+    /** Inserts chars in reduced model and moves location to end of insert; selectively clears the query cache. */
     public void run() {
       
+      _clearCache(_offset);
       _reduced.move(_offset - _currentLocation);  
       if (_ch == newline) _numLinesChanged(_offset);  // record change to line numbering
       _addCharToReducedModel(_ch);
@@ -1990,8 +2023,9 @@ public abstract class AbstractDJDocument extends SwingDocument implements DJDocu
       _removedText = removedText;
     }
     
-    /** Removes chars from reduced model; cache has already been selectively cleared. */
+    /** Removes chars from reduced model; selectively clears the query cache. */
     public void run() {
+      if (_length > 0) _clearCache(_offset);
       setCurrentLocation(_offset);
       if (_removedText.indexOf(newline) >= 0) _numLinesChanged(_offset);  // record change to line numbering
       _reduced.delete(_length);    
@@ -2004,4 +2038,40 @@ public abstract class AbstractDJDocument extends SwingDocument implements DJDocu
     public UninsertCommand(final int offset, final int length, String text) { super(offset, length, text); }
     public void run() { super.run(); }
   }
+  
+  /** Updates the reduced model when an insertion or removal is undone or redone.  Unlike a CommandUndoableEdit with its
+    * pair of commands, it holds no String of its own: the inserted or removed text lives in the UndoTextArena of the
+    * undo history, and the commands are created only when the edit is undone or redone.
+    */
+  protected class ReducedModelEdit extends AbstractUndoableEdit {
+    private final UndoTextArena _arena;
+    private final int _offset;
+    private final int _length;
+    private final int _textStart;
+    private final boolean _isInsert;
+    
+    public ReducedModelEdit(UndoTextArena arena, int offset, int length, int textStart, boolean isInsert) {
+      _arena = arena;
+      _offset = offset;
+      _length = length;
+      _textStart = textStart;
+      _isInsert = isInsert;
+    }
+    
+    public void undo() throws CannotUndoException {
+      super.undo();
+      String text = _arena.getText(_textStart, _length);
+      if (_isInsert) new UninsertCommand(_offset, _length, text).run();
+      else new UnremoveCommand(_offset, text).run();
+    }
+    
+    public void redo() throws CannotRedoException {
+      super.redo();
+      if (_isInsert && _length == 1) new CharInsertCommand(_offset, _arena.charAt(_textStart)).run();
+      else if (_isInsert) new InsertCommand(_offset, _arena.getText(_textStart, _length)).run();
+      else new RemoveCommand(_offset, _length, _arena.getText(_textStart, _length)).run();
+    }
+    
+    public boolean isSignificant() { return false; }
+  }
 }
@@ -69,6 +69,7 @@ import java.util.List;
 import java.util.Vector;
 import java.util.WeakHashMap;
 import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import javax.swing.*;
 import javax.swing.event.DocumentListener;
@@ -103,6 +104,7 @@ import edu.rice.cs.drjava.model.definitions.ClassNameNotFoundException;
 import edu.rice.cs.drjava.model.definitions.CompoundUndoManager;
 import edu.rice.cs.drjava.model.definitions.DefinitionsDocument;
 import edu.rice.cs.drjava.model.definitions.DefinitionsEditorKit;
+import edu.rice.cs.drjava.model.definitions.DocumentOutline;
 import edu.rice.cs.drjava.model.definitions.DocumentUIListener ;
 import edu.rice.cs.drjava.model.definitions.InvalidPackageException;
 import edu.rice.cs.drjava.model.definitions.indent.Indenter;
@@ -372,6 +374,15 @@ public class AbstractGlobalModel implements SingleDisplayModel, OptionConstants,
     };
     DrJava.getConfig().addOptionListener(BROWSER_HISTORY_MAX_SIZE, browserHistoryMaxSizeListener);
     getBrowserHistoryManager().setMaximumSize(DrJava.getConfig().getSetting(BROWSER_HISTORY_MAX_SIZE).intValue());
+    
+    // setup option listener for the memory budget of the document cache
+    OptionListener<Integer> cacheMemoryBudgetListener = new OptionListener<Integer>() {
+      public void optionChanged(OptionEvent<Integer> oce) {
+        _cache.setMemoryBudget(oce.value.longValue() << 20);
+      }
+    };
+    DrJava.getConfig().addOptionListener(DOCUMENT_CACHE_MEMORY_BUDGET, cacheMemoryBudgetListener);
+    _cache.setMemoryBudget(DrJava.getConfig().getSetting(DOCUMENT_CACHE_MEMORY_BUDGET).longValue() << 20);
   }
   
   // ----- STATE -----
@@ -381,9 +392,17 @@ public class AbstractGlobalModel implements SingleDisplayModel, OptionConstants,
     */
   protected volatile FileGroupingState _state;
   
+  /** Indexes the source tree and the build directory of the open project; null if no project is open. */
+  protected volatile FileIndex _fileIndex = null;
+  
+  /** Listeners that are added to the file index of every project. */
+  private final CopyOnWriteArrayList<FileIndex.Listener> _fileIndexListeners = 
+    new CopyOnWriteArrayList<FileIndex.Listener>();
+  
   /** @param state the new file grouping state. */
   public void setFileGroupingState(FileGroupingState state) {
     _state = state;
+    _updateFileIndex();
     _notifier.projectRunnableChanged();
     _notifier.projectBuildDirChanged();
     _notifier.projectWorkDirChanged();
@@ -391,6 +410,69 @@ public class AbstractGlobalModel implements SingleDisplayModel, OptionConstants,
 //    _notifier.projectModified();  // not currently used
   }
   
+  /** @return the index of the files of the open project, or null if no project is open */
+  public FileIndex getFileIndex() { return _fileIndex; }
+  
+  /** Adds a listener to the file index of the open project and to those of the projects opened later.  The listener is
+    * called on the watcher thread of the index.
+    * @param l the listener to add
+    */
+  public void addFileIndexListener(FileIndex.Listener l) {
+    _fileIndexListeners.add(l);
+    FileIndex index = _fileIndex;
+    if (index != null) index.addListener(l);
+  }
+  
+  /** Replaces the file index with one for the source tree and the build directory of the current project, if any. */
+  protected void _updateFileIndex() {
+    FileIndex old = _fileIndex;
+    if (old != null) old.close();
+    _fileIndex = null;
+    if (! _state.isProjectActive()) return;
+    
+    ArrayList<File> roots = new ArrayList<File>();
+    roots.add(_state.getProjectRoot());
+    File bd = _state.getBuildDirectory();
+    if (bd != null && bd != FileOps.NULL_FILE) roots.add(bd);
+    final FileIndex index = new FileIndex(roots);
+    index.addListener(new FileIndex.Listener() {
+      public void filesChanged(final FileIndex.Changes changes) {
+        Utilities.invokeLater(new Runnable() { 
+          public void run() { if (index == _fileIndex) _filesChanged(changes); } 
+        });
+      }
+    });
+    for (FileIndex.Listener l: _fileIndexListeners) index.addListener(l);
+    _fileIndex = index;
+    index.start();
+  }
+  
+  /** Responds to changes made to the files of the project outside of DrJava.  New source files are opened if the
+    * project is set to auto-refresh, and the user is asked whether the active document should be reverted if its file
+    * was modified.  Only runs in the event thread.
+    * @param changes a batch of changes reported by the file index
+    */
+  private void _filesChanged(FileIndex.Changes changes) {
+    if (_state.getAutoRefreshStatus()) {
+      String ext = getOpenAllFilesInFolderExtension();
+      ArrayList<File> files = new ArrayList<File>();
+      for (File f: changes.getCreated()) {
+        if (f.getName().endsWith(ext) && ! isAlreadyOpen(f) && ! _state.isExcludedFile(f)) files.add(f);
+      }
+      if (! files.isEmpty()) {
+        try { _openFiles(files.toArray(new File[files.size()])); }
+        catch(Exception e) { _log.log("Could not open new files " + files, e); }
+      }
+    }
+    
+    OpenDefinitionsDocument active = getActiveDocument();
+    if (active != null && ! active.isUntitled() && 
+        changes.getModified().contains(active.getRawFile().getAbsoluteFile())) {
+      try { active.revertIfModifiedOnDisk(); }
+      catch(IOException e) { _log.log("Could not revert " + active, e); }
+    }
+  }
+  
   /** Adds a document to the list of auxiliary files within _state.  The LinkedList class is not thread safe, so
     * the add operation is synchronized.
     */
@@ -517,6 +599,7 @@ public class AbstractGlobalModel implements SingleDisplayModel, OptionConstants,
   /** Sets the class with the project's main method.  Degenerate version overridden in DefaultGlobalModel. */
   public void setProjectRoot(File f) {
     _state.setProjectRoot(f);
+    _updateFileIndex();
 //    _notifier.projectRootChanged();
     setProjectChanged(true);
   }
@@ -535,6 +618,7 @@ public class AbstractGlobalModel implements SingleDisplayModel, OptionConstants,
   /** Sets the class with the project's main method.  Degenerate version overridden in DefaultGlobalModel. */
   public void setBuildDirectory(File f) {
     _state.setBuildDirectory(f);
+    _updateFileIndex();
     _notifier.projectBuildDirChanged();
     setProjectChanged(true);
   }
@@ -916,7 +1000,9 @@ public class AbstractGlobalModel implements SingleDisplayModel, OptionConstants,
     public List<File> getClassFiles() {
       File dir = this.getBuildDirectory ();
       LinkedList<File> acc = new LinkedList<File>();
-      getClassFilesHelper(dir, acc);
+      FileIndex index = _fileIndex;
+      if (index != null && index.covers(dir)) acc.addAll(index.getFiles(dir, ".class"));
+      else getClassFilesHelper(dir, acc);
       if (! dir.exists()) dir.mkdirs();  // TODO: what if mkdirs() fails
       return acc;
     }
@@ -1520,11 +1606,20 @@ public class AbstractGlobalModel implements SingleDisplayModel, OptionConstants,
     if(projRoot == null)
       return null;
     File[] allFiles;
-    try {
-      allFiles = getFilesInFolder(projRoot, true, getOpenAllFilesInFolderExtension());
-    } catch(IOException e) { return null; }
-    catch(OperationCanceledException e) { return null; }
-    catch(AlreadyOpenException e) { return null; }
+    FileIndex index = _fileIndex;
+    if (index != null && index.covers(projRoot)) {
+      // same order as getFilesInFolder
+      List<File> indexed = index.getFiles(projRoot, getOpenAllFilesInFolderExtension());
+      Collections.reverse(indexed);
+      allFiles = indexed.toArray(new File[indexed.size()]);
+    }
+    else {
+      try {
+        allFiles = getFilesInFolder(projRoot, true, getOpenAllFilesInFolderExtension());
+      } catch(IOException e) { return null; }
+      catch(OperationCanceledException e) { return null; }
+      catch(AlreadyOpenException e) { return null; }
+    }
     
     for(File f : allFiles) {
       if(!isAlreadyOpen(f) && !_state.isExcludedFile(f)) {
@@ -2531,6 +2626,12 @@ public class AbstractGlobalModel implements SingleDisplayModel, OptionConstants,
         getInteractionsModel().setRequireVariableType(oce.value);
       }
     });
+    
+    DrJava.getConfig().addOptionListener(DYNAMICJAVA_COMPILE_METHOD_BODIES, new OptionListener<Boolean>() {
+      public void optionChanged(OptionEvent<Boolean> oce) {
+        getInteractionsModel().setCompileMethodBodies(oce.value);
+      }
+    });
   }
   
   /** Appends a string to the given document using a particular attribute set (identified by a String key). Also waits
@@ -2930,14 +3031,18 @@ public class AbstractGlobalModel implements SingleDisplayModel, OptionConstants,
      * @throws ClassNameNotFoundException if no top level class name found.
      */
     public String getFirstTopLevelClassName() throws ClassNameNotFoundException {
-      return getDocument().getFirstTopLevelClassName();
+      DocumentOutline outline = _cacheAdapter.getOutline();
+      String name = (outline == null) ? null : outline.getFirstTopLevelClassName();
+      return (name != null) ? name : getDocument().getFirstTopLevelClassName();
     }
     
     /** @return the name of the main (public) class, if any.
      * @throws ClassNameNotFoundException if no top level class name found.
      */
     public String getMainClassName() throws ClassNameNotFoundException {
-      return getDocument().getMainClassName();
+      DocumentOutline outline = _cacheAdapter.getOutline();
+      String name = (outline == null) ? null : outline.getMainClassName();
+      return (name != null) ? name : getDocument().getMainClassName();
     }
     
     /** @return the name of this file, or "(Untitled)" if no file. */
@@ -3013,7 +3118,11 @@ public class AbstractGlobalModel implements SingleDisplayModel, OptionConstants,
     public void setPackage(String name)   { _packageName = name; }
     
     /**  @return the name of the package currently embedded in document. */
-    public String getPackageNameFromDocument() { return getDocument().getPackageName(); }
+    public String getPackageNameFromDocument() {
+      DocumentOutline outline = _cacheAdapter.getOutline();
+      String name = (outline == null) ? null : outline.getPackageName();
+      return (name != null) ? name : getDocument().getPackageName();
+    }
     
     
     /** Originally designed to allow undoManager to set the current document to be modified whenever an undo
@@ -3414,8 +3523,7 @@ public class AbstractGlobalModel implements SingleDisplayModel, OptionConstants,
       /* If the document has not been registered or it is virtualized (only stored on disk), then we know that
        * it is not modified. This method can be called by debugging code (via getName() on a
        * ConcreteOpenDefDoc) before the document has been registered (_cacheAdapter == null). */
-      if (isReady()) return getDocument().isModifiedSinceSave();
-      else return false;
+      return _cacheAdapter != null && _cacheAdapter.isModifiedSinceSave();
     }
     
     public void documentSaved() { _cacheAdapter.documentSaved(); }
@@ -3442,7 +3550,7 @@ public class AbstractGlobalModel implements SingleDisplayModel, OptionConstants,
       * the class file to that of the source file.  An empty untitled document is consider to be "in sync".
       */
     public boolean checkIfClassFileInSync() {
-      _log.log("checkIfClassFileInSync() called for " + this);
+      _log.log("checkIfClassFileInSync() called for %s", this);
       if (isEmpty()) return true;
       
       // If modified, then definitely out of sync
@@ -3455,15 +3563,15 @@ public class AbstractGlobalModel implements SingleDisplayModel, OptionConstants,
       
       // Look for cached class file
       File classFile = getCachedClassFile();
-      _log.log("In checkIfClassFileInSync cacched value of classFile = " + classFile);
+      _log.log("In checkIfClassFileInSync cacched value of classFile = %s", classFile);
       if (classFile == FileOps.NULL_FILE) {
         // Not cached, so locate the file
         classFile = _locateClassFile();
-        _log.log(this + ": in checkIfClassFileInSync _locateClassFile() = " + classFile);
+        _log.log("%s: in checkIfClassFileInSync _locateClassFile() = %s", this, classFile);
         setCachedClassFile(classFile);
         if ((classFile == FileOps.NULL_FILE) || (! classFile.exists())) {
           // couldn't find the class file
-          _log.log(this + ": Could not find class file");
+          _log.log("%s: Could not find class file", this);
           setClassFileInSync(false);
           return false;
         }
@@ -3475,16 +3583,16 @@ public class AbstractGlobalModel implements SingleDisplayModel, OptionConstants,
       try { sourceFile = getFile(); }
       catch (FileMovedException fme) {
         setClassFileInSync(false);
-        _log.log(this + ": File moved");
+        _log.log("%s: File moved", this);
         return false;
       }
-      if (sourceFile != null) { 
+      if (sourceFile != null && _log.isEnabled()) { 
         _log.log(sourceFile + " has timestamp " + sourceFile.lastModified());
         _log.log(classFile + " has timestamp " + classFile.lastModified());
       }
       if (sourceFile == null || sourceFile.lastModified() > classFile.lastModified()) {  // assert sourceFile != null 
         setClassFileInSync(false);
-        _log.log(this + ": date stamps indicate modification");
+        _log.log("%s: date stamps indicate modification", this);
         return false;
       }
       else {
@@ -3503,9 +3611,9 @@ public class AbstractGlobalModel implements SingleDisplayModel, OptionConstants,
       if (isUntitled()) return FileOps.NULL_FILE;
       
       String className;
-      try { className = getDocument().getQualifiedClassName(); }
+      try { className = getQualifiedClassName(); }
       catch (ClassNameNotFoundException cnnfe) {
-        _log.log("_locateClassFile() failed for " + this + " because getQualifedClassName returned ClassNotFound");
+        _log.log("_locateClassFile() failed for %s because getQualifedClassName returned ClassNotFound", this);
         return FileOps.NULL_FILE;  /* No source class name */ 
       }
 //      _log.log("In _locateClassFile, className = " + className);
@@ -3778,6 +3886,11 @@ public class AbstractGlobalModel implements SingleDisplayModel, OptionConstants,
       getDocument().getText(offset, length, txt);
     }
     
+    /** Gets a view of the specified range.  Avoids reloading the document if it is kicked out of the cache. */
+    public CharSequence getCharSequence(int offset, int length) throws BadLocationException {
+      return _cacheAdapter.getCharSequence(offset, length);
+    }
+    
     public void insertString(int offset, String str, AttributeSet a) throws BadLocationException {
       getDocument().insertString(offset, str, a);
     }
@@ -3852,8 +3965,12 @@ public class AbstractGlobalModel implements SingleDisplayModel, OptionConstants,
     /** Gets offset of beginning of given 1-based line. */    
     public int _getOffset(int lineNum) { return getDocument()._getOffset(lineNum); }
     
+    /** Answers from the outline of the document when possible, so that a document that is not resident need not be
+      * reconstructed. */
     public String getQualifiedClassName() throws ClassNameNotFoundException {
-      return getDocument().getQualifiedClassName();
+      DocumentOutline outline = _cacheAdapter.getOutline();
+      String name = (outline == null) ? null : outline.getQualifiedClassName();
+      return (name != null) ? name : getDocument().getQualifiedClassName();
     }
     
     public String getQualifiedClassName(int pos) throws ClassNameNotFoundException {
@@ -0,0 +1,536 @@
+/*BEGIN_COPYRIGHT_BLOCK
+ *
+ * Copyright (c) 2001-2016, JavaPLT group at Rice University (drjava@rice.edu)
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *    * Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the names of DrJava, the JavaPLT group, Rice University, nor the
+ *      names of its contributors may be used to endorse or promote products
+ *      derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * This software is Open Source Initiative approved Open Source Software.
+ * Open Source Initative Approved is a trademark of the Open Source Initiative.
+ * 
+ * This file is part of DrJava.  Download the current version of this project
+ * from http://www.drjava.org/ or http://sourceforge.net/projects/drjava/
+ * 
+ * END_COPYRIGHT_BLOCK*/
+
+
+package edu.rice.cs.drjava.model;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import edu.rice.cs.util.Log;
+
+/** A persistent index of the names of the classes in the build directory and in a set of class path jars.  It backs
+  * the class name completion of the "Go to File" and auto-complete dialogs and the class list of the "Auto Import"
+  * dialog.
+  * <p>
+  * The index remembers, for every directory below the build directory, its modification time and the class files it
+  * contained when it was last listed.  Since adding or removing a file changes the modification time of its directory,
+  * {@link #refresh} only has to list the directories that changed.  Between refreshes, the index listens to the
+  * {@link FileIndex} of the project, which reports created and deleted class files so that the index follows builds
+  * made outside of DrJava.  Jars are indexed once per length and modification time.  The whole state is written to a cache file, so the index is populated as soon
+  * as it is loaded at startup and the first refresh only has to check modification times.
+  * <p>
+  * The name sets returned by {@link #getSimpleNames} and {@link #getTopLevelNames} are live, unmodifiable views that
+  * may be read from any thread.  All updates happen on a background thread.
+  * @version $Id$
+  */
+public class ClassNameIndex implements FileIndex.Listener {
+  private static final Log _log = new Log("ClassNameIndex.txt", false);
+  
+  /** First line of the cache file; changes whenever the format does. */
+  private static final String CACHE_HEADER = "DrJava class name index 1";
+  
+  /** Directories modified less than this many milliseconds before they are listed are listed again next time. */
+  private static final long RECENT_MILLIS = 2000L;
+  
+  /** The file the index is saved to, or null if it is not persistent. */
+  private final File _cacheFile;
+  
+  /** Simple names of all indexed classes, mapped to the number of classes with that simple name. */
+  private final ConcurrentHashMap<String, Integer> _simpleNames = new ConcurrentHashMap<String, Integer>();
+  
+  /** Fully qualified names of all indexed top-level classes, mapped to the number of places they were found in. */
+  private final ConcurrentHashMap<String, Integer> _topLevelNames = new ConcurrentHashMap<String, Integer>();
+  
+  private final Set<String> _simpleNamesView = Collections.unmodifiableSet(_simpleNames.keySet());
+  private final Set<String> _topLevelNamesView = Collections.unmodifiableSet(_topLevelNames.keySet());
+  
+  /** The thread that performs all scans, so that callers never wait for the file system. */
+  private final ExecutorService _executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+    public Thread newThread(Runnable r) {
+      Thread t = new Thread(r, "Class Name Index");
+      t.setDaemon(true);
+      t.setPriority(Thread.MIN_PRIORITY);
+      return t;
+    }
+  });
+  
+  // The remaining fields are guarded by this.
+  
+  /** The indexed build directory, or null. */
+  private File _buildDir = null;
+  
+  /** The directories below (and including) the build directory that have been listed. */
+  private final HashMap<File, DirState> _dirs = new HashMap<File, DirState>();
+  
+  /** The indexed jars, in class path order. */
+  private final LinkedHashMap<File, JarState> _jars = new LinkedHashMap<File, JarState>();
+  
+  /** Whether the index differs from the cache file. */
+  private boolean _changed = false;
+  
+  /** The contents of a directory at the time it was last listed. */
+  private static class DirState {
+    long lastModified;
+    final HashSet<String> classFiles = new HashSet<String>();
+    final HashSet<String> subdirs = new HashSet<String>();
+    DirState(long lm) { lastModified = lm; }
+  }
+  
+  /** The classes in a jar with a particular length and modification time. */
+  private static class JarState {
+    final long length;
+    final long lastModified;
+    final List<String> classes;
+    JarState(long len, long lm, List<String> c) { length = len; lastModified = lm; classes = c; }
+    boolean isCurrent(File jar) { return jar.length() == length && jar.lastModified() == lastModified; }
+  }
+  
+  /** Creates an empty index.
+    * @param cacheFile the file the index is loaded from and saved to, or null
+    */
+  public ClassNameIndex(File cacheFile) { _cacheFile = cacheFile; }
+  
+  /** @return a live view of the simple names of all indexed classes, excluding anonymous and local classes */
+  public Set<String> getSimpleNames() { return _simpleNamesView; }
+  
+  /** @return a live view of the fully qualified names of all indexed top-level classes */
+  public Set<String> getTopLevelNames() { return _topLevelNamesView; }
+  
+  /** Changes the build directory and the jars being indexed.  If the build directory changed, the part of the index
+    * that belongs to it is replaced by the cached one, if there is one, and then brought up to date.
+    * @param buildDir the build directory, or null
+    * @param jars the class path entries; entries that are not jar or zip files are ignored
+    * @return a future that completes once the index is up to date
+    */
+  public Future<?> setRoots(final File buildDir, Iterable<? extends File> jars) {
+    final List<File> jarList = new ArrayList<File>();
+    for (File f: jars) {
+      String name = f.getName().toLowerCase();
+      if (name.endsWith(".jar") || name.endsWith(".zip")) { jarList.add(f.getAbsoluteFile()); }
+    }
+    return _executor.submit(new Runnable() {
+      public void run() {
+        // normalized like the paths reported by FileIndex
+        _setRoots((buildDir == null) ? null : buildDir.toPath().toAbsolutePath().normalize().toFile(), jarList);
+        _save();
+      }
+    });
+  }
+  
+  /** Brings the index up to date, for instance after a compilation.  Only directories whose modification time changed
+    * are listed again, and only jars whose length or modification time changed are read again.
+    * @return a future that completes once the index is up to date
+    */
+  public Future<?> refresh() {
+    return _executor.submit(new Runnable() {
+      public void run() {
+        synchronized(ClassNameIndex.this) {
+          if (_buildDir != null) { _scanTree(_buildDir, false); }
+          _setJars(new ArrayList<File>(_jars.keySet()));
+        }
+        _save();
+      }
+    });
+  }
+  
+  /** Lists the directories in which class files were created or deleted, so that the index follows builds made
+    * outside of DrJava.  Changes outside of the build directory are ignored.
+    * @param changes a batch of changes reported by a file index
+    */
+  public void filesChanged(FileIndex.Changes changes) {
+    final HashSet<File> dirs = new HashSet<File>();
+    for (File f: changes.getCreated()) { if (f.getName().endsWith(".class")) { dirs.add(f.getParentFile()); } }
+    for (File f: changes.getDeleted()) { if (f.getName().endsWith(".class")) { dirs.add(f.getParentFile()); } }
+    if (dirs.isEmpty()) { return; }
+    try {
+      _executor.submit(new Runnable() {
+        public void run() {
+          synchronized(ClassNameIndex.this) {
+            for (File dir: dirs) { _scanChanged(dir); }
+          }
+        }
+      });
+    }
+    catch(RejectedExecutionException ree) { /* disposed */ }
+  }
+  
+  /** Saves the index.  The index can not be updated afterwards. */
+  public void dispose() {
+    _executor.shutdown();
+    _save();
+  }
+  
+  private synchronized void _setRoots(File buildDir, List<File> jars) {
+    if (buildDir == null ? _buildDir != null : ! buildDir.equals(_buildDir)) {
+      _save();  // the cache only holds one build directory, the one that is being left
+      for (Map.Entry<File, DirState> e: _dirs.entrySet()) {
+        for (String f: e.getValue().classFiles) { _remove(_binaryName(_buildDir, new File(e.getKey(), f))); }
+      }
+      _dirs.clear();
+      _buildDir = buildDir;
+      _changed = true;
+      if (_buildDir != null) {
+        _loadCache(jars);
+        _scanTree(_buildDir, false);
+      }
+    }
+    _setJars(jars);
+  }
+  
+  // ----- Build directory -----
+  
+  /** Recursively brings the part of the index below dir up to date.
+    * @param dir a directory in the build directory
+    * @param force whether to list dir even if its modification time did not change
+    */
+  private void _scanTree(File dir, boolean force) {
+    _scanDir(dir, force);
+    DirState d = _dirs.get(dir);
+    if (d != null) {
+      for (String s: new ArrayList<String>(d.subdirs)) { _scanTree(new File(dir, s), false); }
+    }
+  }
+  
+  /** Brings the classes directly in dir up to date, and prunes the state of subdirectories that disappeared. */
+  private void _scanDir(File dir, boolean force) {
+    DirState d = _dirs.get(dir);
+    long lm = dir.lastModified();
+    if (lm == 0L || ! dir.isDirectory()) {
+      if (d != null) { _removeTree(dir); }
+      return;
+    }
+    if (d == null) {
+      d = new DirState(0L);
+      _dirs.put(dir, d);
+      force = true;
+    }
+    if (! force && d.lastModified == lm) { return; }
+    
+    String[] names = dir.list();
+    if (names == null) { return; }  // I/O error; try again next time
+    // A file added within the timestamp resolution of the directory may not change its modification time, so a
+    // directory that was modified very recently is listed again next time.
+    d.lastModified = (System.currentTimeMillis() - lm < RECENT_MILLIS) ? 0L : lm;
+    HashSet<String> classFiles = new HashSet<String>();
+    HashSet<String> subdirs = new HashSet<String>();
+    for (String name: names) {
+      if (name.endsWith(".class")) { classFiles.add(name); }
+      else if (new File(dir, name).isDirectory()) { subdirs.add(name); }
+    }
+    for (String name: d.classFiles) {
+      if (! classFiles.contains(name)) { _remove(_binaryName(_buildDir, new File(dir, name))); _changed = true; }
+    }
+    for (String name: classFiles) {
+      if (! d.classFiles.contains(name)) { _add(_binaryName(_buildDir, new File(dir, name))); _changed = true; }
+    }
+    for (String name: d.subdirs) {
+      if (! subdirs.contains(name)) { _removeTree(new File(dir, name)); }
+    }
+    d.classFiles.clear();
+    d.classFiles.addAll(classFiles);
+    d.subdirs.clear();
+    d.subdirs.addAll(subdirs);
+  }
+  
+  /** Removes dir and everything below it from the index. */
+  private void _removeTree(File dir) {
+    DirState d = _dirs.remove(dir);
+    if (d == null) { return; }
+    for (String name: d.classFiles) { _remove(_binaryName(_buildDir, new File(dir, name))); }
+    for (String name: d.subdirs) { _removeTree(new File(dir, name)); }
+    _changed = true;
+  }
+  
+  // ----- Jars -----
+  
+  private void _setJars(List<File> jars) {
+    for (File jar: new ArrayList<File>(_jars.keySet())) {
+      if (! jars.contains(jar) || ! _jars.get(jar).isCurrent(jar)) {
+        for (String c: _jars.remove(jar).classes) { _remove(c); }
+        _changed = true;
+      }
+    }
+    for (File jar: jars) {
+      if (_jars.containsKey(jar) || ! jar.isFile()) { continue; }
+      long length = jar.length();
+      long lm = jar.lastModified();
+      List<String> classes = new ArrayList<String>();
+      ZipFile zf = null;
+      try {
+        zf = new ZipFile(jar);
+        Enumeration<? extends ZipEntry> entries = zf.entries();
+        while (entries.hasMoreElements()) {
+          String name = entries.nextElement().getName();
+          if (name.endsWith(".class") && ! name.startsWith("META-INF/")) {
+            classes.add(name.substring(0, name.length() - ".class".length()).replace('/', '.'));
+          }
+        }
+      }
+      catch(IOException ioe) { _log.log("Could not index " + jar, ioe); }
+      finally {
+        if (zf != null) {
+          try { zf.close(); }
+          catch(IOException ioe) { /* ignore */ }
+        }
+      }
+      _addJar(jar, new JarState(length, lm, classes));
+    }
+  }
+  
+  private void _addJar(File jar, JarState state) {
+    _jars.put(jar, state);
+    for (String c: state.classes) { _add(c); }
+    _changed = true;
+  }
+  
+  // ----- Names -----
+  
+  /** Converts the path of a class file below the build directory into a binary class name.
+    * @param root the build directory
+    * @param classFile a class file below root
+    * @return the binary name, e.g. "p.Outer$Inner"
+    */
+  static String _binaryName(File root, File classFile) {
+    String rel = classFile.getPath().substring(root.getPath().length() + 1);
+    return rel.substring(0, rel.length() - ".class".length()).replace(File.separatorChar, '.');
+  }
+  
+  /** @param binaryName a binary class name
+    * @return the simple name of the class, or null if it is an anonymous or local class or not a class at all
+    */
+  static String _simpleName(String binaryName) {
+    String s = binaryName.substring(binaryName.lastIndexOf('.') + 1);
+    if (s.length() == 0 || s.indexOf('-') >= 0) { return null; }  // package-info, module-info
+    int start = 0;
+    int pos;
+    while ((pos = s.indexOf('$', start)) >= 0) {
+      if (s.length() <= pos + 1 || Character.isDigit(s.charAt(pos + 1))) { return null; }
+      start = pos + 1;
+    }
+    return s.substring(start);
+  }
+  
+  private void _add(String binaryName) {
+    String simple = _simpleName(binaryName);
+    if (simple == null) { return; }
+    _increment(_simpleNames, simple);
+    // Nested classes are left out because importing them would mean determining whether they are public and static
+    if (binaryName.indexOf('$') < 0) { _increment(_topLevelNames, binaryName); }
+  }
+  
+  private void _remove(String binaryName) {
+    String simple = _simpleName(binaryName);
+    if (simple == null) { return; }
+    _decrement(_simpleNames, simple);
+    if (binaryName.indexOf('$') < 0) { _decrement(_topLevelNames, binaryName); }
+  }
+  
+  private static void _increment(Map<String, Integer> counts, String key) {
+    Integer n = counts.get(key);
+    counts.put(key, (n == null) ? 1 : n + 1);
+  }
+  
+  private static void _decrement(Map<String, Integer> counts, String key) {
+    Integer n = counts.get(key);
+    if (n == null) { return; }
+    if (n <= 1) { counts.remove(key); }
+    else { counts.put(key, n - 1); }
+  }
+  
+  // ----- Changes -----
+  
+  /** Lists a directory in which class files were created or deleted, along with any new directories on the way to it.
+    * @param dir a directory reported by the file index
+    */
+  private void _scanChanged(File dir) {
+    File known = dir;
+    while (known != null && ! _dirs.containsKey(known) && ! known.equals(_buildDir)) { known = known.getParentFile(); }
+    if (known == null) { return; }  // not below the build directory
+    if (! _dirs.containsKey(known)) {  // the build directory itself was created
+      _scanTree(known, true);
+      return;
+    }
+    _scanDir(known, true);
+    // new subdirectories have to be scanned right away
+    DirState d = _dirs.get(known);
+    if (d != null) {
+      for (String s: new ArrayList<String>(d.subdirs)) {
+        File sub = new File(known, s);
+        if (! _dirs.containsKey(sub)) { _scanTree(sub, true); }
+      }
+    }
+  }
+  
+  // ----- Persistence -----
+  
+  /** Writes the index to the cache file, if it changed since it was last written or read. */
+  private void _save() {
+    if (_cacheFile == null) { return; }
+    synchronized(this) {
+      if (! _changed || _buildDir == null) { return; }
+      File tmp = new File(_cacheFile.getPath() + ".tmp");
+      BufferedWriter w = null;
+      try {
+        w = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(tmp), "UTF-8"));
+        w.write(CACHE_HEADER); w.newLine();
+        w.write("B " + _buildDir.getPath()); w.newLine();
+        for (Map.Entry<File, DirState> e: _dirs.entrySet()) {
+          DirState d = e.getValue();
+          String rel = (e.getKey().equals(_buildDir)) ? "" : 
+            e.getKey().getPath().substring(_buildDir.getPath().length() + 1);
+          w.write("D " + d.lastModified + " " + rel); w.newLine();
+          for (String s: d.subdirs) { w.write("S " + s); w.newLine(); }
+          for (String s: d.classFiles) { w.write("C " + s); w.newLine(); }
+        }
+        for (Map.Entry<File, JarState> e: _jars.entrySet()) {
+          JarState j = e.getValue();
+          w.write("J " + j.length + " " + j.lastModified + " " + e.getKey().getPath()); w.newLine();
+          for (String s: j.classes) { w.write("C " + s); w.newLine(); }
+        }
+        w.close();
+        w = null;
+        if (! tmp.renameTo(_cacheFile)) {
+          _cacheFile.delete();
+          if (! tmp.renameTo(_cacheFile)) { throw new IOException("Could not rename " + tmp); }
+        }
+        _changed = false;
+      }
+      catch(IOException ioe) { _log.log("Could not save the class name index", ioe); }
+      finally {
+        if (w != null) {
+          try { w.close(); }
+          catch(IOException ioe) { /* ignore */ }
+        }
+      }
+    }
+  }
+  
+  /** Replaces the state of the build directory, and of those jars that have not changed, with the cached state, if
+    * the cache file belongs to the current build directory.  Malformed caches are ignored.
+    * @param jars the jars to be indexed
+    */
+  private void _loadCache(List<File> jars) {
+    if (_cacheFile == null || ! _cacheFile.isFile()) { return; }
+    HashMap<File, DirState> dirs = new HashMap<File, DirState>();
+    LinkedHashMap<File, JarState> cachedJars = new LinkedHashMap<File, JarState>();
+    BufferedReader r = null;
+    try {
+      r = new BufferedReader(new InputStreamReader(new FileInputStream(_cacheFile), "UTF-8"));
+      if (! CACHE_HEADER.equals(r.readLine())) { return; }
+      String line = r.readLine();
+      if (line == null || ! line.equals("B " + _buildDir.getPath())) { return; }
+      DirState dir = null;
+      List<String> jarClasses = null;
+      while ((line = r.readLine()) != null) {
+        if (line.length() < 2) { return; }
+        String rest = line.substring(2);
+        switch(line.charAt(0)) {
+          case 'D': {
+            int sp = rest.indexOf(' ');
+            dir = new DirState(Long.parseLong(rest.substring(0, sp)));
+            String rel = rest.substring(sp + 1);
+            dirs.put(rel.length() == 0 ? _buildDir : new File(_buildDir, rel), dir);
+            jarClasses = null;
+            break;
+          }
+          case 'J': {
+            String[] parts = rest.split(" ", 3);
+            jarClasses = new ArrayList<String>();
+            cachedJars.put(new File(parts[2]), 
+                           new JarState(Long.parseLong(parts[0]), Long.parseLong(parts[1]), jarClasses));
+            dir = null;
+            break;
+          }
+          case 'S': 
+            if (dir == null) { return; }
+            dir.subdirs.add(rest);
+            break;
+          case 'C':
+            if (jarClasses != null) { jarClasses.add(rest); }
+            else if (dir != null) { dir.classFiles.add(rest); }
+            else { return; }
+            break;
+          default:
+            return;
+        }
+      }
+    }
+    catch(IOException ioe) { _log.log("Could not load the class name index", ioe); return; }
+    catch(RuntimeException re) { _log.log("Malformed class name index", re); return; }
+    finally {
+      if (r != null) {
+        try { r.close(); }
+        catch(IOException ioe) { /* ignore */ }
+      }
+    }
+    
+    for (Map.Entry<File, DirState> e: dirs.entrySet()) {
+      for (String f: e.getValue().classFiles) { _add(_binaryName(_buildDir, new File(e.getKey(), f))); }
+    }
+    _dirs.putAll(dirs);
+    for (Map.Entry<File, JarState> e: cachedJars.entrySet()) {
+      File jar = e.getKey();
+      if (jars.contains(jar) && ! _jars.containsKey(jar) && e.getValue().isCurrent(jar)) {
+        _addJar(jar, e.getValue());
+      }
+    }
+    _changed = false;
+  }
+}
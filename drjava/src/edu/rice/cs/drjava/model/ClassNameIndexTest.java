@@ -0,0 +1,180 @@
+/*BEGIN_COPYRIGHT_BLOCK
+ *
+ * Copyright (c) 2001-2016, JavaPLT group at Rice University (drjava@rice.edu)
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *    * Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the names of DrJava, the JavaPLT group, Rice University, nor the
+ *      names of its contributors may be used to endorse or promote products
+ *      derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * This software is Open Source Initiative approved Open Source Software.
+ * Open Source Initative Approved is a trademark of the Open Source Initiative.
+ * 
+ * This file is part of DrJava.  Download the current version of this project
+ * from http://www.drjava.org/ or http://sourceforge.net/projects/drjava/
+ * 
+ * END_COPYRIGHT_BLOCK*/
+
+
+package edu.rice.cs.drjava.model;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import edu.rice.cs.drjava.DrJavaTestCase;
+import edu.rice.cs.plt.io.IOUtil;
+
+/** Tests the incremental updates and the persistence of ClassNameIndex.
+  * @version $Id$
+  */
+public final class ClassNameIndexTest extends DrJavaTestCase {
+  private File _tempDir;
+  private File _buildDir;
+  private File _cacheFile;
+  private ClassNameIndex _index;
+  
+  public void setUp() throws Exception {
+    super.setUp();
+    String user = System.getProperty("user.name");
+    _tempDir = IOUtil.createAndMarkTempDirectory("DrJava-test-" + user, "");
+    _buildDir = new File(_tempDir, "classes");
+    _cacheFile = new File(_tempDir, "index");
+    assertTrue(_buildDir.mkdir());
+    _index = new ClassNameIndex(_cacheFile);
+  }
+  
+  public void tearDown() throws Exception {
+    _index.dispose();
+    IOUtil.deleteRecursively(_tempDir);
+    _tempDir = null;
+    _index = null;
+    super.tearDown();
+  }
+  
+  /** Creates an (empty) class file for the given binary name in the build directory. */
+  private File _classFile(String binaryName) throws IOException {
+    File f = new File(_buildDir, binaryName.replace('.', File.separatorChar) + ".class");
+    f.getParentFile().mkdirs();
+    IOUtil.writeStringToFile(f, "");
+    return f;
+  }
+  
+  private File _jar(String name, String... classes) throws IOException {
+    File f = new File(_tempDir, name);
+    ZipOutputStream out = new ZipOutputStream(new FileOutputStream(f));
+    try {
+      for (String c: classes) { out.putNextEntry(new ZipEntry(c.replace('.', '/') + ".class")); }
+    }
+    finally { out.close(); }
+    return f;
+  }
+  
+  public void testNames() {
+    assertEquals("Foo", ClassNameIndex._simpleName("p.q.Foo"));
+    assertEquals("Inner", ClassNameIndex._simpleName("p.Foo$Inner"));
+    assertEquals(null, ClassNameIndex._simpleName("p.Foo$1"));
+    assertEquals(null, ClassNameIndex._simpleName("p.Foo$1Local"));
+    assertEquals(null, ClassNameIndex._simpleName("p.package-info"));
+    assertEquals("p.Foo$Inner", ClassNameIndex._binaryName(_buildDir, new File(_buildDir, "p/Foo$Inner.class")));
+  }
+  
+  public void testScanAndRefresh() throws Exception {
+    _classFile("Top");
+    _classFile("p.Foo");
+    _classFile("p.Foo$Inner");
+    _classFile("p.Foo$1");
+    File jar = _jar("lib.jar", "lib.Bar", "lib.Foo");
+    _index.setRoots(_buildDir, Arrays.asList(jar, new File(_tempDir, "notajar"))).get();
+    
+    assertEquals(set("Top", "Foo", "Inner", "Bar"), _index.getSimpleNames());
+    assertEquals(set("Top", "p.Foo", "lib.Bar", "lib.Foo"), _index.getTopLevelNames());
+    
+    assertTrue(new File(_buildDir, "p/Foo.class").delete());
+    _classFile("p.r.Baz");
+    _index.refresh().get();
+    assertEquals(set("Top", "Foo", "Inner", "Bar", "Baz"), _index.getSimpleNames());
+    assertEquals(set("Top", "p.r.Baz", "lib.Bar", "lib.Foo"), _index.getTopLevelNames());
+    
+    IOUtil.deleteRecursively(new File(_buildDir, "p"));
+    _index.setRoots(_buildDir, Collections.<File>emptyList()).get();
+    _index.refresh().get();
+    assertEquals(set("Top"), _index.getSimpleNames());
+    assertEquals(set("Top"), _index.getTopLevelNames());
+    
+    _index.setRoots(null, Collections.<File>emptyList()).get();
+    assertEquals(0, _index.getSimpleNames().size());
+  }
+  
+  public void testCacheIsLoaded() throws Exception {
+    _classFile("p.Foo");
+    File jar = _jar("lib.jar", "lib.Bar");
+    _index.setRoots(_buildDir, Arrays.asList(jar)).get();
+    _index.dispose();
+    assertTrue(_cacheFile.isFile());
+    
+    // A second index finds the class file in the cache, along with the class file added since
+    _classFile("p.Baz");
+    _index = new ClassNameIndex(_cacheFile);
+    _index.setRoots(_buildDir, Arrays.asList(jar)).get();
+    assertEquals(set("p.Foo", "p.Baz", "lib.Bar"), _index.getTopLevelNames());
+    
+    // Unrelated build directories don't use the cache
+    _index.dispose();
+    File other = new File(_tempDir, "other");
+    assertTrue(other.mkdir());
+    _index = new ClassNameIndex(_cacheFile);
+    _index.setRoots(other, Collections.<File>emptyList()).get();
+    assertEquals(0, _index.getTopLevelNames().size());
+  }
+  
+  public void testFileIndexChangesAreApplied() throws Exception {
+    _classFile("p.Old");
+    _index.setRoots(_buildDir, Collections.<File>emptyList()).get();
+    FileIndex fileIndex = new FileIndex(Arrays.asList(_buildDir));
+    fileIndex.addListener(_index);
+    fileIndex.start();
+    try {
+      long deadline = System.currentTimeMillis() + 20000;
+      while (! fileIndex.isReady() && System.currentTimeMillis() < deadline) { Thread.sleep(50); }
+      assertTrue(fileIndex.isReady());
+      
+      _classFile("q.r.Watched");  // in new directories
+      assertTrue(new File(_buildDir, "p/Old.class").delete());
+      deadline = System.currentTimeMillis() + 20000;
+      while ((! _index.getTopLevelNames().contains("q.r.Watched") || _index.getTopLevelNames().contains("p.Old")) && 
+             System.currentTimeMillis() < deadline) {
+        Thread.sleep(50);
+      }
+      assertEquals(set("q.r.Watched"), _index.getTopLevelNames());
+    }
+    finally { fileIndex.close(); }
+  }
+  
+  private static java.util.Set<String> set(String... names) {
+    return new java.util.HashSet<String>(Arrays.asList(names));
+  }
+}
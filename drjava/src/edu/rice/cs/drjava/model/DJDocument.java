@@ -338,6 +338,15 @@ public interface DJDocument extends SwingDocumentInterface {
     */
   public String getText();
   
+  /** Gets the specified portion of the document as a CharSequence, which is a view of the document text rather than
+    * a copy whenever the document supports it.  A view is only valid until the next modification of the document.
+    * @param offset the offset at which to get the text
+    * @param length the number of characters to get
+    * @return the specified text
+    * @throws BadLocationException if the range is not within the document
+    */
+  public CharSequence getCharSequence(int offset, int length) throws BadLocationException;
+  
   /** Clears the entire text of the document.  Without this operation, a client must use locking to perform this
     * task safely.
     */
@@ -399,6 +399,7 @@ public class DefaultGlobalModel extends AbstractGlobalModel {
   /** Sets the build directory for a project. */
   public void setBuildDirectory(File f) {
     _state.setBuildDirectory(f);
+    _updateFileIndex();
     if (f != FileOps.NULL_FILE) {
       //      System.out.println("adding: " + f.getAbsolutePath());
       _jvm.addBuildDirectoryClassPath(IOUtil.attemptAbsoluteFile(f));
@@ -262,6 +262,10 @@ public class DummyOpenDefDoc implements OpenDefinitionsDocument {
     _defDoc.getText(offset, length, txt);
   }
   
+  public CharSequence getCharSequence(int offset, int length) throws BadLocationException {
+    return _defDoc.getCharSequence(offset, length);
+  }
+  
   public void insertString(int offset, String str, AttributeSet set) throws BadLocationException {
     _defDoc.insertString(offset, str, set);
   }
@@ -0,0 +1,472 @@
+/*BEGIN_COPYRIGHT_BLOCK
+ *
+ * Copyright (c) 2001-2016, JavaPLT group at Rice University (drjava@rice.edu)
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *    * Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the names of DrJava, the JavaPLT group, Rice University, nor the
+ *      names of its contributors may be used to endorse or promote products
+ *      derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * This software is Open Source Initiative approved Open Source Software.
+ * Open Source Initative Approved is a trademark of the Open Source Initiative.
+ * 
+ * This file is part of DrJava.  Download the current version of this project
+ * from http://www.drjava.org/ or http://sourceforge.net/projects/drjava/
+ * 
+ * END_COPYRIGHT_BLOCK*/
+
+
+package edu.rice.cs.drjava.model;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import edu.rice.cs.util.Log;
+
+/** An in-memory index of the files below a set of root directories, kept up to date by a {@link WatchService}.  The
+  * model indexes the source tree and the build directory of the open project, so that finding new source files,
+  * enumerating class files and noticing files modified outside of DrJava take time proportional to the number of
+  * changes rather than to the size of the tree.
+  * <p>
+  * The roots are scanned, and every directory below them is registered with the watch service, on a background thread.
+  * Until that is done, {@link #covers} returns false and callers have to list the file system themselves.  Changes
+  * reported by the watch service are applied to the index as they arrive.  They are passed to the listeners in batches
+  * once the file system has been quiet for {@link #BATCH_MILLIS} milliseconds, so that a build or a checkout results in
+  * one notification rather than thousands.  Listeners are called on the watcher thread.
+  * <p>
+  * A root that does not exist yet (e.g. a build directory before the first compilation) is covered as an empty
+  * directory.  The nearest existing directory above it is watched, and the root is scanned as soon as it appears.  A
+  * root that is deleted is handled the same way.
+  * <p>
+  * If the file system cannot be watched, or a directory cannot be registered (e.g. because the system limit on watches
+  * has been reached), the index stops covering its roots for good.
+  * @version $Id$
+  */
+public class FileIndex {
+  private static final Log _log = new Log("FileIndex.txt", false);
+  
+  /** How long the file system has to be quiet before a batch of changes is passed to the listeners. */
+  public static final long BATCH_MILLIS = 200L;
+  
+  /** The longest a change is held back while the file system keeps changing. */
+  public static final long MAX_BATCH_MILLIS = 2000L;
+  
+  /** Receives the changes to the indexed files. */
+  public interface Listener {
+    /** Called on the watcher thread with each batch of changes.
+      * @param changes the files created, modified and deleted since the previous batch
+      */
+    public void filesChanged(Changes changes);
+  }
+  
+  /** A batch of changes to the indexed files.  A file that was created and deleted again within the batch does not
+    * appear at all; a file that was deleted and created again appears as modified.
+    */
+  public static class Changes {
+    private final Set<File> _created = new LinkedHashSet<File>();
+    private final Set<File> _modified = new LinkedHashSet<File>();
+    private final Set<File> _deleted = new LinkedHashSet<File>();
+    
+    public Set<File> getCreated() { return Collections.unmodifiableSet(_created); }
+    public Set<File> getModified() { return Collections.unmodifiableSet(_modified); }
+    public Set<File> getDeleted() { return Collections.unmodifiableSet(_deleted); }
+    
+    public boolean isEmpty() { return _created.isEmpty() && _modified.isEmpty() && _deleted.isEmpty(); }
+    
+    /** Records a change to f.
+      * @param existed whether f was in the index before the change
+      * @param exists whether f is in the index after the change
+      */
+    void record(File f, boolean existed, boolean exists) {
+      if (existed && exists) {
+        if (! _created.contains(f)) { _modified.add(f); }
+      }
+      else if (exists) {
+        if (_deleted.remove(f)) { _modified.add(f); }
+        else { _created.add(f); }
+      }
+      else if (existed) {
+        if (! _created.remove(f)) {
+          _modified.remove(f);
+          _deleted.add(f);
+        }
+      }
+    }
+    
+    public String toString() {
+      return "created " + _created + ", modified " + _modified + ", deleted " + _deleted;
+    }
+  }
+  
+  /** The absolute, normalized root directories; none of them is below another one. */
+  private final List<Path> _roots;
+  
+  /** The absolute paths of all indexed files, mapped to their modification times. */
+  private final ConcurrentSkipListMap<String, Long> _files = new ConcurrentSkipListMap<String, Long>();
+  
+  private final CopyOnWriteArrayList<Listener> _listeners = new CopyOnWriteArrayList<Listener>();
+  
+  /** Whether the roots have been scanned and all of their directories are watched. */
+  private volatile boolean _ready = false;
+  
+  private volatile boolean _closed = false;
+  
+  /** The watch service, or null if the index has not been started or the file system cannot be watched. */
+  private volatile WatchService _watchService = null;
+  
+  /** Serializes the notification of the listeners, so that batches arrive in order. */
+  private final Object _publishLock = new Object();
+  
+  // The remaining fields are guarded by this.
+  
+  /** The watched directories. */
+  private final HashMap<WatchKey, Path> _watchKeys = new HashMap<WatchKey, Path>();
+  
+  /** The roots that do not exist. */
+  private final List<Path> _missingRoots = new ArrayList<Path>();
+  
+  /** The directories watched for the creation of the missing roots; these are above the roots, not in the index. */
+  private final HashMap<WatchKey, Path> _ancestorKeys = new HashMap<WatchKey, Path>();
+  
+  /** The changes that have not been passed to the listeners yet. */
+  private Changes _pending = new Changes();
+  
+  /** The time the oldest change in _pending was found. */
+  private long _pendingSince = 0L;
+  
+  /** Creates an index of the given directories; roots that do not exist yet are indexed once they are created.  Call
+    * {@link #start} to scan and watch them.
+    * @param roots the directories to index
+    */
+  public FileIndex(Iterable<File> roots) {
+    List<Path> paths = new ArrayList<Path>();
+    for (File r: roots) { paths.add(r.toPath().toAbsolutePath().normalize()); }
+    _roots = new ArrayList<Path>();
+    for (Path p: paths) {
+      boolean nested = false;
+      for (Path q: paths) {
+        if (! p.equals(q) && p.startsWith(q)) { nested = true; }
+      }
+      if (! nested && ! _roots.contains(p)) { _roots.add(p); }
+    }
+  }
+  
+  public void addListener(Listener l) { _listeners.add(l); }
+  public void removeListener(Listener l) { _listeners.remove(l); }
+  
+  /** Starts the watcher thread, which scans the roots before it starts to watch them. */
+  public void start() {
+    Thread t = new Thread("File Index Watcher") {
+      public void run() { _watchLoop(); }
+    };
+    t.setDaemon(true);
+    t.setPriority(Thread.MIN_PRIORITY);
+    t.start();
+  }
+  
+  /** Stops watching the roots.  The index no longer covers any directory afterwards. */
+  public void close() {
+    _closed = true;
+    _ready = false;
+    WatchService ws = _watchService;
+    if (ws != null) {
+      try { ws.close(); }
+      catch(IOException ioe) { /* ignore */ }
+    }
+  }
+  
+  /** @return true if the roots have been scanned and are being watched */
+  public boolean isReady() { return _ready; }
+  
+  /** Determines whether the files below dir can be listed from the index.
+    * @param dir a directory
+    * @return true if the index is ready and dir is one of the roots or below one of them
+    */
+  public boolean covers(File dir) {
+    if (! _ready) { return false; }
+    Path p = dir.toPath().toAbsolutePath().normalize();
+    for (Path r: _roots) {
+      if (p.startsWith(r)) { return true; }
+    }
+    return false;
+  }
+  
+  /** Lists the indexed files below a directory, after applying the changes the watch service has already reported.
+    * Only meaningful if {@link #covers} returns true for the directory.
+    * @param dir a directory
+    * @param extension the extension of the files to list, including the dot, or "" for all files
+    * @return the files below dir with the extension, in the order of their paths
+    */
+  public List<File> getFiles(File dir, String extension) {
+    sync();
+    String prefix = dir.toPath().toAbsolutePath().normalize().toString();
+    if (! prefix.endsWith(File.separator)) { prefix = prefix + File.separator; }
+    // the paths below dir are exactly those from prefix up to, but excluding, prefix with the separator incremented
+    String end = prefix.substring(0, prefix.length() - 1) + (char) (File.separatorChar + 1);
+    List<File> result = new ArrayList<File>();
+    for (String s: _files.subMap(prefix, end).keySet()) {
+      if (s.endsWith(extension)) { result.add(new File(s)); }
+    }
+    return result;
+  }
+  
+  /** Applies the changes the watch service has already reported to the index.  Does not wait for further changes.  The
+    * watcher thread passes the changes to the listeners. */
+  public void sync() {
+    WatchService ws = _watchService;
+    if (ws == null || ! _ready) { return; }
+    try {
+      WatchKey key;
+      while ((key = ws.poll()) != null) {
+        synchronized(this) { _process(key); }
+      }
+    }
+    catch(ClosedWatchServiceException cwse) { /* closed */ }
+  }
+  
+  // ----- Watching -----
+  
+  /** Body of the watcher thread. */
+  private void _watchLoop() {
+    WatchService ws;
+    try { ws = FileSystems.getDefault().newWatchService(); }
+    catch(IOException ioe) {
+      _log.log("File system watching is not available", ioe);
+      return;
+    }
+    catch(UnsupportedOperationException uoe) { return; }
+    _watchService = ws;
+    if (_closed) { close(); return; }
+    
+    synchronized(this) {
+      for (Path r: _roots) {
+        if (! Files.isDirectory(r)) { _missingRoots.add(r); }
+        else if (! _scan(r, null)) { close(); return; }
+      }
+      if (! _watchMissingRoots(null)) { close(); return; }
+      _ready = ! _closed;
+    }
+    _log.log("Indexed " + _files.size() + " files below " + _roots);
+    
+    try {
+      while (true) {
+        boolean pending;
+        synchronized(this) { pending = ! _pending.isEmpty(); }
+        // sync() applies changes without waking this thread, so it does not wait for events indefinitely
+        WatchKey key = ws.poll((pending) ? BATCH_MILLIS : MAX_BATCH_MILLIS, TimeUnit.MILLISECONDS);
+        long since;
+        synchronized(this) {
+          if (key != null) { _process(key); }
+          since = _pendingSince;
+        }
+        if (key == null || System.currentTimeMillis() - since > MAX_BATCH_MILLIS) { _publish(); }
+      }
+    }
+    catch(InterruptedException ie) { /* stop watching */ }
+    catch(ClosedWatchServiceException cwse) { /* stop watching */ }
+  }
+  
+  /** Applies the events of a key to the index.  Assumes this is locked. */
+  private void _process(WatchKey key) {
+    Path dir = _watchKeys.get(key);
+    if (dir != null) {
+      for (WatchEvent<?> e: key.pollEvents()) {
+        if (e.kind() == StandardWatchEventKinds.OVERFLOW) { _rescan(dir); }
+        else {
+          Path child = dir.resolve((Path) e.context());
+          if (Files.isDirectory(child, LinkOption.NOFOLLOW_LINKS)) {
+            // a new directory's contents may have been created before it could be watched
+            if (e.kind() == StandardWatchEventKinds.ENTRY_CREATE && ! _scan(child, _pending)) { _ready = false; }
+          }
+          else { _update(child); }
+        }
+      }
+    }
+    else if (_ancestorKeys.containsKey(key)) {
+      key.pollEvents();
+      if (! _watchMissingRoots(_pending)) { _ready = false; }
+    }
+    if (! key.reset()) {
+      _watchKeys.remove(key);
+      _ancestorKeys.remove(key);
+      if (_roots.contains(dir) && ! _closed) {
+        // the root itself was deleted
+        _removeBelow(dir);
+        _missingRoots.add(dir);
+        if (! _watchMissingRoots(_pending)) { _ready = false; }
+      }
+    }
+    if (! _pending.isEmpty() && _pendingSince == 0L) { _pendingSince = System.currentTimeMillis(); }
+  }
+  
+  /** Scans the missing roots that have been created, and watches the nearest existing directory above each of the
+    * others.  Stops watching directories that are no longer needed for that.  Assumes this is locked.
+    * @param changes where to record the files below the roots that were created, or null if they should not be recorded
+    * @return false if a directory could not be watched
+    */
+  private boolean _watchMissingRoots(Changes changes) {
+    for (Path r: new ArrayList<Path>(_missingRoots)) {
+      Path watched = null;
+      while (true) {
+        if (Files.isDirectory(r)) {
+          _missingRoots.remove(r);
+          if (! _scan(r, changes)) { return false; }
+          break;
+        }
+        Path a = r.getParent();
+        while (a != null && ! Files.isDirectory(a)) { a = a.getParent(); }
+        if (a == null) { return false; }
+        if (a.equals(watched)) { break; }
+        // a directory on the way to r may be created before a is watched, so check again afterwards
+        try { _ancestorKeys.put(a.register(_watchService, StandardWatchEventKinds.ENTRY_CREATE), a); }
+        catch(IOException ioe) {
+          _log.log("Could not watch " + a, ioe);
+          return false;
+        }
+        catch(ClosedWatchServiceException cwse) { return false; }
+        watched = a;
+      }
+    }
+    for (Map.Entry<WatchKey, Path> e: new ArrayList<Map.Entry<WatchKey, Path>>(_ancestorKeys.entrySet())) {
+      boolean needed = false;
+      for (Path r: _missingRoots) {
+        if (r.startsWith(e.getValue())) { needed = true; }
+      }
+      if (! needed) {
+        e.getKey().cancel();
+        _ancestorKeys.remove(e.getKey());
+      }
+    }
+    return true;
+  }
+  
+  /** Brings the entry for a path that is not a directory up to date.  Assumes this is locked. */
+  private void _update(Path p) {
+    String s = p.toString();
+    boolean existed = _files.containsKey(s);
+    boolean exists = Files.isRegularFile(p);
+    if (exists) { _files.put(s, p.toFile().lastModified()); }
+    else {
+      _files.remove(s);
+      _removeBelow(p);  // p may have been a directory
+    }
+    _pending.record(p.toFile(), existed, exists);
+  }
+  
+  /** Removes the files below a directory that no longer exists.  Assumes this is locked. */
+  private void _removeBelow(Path dir) {
+    String prefix = dir.toString() + File.separator;
+    String end = dir.toString() + (char) (File.separatorChar + 1);
+    Map<String, Long> below = _files.subMap(prefix, end);
+    for (String s: new ArrayList<String>(below.keySet())) { _pending.record(new File(s), true, false); }
+    below.clear();
+  }
+  
+  /** Scans and watches a directory tree.  Assumes this is locked.
+    * @param dir the root of the tree
+    * @param changes where to record the files that were not indexed yet, or null if they should not be recorded
+    * @return false if a directory could not be watched
+    */
+  private boolean _scan(Path dir, final Changes changes) {
+    final WatchService ws = _watchService;
+    final boolean[] ok = new boolean[] { true };
+    try {
+      Files.walkFileTree(dir, new SimpleFileVisitor<Path>() {
+        public FileVisitResult preVisitDirectory(Path d, BasicFileAttributes attrs) {
+          try {
+            WatchKey key = d.register(ws, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_DELETE,
+                                      StandardWatchEventKinds.ENTRY_MODIFY);
+            _watchKeys.put(key, d);
+            return FileVisitResult.CONTINUE;
+          }
+          catch(IOException ioe) { _log.log("Could not watch " + d, ioe); }
+          catch(ClosedWatchServiceException cwse) { /* closed */ }
+          ok[0] = false;
+          return FileVisitResult.TERMINATE;
+        }
+        public FileVisitResult visitFile(Path f, BasicFileAttributes attrs) {
+          if (attrs.isRegularFile() || Files.isRegularFile(f)) {
+            Long old = _files.put(f.toString(), attrs.lastModifiedTime().toMillis());
+            if (changes != null && old == null) { changes.record(f.toFile(), false, true); }
+          }
+          return FileVisitResult.CONTINUE;
+        }
+        public FileVisitResult visitFileFailed(Path f, IOException ioe) { return FileVisitResult.CONTINUE; }
+      });
+    }
+    catch(IOException ioe) { _log.log("Could not scan " + dir, ioe); }
+    return ok[0];
+  }
+  
+  /** Scans a directory tree again after events have been lost, and records the differences as changes.  Assumes this
+    * is locked. */
+  private void _rescan(Path dir) {
+    String prefix = dir.toString() + File.separator;
+    String end = dir.toString() + (char) (File.separatorChar + 1);
+    Map<String, Long> old = new HashMap<String, Long>(_files.subMap(prefix, end));
+    _files.subMap(prefix, end).clear();
+    if (Files.isDirectory(dir) && ! _scan(dir, null)) { _ready = false; }
+    for (Map.Entry<String, Long> e: _files.subMap(prefix, end).entrySet()) {
+      Long before = old.remove(e.getKey());
+      if (before == null) { _pending.record(new File(e.getKey()), false, true); }
+      else if (! before.equals(e.getValue())) { _pending.record(new File(e.getKey()), true, true); }
+    }
+    for (String s: old.keySet()) { _pending.record(new File(s), true, false); }
+  }
+  
+  /** Passes the pending changes to the listeners. */
+  private void _publish() {
+    synchronized(_publishLock) {
+      Changes changes;
+      synchronized(this) {
+        if (_pending.isEmpty()) { return; }
+        changes = _pending;
+        _pending = new Changes();
+        _pendingSince = 0L;
+      }
+      _log.log("Changes: " + changes);
+      for (Listener l: _listeners) { l.filesChanged(changes); }
+    }
+  }
+}
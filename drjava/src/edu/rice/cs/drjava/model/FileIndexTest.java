@@ -0,0 +1,219 @@
+/*BEGIN_COPYRIGHT_BLOCK
+ *
+ * Copyright (c) 2001-2016, JavaPLT group at Rice University (drjava@rice.edu)
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *    * Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the names of DrJava, the JavaPLT group, Rice University, nor the
+ *      names of its contributors may be used to endorse or promote products
+ *      derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * This software is Open Source Initiative approved Open Source Software.
+ * Open Source Initative Approved is a trademark of the Open Source Initiative.
+ * 
+ * This file is part of DrJava.  Download the current version of this project
+ * from http://www.drjava.org/ or http://sourceforge.net/projects/drjava/
+ * 
+ * END_COPYRIGHT_BLOCK*/
+
+
+package edu.rice.cs.drjava.model;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import edu.rice.cs.drjava.DrJavaTestCase;
+import edu.rice.cs.plt.io.IOUtil;
+
+/** Tests the scanning, querying and watching of FileIndex.
+  * @version $Id$
+  */
+public final class FileIndexTest extends DrJavaTestCase {
+  private File _tempDir;
+  private FileIndex _index;
+  
+  // The changes published so far, accumulated; guarded by this.
+  private final FileIndex.Changes _changes = new FileIndex.Changes();
+  
+  /** The names of the threads the listener was called on. */
+  private final Set<String> _listenerThreads = new HashSet<String>();
+  
+  public void setUp() throws Exception {
+    super.setUp();
+    String user = System.getProperty("user.name");
+    _tempDir = IOUtil.createAndMarkTempDirectory("DrJava-test-" + user, "");
+    _index = null;
+  }
+  
+  public void tearDown() throws Exception {
+    if (_index != null) _index.close();
+    IOUtil.deleteRecursively(_tempDir);
+    _tempDir = null;
+    _index = null;
+    super.tearDown();
+  }
+  
+  private File _file(String path, String text) throws IOException {
+    File f = new File(_tempDir, path.replace('/', File.separatorChar));
+    f.getParentFile().mkdirs();
+    IOUtil.writeStringToFile(f, text);
+    return f;
+  }
+  
+  /** Creates and starts an index of the given roots and waits until it is ready. */
+  private void _start(File... roots) throws InterruptedException {
+    _index = new FileIndex(Arrays.asList(roots));
+    _index.addListener(new FileIndex.Listener() {
+      public void filesChanged(FileIndex.Changes changes) {
+        synchronized(FileIndexTest.this) {
+          _listenerThreads.add(Thread.currentThread().getName());
+          for (File f: changes.getDeleted()) { _changes.record(f, true, false); }
+          for (File f: changes.getCreated()) { _changes.record(f, false, true); }
+          for (File f: changes.getModified()) { _changes.record(f, true, true); }
+        }
+      }
+    });
+    _index.start();
+    long deadline = System.currentTimeMillis() + 20000;
+    while (! _index.isReady() && System.currentTimeMillis() < deadline) { Thread.sleep(50); }
+    assertTrue("index should be ready", _index.isReady());
+  }
+  
+  private static Set<File> set(File... files) { return new HashSet<File>(Arrays.asList(files)); }
+  
+  public void testRecord() {
+    File a = new File("a"), b = new File("b"), c = new File("c");
+    FileIndex.Changes changes = new FileIndex.Changes();
+    changes.record(a, false, true);
+    changes.record(a, true, true);
+    changes.record(b, true, false);
+    changes.record(b, false, true);
+    changes.record(c, false, true);
+    changes.record(c, true, false);
+    assertEquals("created", set(a), changes.getCreated());
+    assertEquals("modified", set(b), changes.getModified());
+    assertEquals("deleted", set(), changes.getDeleted());
+  }
+  
+  public void testScanAndQuery() throws Exception {
+    File a = _file("src/p/A.java", "");
+    File b = _file("src/p/q/B.java", "");
+    _file("src/p/notes.txt", "");
+    _file("src-old/C.java", "");
+    _file("src0/D.java", "");
+    File classes = new File(_tempDir, "src/classes");
+    File cls = _file("src/classes/p/A.class", "");
+    _start(new File(_tempDir, "src"), classes);
+    
+    assertTrue(_index.covers(new File(_tempDir, "src")));
+    assertTrue(_index.covers(new File(_tempDir, "src/p/q")));
+    assertTrue(_index.covers(classes));
+    assertFalse(_index.covers(_tempDir));
+    assertFalse(_index.covers(new File(_tempDir, "src-old")));
+    
+    assertEquals(Arrays.asList(a, b), _index.getFiles(new File(_tempDir, "src"), ".java"));
+    assertEquals(Arrays.asList(cls), _index.getFiles(classes, ".class"));
+    assertEquals(3, _index.getFiles(new File(_tempDir, "src/p"), "").size());
+    
+    _index.close();
+    assertFalse("a closed index covers nothing", _index.covers(new File(_tempDir, "src")));
+  }
+  
+  public void testChangesArePublished() throws Exception {
+    File a = _file("src/A.java", "class A { }");
+    File b = _file("src/B.java", "class B { }");
+    _start(new File(_tempDir, "src"));
+    
+    File c = _file("src/C.java", "class C { }");
+    File d = _file("src/p/q/D.java", "class D { }");  // in a new directory
+    IOUtil.writeStringToFile(a, "class A { int x; }");
+    assertTrue(b.delete());
+    
+    long deadline = System.currentTimeMillis() + 20000;
+    while (System.currentTimeMillis() < deadline) {
+      synchronized(this) {
+        if (_changes.getCreated().size() == 2 && _changes.getModified().size() == 1 && 
+            _changes.getDeleted().size() == 1) break;
+      }
+      Thread.sleep(50);
+    }
+    synchronized(this) {
+      assertEquals("created", set(c, d), _changes.getCreated());
+      assertEquals("modified", set(a), _changes.getModified());
+      assertEquals("deleted", set(b), _changes.getDeleted());
+    }
+    assertEquals(Arrays.asList(a, c, d), _index.getFiles(new File(_tempDir, "src"), ".java"));
+    
+    IOUtil.deleteRecursively(new File(_tempDir, "src/p"));
+    deadline = System.currentTimeMillis() + 20000;
+    while (_index.getFiles(new File(_tempDir, "src"), ".java").size() > 2 && System.currentTimeMillis() < deadline) {
+      Thread.sleep(50);
+    }
+    assertEquals(Arrays.asList(a, c), _index.getFiles(new File(_tempDir, "src"), ".java"));
+  }
+  
+  /** Waits until the files with the given extension below dir are the expected ones. */
+  private void _awaitFiles(File dir, String extension, File... expected) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 20000;
+    while (! _index.getFiles(dir, extension).equals(Arrays.asList(expected)) && System.currentTimeMillis() < deadline) {
+      Thread.sleep(50);
+    }
+    assertEquals(Arrays.asList(expected), _index.getFiles(dir, extension));
+  }
+  
+  public void testMissingRoot() throws Exception {
+    File src = new File(_tempDir, "src");
+    File classes = new File(_tempDir, "out/classes");  // neither out nor classes exists yet
+    File a = _file("src/A.java", "class A { }");
+    _start(src, classes);
+    assertTrue("a missing root is covered", _index.covers(classes));
+    assertEquals(0, _index.getFiles(classes, ".class").size());
+    
+    // the first compilation creates the build directory
+    File aClass = _file("out/classes/p/A.class", "");
+    _awaitFiles(classes, ".class", aClass);
+    // querying the index applies the change, but only the watcher thread publishes it
+    long deadline = System.currentTimeMillis() + 20000;
+    while (System.currentTimeMillis() < deadline) {
+      synchronized(this) { if (_changes.getCreated().contains(aClass)) break; }
+      Thread.sleep(50);
+    }
+    synchronized(this) { 
+      assertTrue(_changes.getCreated().contains(aClass));
+      assertEquals(Collections.singleton("File Index Watcher"), _listenerThreads);
+    }
+    File bClass = _file("out/classes/p/B.class", "");
+    _awaitFiles(classes, ".class", aClass, bClass);
+    
+    // a clean deletes it again, and the next compilation recreates it
+    IOUtil.deleteRecursively(new File(_tempDir, "out"));
+    _awaitFiles(classes, ".class");
+    File cClass = _file("out/classes/C.class", "");
+    _awaitFiles(classes, ".class", cClass);
+    
+    assertTrue(_index.isReady());
+    assertEquals(Arrays.asList(a), _index.getFiles(src, ".java"));
+  }
+}
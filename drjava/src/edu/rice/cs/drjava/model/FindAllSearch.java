@@ -0,0 +1,370 @@
+/*BEGIN_COPYRIGHT_BLOCK
+ *
+ * Copyright (c) 2001-2016, JavaPLT group at Rice University (drjava@rice.edu)
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *    * Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the names of DrJava, the JavaPLT group, Rice University, nor the
+ *      names of its contributors may be used to endorse or promote products
+ *      derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * This software is Open Source Initiative approved Open Source Software.
+ * Open Source Initative Approved is a trademark of the Open Source Initiative.
+ * 
+ * This file is part of DrJava.  Download the current version of this project
+ * from http://www.drjava.org/ or http://sourceforge.net/projects/drjava/
+ * 
+ * END_COPYRIGHT_BLOCK*/
+
+
+package edu.rice.cs.drjava.model;
+
+import edu.rice.cs.util.Log;
+import edu.rice.cs.util.StringOps;
+
+import java.awt.EventQueue;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import javax.swing.text.BadLocationException;
+
+/** A "find all" search over a list of documents that runs on a fork-join pool instead of the event thread.  The text
+  * of each resident document is captured in the event thread when the search is created; the text of every other
+  * document is read by a worker through {@link OpenDefinitionsDocument#getText()}, which serves it from the document
+  * cache (or from disk) without reconstructing the document.  Matches inside comments and strings are recognized by
+  * a lexical scan of that text, except in documents that were modified since they were last saved, where the reduced
+  * model of the document is consulted in the event thread.
+  * <p>
+  * Results are delivered to a {@link Listener} in the event thread, one document at a time and in the order of the
+  * document list, as soon as the documents have been searched.  Before a match is delivered, it is checked against
+  * the current text of its document, so matches invalidated by edits made during the search are dropped.
+  * @version $Id$
+  */
+public class FindAllSearch {
+  
+  static private Log _log = new Log("FindReplace.txt", false);
+  
+  /** Receives the output of a search.  All methods are called in the event thread. */
+  public interface Listener {
+    /** Called once for each document containing matches.
+      * @param doc the document
+      * @param results the matches in doc in increasing order of offset; the found offset of each result is the right
+      *        edge of the match
+      */
+    public void resultsFound(OpenDefinitionsDocument doc, List<FindResult> results);
+    
+    /** Called exactly once, after the last call to {@link #resultsFound}.
+      * @param count the total number of matches delivered
+      * @param cancelled true iff the search was stopped by {@link FindAllSearch#cancel}
+      */
+    public void searchFinished(int count, boolean cancelled);
+  }
+  
+  /** The pool shared by all searches; one processor is left to the event thread. */
+  private static volatile ForkJoinPool _pool = null;
+  
+  private static ForkJoinPool _getPool() {
+    ForkJoinPool pool = _pool;
+    if (pool == null) {
+      synchronized(FindAllSearch.class) {
+        if (_pool == null) _pool = new ForkJoinPool(Math.max(1, Runtime.getRuntime().availableProcessors() - 1));
+        pool = _pool;
+      }
+    }
+    return pool;
+  }
+  
+  private final OpenDefinitionsDocument[] _docs;
+  private final String[] _texts;              // text captured in the event thread, or null if a worker reads it
+  private final boolean[] _useReducedModel;   // whether comments and strings are found using the reduced model
+  private final String _findWord;
+  private final boolean _matchCase;
+  private final boolean _wholeWord;
+  private final boolean _noComments;
+  private final int _selStart;                // bounds of the searched segment of the first document
+  private final int _selEnd;
+  private final Listener _listener;
+  
+  /** Left edges of the matches found in each document, filled in by the workers. */
+  private final AtomicReferenceArray<int[]> _found;
+  
+  private final AtomicBoolean _publishPending = new AtomicBoolean(false);
+  private volatile boolean _cancelled = false;
+  
+  /* State of the delivery of results; only accessed in the event thread. */
+  private int _nextToPublish = 0;
+  private int _count = 0;
+  private boolean _finished = false;
+  
+  /** Creates a search; must be called in the event thread.  The search does not begin until {@link #start} is called.
+    * @param docs the documents to search, in the order in which results should be delivered
+    * @param findWord the (non-empty) string to search for
+    * @param matchCase true if the search is case-sensitive
+    * @param wholeWord true if only whole-word matches are reported
+    * @param noComments true if matches inside comments and strings are ignored
+    * @param selStart the start of the searched segment of the first document
+    * @param selEnd the end of the searched segment of the first document; use Integer.MAX_VALUE to search it all
+    * @param listener the receiver of the results
+    */
+  public FindAllSearch(List<OpenDefinitionsDocument> docs, String findWord, boolean matchCase, boolean wholeWord, 
+                       boolean noComments, int selStart, int selEnd, Listener listener) {
+    assert EventQueue.isDispatchThread();
+    assert findWord.length() > 0;
+    
+    int n = docs.size();
+    _docs = docs.toArray(new OpenDefinitionsDocument[n]);
+    _texts = new String[n];
+    _useReducedModel = new boolean[n];
+    _findWord = findWord;
+    _matchCase = matchCase;
+    _wholeWord = wholeWord;
+    _noComments = noComments;
+    _selStart = selStart;
+    _selEnd = selEnd;
+    _listener = listener;
+    _found = new AtomicReferenceArray<int[]>(n);
+    
+    for (int i = 0; i < n; i++) {
+      OpenDefinitionsDocument doc = _docs[i];
+      if (doc.isReady()) {
+        // A resident document can only be read consistently in the event thread.
+        _texts[i] = doc.getText();
+        _useReducedModel[i] = noComments && doc.isModifiedSinceSave();
+      }
+    }
+  }
+  
+  /** Starts searching in the background.  Must be called in the event thread. */
+  public void start() {
+    assert EventQueue.isDispatchThread();
+    if (_docs.length == 0) _publish();
+    else _getPool().execute(new SearchTask(0, _docs.length));
+  }
+  
+  /** Stops the search.  Results that have not yet been delivered are discarded, and the listener is told that the 
+    * search was cancelled (unless it has already finished).  Must be called in the event thread.
+    */
+  public void cancel() {
+    assert EventQueue.isDispatchThread();
+    _cancelled = true;
+    if (! _finished) {
+      _finished = true;
+      _listener.searchFinished(_count, true);
+    }
+  }
+  
+  /** @return true iff the listener has been told that this search finished.  Only called in the event thread. */
+  public boolean isFinished() { return _finished; }
+  
+  /** Searches the documents in a range of the document list, splitting the range among the workers. */
+  private class SearchTask extends RecursiveAction {
+    private final int _lo;
+    private final int _hi;
+    
+    SearchTask(int lo, int hi) {
+      _lo = lo;
+      _hi = hi;
+    }
+    
+    protected void compute() {
+      if (_cancelled) return;
+      if (_hi - _lo > 1) {
+        int mid = (_lo + _hi) >>> 1;
+        invokeAll(new SearchTask(_lo, mid), new SearchTask(mid, _hi));
+      }
+      else {
+        int[] found;
+        try { found = _searchDoc(_lo); }
+        catch(RuntimeException e) {
+          // the document may have been closed or deleted in the meantime
+          _log.log("FindAllSearch failed to search " + _docs[_lo], e);
+          found = new int[0];
+        }
+        _found.set(_lo, found);
+        if (_publishPending.compareAndSet(false, true)) {
+          EventQueue.invokeLater(new Runnable() { public void run() { _publish(); } });
+        }
+      }
+    }
+  }
+  
+  /** Finds the matches in a document; runs in a worker thread.
+    * @param i the index of the document
+    * @return the left edges of the matches
+    */
+  private int[] _searchDoc(int i) {
+    String text = _texts[i];
+    if (text == null) text = _docs[i].getText();
+    
+    int from = 0;
+    int to = text.length();
+    if (i == 0) {
+      from = Math.min(_selStart, to);
+      to = Math.min(_selEnd, to);
+    }
+    boolean lexical = _noComments && ! _useReducedModel[i];
+    return findMatches(text, from, to, _findWord, _matchCase, _wholeWord, lexical);
+  }
+  
+  /** Delivers the results of the documents that have been searched, in document order, and tells the listener when 
+    * the search is complete.  Runs in the event thread.
+    */
+  private void _publish() {
+    _publishPending.set(false);
+    while (! _finished && _nextToPublish < _docs.length) {
+      int[] found = _found.get(_nextToPublish);
+      if (found == null) return;  // not yet searched; a later call will resume here
+      _found.set(_nextToPublish, null);
+      OpenDefinitionsDocument doc = _docs[_nextToPublish];
+      boolean useReducedModel = _useReducedModel[_nextToPublish];
+      _nextToPublish++;
+      if (found.length == 0) continue;
+      
+      List<FindResult> results = _validate(doc, found, useReducedModel);
+      if (! results.isEmpty()) {
+        _count += results.size();
+        _listener.resultsFound(doc, results);
+      }
+    }
+    if (! _finished) {
+      _finished = true;
+      _listener.searchFinished(_count, false);
+    }
+  }
+  
+  /** Converts matches found by a worker into FindResults, dropping those that no longer match the current text of 
+    * doc and, if useReducedModel is true, those inside comments and strings.  Runs in the event thread.
+    */
+  private List<FindResult> _validate(OpenDefinitionsDocument doc, int[] found, boolean useReducedModel) {
+    int len = _findWord.length();
+    List<FindResult> results = new ArrayList<FindResult>(found.length);
+    try {
+      int docLen = doc.getLength();
+      for (int start: found) {
+        if (start + len > docLen) continue;
+        if (StringOps.indexOf(doc.getText(start, len), _findWord, 0, _matchCase) != 0) continue;
+        if (useReducedModel && doc.isShadowed(start)) continue;
+        results.add(new FindResult(doc, start + len, false, false));
+      }
+    }
+    catch(BadLocationException e) { /* document changed under us; keep the results validated so far */ }
+    catch(RuntimeException e) { 
+      // the document may have been closed in the meantime
+      _log.log("FindAllSearch could not deliver results for " + doc, e);
+      return Collections.emptyList();
+    }
+    return results;
+  }
+  
+  /** Finds the non-overlapping occurrences of word that lie entirely within text[from, to).  Safe to call from any
+    * thread.
+    * @param text the text to search
+    * @param from the start of the searched segment
+    * @param to the end of the searched segment
+    * @param word the (non-empty) string to search for
+    * @param matchCase true if the search is case-sensitive
+    * @param wholeWord true if occurrences adjacent to a letter, digit or underscore are skipped
+    * @param noComments true if occurrences starting inside a Java comment or string literal are skipped
+    * @return the left edges of the occurrences, in increasing order
+    */
+  public static int[] findMatches(String text, int from, int to, String word, boolean matchCase, boolean wholeWord,
+                                  boolean noComments) {
+    int wordLen = word.length();
+    boolean[] shadowed = null;  // computed only once the first candidate is found
+    int[] found = new int[4];
+    int count = 0;
+    
+    int pos = StringOps.indexOf(text, word, from, matchCase);
+    while (pos >= 0 && pos + wordLen <= to) {
+      boolean ignore = wholeWord && ! _isWholeWord(text, pos, wordLen);
+      if (! ignore && noComments) {
+        if (shadowed == null) shadowed = shadowedChars(text, to);
+        ignore = shadowed[pos];
+      }
+      if (ignore) pos = StringOps.indexOf(text, word, pos + 1, matchCase);
+      else {
+        if (count == found.length) {
+          int[] newFound = new int[2 * count];
+          System.arraycopy(found, 0, newFound, 0, count);
+          found = newFound;
+        }
+        found[count++] = pos;
+        pos = StringOps.indexOf(text, word, pos + wordLen, matchCase);
+      }
+    }
+    
+    int[] result = new int[count];
+    System.arraycopy(found, 0, result, 0, count);
+    return result;
+  }
+  
+  private static boolean _isWholeWord(String text, int start, int len) {
+    int end = start + len;
+    return (start == 0 || _isDelimiter(text.charAt(start - 1))) 
+      && (end == text.length() || _isDelimiter(text.charAt(end)));
+  }
+  
+  private static boolean _isDelimiter(char ch) { return ! Character.isLetterOrDigit(ch)  &&  ch != '_'; }
+  
+  /** Marks the characters of text[0, end) that belong to a Java comment or string or character literal, including the
+    * delimiters.  An unterminated string or character literal ends at the end of its line.
+    * @param text the text to scan
+    * @param end the number of characters to scan
+    * @return an array whose i-th element is true iff text.charAt(i) is inside a comment or literal
+    */
+  static boolean[] shadowedChars(String text, int end) {
+    boolean[] shadowed = new boolean[end];
+    int i = 0;
+    while (i < end) {
+      char ch = text.charAt(i);
+      int start = i;
+      if (ch == '/' && i + 1 < end && text.charAt(i + 1) == '/') {
+        while (i < end && text.charAt(i) != '\n') i++;
+      }
+      else if (ch == '/' && i + 1 < end && text.charAt(i + 1) == '*') {
+        i += 2;
+        while (i < end && ! (text.charAt(i) == '*' && i + 1 < end && text.charAt(i + 1) == '/')) i++;
+        i = Math.min(i + 2, end);
+      }
+      else if (ch == '"' || ch == '\'') {
+        i++;
+        while (i < end) {
+          char c = text.charAt(i);
+          if (c == '\n') break;
+          i++;
+          if (c == ch) break;
+          if (c == '\\' && i < end && text.charAt(i) != '\n') i++;
+        }
+      }
+      else {
+        i++;
+        continue;
+      }
+      for (int j = start; j < i; j++) shadowed[j] = true;
+    }
+    return shadowed;
+  }
+}
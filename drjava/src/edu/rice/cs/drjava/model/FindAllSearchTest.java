@@ -0,0 +1,110 @@
+/*BEGIN_COPYRIGHT_BLOCK
+ *
+ * Copyright (c) 2001-2016, JavaPLT group at Rice University (drjava@rice.edu)
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *    * Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the names of DrJava, the JavaPLT group, Rice University, nor the
+ *      names of its contributors may be used to endorse or promote products
+ *      derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * This software is Open Source Initiative approved Open Source Software.
+ * Open Source Initative Approved is a trademark of the Open Source Initiative.
+ * 
+ * This file is part of DrJava.  Download the current version of this project
+ * from http://www.drjava.org/ or http://sourceforge.net/projects/drjava/
+ * 
+ * END_COPYRIGHT_BLOCK*/
+
+
+package edu.rice.cs.drjava.model;
+
+import edu.rice.cs.drjava.DrJavaTestCase;
+
+import java.util.Arrays;
+
+/** Tests the document-independent search logic of FindAllSearch.
+  * @version $Id$
+  */
+public class FindAllSearchTest extends DrJavaTestCase {
+  
+  private static final String TEXT =
+    "class Foo { // foo comment\n" +
+    "  String s = \"foo \\\" foo\";\n" +
+    "  /* foo\n" +
+    "     foo */ char c = 'f'; int foo_bar = FOO;\n" +
+    "  void foo() { foo(); }\n" +
+    "}\n";
+  
+  private static int[] _find(String word, boolean matchCase, boolean wholeWord, boolean noComments) {
+    return FindAllSearch.findMatches(TEXT, 0, TEXT.length(), word, matchCase, wholeWord, noComments);
+  }
+  
+  private static int[] _indices(String text, String word) {
+    int[] result = new int[0];
+    for (int i = text.indexOf(word); i >= 0; i = text.indexOf(word, i + word.length())) {
+      result = Arrays.copyOf(result, result.length + 1);
+      result[result.length - 1] = i;
+    }
+    return result;
+  }
+  
+  public void testPlainSearch() {
+    assertTrue(Arrays.equals(_indices(TEXT, "foo"), _find("foo", true, false, false)));
+    assertTrue(Arrays.equals(_indices(TEXT.toLowerCase(), "foo"), _find("foo", false, false, false)));
+    assertEquals(0, _find("bar()", true, false, false).length);
+  }
+  
+  public void testNonOverlapping() {
+    int[] found = FindAllSearch.findMatches("aaaaa", 0, 5, "aa", true, false, false);
+    assertTrue(Arrays.toString(found), Arrays.equals(new int[] { 0, 2 }, found));
+  }
+  
+  public void testWholeWord() {
+    int[] found = _find("foo", false, true, false);
+    for (int start: found) {
+      assertFalse("match at " + start + " is followed by '_'", TEXT.charAt(start + 3) == '_');
+    }
+    assertEquals(_indices(TEXT.toLowerCase(), "foo").length - 1, found.length);  // only "foo_bar" is not a whole word
+  }
+  
+  public void testIgnoreCommentsAndStrings() {
+    int[] found = _find("foo", true, false, true);
+    int declaration = TEXT.indexOf("int foo_bar");
+    int method = TEXT.indexOf("void foo()");
+    assertTrue(Arrays.toString(found), Arrays.equals(new int[] { declaration + 4, method + 5, method + 13 }, found));
+    assertEquals(0, _find("f", true, true, true).length);  // only occurs as a character literal
+  }
+  
+  public void testSegment() {
+    int line = TEXT.indexOf("  void");
+    int[] found = FindAllSearch.findMatches(TEXT, line, line + "  void foo".length(), "foo", true, false, false);
+    assertTrue(Arrays.toString(found), Arrays.equals(new int[] { line + 7 }, found));
+  }
+  
+  public void testShadowedChars() {
+    String text = "a /* b */ \"c\\\"d\" // e\n'f' \"g\nh";
+    boolean[] shadowed = FindAllSearch.shadowedChars(text, text.length());
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < text.length(); i++) sb.append(shadowed[i] ? '#' : text.charAt(i));
+    assertEquals("a ####### ###### ####\n### ##\nh", sb.toString());
+  }
+}
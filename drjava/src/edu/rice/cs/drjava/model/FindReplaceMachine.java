@@ -586,19 +586,14 @@ public class FindReplaceMachine {
       
 //    if (start + len > docLen) len = docLen - start;
       
-      String text;             // The text segment to be searched
-      final String findWord;   // copy of word being searched (so it can converted to lower case if necessary
+      final CharSequence text;  // The text segment to be searched; a view of doc rather than a copy
+      final String findWord = _findWord;
       
       try { 
         
 //      if (wrapped && allWrapped) Utilities.show(start  + ", " + len + ", " + docLen + ", doc = '" + doc.getText() + "'");
-        text = doc.getText(start, len);
+        text = doc.getCharSequence(start, len);
         
-        if (! _matchCase) {
-          text = text.toLowerCase();
-          findWord = _findWord.toLowerCase();  // does not affect wordLen
-        }
-        else findWord = _findWord;
 //       if (wrapped && allWrapped) Utilities.show("Executing loop with findWord = " + findWord + "; text = " + text +
 //          "; len = " + len);     
         
@@ -615,7 +610,8 @@ public class FindReplaceMachine {
         while (rem >= wordLen) {
           
           // Find next match in text
-          foundOffset = _isForward ? text.indexOf(findWord, foundOffset) : text.lastIndexOf(findWord, foundOffset);
+          foundOffset = _isForward ? StringOps.indexOf(text, findWord, foundOffset, _matchCase) 
+                                   : StringOps.lastIndexOf(text, findWord, foundOffset, _matchCase);
 //        _log.log("foundOffset = " + foundOffset);
           if (foundOffset < 0) break;  // no valid match in this document
           int foundLocation = start + foundOffset;
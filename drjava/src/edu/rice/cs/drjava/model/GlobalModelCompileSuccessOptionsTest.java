@@ -42,6 +42,7 @@ import javax.swing.text.BadLocationException;
 
 import edu.rice.cs.drjava.DrJava;
 import edu.rice.cs.drjava.config.OptionConstants;
+import edu.rice.cs.plt.io.IOUtil;
 
 /** * Tests to ensure that compilation succeeds when expected.
  * 
@@ -181,4 +182,43 @@ public final class GlobalModelCompileSuccessOptionsTest extends GlobalModelCompi
       assertTrue(_name() + "FooGenerics Class file doesn't exist after compile", compiled.exists());
     }
   }
+  
+  /** Tests that, with SKIP_UP_TO_DATE_LL_FILES, a language level file whose .java file is newer is not converted again.
+   * @throws BadLocationException if attempts to reference an invalid location
+   * @throws IOException if an IO operation fails
+   * @throws InterruptedException if execution is interrupted unexpectedly
+   */
+  public void testCompileSkipsUpToDateLanguageLevelFile() 
+    throws BadLocationException, IOException, InterruptedException {
+    OpenDefinitionsDocument doc = setupDocument("class DrJavaTestLL {\n  int m() { return 1; }\n}\n");
+    final File file = new File(_tempDir, "DrJavaTestLL.dj");
+    final File javaFile = new File(_tempDir, "DrJavaTestLL.java");
+    saveFile(doc, new FileSelector(file));
+    DrJava.getConfig().setSetting(OptionConstants.SKIP_UP_TO_DATE_LL_FILES, Boolean.TRUE);
+    
+    _compileLL(doc);
+    assertTrue(_name() + "Generated file should exist after compile", javaFile.exists());
+    String generated = IOUtil.toString(javaFile);
+    
+    String edited = "class DrJavaTestLL { int m() { return 2; } }\n";
+    IOUtil.writeStringToFile(javaFile, edited);
+    javaFile.setLastModified(file.lastModified() + 10000);
+    _compileLL(doc);
+    assertEquals(_name() + "Up-to-date file should not be converted", edited, IOUtil.toString(javaFile));
+    
+    DrJava.getConfig().setSetting(OptionConstants.SKIP_UP_TO_DATE_LL_FILES, Boolean.FALSE);
+    _compileLL(doc);
+    assertEquals(_name() + "File should be converted without the option", generated, IOUtil.toString(javaFile));
+  }
+  
+  private void _compileLL(OpenDefinitionsDocument doc) throws IOException, InterruptedException {
+    CompileShouldSucceedListener listener = new CompileShouldSucceedListener();
+    _model.addListener(listener);
+    listener.compile(doc);
+    if (_model.getCompilerModel().getNumErrors() > 0) {
+      fail("compile failed: " + getCompilerErrorString());
+    }
+    listener.checkCompileOccurred();
+    _model.removeListener(listener);
+  }
 }
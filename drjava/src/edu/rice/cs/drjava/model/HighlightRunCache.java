@@ -0,0 +1,184 @@
+/*BEGIN_COPYRIGHT_BLOCK
+ *
+ * Copyright (c) 2001-2016, JavaPLT group at Rice University (drjava@rice.edu)
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *    * Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the names of DrJava, the JavaPLT group, Rice University, nor the
+ *      names of its contributors may be used to endorse or promote products
+ *      derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * This software is Open Source Initiative approved Open Source Software.
+ * Open Source Initative Approved is a trademark of the Open Source Initiative.
+ * 
+ * This file is part of DrJava.  Download the current version of this project
+ * from http://www.drjava.org/ or http://sourceforge.net/projects/drjava/
+ * 
+ * END_COPYRIGHT_BLOCK*/
+
+package edu.rice.cs.drjava.model;
+
+import java.awt.EventQueue;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import javax.swing.text.Element;
+
+import edu.rice.cs.drjava.model.definitions.reducedmodel.HighlightStatus;
+
+/** Caches the highlight runs of each line of an AbstractDJDocument, so that repainting a line doesn't query the
+  * reduced model and tokenize the line again.  The runs of a line are packed in an int array of (offset, length,
+  * state) triples, where the offsets are absolute.  The highlighting of a line depends only on the text before its
+  * end, so a change at some offset invalidates the runs of the line containing it and of all following lines.
+  * <p>
+  * Lines are computed on demand when they are painted, and ahead of time (see {@link #prefetch}) for the lines
+  * around the painted ones.  The reduced model may only be used in the event thread, so prefetching is done by a
+  * series of short tasks on the event queue rather than on a thread of its own.  The counters {@link #getPaintMisses}
+  * and {@link #getPaintHits} report how many lines painting had to compute (allocating their runs) or found cached.
+  * Only accessed in the event thread.</p>
+  */
+public class HighlightRunCache {
+  
+  /** The number of lines above and below the painted lines that are prefetched. */
+  public static final int MARGIN = 100;
+  
+  /** The number of lines computed by each prefetching task. */
+  private static final int CHUNK = 25;
+  
+  private static final int[] NO_RUNS = new int[0];
+  
+  private final AbstractDJDocument _doc;
+  
+  /** The runs of each line, indexed by line; null if the line has not been computed. */
+  private int[][] _lines = new int[64][];
+  
+  /** All lines at or beyond this index are null. */
+  private int _limit = 0;
+  
+  /** The range of lines that remain to be prefetched; empty if _prefetchFrom > _prefetchTo. */
+  private int _prefetchFrom = 0;
+  private int _prefetchTo = -1;
+  
+  /** Whether a prefetching task is on the event queue. */
+  private boolean _prefetchPending = false;
+  
+  private long _paintHits = 0;
+  private long _paintMisses = 0;
+  private long _prefetched = 0;
+  
+  public HighlightRunCache(AbstractDJDocument doc) { _doc = doc; }
+  
+  /** Gets the runs of the line containing the given offset, for painting.  
+    * @param offset an offset in the document
+    * @return (offset, length, state) triples covering the line; must not be modified
+    */
+  public int[] runsAt(int offset) {
+    int line = _doc.getDefaultRootElement().getElementIndex(offset);
+    int[] runs = (line < _limit) ? _lines[line] : null;
+    if (runs != null) { _paintHits++; return runs; }
+    _paintMisses++;
+    return _compute(line);
+  }
+  
+  /** Discards the runs of the line containing the given offset and of all following lines.
+    * @param offset the offset of a change to the document
+    */
+  public void invalidate(int offset) {
+    int line = (offset <= 0) ? 0 : _doc.getDefaultRootElement().getElementIndex(offset);
+    if (line < _limit) {
+      Arrays.fill(_lines, line, _limit, null);
+      _limit = line;
+    }
+  }
+  
+  /** Discards the runs of all lines. */
+  public void clear() { invalidate(0); }
+  
+  /** Computes the runs of the given lines ahead of time, unless they are already cached.  The lines are computed by
+    * tasks on the event queue, a few at a time, so that pending input is not delayed.  A new request replaces any
+    * pending one.
+    * @param from the first line to compute
+    * @param to the last line to compute
+    */
+  public void prefetch(int from, int to) {
+    _prefetchFrom = Math.max(from, 0);
+    _prefetchTo = to;
+    if (! _prefetchPending && _prefetchFrom <= _prefetchTo) {
+      _prefetchPending = true;
+      EventQueue.invokeLater(new Runnable() { public void run() { _prefetchChunk(); } });
+    }
+  }
+  
+  /** @return the number of painted lines whose runs were cached */
+  public long getPaintHits() { return _paintHits; }
+  
+  /** @return the number of painted lines whose runs had to be computed, each allocating a new array */
+  public long getPaintMisses() { return _paintMisses; }
+  
+  /** @return the number of lines computed ahead of time */
+  public long getPrefetched() { return _prefetched; }
+  
+  /** Resets the paint and prefetch counters. */
+  public void resetCounters() {
+    _paintHits = 0;
+    _paintMisses = 0;
+    _prefetched = 0;
+  }
+  
+  /** Computes up to CHUNK lines of the pending prefetch request, and reschedules itself if lines remain. */
+  private void _prefetchChunk() {
+    int count = Math.min(_prefetchTo, _doc.getDefaultRootElement().getElementCount() - 1);
+    int computed = 0;
+    while (_prefetchFrom <= count && computed < CHUNK) {
+      int line = _prefetchFrom++;
+      if (line >= _limit || _lines[line] == null) {
+        _compute(line);
+        _prefetched++;
+        computed++;
+      }
+    }
+    if (_prefetchFrom <= count) { EventQueue.invokeLater(new Runnable() { public void run() { _prefetchChunk(); } }); }
+    else { _prefetchPending = false; }
+  }
+  
+  /** Computes and caches the runs of the given line. */
+  private int[] _compute(int line) {
+    Element elem = _doc.getDefaultRootElement().getElement(line);
+    int start = elem.getStartOffset();
+    int end = Math.min(elem.getEndOffset(), _doc.getLength());  // the last line ends past the end of the text
+    int[] runs = NO_RUNS;
+    if (start < end) {
+      ArrayList<HighlightStatus> stats = _doc.getHighlightStatus(start, end);
+      runs = new int[3 * stats.size()];
+      int i = 0;
+      for (HighlightStatus stat : stats) {
+        runs[i++] = stat.getLocation();
+        runs[i++] = stat.getLength();
+        runs[i++] = stat.getState();
+      }
+    }
+    
+    if (line >= _lines.length) { _lines = Arrays.copyOf(_lines, Math.max(2 * _lines.length, line + 1)); }
+    _lines[line] = runs;
+    if (line >= _limit) { _limit = line + 1; }
+    return runs;
+  }
+}
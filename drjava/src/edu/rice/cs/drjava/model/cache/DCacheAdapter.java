@@ -43,6 +43,7 @@ import javax.swing.text.BadLocationException;
 
 import edu.rice.cs.drjava.model.FileMovedException;
 import edu.rice.cs.drjava.model.definitions.DefinitionsDocument;
+import edu.rice.cs.drjava.model.definitions.DocumentOutline;
 
 /** A lightweight wrapper type for DefinitionsDocuments that may or may not be resident in memory.  An instance of this
   * (??? -- incomplete sentence).
@@ -70,12 +71,32 @@ public interface DCacheAdapter {
    */
   public String getText(int offset, int length) throws BadLocationException;
   
+  /** @return a view of the specified range of this document; it is valid until the next modification of the document.
+   * @param offset the offset at which to get the text
+   * @param length the length of the text to get
+   * @throws BadLocationException if attempts to reference an invalid location
+   */
+  public CharSequence getCharSequence(int offset, int length) throws BadLocationException;
+  
+  /** Gets the outline of the document without reconstructing it.  If the document is not resident, this is the
+    * outline it had when it was evicted, which describes the text it will be reconstructed from.
+    * @return the outline of the document, or null if the document is not resident and no outline was recorded
+    */
+  public DocumentOutline getOutline();
+  
   /** Checks whether the document is ready to be returned.  If false, then the document would have to be
     * loaded from disk when getDocument() is called.  
     * @return if the document is already loaded
     */
   public boolean isReady();
   
+  /** Checks whether the document is resident and modified.  Unlike getDocument().isModifiedSinceSave(), this does not
+    * count as a use of the document for the cache's replacement policy, so bookkeeping such as sorting the document
+    * navigator does not make a document look frequently used.
+    * @return true if the document is resident and has been modified since it was last saved
+    */
+  public boolean isModifiedSinceSave();
+  
   /** Closes the corresponding document for this adapter. */
   public void close();
   
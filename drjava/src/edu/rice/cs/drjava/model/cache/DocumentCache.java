@@ -39,16 +39,18 @@ package edu.rice.cs.drjava.model.cache;
 import javax.swing.event.DocumentListener;
 import javax.swing.text.BadLocationException;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
 import java.io.IOException;
+import java.nio.CharBuffer;
 
 import edu.rice.cs.drjava.model.definitions.DefinitionsDocument;
+import edu.rice.cs.drjava.model.definitions.DocumentOutline;
 import edu.rice.cs.drjava.model.OpenDefinitionsDocument;
 import edu.rice.cs.drjava.model.FileMovedException;
 
 import edu.rice.cs.util.Log;
 import edu.rice.cs.util.UnexpectedException;
 import edu.rice.cs.util.swing.Utilities;
-import edu.rice.cs.plt.iter.IterUtil;
 
 /** The document cache is a structure that maps OpenDefinitionsDocuments to DefinitionsDocuments (which contain
   * the actual document text).  Since the latter can consume a lot of memory, the cache virtualizes some of them
@@ -62,8 +64,9 @@ import edu.rice.cs.plt.iter.IterUtil;
   * <p>
   * When a document is accessed through the document manager by the model, the cache informs the manager, which 
   * tells the active queue to add the manager to the end of the queue--if it isn't already in the queue.  If the
-  * active queue had already reached maximum size, it deletes the last document in the queue to keep the queue from
-  * growing larger than its maximum size.
+  * active queue then holds more than its maximum number of documents, or if the estimated memory footprint of the
+  * documents in the queue exceeds the memory budget, documents are evicted from the queue using a recency/frequency
+  * policy (see _evict) until both limits are respected.
   * <p>
   * The resident queue only contains documents that have not been modified since their last save (except in the process
   * of responding to notification that a document has been modified).  When a document is modified for the first time, 
@@ -74,6 +77,9 @@ import edu.rice.cs.plt.iter.IterUtil;
   * Since the cache and document managers can both be concurrently accessed from multiple threads, the methods in the
   * DocumentCache and DocManager classes are synchronized.  Some operations require locks on both the cache and a
   * document manager, but the code is written so that none of them require these locks to be held simultaneously.
+  * <p>
+  * The cache counts hits (requests for resident documents), misses (reconstructions), evictions, and the time spent
+  * reconstructing documents; see getStatistics().
   */
 
 public class DocumentCache {
@@ -83,18 +89,48 @@ public class DocumentCache {
   
   private static final int INIT_CACHE_SIZE = 32;
   
+  /** Default limit on the estimated footprint of the documents in the resident queue, in bytes. */
+  public static final long DEFAULT_MEMORY_BUDGET = 64L << 20;
+  
+  /** The admission window holds (at least) CACHE_SIZE / WINDOW_RATIO documents. */
+  private static final int WINDOW_RATIO = 100;
+  
+  /** All access frequencies are halved after AGING_PERIOD * CACHE_SIZE accesses. */
+  private static final int AGING_PERIOD = 10;
+  
   /** invariant {@code _residentQueue.size() <= CACHE_SIZE} */
   private volatile int CACHE_SIZE;
   
+  /** Limit on the estimated footprint (in bytes) of the documents in _residentQueue, or 0 if there is no limit.  The 
+    * most recently used document is retained even if it exceeds the budget on its own. */
+  private volatile long _memoryBudget;
+  
   /** Data structure representing the queue of resident unmodified documents. */
   private final LinkedHashSet<DocManager> _residentQueue;
   
+  /** The sum of the weights of the documents in _residentQueue.  Guarded by _cacheLock. */
+  private long _residentBytes = 0;
+  
   private final Object _cacheLock = new Object();
   
+  /* Access history used by the eviction policy.  It is updated without locking on every access to a document, so it
+   * is only approximate when several threads access documents concurrently, which is harmless. */
+  private volatile long _clock = 0;                  // logical time of the most recent access
+  private volatile DocManager _lastAccessed = null;  // the document accessed most recently
+  private volatile int _accessesSinceAging = 0;
+  private volatile int _agingEpoch = 0;              // number of times all frequencies have been halved
+  
+  /* Statistics; the fields other than _hits are guarded by _cacheLock. */
+  private final AtomicLong _hits = new AtomicLong();
+  private long _misses = 0;
+  private long _evictions = 0;
+  private long _reconstructionNanos = 0;
+  
   /* General constructor.  Not currently used except when called by default constructor. */
   public DocumentCache(int size) {
 //    Utilities.showDebug("DocumentCache created with size = " + size);
     CACHE_SIZE = size;
+    _memoryBudget = DEFAULT_MEMORY_BUDGET;
     _residentQueue = new LinkedHashSet<DocManager>();
   }
   
@@ -124,19 +160,117 @@ public class DocumentCache {
     if (size <= 0) throw new IllegalArgumentException("Cannot set the cache size to zero or less.");
     synchronized(_cacheLock) {    // lock the cache so entries can be removed if necessary
       CACHE_SIZE = size;
-      int diff = _residentQueue.size() - CACHE_SIZE;
-      if (diff > 0) {
-        Iterable<DocManager> toRemove = IterUtil.snapshot(IterUtil.truncate(_residentQueue, diff));
-        for (DocManager dm : toRemove) { _residentQueue.remove(dm); dm.kickOut(); }
-      }
+      _evict();
     }
   }
   
   public int getCacheSize() { return CACHE_SIZE; }
   public int getNumInCache() { return _residentQueue.size(); }
   
+  /** Changes the limit on the estimated memory footprint of the unmodified documents in the cache, evicting documents
+    * if necessary.
+    * @param bytes the new budget in bytes, or 0 for no limit
+    */
+  public void setMemoryBudget(long bytes) {
+    if (bytes < 0) throw new IllegalArgumentException("Cannot set the memory budget to less than zero.");
+    synchronized(_cacheLock) {
+      _memoryBudget = bytes;
+      _evict();
+    }
+  }
+  
+  public long getMemoryBudget() { return _memoryBudget; }
+  
+  /** @return the estimated footprint in bytes of the unmodified documents in the cache */
+  public long getResidentFootprint() { synchronized(_cacheLock) { return _residentBytes; } }
+  
+  /** @return the number of requests for a document that found it resident */
+  public long getHitCount() { return _hits.get(); }
+  
+  /** @return the number of documents that have been reconstructed (or constructed for the first time) */
+  public long getMissCount() { synchronized(_cacheLock) { return _misses; } }
+  
+  /** @return the number of documents that have been evicted from the cache */
+  public long getEvictionCount() { synchronized(_cacheLock) { return _evictions; } }
+  
+  /** @return the total time spent reconstructing documents, in milliseconds */
+  public long getReconstructionTime() { synchronized(_cacheLock) { return _reconstructionNanos / 1000000; } }
+  
+  /** @return a one-line summary of the cache statistics */
+  public String getStatistics() {
+    synchronized(_cacheLock) {
+      return "DocumentCache: " + _residentQueue.size() + "/" + CACHE_SIZE + " documents, " + (_residentBytes >> 10) + 
+        "/" + (_memoryBudget >> 10) + " KB, " + _hits.get() + " hits, " + _misses + " misses, " + _evictions + 
+        " evictions, " + (_reconstructionNanos / 1000000) + " ms reconstructing";
+    }
+  }
+  
   public String toString() { return _residentQueue.toString(); }
   
+  /** Removes dm from _residentQueue (if present) and updates _residentBytes.  Assumes _cacheLock is already held. */
+  private void _dequeue(DocManager dm) {
+    if (_residentQueue.remove(dm)) _residentBytes -= dm._weight;
+  }
+  
+  /** @return true if _residentQueue holds more documents or more bytes than allowed.  Assumes _cacheLock is held. */
+  private boolean _isOverLimit() {
+    long budget = _memoryBudget;
+    return _residentQueue.size() > CACHE_SIZE || (budget > 0 && _residentBytes > budget);
+  }
+  
+  /** Evicts documents from _residentQueue until it respects both CACHE_SIZE and _memoryBudget.  The policy is a 
+    * simplified W-TinyLFU.  The queue is split into a small admission window, which receives every document added to
+    * the queue, and a main region.  When the window overflows, its least recently used document becomes a candidate
+    * for the main region.  If the queue is over its limits, the candidate competes with the least recently used
+    * document of the main region, and the one that has been used less frequently is evicted (the older one on a tie).
+    * Hence a burst of documents that are touched only once cannot flush documents that the user returns to, and a 
+    * newly loaded document is not evicted before it had a chance to be used.  The document in the queue that was used
+    * most recently is never evicted.  Frequencies are exact per-document counts, aged by periodic halving, since the
+    * number of open documents is small enough that TinyLFU's approximate sketch is unnecessary.  Assumes _cacheLock 
+    * is already held.
+    */
+  private void _evict() {
+    final int windowSize = Math.max(1, CACHE_SIZE / WINDOW_RATIO);
+    int inWindow = 0;
+    for (DocManager dm: _residentQueue) if (dm._inWindow) inWindow++;
+    
+    DocManager candidate = null;
+    while (inWindow > windowSize) {
+      candidate = _leastRecent(true, null);
+      candidate._inWindow = false;
+      inWindow--;
+    }
+    
+    while (_isOverLimit() && _residentQueue.size() > 1) {
+      DocManager victim = _leastRecent(false, candidate);
+      if (victim == null) victim = (candidate != null) ? candidate : _leastRecent(true, null);
+      else if (candidate != null && candidate.frequency() < victim.frequency()) victim = candidate;
+      if (victim == candidate) candidate = null;
+      
+      if (_log.isEnabled()) {
+        _log.log("Evicting " + victim + " (" + victim._weight + " bytes, frequency " + victim.frequency() + ")");
+      }
+      _dequeue(victim);
+      victim.kickOut();
+      _evictions++;
+    }
+  }
+  
+  /** Finds the least recently used document in one region of _residentQueue.  Assumes _cacheLock is already held.
+    * @param inWindow true to search the admission window, false to search the main region
+    * @param exclude a document to skip, or null
+    * @return the least recently used document in the region other than exclude, or null if there is none
+    */
+  private DocManager _leastRecent(boolean inWindow, DocManager exclude) {
+    DocManager result = null;
+    for (DocManager dm: _residentQueue) {
+      if (dm._inWindow == inWindow && dm != exclude && (result == null || dm._lastAccess < result._lastAccess)) {
+        result = dm;
+      }
+    }
+    return result;
+  }
+  
   
   ///////////////////////////// DocManager //////////////////////////
   
@@ -148,8 +282,8 @@ public class DocumentCache {
   /** Note: before extending this table, check that the extension does not conflict with isUnmangedOrUntitled() */
   
   /** Manages the retrieval of a document for a corresponding open definitions document.  This manager only 
-    * maintains its document data if it contained in _residentQueue, which is maintained using a round-robin
-    * replacement scheme.
+    * maintains its document data if it contained in _residentQueue, which is maintained using the replacement policy
+    * implemented by _evict().
     * 
     * NOTE: DO NOT OVERRIDE hashcode or equals for DocManager or any descendant of DocManager!  DocManagers are mutable
     * yet they are used as hash keys.
@@ -159,10 +293,19 @@ public class DocumentCache {
     private final DDReconstructor _rec;
     /** Set of keywords if they were updated since the document had been kicked out, or null if not updated. */
     private volatile HashSet<String> _keywords = null;
+    /** The outline of the document when it was kicked out, or null if the document is resident or had no text. */
+    private volatile DocumentOutline _outline = null;
 
     private volatile int _stat; // I know, this is not very OO
     private volatile DefinitionsDocument _doc;
     
+    /* Eviction policy state; see DocumentCache._evict(). */
+    private volatile long _lastAccess = 0;  // logical time of the last access
+    private volatile int _frequency = 0;    // number of accesses, halved in each aging epoch
+    private volatile int _epoch = 0;        // the aging epoch in which _frequency was last updated
+    private boolean _inWindow = false;      // whether this is in the admission window; guarded by _cacheLock
+    private long _weight = 0;               // estimated footprint when added to the queue; guarded by _cacheLock
+    
     /** Instantiates a manager for the documents that are produced by the given document reconstructor.
      * @param rec The reconstructor used to create the document
      * @param isUntitled true if the document is untitled; false otherwise
@@ -183,6 +326,10 @@ public class DocumentCache {
      * @return the newly-created document
      */
     private DefinitionsDocument makeDocument() {
+      long start = System.nanoTime();
+      // Reading the text into the new document resets its modification state, which queues this before _doc is set;
+      // recording the access first ensures that this is not chosen for eviction then.
+      recordAccess();
       try { // _doc is not in memory
         _doc = _rec.make();
         assert _doc != null;
@@ -190,15 +337,47 @@ public class DocumentCache {
         if (_keywords != null) {  // copy cached keywords to new copy of doc
           _doc.setKeywords(_keywords); _keywords.clear(); _keywords = null;
         }
+        if (_outline != null) {  // the reconstructed text is the text described by the outline
+          _doc.restoreOutline(_outline); _outline = null;
+        }
       }
       catch(IOException e) { throw new UnexpectedException(e); }
       catch(BadLocationException e) { throw new UnexpectedException(e); }      
 //        Utilities.showDebug("Document " + _doc + " reconstructed; _stat = " + _stat);
 //      System.err.println("Making document for " + this);
-      if (_stat == NOT_IN_QUEUE) add();       // add this to queue 
+      long elapsed = System.nanoTime() - start;
+      _misses++;
+      _reconstructionNanos += elapsed;
+      if (_log.isEnabled()) _log.log("Made document for " + this + " in " + (elapsed / 1000) + " us");
+      if (_stat == NOT_IN_QUEUE || _stat == IN_QUEUE) add();  // add this to queue, or weigh it now that _doc is set
       return _doc;
     }
     
+    /** Records an access to this document for the eviction policy.  Consecutive accesses to the same document count
+      * as one, so the frequency reflects how often the user returns to a document rather than how many operations 
+      * were performed on it.
+      */
+    private void recordAccess() {
+      if (_lastAccessed == this) return;
+      _lastAccessed = this;
+      _lastAccess = ++_clock;
+      int epoch = _agingEpoch;
+      _frequency = frequency(epoch) + 1;
+      _epoch = epoch;
+      if (++_accessesSinceAging >= AGING_PERIOD * CACHE_SIZE) {
+        _accessesSinceAging = 0;
+        _agingEpoch = epoch + 1;
+      }
+    }
+    
+    /** @return the access frequency of this document, halved once for each aging epoch since it was last updated */
+    int frequency() { return frequency(_agingEpoch); }
+    
+    private int frequency(int epoch) {
+      int shift = epoch - _epoch;
+      return (shift >= 31) ? 0 : _frequency >>> shift;
+    }
+    
     /** Gets the physical document (DD) for this manager.  If DD is not in memory, it loads it from its image in its
       * DDReconstructor and returns it.  If the document has been modified in memory since it was last fetched, make 
       * it "unmanaged", removing it from the queue.  It will remain in memory until saved.  If a document is not in 
@@ -210,9 +389,17 @@ public class DocumentCache {
       
 //      The following double-check idiom is safe in Java 1.4 and later JVMs provided that _doc is volatile.
       final DefinitionsDocument doc = _doc;  // create a snapshot of _doc
-      if (doc != null) return doc;  
+      if (doc != null) {
+        _hits.incrementAndGet();
+        recordAccess();
+        return doc;  
+      }
       synchronized(_cacheLock) { // lock the cache so that this DocManager's state can be updated
-        if (_doc != null) return _doc;  // _doc may have changed since test outside of _cacheLock
+        if (_doc != null) {  // _doc may have changed since test outside of _cacheLock
+          _hits.incrementAndGet();
+          recordAccess();
+          return _doc;  
+        }
         return makeDocument();
       }
     }
@@ -225,6 +412,12 @@ public class DocumentCache {
       return doc.getLength();
     }
     
+    public DocumentOutline getOutline() {
+      final DefinitionsDocument doc = _doc;  // create a snapshot of _doc
+      if (doc == null) return _outline;
+      return doc.getOutline();
+    }
+    
     /** Gets the text of this document using the cached reconstructor if document is not resident or it is unchanged.
       * If document is not locked, may return stale data. */
     public String getText() {
@@ -245,23 +438,43 @@ public class DocumentCache {
       return doc.getText(offset, len); 
     }
     
+    /* Gets a view of the specified range of this document, backed by the document if it is resident and by the
+     * reconstructor's image otherwise; throws BadLocationException if the specification is ill-formed. */
+    public CharSequence getCharSequence(int offset, int len) throws BadLocationException { 
+      final DefinitionsDocument doc = _doc; // create a snapshot of _doc
+      if (doc == null) {
+        String text = _rec.getText();
+        if (offset < 0 || len < 0 || offset + len > text.length()) {
+          throw new BadLocationException("Invalid range [" + offset + ", " + (offset + len) + ")", offset);
+        }
+        return CharBuffer.wrap(text, offset, offset + len);
+      }
+      return doc.getCharSequence(offset, len); 
+    }
+    
     /** Checks whether the document is resident (in the cache or modified). 
       * @return if the document is resident.
       */
     public boolean isReady() {  return _doc != null; }  // _doc is volatile so synchronization is unnecessary
     
+    public boolean isModifiedSinceSave() {
+      final DefinitionsDocument doc = _doc;  // create a snapshot of _doc
+      return doc != null && doc.isModifiedSinceSave();
+    }
+    
     /** Closes the corresponding document for this adapter.  Done when a document is closed by the navigator. */
     public void close() {
 //      Utilities.showDebug("close() called on " + this);
       synchronized(_cacheLock) {
-        _residentQueue.remove(this);
+        _dequeue(this);
+        if (_lastAccessed == this) _lastAccessed = null;
         closingKickOut();
       }
     }
     
     public void documentModified() {
       synchronized(_cacheLock) { 
-        _residentQueue.remove(this); // remove modified document from queue if present
+        _dequeue(this); // remove modified document from queue if present
         _stat = UNMANAGED;
       }
     }
@@ -283,21 +496,21 @@ public class DocumentCache {
       }
     }
     
-    /** Adds this DocManager to the queue and sets status to IN_QUEUE.  Assumes _cacheLock is already held. */
+    /** Adds this DocManager to the queue (or, if it is already queued, weighs it again), sets status to IN_QUEUE, and 
+      * evicts other documents if the queue is over its limits.  Assumes _cacheLock is already held. */
     private void add() {
 //      Utilities.showDebug("add " + this + " to the QUEUE\n" + "QUEUE = " + _residentQueue);
 //      System.err.println("adding " + this + " to the QUEUE\n" + "QUEUE = " + _residentQueue);
       if (! _residentQueue.contains(this)) {
         _residentQueue.add(this);
         _stat = IN_QUEUE;
+        _inWindow = true;
       }
-      if (_residentQueue.size() > CACHE_SIZE) IterUtil.first(_residentQueue).remove();
-    }
-    
-    /** Removes this DocManager from the queue and sets status to NOT_IN_QUEUE.  Assumes _cacheLock is already held. */
-    private void remove() { 
-      _residentQueue.remove(this);
-      kickOut();
+      else _residentBytes -= _weight;
+      final DefinitionsDocument doc = _doc;
+      _weight = (doc == null) ? 0 : doc.getFootprintEstimate();
+      _residentBytes += _weight;
+      _evict();
     }
     
     /* All of the following private methods presume that _cacheLock is held */
@@ -322,7 +535,10 @@ public class DocumentCache {
         /* virtualize this document */
 //        Utilities.showDebug("Virtualizing " + _doc);
         _rec.saveDocInfo(_doc);
+        // saveDocInfo keeps the previous image when the document is empty, so the outline would not describe it
+        if (_doc.getLength() > 0) _outline = _doc.getOutline();
       }
+      else _outline = null;
       if (_doc != null) {
         _doc.close(); 
         _doc = null;
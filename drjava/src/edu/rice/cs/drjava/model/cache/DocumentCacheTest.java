@@ -38,6 +38,7 @@ package edu.rice.cs.drjava.model.cache;
 
 import edu.rice.cs.drjava.DrJavaTestCase;
 import edu.rice.cs.drjava.model.*;
+import edu.rice.cs.drjava.model.definitions.ClassNameNotFoundException;
 import edu.rice.cs.drjava.model.definitions.DefinitionsDocument;
 import edu.rice.cs.plt.io.IOUtil;
 import edu.rice.cs.util.FileOpenSelector;
@@ -353,18 +354,82 @@ public class DocumentCacheTest extends DrJavaTestCase {
     assertFalse("The document 1 should still be out of the cache", _adapterTable.get(doc1).isReady());
     assertEquals("There should be 5 documents in the cache", 5, _cache.getNumInCache());
     
-    _cache.setCacheSize(3); // 5 6 2
+    _cache.setCacheSize(3); // 3 4 2: documents 5 and 6 are the least recently used ones
     
     assertEquals("The cache size should now be 3", 3, _cache.getCacheSize());
     assertEquals("There should be 3 documents in the cache", 3, _cache.getNumInCache());
     assertTrue("The document 2 should be in the cache", _adapterTable.get(doc2).isReady());
-    assertTrue("The document 6 should be in the cache", _adapterTable.get(doc6).isReady());
-    assertTrue("The document 5 should be in the cache", _adapterTable.get(doc5).isReady());
-    assertFalse("The document 3 should now be out of the cache", _adapterTable.get(doc3).isReady());
-    assertFalse("The document 4 should now be out of the cache", _adapterTable.get(doc4).isReady());
+    assertTrue("The document 3 should be in the cache", _adapterTable.get(doc3).isReady());
+    assertTrue("The document 4 should be in the cache", _adapterTable.get(doc4).isReady());
+    assertFalse("The document 5 should now be out of the cache", _adapterTable.get(doc5).isReady());
+    assertFalse("The document 6 should now be out of the cache", _adapterTable.get(doc6).isReady());
     assertFalse("The document 1 should still be out of the cache", _adapterTable.get(doc1).isReady());
   }
   
+  /** Documents that the user keeps returning to must survive a pass over many documents that are used only once. */
+  public void testFrequentlyUsedDocumentsSurviveScan() throws BadLocationException, IOException {
+    OpenDefinitionsDocument doc1 = openFile(tempFile(1));
+    OpenDefinitionsDocument doc2 = openFile(tempFile(2));
+    doc1.getCurrentLine();
+    doc2.getCurrentLine();
+    doc1.getCurrentLine();
+    doc2.getCurrentLine();
+    doc1.getCurrentLine();
+    
+    OpenDefinitionsDocument[] scanned = new OpenDefinitionsDocument[5];
+    for (int i = 0; i < scanned.length; i++) {
+      scanned[i] = openFile(tempFile(3 + i));
+      scanned[i].getCurrentLine();  // forces document to be read into memory
+    }
+    
+    assertEquals("There should be 4 documents in the cache", 4, _cache.getNumInCache());
+    assertTrue("The document 1 should still be in the cache", _adapterTable.get(doc1).isReady());
+    assertTrue("The document 2 should still be in the cache", _adapterTable.get(doc2).isReady());
+    assertTrue("The last scanned document should be in the cache", 
+               _adapterTable.get(scanned[scanned.length - 1]).isReady());
+  }
+  
+  public void testMemoryBudget() throws BadLocationException, IOException {
+    assertEquals("Default memory budget", DocumentCache.DEFAULT_MEMORY_BUDGET, _cache.getMemoryBudget());
+    _cache.setCacheSize(10);
+    long misses = _cache.getMissCount();
+    long evictions = _cache.getEvictionCount();
+    
+    OpenDefinitionsDocument doc1 = openFile(tempFile(1));
+    doc1.getCurrentLine();  // forces document to be read into memory
+    long footprint = _cache.getResidentFootprint();
+    assertTrue("A resident document has a positive footprint", footprint > 0);
+    
+    // all documents are empty, so the budget allows two of them
+    _cache.setMemoryBudget(2 * footprint + footprint / 2);
+    OpenDefinitionsDocument doc2 = openFile(tempFile(2));
+    doc2.getCurrentLine();
+    OpenDefinitionsDocument doc3 = openFile(tempFile(3));
+    doc3.getCurrentLine();
+    
+    assertEquals("There should be 2 documents in the cache", 2, _cache.getNumInCache());
+    assertFalse("The document 1 should have been kicked out of the cache", _adapterTable.get(doc1).isReady());
+    assertTrue("The document 2 should be in the cache", _adapterTable.get(doc2).isReady());
+    assertTrue("The document 3 should be in the cache", _adapterTable.get(doc3).isReady());
+    assertEquals("Footprint of two documents", 2 * footprint, _cache.getResidentFootprint());
+    assertEquals("Three documents were constructed", misses + 3, _cache.getMissCount());
+    assertEquals("One document was evicted", evictions + 1, _cache.getEvictionCount());
+    
+    long hits = _cache.getHitCount();
+    doc3.getCurrentLine();
+    assertTrue("Accessing a resident document is a hit", _cache.getHitCount() > hits);
+    
+    _cache.setMemoryBudget(0);  // no limit
+    doc1.getCurrentLine();
+    assertEquals("There should be 3 documents in the cache", 3, _cache.getNumInCache());
+    
+    try {
+      _cache.setMemoryBudget(-1);
+      fail("IllegalArgumentException expected.");
+    }
+    catch (IllegalArgumentException iae) { /* expected */ }
+  }
+  
   public void testGetDDocFromCache() throws BadLocationException, IOException, OperationCanceledException {
     File file1 = tempFile(1);
     File file2 = tempFile(2);
@@ -408,6 +473,48 @@ public class DocumentCacheTest extends DrJavaTestCase {
   }
   
   
+  /** Reconstructing a document that has text must not evict the document being reconstructed. */
+  public void testReconstructDocumentWithText() throws BadLocationException, IOException {
+    OpenDefinitionsDocument[] docs = new OpenDefinitionsDocument[5];
+    for (int i = 0; i < docs.length; i++) {
+      File f = tempFile(i);
+      IOUtil.writeStringToFile(f, "class C" + i + " { }\n");
+      docs[i] = openFile(f);
+      docs[i].getCurrentLine();  // forces document to be read into memory
+    }
+    assertFalse("The document 0 should have been kicked out of the cache", _adapterTable.get(docs[0]).isReady());
+    
+    docs[0].getCurrentLine();  // reconstructs document 0
+    assertTrue("The document 0 should be in the cache", _adapterTable.get(docs[0]).isReady());
+    assertEquals("There should be 4 documents in the cache", 4, _cache.getNumInCache());
+    assertEquals("Text of the reconstructed document", "class C0 { }\n", docs[0].getText());
+  }
+  
+  /** Tests that the class and package names of an evicted document are answered without reconstructing it. */
+  public void testOutlineOfEvictedDocument() throws BadLocationException, IOException, ClassNameNotFoundException {
+    File file1 = tempFile(1);
+    IOUtil.writeStringToFile(file1, "package p;\n\nclass Bar { }\npublic class Foo { }\n");
+    OpenDefinitionsDocument doc1 = openFile(file1);
+    assertEquals("qualified class name", "p.Foo", doc1.getQualifiedClassName());
+    assertEquals("first class name", "Bar", doc1.getFirstTopLevelClassName());
+    assertEquals("package name", "p", doc1.getPackageNameFromDocument());
+    
+    for (int i = 2; i <= 5; i++) openFile(tempFile(i)).getCurrentLine();
+    assertFalse("Document 1 should have been kicked out of the cache", _adapterTable.get(doc1).isReady());
+    long misses = _cache.getMissCount();
+    
+    assertEquals("qualified class name", "p.Foo", doc1.getQualifiedClassName());
+    assertEquals("first class name", "Bar", doc1.getFirstTopLevelClassName());
+    assertEquals("package name", "p", doc1.getPackageNameFromDocument());
+    assertFalse("Document 1 should not have been reconstructed", _adapterTable.get(doc1).isReady());
+    assertEquals("No document should have been reconstructed", misses, _cache.getMissCount());
+    
+    // the reconstructed document adopts the outline
+    doc1.getCurrentLine();
+    assertTrue("Document 1 should be in the cache", _adapterTable.get(doc1).isReady());
+    assertEquals("main class of reconstructed document", "Foo", _adapterTable.get(doc1).getOutline().getMainClassName());
+  }
+  
 //  private DefinitionsDocument _saved; // used for testReconstructor()
   
 //  public void testReconstructor() throws IOException{
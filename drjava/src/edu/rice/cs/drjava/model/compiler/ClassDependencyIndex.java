@@ -0,0 +1,389 @@
+/*BEGIN_COPYRIGHT_BLOCK
+ *
+ * Copyright (c) 2001-2016, JavaPLT group at Rice University (drjava@rice.edu)
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *    * Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the names of DrJava, the JavaPLT group, Rice University, nor the
+ *      names of its contributors may be used to endorse or promote products
+ *      derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * This software is Open Source Initiative approved Open Source Software.
+ * Open Source Initative Approved is a trademark of the Open Source Initiative.
+ * 
+ * This file is part of DrJava.  Download the current version of this project
+ * from http://www.drjava.org/ or http://sourceforge.net/projects/drjava/
+ * 
+ * END_COPYRIGHT_BLOCK*/
+
+
+package edu.rice.cs.drjava.model.compiler;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.*;
+
+import edu.rice.cs.util.Log;
+
+/** An index of the dependencies between the classes compiled from a set of source files, recovered from the constant
+  * pools of the class files in the output directories.  A {@link Snapshot} records, for every source file, the class
+  * files produced from it (identified by their {@code SourceFile} attribute), the classes each of them refers to, and a
+  * summary of its non-private API.  Comparing the snapshots taken before and after compiling the stale sources tells
+  * which unmodified sources must be recompiled because a class they refer to changed its API.  Parsed class files are
+  * cached by path and reparsed when their size or modification time changes.
+  * @version $Id$
+  */
+public class ClassDependencyIndex {
+  
+  /** for logging debug info */
+  private static final Log _log = new Log("ClassDependencyIndex.txt", false);
+  
+  private static final int ACC_PRIVATE = 0x0002;
+  private static final int ACC_STATIC = 0x0008;
+  private static final int ACC_FINAL = 0x0010;
+  private static final int ACC_SUPER = 0x0020;
+  private static final int ACC_SYNTHETIC = 0x1000;
+  
+  /** Parsed class files, keyed by class file. */
+  private final Map<File, Entry> _cache = new HashMap<File, Entry>();
+  
+  /** Takes a snapshot of the class files currently produced from the given sources.
+    * @param sources the source files, each mapped to its package name ("" for the default package)
+    * @param buildDir the output directory, or {@code null} if class files are written next to their sources
+    * @return the snapshot, or {@code null} if some class file in the output directories could not be attributed to a
+    *         source file, in which case the dependency graph can't be trusted
+    */
+  public Snapshot snapshot(Map<File, String> sources, File buildDir) {
+    Map<File, Map<String, Entry>> dirs = new HashMap<File, Map<String, Entry>>();
+    Map<File, Map<String, Entry>> classes = new LinkedHashMap<File, Map<String, Entry>>();
+    
+    for (Map.Entry<File, String> source : sources.entrySet()) {
+      File sourceFile = source.getKey();
+      String pkg = source.getValue().replace('.', '/');
+      File dir = (buildDir == null) ? sourceFile.getParentFile() 
+                                    : new File(buildDir, pkg.replace('/', File.separatorChar));
+      
+      Map<String, Entry> dirEntries = dirs.get(dir);
+      if (dirEntries == null) {
+        dirEntries = _scanDirectory(dir);
+        if (dirEntries == null) { return null; }
+        dirs.put(dir, dirEntries);
+      }
+      
+      String prefix = (pkg.length() == 0) ? "" : pkg + "/";
+      Map<String, Entry> produced = new HashMap<String, Entry>();
+      for (Entry e : dirEntries.values()) {
+        String name = e.info.name;
+        if (sourceFile.getName().equals(e.info.sourceFile) && name.startsWith(prefix) &&
+            name.indexOf('/', prefix.length()) < 0) {
+          produced.put(name, e);
+        }
+      }
+      classes.put(sourceFile, produced);
+    }
+    return new Snapshot(classes);
+  }
+  
+  /** Parses the class files in the given directory, reusing cached results for unchanged files.
+    * @param dir the directory to scan
+    * @return the class files in {@code dir}, keyed by class name, or {@code null} if one of them could not be parsed or
+    *         lacks a {@code SourceFile} attribute
+    */
+  private Map<String, Entry> _scanDirectory(File dir) {
+    Map<String, Entry> result = new HashMap<String, Entry>();
+    File[] files = dir.listFiles();
+    if (files == null) { return result; }
+    for (File f : files) {
+      if (! f.getName().endsWith(".class")) { continue; }
+      long lastModified = f.lastModified();
+      long length = f.length();
+      Entry e = _cache.get(f);
+      if (e == null || e.lastModified != lastModified || e.length != length) {
+        try {
+          InputStream in = new FileInputStream(f);
+          try { e = new Entry(f, lastModified, length, parse(in)); }
+          finally { in.close(); }
+        }
+        catch (IOException ioe) {
+          _log.log("Could not parse " + f + ": " + ioe);
+          _cache.remove(f);
+          return null;
+        }
+        _cache.put(f, e);
+      }
+      if (e.info.sourceFile == null) {
+        _log.log(f + " has no SourceFile attribute");
+        return null;
+      }
+      result.put(e.info.name, e);
+    }
+    return result;
+  }
+  
+  /** Discards all cached class file information. */
+  public void clear() { _cache.clear(); }
+  
+  /** The class files produced from a set of source files at some point in time. */
+  public static final class Snapshot {
+    private final Map<File, Map<String, Entry>> _classes;
+    
+    private Snapshot(Map<File, Map<String, Entry>> classes) { _classes = classes; }
+    
+    /** @return the names (in internal form) of the classes currently produced from {@code source} */
+    public Set<String> getClassNames(File source) {
+      Map<String, Entry> produced = _classes.get(source);
+      return (produced == null) ? Collections.<String>emptySet() : new TreeSet<String>(produced.keySet());
+    }
+    
+    /** @return the sources that have no class files, or that have been modified since one of their class files was
+      *         written.  Equal time stamps count as stale, since many file systems only record whole seconds. */
+    public Set<File> getStaleSources() {
+      Set<File> result = new LinkedHashSet<File>();
+      for (Map.Entry<File, Map<String, Entry>> e : _classes.entrySet()) {
+        File source = e.getKey();
+        long sourceModified = source.lastModified();
+        if (e.getValue().isEmpty() || sourceModified == 0L) { result.add(source); }
+        else {
+          for (Entry c : e.getValue().values()) {
+            if (c.lastModified <= sourceModified) { result.add(source); break; }
+          }
+        }
+      }
+      return result;
+    }
+    
+    /** Determines which sources not in {@code compiled} must be recompiled after the sources in {@code compiled} were
+      * compiled.  A class changes if its non-private API changed, or if it was added or is no longer produced; a
+      * subtype of a changed class changes as well, since it inherits the changed members.  A source is a dependent if
+      * one of its classes refers to a changed class.
+      * @param after a snapshot of the same sources taken after compiling
+      * @param compiled the sources that were compiled
+      * @return the dependents, in source order, or {@code null} if a compile-time constant changed; constants are
+      *         inlined, and older compilers leave no trace of their uses in the constant pool, so only a full build is
+      *         safe
+      */
+    public Set<File> getDependents(Snapshot after, Set<File> compiled) {
+      Set<String> changed = new HashSet<String>();
+      for (File source : compiled) {
+        Map<String, Entry> old = _classes.get(source);
+        Map<String, Entry> now = after._classes.get(source);
+        if (old == null) { old = Collections.emptyMap(); }
+        if (now == null) { now = Collections.emptyMap(); }
+        Set<String> names = new HashSet<String>(old.keySet());
+        names.addAll(now.keySet());
+        for (String name : names) {
+          Entry o = old.get(name);
+          Entry n = now.get(name);
+          // a class file that was not rewritten is left over from a class that no longer exists
+          boolean rewritten = (n != null) && (o == null || o.lastModified != n.lastModified || o.length != n.length);
+          if (o != null && o.info.constants.length() > 0 && 
+              ! (rewritten && o.info.constants.equals(n.info.constants))) { return null; }
+          if (o == null || ! rewritten || ! o.info.api.equals(n.info.api)) { changed.add(name); }
+        }
+      }
+      if (changed.isEmpty()) { return Collections.emptySet(); }
+      
+      boolean grew = true;
+      while (grew) {
+        grew = false;
+        for (Map<String, Entry> produced : after._classes.values()) {
+          for (Entry e : produced.values()) {
+            if (changed.contains(e.info.name)) { continue; }
+            boolean subtype = changed.contains(e.info.superName);
+            for (String i : e.info.interfaces) { subtype |= changed.contains(i); }
+            if (subtype) { changed.add(e.info.name); grew = true; }
+          }
+        }
+      }
+      
+      Set<File> result = new LinkedHashSet<File>();
+      for (Map.Entry<File, Map<String, Entry>> e : after._classes.entrySet()) {
+        if (compiled.contains(e.getKey())) { continue; }
+        search: for (Entry c : e.getValue().values()) {
+          for (String ref : c.info.references) {
+            if (changed.contains(ref)) { result.add(e.getKey()); break search; }
+          }
+        }
+      }
+      return result;
+    }
+  }
+  
+  /** A parsed class file. */
+  static final class Entry {
+    final File classFile;
+    final long lastModified;
+    final long length;
+    final ClassInfo info;
+    Entry(File f, long m, long l, ClassInfo i) { classFile = f; lastModified = m; length = l; info = i; }
+  }
+  
+  /** The parts of a class file relevant to dependency analysis.  Class names are in internal form
+    * ({@code java/lang/String}). */
+  static final class ClassInfo {
+    final String name;
+    /** The value of the {@code SourceFile} attribute, or {@code null} if absent. */
+    final String sourceFile;
+    /** The superclass, or {@code null} for {@code java/lang/Object}. */
+    final String superName;
+    final List<String> interfaces;
+    /** All classes mentioned in the constant pool, including those appearing only in descriptors and signatures. */
+    final Set<String> references;
+    /** A canonical description of the class header and of its non-private, non-synthetic members. */
+    final String api;
+    /** A canonical description of the compile-time constants declared by the class. */
+    final String constants;
+    
+    ClassInfo(String n, String s, String sup, List<String> i, Set<String> r, String a, String c) {
+      name = n; sourceFile = s; superName = sup; interfaces = i; references = r; api = a; constants = c;
+    }
+  }
+  
+  /** Parses a class file.
+    * @param input the class file contents; not closed by this method
+    * @return the parsed information
+    * @throws IOException if the stream can't be read or does not contain a class file
+    */
+  static ClassInfo parse(InputStream input) throws IOException {
+    DataInputStream in = new DataInputStream(new BufferedInputStream(input));
+    if (in.readInt() != 0xCAFEBABE) { throw new IOException("Not a class file"); }
+    in.readUnsignedShort();  // minor version
+    in.readUnsignedShort();  // major version
+    
+    int count = in.readUnsignedShort();
+    String[] utf8 = new String[count];
+    Object[] values = new Object[count];
+    int[] refs = new int[count];
+    int[] tags = new int[count];
+    for (int i = 1; i < count; i++) {
+      tags[i] = in.readUnsignedByte();
+      switch (tags[i]) {
+        case 1: utf8[i] = in.readUTF(); break;                        // Utf8
+        case 3: values[i] = in.readInt(); break;                      // Integer
+        case 4: values[i] = in.readFloat(); break;                    // Float
+        case 5: values[i] = in.readLong(); i++; break;                // Long, takes two slots
+        case 6: values[i] = in.readDouble(); i++; break;              // Double, takes two slots
+        case 7: case 8: case 16: case 19: case 20:                    // Class, String, MethodType, Module, Package
+          refs[i] = in.readUnsignedShort(); break;
+        case 9: case 10: case 11: case 12: case 17: case 18:          // member refs, NameAndType, (Invoke)Dynamic
+          in.readInt(); break;
+        case 15: in.readUnsignedByte(); in.readUnsignedShort(); break;  // MethodHandle
+        default: throw new IOException("Unknown constant pool tag " + tags[i]);
+      }
+    }
+    
+    Set<String> references = new HashSet<String>();
+    for (int i = 1; i < count; i++) {
+      if (tags[i] == 7) {
+        String name = utf8[refs[i]];
+        if (name.startsWith("[")) { _scanDescriptor(name, references); }
+        else { references.add(name); }
+      }
+      else if (tags[i] == 1 && utf8[i].indexOf(';') >= 0) { _scanDescriptor(utf8[i], references); }
+    }
+    
+    int access = in.readUnsignedShort();
+    String name = utf8[refs[in.readUnsignedShort()]];
+    int superIndex = in.readUnsignedShort();
+    String superName = (superIndex == 0) ? null : utf8[refs[superIndex]];
+    int interfaceCount = in.readUnsignedShort();
+    List<String> interfaces = new ArrayList<String>(interfaceCount);
+    for (int i = 0; i < interfaceCount; i++) { interfaces.add(utf8[refs[in.readUnsignedShort()]]); }
+    
+    List<String> api = new ArrayList<String>();
+    List<String> constants = new ArrayList<String>();
+    for (int kind = 0; kind < 2; kind++) {  // fields, then methods
+      int memberCount = in.readUnsignedShort();
+      for (int m = 0; m < memberCount; m++) {
+        int memberAccess = in.readUnsignedShort();
+        String member = utf8[in.readUnsignedShort()] + " " + utf8[in.readUnsignedShort()];
+        StringBuilder extra = new StringBuilder();
+        String constant = null;
+        int attrCount = in.readUnsignedShort();
+        for (int a = 0; a < attrCount; a++) {
+          String attr = utf8[in.readUnsignedShort()];
+          int length = in.readInt();
+          if (attr.equals("ConstantValue")) {
+            int index = in.readUnsignedShort();
+            constant = String.valueOf(tags[index] == 8 ? utf8[refs[index]] : values[index]);
+          }
+          else if (attr.equals("Signature")) { extra.append(" signature ").append(utf8[in.readUnsignedShort()]); }
+          else if (attr.equals("Exceptions")) {
+            int n = in.readUnsignedShort();
+            String[] thrown = new String[n];
+            for (int t = 0; t < n; t++) { thrown[t] = utf8[refs[in.readUnsignedShort()]]; }
+            Arrays.sort(thrown);
+            extra.append(" throws ").append(Arrays.toString(thrown));
+          }
+          else { in.readFully(new byte[length]); }
+        }
+        if ((memberAccess & (ACC_PRIVATE | ACC_SYNTHETIC)) != 0) { continue; }
+        api.add((kind == 0 ? "field " : "method ") + memberAccess + " " + member + extra);
+        if (constant != null && (memberAccess & (ACC_STATIC | ACC_FINAL)) == (ACC_STATIC | ACC_FINAL)) {
+          constants.add(member + " = " + constant);
+        }
+      }
+    }
+    
+    String sourceFile = null;
+    StringBuilder header = new StringBuilder("class ").append(access & ~ACC_SUPER).append(' ').append(name);
+    header.append(" extends ").append(superName).append(" implements ").append(interfaces);
+    int attrCount = in.readUnsignedShort();
+    for (int a = 0; a < attrCount; a++) {
+      String attr = utf8[in.readUnsignedShort()];
+      int length = in.readInt();
+      if (attr.equals("SourceFile")) { sourceFile = utf8[in.readUnsignedShort()]; }
+      else if (attr.equals("Signature")) { header.append(" signature ").append(utf8[in.readUnsignedShort()]); }
+      else { in.readFully(new byte[length]); }
+    }
+    
+    Collections.sort(api);
+    api.add(0, header.toString());
+    Collections.sort(constants);
+    references.remove(name);
+    return new ClassInfo(name, sourceFile, superName, interfaces, references, _join(api), _join(constants));
+  }
+  
+  /** Adds the class names of the form {@code Lname;} or {@code Lname<...>;} appearing in a descriptor or signature.
+    * Strings that merely look like descriptors yield spurious names, which only cost extra recompilation.
+    */
+  private static void _scanDescriptor(String s, Set<String> result) {
+    int i = s.indexOf('L');
+    while (i >= 0) {
+      int end = i + 1;
+      while (end < s.length() && ";<>()[. ".indexOf(s.charAt(end)) < 0) { end++; }
+      if (end < s.length() && end > i + 1 && (s.charAt(end) == ';' || s.charAt(end) == '<')) {
+        result.add(s.substring(i + 1, end));
+      }
+      i = s.indexOf('L', end);
+    }
+  }
+  
+  private static String _join(List<String> lines) {
+    StringBuilder sb = new StringBuilder();
+    for (String l : lines) { sb.append(l).append('\n'); }
+    return sb.toString();
+  }
+}
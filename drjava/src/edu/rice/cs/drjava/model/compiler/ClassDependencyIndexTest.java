@@ -0,0 +1,191 @@
+/*BEGIN_COPYRIGHT_BLOCK
+ *
+ * Copyright (c) 2001-2016, JavaPLT group at Rice University (drjava@rice.edu)
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *    * Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the names of DrJava, the JavaPLT group, Rice University, nor the
+ *      names of its contributors may be used to endorse or promote products
+ *      derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * This software is Open Source Initiative approved Open Source Software.
+ * Open Source Initative Approved is a trademark of the Open Source Initiative.
+ * 
+ * This file is part of DrJava.  Download the current version of this project
+ * from http://www.drjava.org/ or http://sourceforge.net/projects/drjava/
+ * 
+ * END_COPYRIGHT_BLOCK*/
+
+
+package edu.rice.cs.drjava.model.compiler;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.*;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+
+import edu.rice.cs.drjava.DrJavaTestCase;
+import edu.rice.cs.plt.io.IOUtil;
+
+/** Tests the class file parsing and dependency analysis of ClassDependencyIndex.
+  * @version $Id$
+  */
+public final class ClassDependencyIndexTest extends DrJavaTestCase {
+  private File _tempDir;
+  private File _srcDir;
+  private File _buildDir;
+  private Map<File, String> _sources;
+  private ClassDependencyIndex _index;
+  
+  public void setUp() throws Exception {
+    super.setUp();
+    String user = System.getProperty("user.name");
+    _tempDir = IOUtil.createAndMarkTempDirectory("DrJava-test-" + user, "");
+    _srcDir = new File(_tempDir, "src");
+    _buildDir = new File(_tempDir, "classes");
+    assertTrue(_srcDir.mkdir() && _buildDir.mkdir());
+    _sources = new LinkedHashMap<File, String>();
+    _index = new ClassDependencyIndex();
+  }
+  
+  public void tearDown() throws Exception {
+    IOUtil.deleteRecursively(_tempDir);
+    _tempDir = null;
+    _index = null;
+    super.tearDown();
+  }
+  
+  /** Writes a source file in the default package, dated in the past so that it is older than its class files. */
+  private File _write(String name, String text) throws IOException {
+    File f = new File(_srcDir, name + ".java");
+    IOUtil.writeStringToFile(f, text);
+    assertTrue(f.setLastModified(System.currentTimeMillis() - 60000));
+    if (! _sources.containsKey(f)) { _sources.put(f, ""); }
+    return f;
+  }
+  
+  /** Simulates an edit: rewrites a source file and dates it after its class files. */
+  private void _edit(File f, String text) throws IOException {
+    IOUtil.writeStringToFile(f, text);
+    assertTrue(f.setLastModified(System.currentTimeMillis() + 60000));
+  }
+  
+  /** Compiles the given sources into the build directory, after backdating the existing class files so that rewritten
+    * class files are recognizable even on file systems with coarse time stamps. */
+  private void _compile(File... files) {
+    for (File c : _buildDir.listFiles()) { assertTrue(c.setLastModified(System.currentTimeMillis() - 30000)); }
+    JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+    assertNotNull("no system Java compiler", compiler);
+    List<String> args = new ArrayList<String>(Arrays.asList("-d", _buildDir.getPath(), "-cp", _buildDir.getPath()));
+    for (File f : files) { args.add(f.getPath()); }
+    assertEquals("compilation failed", 0, compiler.run(null, null, null, args.toArray(new String[args.size()])));
+  }
+  
+  private ClassDependencyIndex.ClassInfo _parse(String className) throws IOException {
+    InputStream in = new FileInputStream(new File(_buildDir, className + ".class"));
+    try { return ClassDependencyIndex.parse(in); }
+    finally { in.close(); }
+  }
+  
+  public void testParse() throws IOException {
+    File a = _write("A", "public class A extends java.util.ArrayList<String> implements Runnable {\n" +
+                    "  public static final int LIMIT = 42;\n" +
+                    "  private int _count;\n" +
+                    "  public java.util.Map<B, String> table() { return null; }\n" +
+                    "  public void run() { new C(); }\n" +
+                    "  class Inner { }\n" +
+                    "}\n" +
+                    "class B { }\n" +
+                    "class C { }\n");
+    _compile(a);
+    
+    ClassDependencyIndex.ClassInfo info = _parse("A");
+    assertEquals("A", info.name);
+    assertEquals("A.java", info.sourceFile);
+    assertEquals("java/util/ArrayList", info.superName);
+    assertEquals(Arrays.asList("java/lang/Runnable"), info.interfaces);
+    assertTrue("type in signature", info.references.contains("B"));
+    assertTrue("instantiated class", info.references.contains("C"));
+    assertTrue("map in descriptor", info.references.contains("java/util/Map"));
+    assertFalse("self reference", info.references.contains("A"));
+    assertEquals("LIMIT I = 42\n", info.constants);
+    assertTrue(info.api.contains("table"));
+    assertFalse("private field in API", info.api.contains("_count"));
+    
+    ClassDependencyIndex.Snapshot s = _index.snapshot(_sources, _buildDir);
+    assertEquals(new TreeSet<String>(Arrays.asList("A", "A$Inner", "B", "C")), s.getClassNames(a));
+    assertTrue(s.getStaleSources().isEmpty());
+  }
+  
+  public void testStaleSources() throws IOException {
+    File a = _write("A", "public class A { }");
+    File b = _write("B", "public class B { }");
+    File c = _write("C", "public class C { }");
+    _compile(a, b);
+    
+    ClassDependencyIndex.Snapshot s = _index.snapshot(_sources, _buildDir);
+    assertEquals("never compiled", Collections.singleton(c), s.getStaleSources());
+    
+    _edit(a, "public class A { int x; }");
+    s = _index.snapshot(_sources, _buildDir);
+    assertEquals(new HashSet<File>(Arrays.asList(a, c)), s.getStaleSources());
+  }
+  
+  public void testDependents() throws IOException {
+    File a = _write("A", "public class A { public int f() { return 1; } }");
+    File b = _write("B", "public class B { int g() { return new A().f(); } }");
+    File c = _write("C", "public class C { }");
+    File d = _write("D", "public class D extends A { }");
+    File e = _write("E", "public class E { int h() { return new D().f(); } }");
+    _compile(a, b, c, d, e);
+    Set<File> stale = Collections.singleton(a);
+    
+    // a change to a method body leaves the dependents alone
+    ClassDependencyIndex.Snapshot before = _index.snapshot(_sources, _buildDir);
+    _edit(a, "public class A { public int f() { return 2; } }");
+    _compile(a);
+    ClassDependencyIndex.Snapshot after = _index.snapshot(_sources, _buildDir);
+    assertEquals(Collections.<File>emptySet(), before.getDependents(after, stale));
+    
+    // removing f affects B, the subclass D, and E, which calls f through D
+    before = after;
+    _edit(a, "public class A { public long f() { return 2; } }");
+    _compile(a);
+    after = _index.snapshot(_sources, _buildDir);
+    assertEquals(new LinkedHashSet<File>(Arrays.asList(b, d, e)), before.getDependents(after, stale));
+  }
+  
+  public void testConstantChangeRequiresFullBuild() throws IOException {
+    File a = _write("A", "public class A { public static final int N = 1; }");
+    File b = _write("B", "public class B { int n() { return A.N; } }");
+    _compile(a, b);
+    
+    ClassDependencyIndex.Snapshot before = _index.snapshot(_sources, _buildDir);
+    _edit(a, "public class A { public static final int N = 2; }");
+    _compile(a);
+    ClassDependencyIndex.Snapshot after = _index.snapshot(_sources, _buildDir);
+    assertNull(before.getDependents(after, Collections.singleton(a)));
+  }
+}
@@ -38,6 +38,7 @@ package edu.rice.cs.drjava.model.compiler;
 
 import java.io.File;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import javax.swing.filechooser.FileFilter;
 import edu.rice.cs.drjava.model.DJError;
@@ -132,4 +133,12 @@ public interface CompilerInterface {
   /** Return true if this compiler can be used in conjunction with the language level facility.
     * @return true if language levels can be used. */
   boolean supportsLanguageLevels();
+  
+  /** Discards any state the compiler keeps between compilations, such as indexes of the class path jars.  Called when
+    * the class path may have changed. */
+  void resetCaches();
+  
+  /** @return the time in milliseconds spent in each phase of the last compilation, in the order in which the phases
+    *         first ran; empty if the compiler does not record phase times */
+  Map<String, Long> getLastPhaseTimes();
 }
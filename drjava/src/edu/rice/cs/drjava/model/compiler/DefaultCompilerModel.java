@@ -99,6 +99,19 @@ public class DefaultCompilerModel implements CompilerModel {
     * numbers to .dj* line numbers when an error is thrown */
   public LanguageLevelStackTraceMapper _LLSTM;
   
+  /** The dependencies between the classes of the last build, used to compile incrementally. */
+  private final ClassDependencyIndex _dependencyIndex = new ClassDependencyIndex();
+  
+  /** Compiler, build directory and class paths of the last successful full build; {@code null} if the class files
+    * can't be trusted, so the next build must be a full one. */
+  private String _buildKey = null;
+  
+  /** The files compiled since the last full build. */
+  private final Set<File> _upToDateFiles = new HashSet<File>();
+  
+  /** The class path and boot class path of the last compilation; the compiler's caches are reset when they change. */
+  private String _lastClassPath = null;
+  
   /** Main constructor.  
     * @param m the GlobalModel that is the source of documents for this CompilerModel
     * @param compilers  The compilers to use.  The first will be made active; all are assumed
@@ -163,12 +176,14 @@ public class DefaultCompilerModel implements CompilerModel {
     * (which includes drjava.jar, containing JUnit classes).</p>
     * <p>This method formerly only compiled documents which were out of sync with their class file, as a performance 
     * optimization.  However, bug #634386 pointed out that unmodified files could depend on modified files, in which 
-    * case this command would not recompile a file in some situations when it should.  Since we value correctness over
-    * performance, we now always compile all open documents.</p>
+    * case this command would not recompile a file in some situations when it should.  Unless incremental compilation
+    * is disabled, only the stale documents and the documents depending on an API they changed are compiled; the 
+    * dependencies are read from the class files of the last build (see {@link ClassDependencyIndex}).  A full build is
+    * performed whenever that information can't be trusted.</p>
     * @throws IOException if a filesystem-related problem prevents compilation
     */
   public void compileAll() throws IOException {
-    if (_prepareForCompile()) { _doCompile(_model.getOpenDefinitionsDocuments()); }
+    if (_prepareForCompile()) { _doCompile(_model.getOpenDefinitionsDocuments(), true); }
     else _notifier.compileAborted(new UnexpectedException("Some modified open files are unsaved"));
   }
   
@@ -179,15 +194,17 @@ public class DefaultCompilerModel implements CompilerModel {
     * (which includes drjava.jar, containing JUnit classes).</p>
     * <p>This method formerly only compiled documents which were out of sync with their class file, as a performance 
     * optimization.  However, bug #634386 pointed out that unmodified files could depend on modified files, in which 
-    * case this command would not recompile a file in some situations when it should.  Since we value correctness over
-    * performance, we now always compile all open documents.</p>
+    * case this command would not recompile a file in some situations when it should.  Unless incremental compilation
+    * is disabled, only the stale documents and the documents depending on an API they changed are compiled; the 
+    * dependencies are read from the class files of the last build (see {@link ClassDependencyIndex}).  A full build is
+    * performed whenever that information can't be trusted.</p>
     * @throws IOException if a filesystem-related problem prevents compilation
     */
   public void compileProject() throws IOException {
     if (! _model.isProjectActive()) 
       throw new UnexpectedException("compileProject invoked when DrJava is not in project mode");
     
-    if (_prepareForCompile()) { _doCompile(_model.getProjectDocuments()); }
+    if (_prepareForCompile()) { _doCompile(_model.getProjectDocuments(), true); }
     else _notifier.compileAborted(new UnexpectedException("Project contains unsaved modified files"));
   }
   
@@ -203,7 +220,7 @@ public class DefaultCompilerModel implements CompilerModel {
     * @throws IOException if a filesystem-related problem prevents compilation
     */
   public void compile(List<OpenDefinitionsDocument> defDocs) throws IOException {
-    if (_prepareForCompile()) { _doCompile(defDocs); }
+    if (_prepareForCompile()) { _doCompile(defDocs, false); }
     else _notifier.compileAborted(new UnexpectedException("The files to be compiled include unsaved modified files"));
   }
   
@@ -219,7 +236,7 @@ public class DefaultCompilerModel implements CompilerModel {
     * @throws IOException if a filesystem-related problem prevents compilation
     */
   public void compile(OpenDefinitionsDocument doc) throws IOException {
-    if (_prepareForCompile()) { _doCompile(Arrays.asList(doc)); }
+    if (_prepareForCompile()) { _doCompile(Arrays.asList(doc), false); }
     else _notifier.compileAborted(new UnexpectedException(doc + "is modified but unsaved"));
   }
   
@@ -234,11 +251,13 @@ public class DefaultCompilerModel implements CompilerModel {
   
   /** Compile the given documents. 
     * @param docs the documents to be compiled
+    * @param incremental whether it suffices to compile the stale documents and their dependents
     * @throws IOException if an IO operation fails
     */
-  private void _doCompile(List<OpenDefinitionsDocument> docs) throws IOException {
+  private void _doCompile(List<OpenDefinitionsDocument> docs, boolean incremental) throws IOException {
     _LLSTM.clearCache();
     final ArrayList<File> filesToCompile = new ArrayList<File>();
+    final Map<File, String> packages = new LinkedHashMap<File, String>();
     final ArrayList<File> excludedFiles = new ArrayList<File>();
     final ArrayList<DJError> packageErrors = new ArrayList<DJError>();
     
@@ -246,7 +265,10 @@ public class DefaultCompilerModel implements CompilerModel {
       if (doc.isSourceFile()) {
         File f = doc.getFile();
         // Check for null in case the file is untitled (not sure this is the correct check)
-        if (f != null && f != FileOps.NULL_FILE) { filesToCompile.add(f); }
+        if (f != null && f != FileOps.NULL_FILE) {
+          filesToCompile.add(f);
+          packages.put(f, doc.getPackageName());
+        }
         doc.setCachedClassFile(FileOps.NULL_FILE); // clear cached class file
         
         try { doc.getSourceRoot(); }
@@ -269,7 +291,7 @@ public class DefaultCompilerModel implements CompilerModel {
         if (buildDir != null && buildDir != FileOps.NULL_FILE && ! buildDir.exists() && ! buildDir.mkdirs())
           throw new IOException("Could not create build directory: " + buildDir);
         
-        _compileFiles(filesToCompile, buildDir);
+        _compileFiles(filesToCompile, buildDir, incremental ? packages : null);
       }
       catch (Throwable t) {
         DJError err = new DJError(t.toString(), false);
@@ -332,9 +354,10 @@ public class DefaultCompilerModel implements CompilerModel {
    * @param files The files to be compiled
    * @param buildDir The output directory for all the .class files; @code{null} 
    *        means output to the same directory as the source file
+   * @param packages The package of each file if an incremental build suffices; @code{null} to compile all files
    * @throws IOException if an IO operation fails
    */
-  private void _compileFiles(List<File> files, File buildDir) throws IOException {
+  private void _compileFiles(List<File> files, File buildDir, Map<File, String> packages) throws IOException {
     if (! files.isEmpty()) {
       /* Canonicalize buildDir */
       if (buildDir == FileOps.NULL_FILE) buildDir = null; // compiler interface wants null pointer if no build directory
@@ -359,16 +382,43 @@ public class DefaultCompilerModel implements CompilerModel {
         
         // Mutual exclusion with JUnit code that finds all test classes (in DefaultJUnitModel)
         synchronized(_compilerLock) {
+          String pathKey = classPath + File.pathSeparator + bootClassPath;
+          if (! pathKey.equals(_lastClassPath)) {
+            // cached indexes of the old class path are useless, and stale if a jar was replaced
+            compiler.resetCaches();
+            _lastClassPath = pathKey;
+          }
           if (preprocessedFiles == null) {
-            errors.addAll(compiler.compile(files, classPath, null, buildDir, bootClassPath, null, true));
+            String buildKey = compiler.getName() + File.pathSeparator + buildDir + File.pathSeparator + classPath + 
+              File.pathSeparator + bootClassPath;
+            List<? extends DJError> incrementalErrors = null;
+            if (packages != null && buildKey.equals(_buildKey) && 
+                DrJava.getConfig().getSetting(OptionConstants.INCREMENTAL_COMPILATION)) {
+              incrementalErrors = _compileIncrementally(compiler, packages, classPath, buildDir, bootClassPath);
+            }
+            if (incrementalErrors != null) { errors.addAll(incrementalErrors); }
+            else {
+              errors.addAll(compiler.compile(files, classPath, null, buildDir, bootClassPath, null, true));
+              _reportPhaseTimes(compiler);
+              // only a full build of the whole set establishes a trustworthy baseline
+              _buildKey = (packages != null) ? buildKey : null;
+              _upToDateFiles.clear();
+            }
+            _upToDateFiles.addAll(files);
           }
           else {
             /** If compiling a language level file, do not show warnings, as these are not caught by the language level 
               * parser */
             errors.addAll(compiler.compile(preprocessedFiles, classPath, null, buildDir, bootClassPath, null, false));
+            _reportPhaseTimes(compiler);
+            _buildKey = null;
           }
         }
       }
+      for (DJError e : errors) {
+        // a failed compilation may leave stale class files behind
+        if (! e.isWarning()) { _buildKey = null; break; }
+      }
       _distributeErrors(errors);
     }
     else { 
@@ -377,6 +427,53 @@ public class DefaultCompilerModel implements CompilerModel {
     }
   }
   
+  /** Compiles the stale files among the given ones, followed by the files depending on an API that changed in the
+    * process.  A file is stale if it was modified after its class files were written, or if it has not been compiled
+    * since the last full build.  Must be called while holding {@code _compilerLock}.
+    * @param compiler the compiler to use
+    * @param packages the files to bring up to date, each mapped to its package
+    * @param classPath the class path
+    * @param buildDir the output directory, or {@code null}
+    * @param bootClassPath the boot class path, or {@code null}
+    * @return the errors, or {@code null} if a full build is needed instead
+    */
+  private List<? extends DJError> _compileIncrementally(CompilerInterface compiler, Map<File, String> packages, 
+                                                        List<File> classPath, File buildDir, List<File> bootClassPath) {
+    ClassDependencyIndex.Snapshot before = _dependencyIndex.snapshot(packages, buildDir);
+    if (before == null) { return null; }
+    Set<File> stale = before.getStaleSources();
+    for (File f : packages.keySet()) { if (! _upToDateFiles.contains(f)) { stale.add(f); } }
+    
+    // beyond this point, a single full build is cheaper than two partial ones
+    if (stale.size() * 2 > packages.size()) { return null; }
+    _log.log("Incremental build of " + stale);
+    if (stale.isEmpty()) { return Collections.<DJError>emptyList(); }
+    
+    List<DJError> errors = new ArrayList<DJError>();
+    errors.addAll(compiler.compile(new ArrayList<File>(stale), classPath, null, buildDir, bootClassPath, null, true));
+    _reportPhaseTimes(compiler);
+    for (DJError e : errors) { if (! e.isWarning()) { return errors; } }
+    
+    ClassDependencyIndex.Snapshot after = _dependencyIndex.snapshot(packages, buildDir);
+    Set<File> dependents = (after == null) ? null : before.getDependents(after, stale);
+    if (dependents == null) { return null; }
+    _log.log("Recompiling dependents " + dependents);
+    if (! dependents.isEmpty()) {
+      errors.addAll(compiler.compile(new ArrayList<File>(dependents), classPath, null, buildDir, bootClassPath, null, 
+                                     true));
+      _reportPhaseTimes(compiler);
+    }
+    return errors;
+  }
+  
+  /** Logs the time spent in each phase of the compiler's last compilation, if it recorded them. 
+    * @param compiler the compiler that just ran
+    */
+  private static void _reportPhaseTimes(CompilerInterface compiler) {
+    Map<String, Long> times = compiler.getLastPhaseTimes();
+    if (! times.isEmpty()) { _log.log("Compiler phase times (ms): " + times); }
+  }
+  
   /** Reorders files so that all file names containing "Test" are at the end.  
    * @param files the files to be sorted
    * @return the sorted list of files
@@ -410,6 +507,7 @@ public class DefaultCompilerModel implements CompilerModel {
     final LinkedList<File> filesToBeClosed = new LinkedList<File>();  // Used to record .java files that are open at 
     // the same time as their .dj? files.
     boolean containsLanguageLevels = false;
+    boolean skipUpToDate = DrJava.getConfig().getSetting(OptionConstants.SKIP_UP_TO_DATE_LL_FILES);
     for (File f : files) {
       File canonicalFile = IOUtil.attemptCanonicalFile(f);
       String fileName = canonicalFile.getPath();
@@ -420,7 +518,7 @@ public class DefaultCompilerModel implements CompilerModel {
         //checks if .dj? file has a matching .java file open in project. Eventually warns user (later on in code)
         if (files.contains(javaFile)) filesToBeClosed.add(javaFile);
           // delete file later so closeFiles doesn't complain about missing files
-        else
+        else if (! skipUpToDate || javaFile.lastModified() <= canonicalFile.lastModified())
           // Delete the stale .java file now (if it exists), a file with this name will subsequently be generated
           javaFile.delete();
         
@@ -554,8 +652,13 @@ public class DefaultCompilerModel implements CompilerModel {
       /* Perform language levels conversion, creating corresponding .java files. */
       LanguageLevelConverter llc = new LanguageLevelConverter();
       Options llOpts;  /* Options passed as arguments to LLConverter */
-      if (bootClassPath == null) { llOpts = new Options(getActiveCompiler().version(), classPath); }
-      else { llOpts = new Options(getActiveCompiler().version(), classPath, bootClassPath); }
+      if (bootClassPath == null) { 
+        bootClassPath = IOUtil.parsePath(System.getProperty("sun.boot.class.path", "")); 
+      }
+      // Signatures of library classes are cached next to the properties file (~/.drjava-llsymbols by default)
+      File propertiesFile = DrJava.getPropertiesFile();
+      File symbolCacheDir = (propertiesFile == null) ? null : new File(propertiesFile.getPath() + "-llsymbols");
+      llOpts = new Options(getActiveCompiler().version(), classPath, bootClassPath, skipUpToDate, symbolCacheDir);
       
       // NOTE: the workaround "_testFileSort(files)" instead of simply "files") may no longer be necessary.
       
@@ -641,6 +744,10 @@ public class DefaultCompilerModel implements CompilerModel {
       // _active should be set correctly already
     }
     else if (_compilers.contains(compiler)) {
+      if (compiler != _active) { 
+        _active.resetCaches();  // release the memory held by the compiler being replaced
+        _lastClassPath = null;
+      }
       _active = compiler;
       _notifier.activeCompilerChanged();
     }
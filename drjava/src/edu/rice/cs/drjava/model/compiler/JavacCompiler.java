@@ -41,6 +41,7 @@ import java.util.Arrays;
 import java.util.Set;
 import java.util.HashSet;
 import java.util.Collections;
+import java.util.Map;
 import java.io.File;
 import edu.rice.cs.drjava.DrJava;
 import edu.rice.cs.drjava.config.OptionConstants;
@@ -378,6 +379,12 @@ public abstract class JavacCompiler implements CompilerInterface {
     * @return true if language levels can be used. */
   public boolean supportsLanguageLevels() { return true; }
   
+  /** Does nothing; subclasses that keep state between compilations override this method. */
+  public void resetCaches() { }
+  
+  /** @return an empty map; subclasses that record phase times override this method */
+  public Map<String, Long> getLastPhaseTimes() { return Collections.emptyMap(); }
+  
   /** Return the set of keywords that should be highlighted in the specified file.
     * @param f file for which to return the keywords
     * @return the set of keywords that should be highlighted in the specified file. */
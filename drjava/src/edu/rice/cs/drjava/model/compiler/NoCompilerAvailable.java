@@ -40,6 +40,8 @@ import java.io.File;
 import java.util.List;
 import java.util.Arrays;
 import java.util.Set;
+import java.util.Map;
+import java.util.Collections;
 import edu.rice.cs.drjava.DrJava;
 import edu.rice.cs.drjava.model.DJError;
 import edu.rice.cs.drjava.model.DrJavaFileUtils;
@@ -117,6 +119,10 @@ public class NoCompilerAvailable implements CompilerInterface {
     * @return true if language levels can be used. */
   public boolean supportsLanguageLevels() { return true; }
   
+  public void resetCaches() { }
+  
+  public Map<String, Long> getLastPhaseTimes() { return Collections.emptyMap(); }
+  
   /** Return the set of keywords that should be highlighted in the specified file.
     * @param f file for which to return the keywords
     * @return the set of keywords that should be highlighted in the specified file. */
@@ -0,0 +1,160 @@
+/*BEGIN_COPYRIGHT_BLOCK
+ *
+ * Copyright (c) 2001-2016, JavaPLT group at Rice University (drjava@rice.edu)
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *    * Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the names of DrJava, the JavaPLT group, Rice University, nor the
+ *      names of its contributors may be used to endorse or promote products
+ *      derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * This software is Open Source Initiative approved Open Source Software.
+ * Open Source Initative Approved is a trademark of the Open Source Initiative.
+ * 
+ * This file is part of DrJava.  Download the current version of this project
+ * from http://www.drjava.org/ or http://sourceforge.net/projects/drjava/
+ * 
+ * END_COPYRIGHT_BLOCK*/
+
+package edu.rice.cs.drjava.model.coverage;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import edu.rice.cs.plt.io.IOUtil;
+import edu.rice.cs.util.Log;
+import edu.rice.cs.util.UnexpectedException;
+
+import org.jacoco.core.analysis.Analyzer;
+import org.jacoco.core.analysis.CoverageBuilder;
+import org.jacoco.core.analysis.IClassCoverage;
+import org.jacoco.core.analysis.ICoverageVisitor;
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.ExecutionDataStore;
+
+/** Analyzes the coverage of classes by the execution data of a test run.  Classes are analyzed on several threads,
+  * and the result for each class is remembered along with a digest of its class file and its execution data, so a
+  * later analysis of a class whose class file and execution data are both unchanged reuses the earlier result.
+  * @version $Id$
+  */
+public class CoverageAnalyzer {
+  
+  private static final Log _log = new Log("JUnitTestManager.txt", false);
+  
+  /** The results of earlier analyses, by class name. */
+  private final Map<String, Analysis> _cache = new ConcurrentHashMap<String, Analysis>();
+  
+  /** The result of analyzing a class, and what it depended on. */
+  private static class Analysis {
+    public final byte[] digest;
+    public final boolean[] probes;
+    public final List<IClassCoverage> coverage;
+    public Analysis(byte[] d, boolean[] p, List<IClassCoverage> c) { digest = d; probes = p; coverage = c; }
+  }
+  
+  /** Analyzes the given classes.
+    * @param classNames the (fully qualified) names of the classes to analyze
+    * @param loader the loader from which the (uninstrumented) class files are read
+    * @param executionData the execution data of the test run
+    * @return a coverage builder to which the coverage of each class has been reported
+    */
+  public CoverageBuilder analyze(List<String> classNames, final ClassLoader loader,
+                                 final ExecutionDataStore executionData) {
+    final Map<String, ExecutionData> dataByName = new HashMap<String, ExecutionData>();
+    for (ExecutionData d : executionData.getContents()) { dataByName.put(d.getName(), d); }
+    
+    int threads = Math.min(Runtime.getRuntime().availableProcessors(), Math.max(classNames.size(), 1));
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      List<Future<List<IClassCoverage>>> results = new ArrayList<Future<List<IClassCoverage>>>();
+      for (final String cName : classNames) {
+        results.add(executor.submit(new Callable<List<IClassCoverage>>() {
+          public List<IClassCoverage> call() throws IOException {
+            return _analyze(cName, loader, executionData, dataByName.get(cName.replace('.', '/')));
+          }
+        }));
+      }
+      
+      // CoverageBuilder is not thread-safe, so the results are reported to it here, in order
+      CoverageBuilder builder = new CoverageBuilder();
+      for (int i = 0; i < classNames.size(); i++) {
+        try {
+          for (IClassCoverage cc : results.get(i).get()) { builder.visitCoverage(cc); }
+        }
+        catch (ExecutionException e) {
+          throw new UnexpectedException(e.getCause(), "Coverage analysis threw this exception while processing class " +
+                                        classNames.get(i));
+        }
+        catch (InterruptedException e) { throw new UnexpectedException(e); }
+      }
+      return builder;
+    }
+    finally { executor.shutdownNow(); }
+  }
+  
+  /** Analyzes a single class, or reuses the result of an earlier analysis.  May run on any thread.
+    * @param data the execution data for the class, or null if it was not executed
+    */
+  private List<IClassCoverage> _analyze(String cName, ClassLoader loader, ExecutionDataStore executionData,
+                                        ExecutionData data) throws IOException {
+    InputStream is = loader.getResourceAsStream(cName.replace('.', '/') + ".class");
+    if (is == null) { throw new IOException("Class file for " + cName + " not found"); }
+    byte[] bytes;
+    try { bytes = IOUtil.toByteArray(is); }
+    finally { is.close(); }
+    
+    byte[] digest = _digest(bytes);
+    boolean[] probes = (data == null) ? null : data.getProbes().clone();
+    Analysis cached = _cache.get(cName);
+    if (cached != null && Arrays.equals(cached.digest, digest) && Arrays.equals(cached.probes, probes)) {
+      _log.log("Reusing the coverage of class " + cName);
+      return cached.coverage;
+    }
+    
+    final List<IClassCoverage> coverage = new ArrayList<IClassCoverage>(1);
+    Analyzer analyzer = new Analyzer(executionData, new ICoverageVisitor() {
+      public void visitCoverage(IClassCoverage cc) { coverage.add(cc); }
+    });
+    analyzer.analyzeClass(bytes, cName);
+    _cache.put(cName, new Analysis(digest, probes, coverage));
+    return coverage;
+  }
+  
+  private static byte[] _digest(byte[] bytes) {
+    try { return MessageDigest.getInstance("SHA-1").digest(bytes); }
+    catch (NoSuchAlgorithmException e) { throw new UnexpectedException(e); }
+  }
+}
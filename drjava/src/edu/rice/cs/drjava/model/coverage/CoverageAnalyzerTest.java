@@ -0,0 +1,114 @@
+/*BEGIN_COPYRIGHT_BLOCK
+ *
+ * Copyright (c) 2001-2016, JavaPLT group at Rice University (drjava@rice.edu)
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *    * Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the names of DrJava, the JavaPLT group, Rice University, nor the
+ *      names of its contributors may be used to endorse or promote products
+ *      derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * This software is Open Source Initiative approved Open Source Software.
+ * Open Source Initative Approved is a trademark of the Open Source Initiative.
+ * 
+ * This file is part of DrJava.  Download the current version of this project
+ * from http://www.drjava.org/ or http://sourceforge.net/projects/drjava/
+ * 
+ * END_COPYRIGHT_BLOCK*/
+
+package edu.rice.cs.drjava.model.coverage;
+
+import java.util.Arrays;
+import java.util.List;
+
+import edu.rice.cs.drjava.DrJavaTestCase;
+import edu.rice.cs.plt.io.IOUtil;
+
+import org.jacoco.core.analysis.CoverageBuilder;
+import org.jacoco.core.analysis.IClassCoverage;
+import org.jacoco.core.analysis.ICounter;
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.ExecutionDataStore;
+import org.jacoco.core.internal.data.CRC64;
+
+/** Tests CoverageAnalyzer and the line coverage computed by ReportGenerator.
+  * @version $Id$
+  */
+public final class CoverageAnalyzerTest extends DrJavaTestCase {
+  
+  public static class SampleA {
+    public int f(int x) {
+      if (x > 0) { return 1; }
+      return 2;
+    }
+  }
+  
+  public static class SampleB {
+    public int g() { return 3; }
+  }
+  
+  private static final String A = SampleA.class.getName();
+  private static final String B = SampleB.class.getName();
+  
+  private final ClassLoader _loader = CoverageAnalyzerTest.class.getClassLoader();
+  
+  private static IClassCoverage _coverage(CoverageBuilder builder, String className) {
+    for (IClassCoverage cc : builder.getClasses()) {
+      if (cc.getName().equals(className.replace('.', '/'))) { return cc; }
+    }
+    fail("no coverage for " + className);
+    return null;
+  }
+  
+  private static boolean _hasStatus(byte[] lines, int status) {
+    for (byte b : lines) { if (b == status) { return true; } }
+    return false;
+  }
+  
+  public void testAnalyze() throws Exception {
+    CoverageAnalyzer analyzer = new CoverageAnalyzer();
+    List<String> classes = Arrays.asList(A, B);
+    CoverageBuilder first = analyzer.analyze(classes, _loader, new ExecutionDataStore());
+    assertEquals(2, first.getClasses().size());
+    byte[] lines = ReportGenerator.getLineCoverage(_coverage(first, A));
+    assertTrue(_hasStatus(lines, ICounter.NOT_COVERED));
+    assertFalse(_hasStatus(lines, ICounter.FULLY_COVERED));
+    assertEquals(ICounter.EMPTY, lines[0]);
+    
+    // unchanged classes and execution data: the earlier analyses are reused
+    CoverageBuilder second = analyzer.analyze(classes, _loader, new ExecutionDataStore());
+    assertSame(_coverage(first, A), _coverage(second, A));
+    assertSame(_coverage(first, B), _coverage(second, B));
+    
+    // new execution data for SampleA: it is analyzed again
+    byte[] bytes = IOUtil.toByteArray(_loader.getResourceAsStream(A.replace('.', '/') + ".class"));
+    boolean[] probes = new boolean[64];
+    Arrays.fill(probes, true);
+    ExecutionDataStore data = new ExecutionDataStore();
+    data.put(new ExecutionData(CRC64.checksum(bytes), A.replace('.', '/'), probes));
+    CoverageBuilder third = analyzer.analyze(classes, _loader, data);
+    assertNotSame(_coverage(first, A), _coverage(third, A));
+    assertSame(_coverage(first, B), _coverage(third, B));
+    lines = ReportGenerator.getLineCoverage(_coverage(third, A));
+    assertTrue(_hasStatus(lines, ICounter.FULLY_COVERED));
+    assertFalse(_hasStatus(lines, ICounter.NOT_COVERED));
+  }
+}
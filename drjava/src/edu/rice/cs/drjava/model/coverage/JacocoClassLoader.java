@@ -56,6 +56,10 @@ import java.io.IOException;
 
 import java.lang.ClassLoader;
 
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
 import edu.rice.cs.plt.io.IOUtil;
 import edu.rice.cs.util.Log;
 import edu.rice.cs.util.FileOps;
@@ -64,7 +68,9 @@ import edu.rice.cs.util.UnexpectedException;
 
 import org.jacoco.core.instr.Instrumenter;
 
-/** A class loader that instruments classes for code coverage.
+/** A class loader that instruments classes for code coverage.  Classes found in the binary directories are defined
+  * by this loader (rather than its parent), so the loader also records the class files that were loaded through it;
+  * without an instrumenter, it serves only to record which class files a test depends on.
   * @version $Id$
   */
 public class JacocoClassLoader extends ClassLoader {
@@ -74,6 +80,13 @@ public class JacocoClassLoader extends ClassLoader {
   private final File[] _binaryDirectories; 
   private final Instrumenter _instrumenter; 
   
+  /** The class files defined by this loader, mapped to the checksums of their (uninstrumented) contents. */
+  private final Map<File, Long> _definedFiles = new HashMap<File, Long>();
+  
+  /** @param binaryDirectories the directories whose classes are defined (and instrumented) by this loader
+    * @param instrumenter the instrumenter for classes in binaryDirectories; null to define them unchanged
+    * @param parent the loader for all other classes
+    */
   public JacocoClassLoader(Iterable<File> binaryDirectories, Instrumenter instrumenter, ClassLoader parent) { 
     super(parent); 
     
@@ -100,7 +113,11 @@ public class JacocoClassLoader extends ClassLoader {
       if (classFile != null) {
         _log.log("Found the class file " + classFile + " for the class " + className);
         _log.log("Instrumenting and defining class: " + className); 
-        final byte[] instrumentedBytes = _instrumenter.instrument(IOUtil.toByteArray(classFile), className); 
+        final byte[] bytes = IOUtil.toByteArray(classFile);
+        final byte[] instrumentedBytes = (_instrumenter == null) ? bytes : _instrumenter.instrument(bytes, className);
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        synchronized(_definedFiles) { _definedFiles.put(classFile, crc.getValue()); }
         final Class<?> definedClass = defineClass(className, instrumentedBytes, 0, instrumentedBytes.length);
         _log.log("Returning instrumented class " + className);
         return definedClass;
@@ -116,6 +133,11 @@ public class JacocoClassLoader extends ClassLoader {
     } 
   } 
   
+  /** @return the class files defined by this loader so far, mapped to the CRC-32 checksums of their contents */
+  public Map<File, Long> getDefinedFiles() {
+    synchronized(_definedFiles) { return new HashMap<File, Long>(_definedFiles); }
+  }
+  
   public Class<?> tryLoadClass(String name) { 
     try { return loadClass(name); } 
     catch (ClassNotFoundException ex) { return null; } 
@@ -13,9 +13,7 @@ import java.io.File;
 import java.io.IOException;
 
 import java.util.Map;
-import java.util.List;
 import java.util.HashMap;
-import java.util.ArrayList;
 
 import org.jacoco.core.analysis.CoverageBuilder;
 import org.jacoco.core.analysis.IBundleCoverage;
@@ -82,70 +80,38 @@ public class ReportGenerator {
     visitor.visitEnd();
   }
   
-  /** Converts the input coverage status into the output color.
-    * @param status the status of the line (how well it was covered)
-    * @return a color corresponding to the amount of coverage
+  /** Determines the coverage status of each line of the given class.
+    * @param cc the IClassCoverage object from which to get line statuses
+    * @return an array whose i-th element is the {@link ICounter} status (such as {@code ICounter.NOT_COVERED}) of the
+    *         i-th line of code; {@code ICounter.EMPTY} for lines that contain no code
     */
-  private String getColor(final int status) {
-    
-    switch (status) {
-      case ICounter.NOT_COVERED: return "red";
-      case ICounter.PARTLY_COVERED: return "yellow";
-      case ICounter.FULLY_COVERED: return "green";
-      default: return ""; /* this line contains no code, so don't color it */
-    }
+  public static byte[] getLineCoverage(IClassCoverage cc) {
+    /* The lines before the first actual line of code are left empty. */
+    int last = cc.getLastLine();
+    byte[] lines = new byte[Math.max(last + 1, 0)];
+    for (int i = Math.max(cc.getFirstLine(), 0); i <= last; i++) lines[i] = (byte) cc.getLine(i).getStatus();
+    return lines;
   }
   
-  /** Help function which takes coverage data for a particular class and returns a corresponding list of line colors.
-    * @param cc the IClassCoverage object from which to get line colors
-    * @return a list of colors, where the i-th element in the list corresponds to the i-th line of code
+  /** Given a class name, determines the coverage status of each line in that class.
+    * @param className the (slash-separated) name of the class (/file) for which to get line statuses
+    * @return the line statuses, as computed by {@link #getLineCoverage(IClassCoverage)}; empty if className is invalid
     */
-  private ArrayList<String> getLineColorsForClassHelper(IClassCoverage cc) {
-    
-    ArrayList<String> lineColors = new ArrayList<String>();
-    
-    /* Begin by assigning no color to all of the lines before the first actual line of code.  */
-    for (int i = 0; i < cc.getFirstLine(); i++) lineColors.add("");               
-    
-    /* Next, get the color of the lines after the first code line. */
-    for (int i = cc.getFirstLine(); i <= cc.getLastLine(); i++) lineColors.add(getColor(cc.getLine(i).getStatus()));
-    
-    return lineColors;
-  }
-  
-  /** Given a class name, determines the color of each line in that class according to coverage results.
-    * @param className the class (/file) for which to get line colors
-    * @return a list of colors, where the i-th element in the list corresponds to the i-th line of code
-    */
-  public ArrayList<String> getLineColorsForClass(String className) {
-    
-    /* Initialize it to empty, in case the className is invalid */ 
-    ArrayList<String> lineColors = new ArrayList<String>();
-    
-    /* Search for the requested class */
+  public byte[] getLineCoverageForClass(String className) {
     for (final IClassCoverage cc : this.coverageBuilder.getClasses()) {
-      
-      /* Found the class! Get the color of each line. */
-      if (cc.getName().equals(className)) {
-        lineColors = getLineColorsForClassHelper(cc);
-        break;
-      }
+      if (cc.getName().equals(className)) return getLineCoverage(cc);
     }
-    
-    return lineColors;
+    return new byte[0];
   }
   
-  /** Given a list of classes, determines the color of each line in each class (based on coverage results).
-    * @return a mapping of class names to the line colors for that class
+  /** Determines the coverage status of each line in each class (based on coverage results).
+    * @return a mapping of (slash-separated) class names to the line statuses for that class
     */
-  public Map<String, List<String>> getAllLineColors() {
-    
-    Map<String, List<String>> allLineColors = new HashMap<String, List<String>>();
-    
+  public Map<String, byte[]> getAllLineCoverage() {
+    Map<String, byte[]> allLineCoverage = new HashMap<String, byte[]>();
     for (final IClassCoverage cc : this.coverageBuilder.getClasses()) {
-      allLineColors.put(cc.getName(), this.getLineColorsForClassHelper(cc));
+      allLineCoverage.put(cc.getName(), getLineCoverage(cc));
     }
-    
-    return allLineColors;
+    return allLineCoverage;
   }
 }
@@ -39,7 +39,6 @@ package edu.rice.cs.drjava.model.definitions;
 import javax.swing.text.*;
 import java.awt.*;
 import javax.swing.event.DocumentEvent;
-import java.util.ArrayList;
 
 import edu.rice.cs.drjava.DrJava;
 import edu.rice.cs.drjava.model.*;
@@ -77,6 +76,10 @@ public class ColoringView extends PlainView implements OptionConstants {
   public static Color ERROR_COLOR = DrJava.getConfig().getSetting(INTERACTIONS_ERROR_COLOR);
   public static Color DEBUGGER_COLOR = DrJava.getConfig().getSetting(DEBUG_MESSAGE_COLOR);
   
+  /** The first and last lines drawn by the current call to paint, or -1 if none. */
+  private int _firstPainted = -1;
+  private int _lastPainted = -1;
+  
   /** Constructs a new coloring view.
     * @param elem the element
     */
@@ -153,18 +156,17 @@ public class ColoringView extends PlainView implements OptionConstants {
     
     final AbstractDJDocument _doc = (AbstractDJDocument) doc;
     
-    ArrayList<HighlightStatus> stats = _doc.getHighlightStatus(start, end);
-    if (stats.size() < 1) throw new UnexpectedException("GetHighlightStatus returned nothing!");
+    // the cached runs of the line containing [start, end); they cover the whole line, so clip them to the range
+    int[] runs = _doc.getHighlightRuns().runsAt(start);
+    if (runs.length < 1) throw new UnexpectedException("GetHighlightStatus returned nothing!");
     
-    for (HighlightStatus stat: stats) {
-      int location = stat.getLocation();
-      int length = stat.getLength();
-      
-      // If this highlight status extends past p1, end at p1
-      if (location + length > end) length = end - stat.getLocation();
+    for (int i = 0; i < runs.length; i += 3) {
+      int location = Math.max(runs[i], start);
+      int length = Math.min(runs[i] + runs[i + 1], end) - location;
+      if (length <= 0) continue;
       
       if (! (_doc instanceof InteractionsDJDocument) || ! ((InteractionsDJDocument)_doc).setColoring((start + end)/2, g))      
-        setFormattingForState(g, stat.getState());
+        setFormattingForState(g, runs[i + 2]);
       Segment text = getLineBuffer(); 
       _doc.getText(location, length, text);
       x = Utilities.drawTabbedText(text, x, y, g, this, location);  // updates x on each iteration
@@ -172,6 +174,33 @@ public class ColoringView extends PlainView implements OptionConstants {
     return  x;
   }
   
+  /** Records the range of painted lines, so that paint can prefetch the highlighting of the lines around them.
+    * @param lineIndex  The line to draw
+    * @param g  The graphics context
+    * @param x  The starting X coordinate
+    * @param y  The starting Y coordinate
+    */
+  protected void drawLine(int lineIndex, Graphics g, int x, int y) {
+    if (_firstPainted < 0) _firstPainted = lineIndex;
+    _lastPainted = lineIndex;
+    super.drawLine(lineIndex, g, x, y);
+  }
+  
+  /** Paints the visible lines, then has the highlighting of the lines within HighlightRunCache.MARGIN of them 
+    * computed in the background, so that scrolling finds them cached.
+    * @param g  The graphics context
+    * @param a  The allocated region to render into
+    */
+  public void paint(Graphics g, Shape a) {
+    _firstPainted = -1;
+    super.paint(g, a);
+    Document doc = getDocument();
+    if (_firstPainted >= 0 && doc instanceof AbstractDJDocument) {
+      ((AbstractDJDocument) doc).getHighlightRuns().prefetch(_firstPainted - HighlightRunCache.MARGIN, 
+                                                             _lastPainted + HighlightRunCache.MARGIN);
+    }
+  }
+  
   /** Draws the selected text image at the specified location.
     * @param g  The text image
     * @param x  The x coordinate for the drawn text
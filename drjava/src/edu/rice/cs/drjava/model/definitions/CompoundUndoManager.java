@@ -37,7 +37,10 @@
 package edu.rice.cs.drjava.model.definitions;
 
 import java.awt.EventQueue;
+import java.util.Collections;
 import java.util.LinkedList;
+import java.util.Set;
+import java.util.WeakHashMap;
 import javax.swing.undo.*;
 
 import edu.rice.cs.drjava.model.GlobalEventNotifier;
@@ -47,6 +50,10 @@ import edu.rice.cs.drjava.model.GlobalEventNotifier;
   * in UndoManager.  The public methods that involve composite state are synchronized, so this manager can be accessed
   * outside of the event thread.  The internal data structures _compoundEdits and _keys are not thread safe but they
   * only accessed only by synchronized methods.  The synchronization scheme (locking on this) follows UndoManager.
+  * <p>
+  * The text of the edits in the history is kept in an UndoTextArena (see AbstractDJDocument.ReducedModelEdit).  The
+  * histories of all documents share a cap on their estimated size: when they exceed it, the oldest edits of the largest
+  * histories are discarded, along with their text.</p>
   * @version $Id$
   */
 public class CompoundUndoManager extends UndoManager {
@@ -55,6 +62,23 @@ public class CompoundUndoManager extends UndoManager {
   
   private static volatile int counter = 0;
   
+  /** The default cap on the estimated size of the undo histories of all documents, in bytes. */
+  public static final long DEFAULT_MAX_TOTAL_FOOTPRINT = 32L << 20;
+  
+  /* Rough per-item heap costs used by getFootprintEstimate(). */
+  private static final int BYTES_PER_CHAR = 2;
+  private static final int BYTES_PER_EVENT = 192;  // document event with its content edit and reduced model edit
+  
+  /** The current cap on the estimated size of the undo histories of all documents. */
+  private static volatile long _maxTotalFootprint = DEFAULT_MAX_TOTAL_FOOTPRINT;
+  
+  /** All live undo managers; weak so that the histories of closed documents are not retained. */
+  private static final Set<CompoundUndoManager> _managers =
+    Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<CompoundUndoManager, Boolean>()));
+  
+  /** Stands for the unedited state of the document once the oldest edits have been discarded; no edit equals it. */
+  private static final UndoableEdit UNREACHABLE_STATE = new AbstractUndoableEdit();
+  
   private final int id;
   
   /** The compound edits we are storing. Not thread safe! */
@@ -72,6 +96,21 @@ public class CompoundUndoManager extends UndoManager {
   /** Keeps track of the listeners to this undo manager. */
   private final GlobalEventNotifier _notifier;
   
+  /** The text of the edits in this history. */
+  private final UndoTextArena _textArena;
+  
+  /** Where the text of each edit in edits starts and how many document events it holds; parallel to edits. */
+  private final LinkedList<EditInfo> _editInfos;
+  
+  /** The arena position at which the text of the edits not yet added to edits starts. */
+  private volatile int _pendingTextStart;
+  
+  /** The number of document events in the compound edits in progress. */
+  private volatile int _pendingEventCount;
+  
+  /** The number of document events in the edits in edits. */
+  private volatile long _eventCount;
+  
   /** Standard constructor. 
    * @param notifier a GlobalEventNotifier
    */
@@ -84,6 +123,12 @@ public class CompoundUndoManager extends UndoManager {
     _nextKey = 0;
     _savePoint = null;
     _notifier = notifier;
+    _textArena = new UndoTextArena();
+    _editInfos = new LinkedList<EditInfo>();
+    _pendingTextStart = 0;
+    _pendingEventCount = 0;
+    _eventCount = 0;
+    _managers.add(this);
   }
   
   /** Starts a compound edit.
@@ -119,13 +164,14 @@ public class CompoundUndoManager extends UndoManager {
       ce.end();
       if (ce.canUndo()) {
         if (! _compoundEditInProgress()) {
-          super.addEdit(ce);
+          _addToHistory(ce, _pendingEventCount);
           _notifyUndoHappened();
         }
         else {
           _compoundEdits.get(0).addEdit(ce);
         }
-      } 
+      }
+      if (! _compoundEditInProgress()) _pendingEventCount = 0;
     }
     else throw new IllegalStateException("Improperly nested compound edits.");
   }
@@ -141,6 +187,20 @@ public class CompoundUndoManager extends UndoManager {
     */
   public UndoableEdit getNextUndo() { return editToBeUndone(); }
   
+  /** @return the number of edits held by this manager (both undoable and redoable ones) */
+  public synchronized int getEditCount() { return edits.size(); }
+  
+  /** @return the arena holding the text of the edits in this history */
+  public UndoTextArena getTextArena() { return _textArena; }
+  
+  /** Estimates the heap space occupied by this history.  Like DefinitionsDocument.getFootprintEstimate(), the estimate
+    * is only meant to weigh histories against each other and against their cap.
+    * @return the estimated size of this history in bytes
+    */
+  public long getFootprintEstimate() {
+    return (long) BYTES_PER_EVENT * (_eventCount + _pendingEventCount) + (long) BYTES_PER_CHAR * _textArena.size();
+  }
+  
   /** Gets the next redo.
     * @return the next redo
     */
@@ -153,10 +213,11 @@ public class CompoundUndoManager extends UndoManager {
   public /* synchronized */ boolean addEdit(UndoableEdit e) {
     if (_compoundEditInProgress()) {
       //      _notifyUndoHappened(); // added this for granular undo
+      _pendingEventCount++;
       return _compoundEdits.get(0).addEdit(e);
     }
     else {
-      boolean result = super.addEdit(e);
+      boolean result = _addToHistory(e, 1);
       _notifyUndoHappened();
       return result;
     }
@@ -171,8 +232,8 @@ public class CompoundUndoManager extends UndoManager {
     * @return true iff undoing is possible
     */
   public /* synchronized */ boolean canUndo() {
-    LOG.log("canUndo: _compoundEditInProgress() = "+_compoundEditInProgress()+", super.canUndo() = "+super.canUndo());
-    LOG.log("    "+_compoundEdits);
+    LOG.log("canUndo: _compoundEditInProgress() = %s, super.canUndo() = %s", _compoundEditInProgress(), super.canUndo());
+    LOG.log("    %s", _compoundEdits);
     return _compoundEditInProgress() || super.canUndo(); }
   
   /** Returns the presentation name for this undo, or delegates to super if none is available
@@ -249,6 +310,107 @@ public class CompoundUndoManager extends UndoManager {
     return editToBeUndone() != _savePoint; 
   }
   
+  /** Adds a completed edit to the history, then enforces the cap on the size of all histories.
+    * @param e the edit to add
+    * @param eventCount the number of document events held by e
+    * @return true if the add is successful, false otherwise
+    */
+  private boolean _addToHistory(UndoableEdit e, int eventCount) {
+    boolean result;
+    synchronized(this) {
+      // the info is added first so that it is discarded along with e if super.addEdit trims e for the limit
+      _editInfos.add(new EditInfo(_pendingTextStart, eventCount));
+      _eventCount += eventCount;
+      result = super.addEdit(e);
+      while (_editInfos.size() > edits.size()) _eventCount -= _editInfos.removeLast()._eventCount;
+      _pendingTextStart = _textArena.getEnd();
+    }
+    _enforceTotalLimit();
+    return result;
+  }
+  
+  /** Removes edits from the history along with their text.  Overrides the method in UndoManager, which calls it when
+    * the history exceeds its limit and when the edits that could be redone are replaced by a new edit.
+    */
+  protected void trimEdits(int from, int to) {
+    boolean initialStateLost = from == 0 && to >= from && _indexOfNextAdd() > 0;
+    super.trimEdits(from, to);
+    if (from > to) return;
+    if (initialStateLost && _savePoint == null) _savePoint = UNREACHABLE_STATE;
+    for (int i = Math.min(to, _editInfos.size() - 1); i >= from; i--) _eventCount -= _editInfos.remove(i)._eventCount;
+    _discardText();
+  }
+  
+  /** Empties the history along with its text. */
+  public synchronized void discardAllEdits() {
+    super.discardAllEdits();
+    _editInfos.clear();
+    _eventCount = 0;
+    _discardText();
+  }
+  
+  /** @return the index in edits following the edit that would be undone next (indexOfNextAdd is package private) */
+  private int _indexOfNextAdd() { return edits.indexOf(editToBeUndone()) + 1; }
+  
+  /** Drops the text that precedes the text of the oldest edit in the history (or of the edits in progress). */
+  private void _discardText() {
+    _textArena.discardBefore(_editInfos.isEmpty() ? _pendingTextStart : _editInfos.getFirst()._textStart);
+  }
+  
+  /** Discards the oldest edit in this history, always keeping the edit that would be undone next.  If only edits that
+    * could be redone remain beyond that edit, the last of them is discarded instead.
+    * @return true if an edit was discarded
+    */
+  private synchronized boolean _trimOldestEdit() {
+    int size = edits.size();
+    if (size <= 1) return false;
+    if (_indexOfNextAdd() > 1) trimEdits(0, 0);
+    else trimEdits(size - 1, size - 1);
+    return true;
+  }
+  
+  /** Trims the largest histories until the estimated size of all histories is within _maxTotalFootprint.  No history
+    * lock is held while another history is trimmed.
+    */
+  private static void _enforceTotalLimit() {
+    CompoundUndoManager[] managers = _managers.toArray(new CompoundUndoManager[0]);
+    long[] footprints = new long[managers.length];
+    long total = 0;
+    for (int i = 0; i < managers.length; i++) {
+      footprints[i] = managers[i].getFootprintEstimate();
+      total += footprints[i];
+    }
+    while (total > _maxTotalFootprint) {
+      int largest = -1;
+      for (int i = 0; i < managers.length; i++) {
+        if (footprints[i] >= 0 && (largest < 0 || footprints[i] > footprints[largest])) largest = i;
+      }
+      if (largest < 0) return;  // every history is down to a single edit
+      CompoundUndoManager m = managers[largest];
+      if (m._trimOldestEdit()) {
+        long footprint = m.getFootprintEstimate();
+        total -= footprints[largest] - footprint;
+        footprints[largest] = footprint;
+      }
+      else footprints[largest] = -1;
+    }
+  }
+  
+  /** Sets the cap on the estimated size of the undo histories of all documents; used in tests.
+    * @param max the cap in bytes
+    */
+  static void setMaxTotalFootprint(long max) { _maxTotalFootprint = max; }
+  
+  /** Where the text of an edit in the history starts, and how many document events the edit holds. */
+  private static class EditInfo {
+    private final int _textStart;
+    private final int _eventCount;
+    EditInfo(int textStart, int eventCount) {
+      _textStart = textStart;
+      _eventCount = eventCount;
+    }
+  }
+  
   public String toString() { return "(CompoundUndoManager: " + id + ")"; }
   
   /** Used to help track down memory leaks. */
@@ -47,7 +47,6 @@ import java.util.WeakHashMap;
 import java.lang.ref.WeakReference;
 
 import java.io.Reader;
-import java.io.StringReader;
 import java.io.IOException;
 
 import koala.dynamicjava.parser.impl.Parser;
@@ -130,6 +129,12 @@ public class DefinitionsDocument extends AbstractDJDocument implements Finalizab
   /** List with weak references to positions. */
   private volatile LinkedList<WeakReference<WrappedPosition>> _wrappedPosList;
   
+  /** The number of changes made to the text of this document, including undos and redos. */
+  private volatile long _revision = 0;
+  
+  /** The outline of the current revision, or of an earlier one if it has not been requested since the last change. */
+  private volatile DocumentOutline _outline = new DocumentOutline(0);
+  
   /** Root constructor that other constructors call; not used directly
    * @param indenter custom indenter class
    * @param notifier used by CompoundUndoManager to announce undoable edits
@@ -324,6 +329,35 @@ public class DefinitionsDocument extends AbstractDJDocument implements Finalizab
     }    
   }
   
+  /** Advances the revision of this document, which discards its outline, and clears the query cache.  Called by 
+    * every command that modifies the reduced model.
+    * @param offset the offset of the change
+    */
+  protected void _clearCache(int offset) {
+    _revision++;
+    super._clearCache(offset);
+  }
+  
+  /** @return the number of changes made to the text of this document; identifies the current text */
+  public long getRevision() { return _revision; }
+  
+  /** @return the outline of the current revision of this document, whose entries are filled in as they are computed */
+  public DocumentOutline getOutline() {
+    DocumentOutline outline = _outline;
+    long revision = _revision;
+    if (outline.getRevision() != revision) {
+      outline = new DocumentOutline(revision);
+      _outline = outline;
+    }
+    return outline;
+  }
+  
+  /** Adopts the facts recorded in an outline of the same text, such as the outline of the document that this one was
+    * reconstructed from.
+    * @param outline an outline of a document with the same text as this one
+    */
+  public void restoreOutline(DocumentOutline outline) { _outline = new DocumentOutline(_revision, outline); }
+  
   /** Resets the modification state of this document.  Used after a document has been saved or reverted. */
   public void resetModification() {
     _isModifiedSinceSave = false;
@@ -506,13 +540,12 @@ public class DefinitionsDocument extends AbstractDJDocument implements Finalizab
 //    Utilities.show("Uncomment line at location " + _currentLocation);
 //    Utilities.show("Preceding char = '" + getText().charAt(_currentLocation - 1) + "'");
 //    Utilities.show("Line = \n" + getText(_currentLocation, getLineEndPos(_currentLocation) - _currentLocation + 1));
-    int pos1 = getText().indexOf("//", _currentLocation);  // TODO: get text of current line instead of whole document
-    if (pos1 < 0) return NO_COMMENT_OFFSET;
-    int pos2 = getFirstNonWSCharPos(_currentLocation, true);
-//    Utilities.show("Pos1 = " + pos1 + " Pos2 = " + pos2);
-    if (pos1 != pos2) return NO_COMMENT_OFFSET;
+    int pos = getFirstNonWSCharPos(_currentLocation, true);
+    if (pos < 0 || pos + 2 > getLength()) return NO_COMMENT_OFFSET;
+    CharSequence prefix = getCharSequence(pos, 2);  // avoid copying the whole document for every line
+    if (prefix.charAt(0) != '/' || prefix.charAt(1) != '/') return NO_COMMENT_OFFSET;
     
-    remove(pos1, 2);
+    remove(pos, 2);
     return WING_COMMENT_OFFSET;
   }
   
@@ -850,14 +883,28 @@ public class DefinitionsDocument extends AbstractDJDocument implements Finalizab
   }
   
   /** Gets the package name embedded in the text of this document by minimally parsing the document to find the
-    * package statement.  If package statement is not found or is ill-formed, returns "" as the package name.
+    * package statement.  If package statement is not found or is ill-formed, returns "" as the package name.  The
+    * result is remembered in the outline of the current revision.
     * @return the name of package embedded in this document.  If there is no well-formed package statement, 
     * returns "" as the package name.
     */
   public String getPackageName() {
+    DocumentOutline outline = getOutline();
+    String name = outline.getPackageName();
+    if (name == null) {
+      name = _parsePackageName();
+      outline.setPackageName(name);
+    }
+    return name;
+  }
+  
+  /** Parses the package statement at the start of the document.  The parser reads the text through a PrefixReader, so 
+    * only the first few thousand characters are copied out of the document rather than all of it.
+    * @return the name of the declared package, or "" if there is no well-formed package statement
+    */
+  private String _parsePackageName() {
     // assert EventQueue.isDispatchThread();
-    Reader r;
-    r = new StringReader(getText()); // getText() is cheap if document is not resident
+    Reader r = new PrefixReader();
     try { return new Parser(r).packageDeclaration(Parser.DeclType.TOP).getName(); }
     catch (ParseException e) { return ""; }
     // addresses bug [ 1815387 ] Editor should discard parse errors for now
@@ -877,6 +924,24 @@ public class DefinitionsDocument extends AbstractDJDocument implements Finalizab
     }
   }
   
+  /** Reads the text of this document from the start, copying it out of the document as the reader consumes it. */
+  private class PrefixReader extends Reader {
+    private final Segment _segment = new Segment();
+    private int _pos = 0;
+    
+    public int read(char[] buf, int off, int len) throws IOException {
+      int n = Math.min(len, getLength() - _pos);
+      if (n <= 0) return (len == 0) ? 0 : -1;
+      try { getText(_pos, n, _segment); }
+      catch (BadLocationException e) { throw new UnexpectedException(e); }
+      System.arraycopy(_segment.array, _segment.offset, buf, off, _segment.count);
+      _pos += _segment.count;
+      return _segment.count;
+    }
+    
+    public void close() { }
+  }
+  
   /** Returns the index of the anonymous inner class being instantiated at the 
    * specified position (where openining brace
    * for anonymous inner class is pos).  Only runs in event thread.
@@ -1051,6 +1116,21 @@ public class DefinitionsDocument extends AbstractDJDocument implements Finalizab
    * @throws ClassNameNotFoundException if the class name is not found
    */
   public String getMainClassName() throws ClassNameNotFoundException {
+    DocumentOutline outline = getOutline();
+    String name = outline.getMainClassName();
+    if (name == null) {
+      try { name = _findMainClassName(); }
+      catch (ClassNameNotFoundException e) { outline.setMainClassName(null); throw e; }
+      outline.setMainClassName(name);
+    }
+    return name;
+  }
+  
+  /** Scans the document for the main class; see getMainClassName.
+    * @return the name of the main class 
+    * @throws ClassNameNotFoundException if the class name is not found
+    */
+  private String _findMainClassName() throws ClassNameNotFoundException {
     final int oldPos = _currentLocation;
     
     try {
@@ -1091,7 +1171,14 @@ public class DefinitionsDocument extends AbstractDJDocument implements Finalizab
     * @throws ClassNameNotFoundException if no top level class found
     */
   public String getFirstTopLevelClassName() throws ClassNameNotFoundException {
-    return getNextTopLevelClassName(0, getLength());
+    DocumentOutline outline = getOutline();
+    String name = outline.getFirstTopLevelClassName();
+    if (name == null) {
+      try { name = getNextTopLevelClassName(0, getLength()); }
+      catch (ClassNameNotFoundException e) { outline.setFirstTopLevelClassName(null); throw e; }
+      outline.setFirstTopLevelClassName(name);
+    }
+    return name;
   }
   
   // note: need to update this to work with pos
@@ -1323,6 +1410,24 @@ public class DefinitionsDocument extends AbstractDJDocument implements Finalizab
     public boolean isSignificant() { return false; }
   }
   
+  /* Rough per-item heap costs used by getFootprintEstimate(). */
+  private static final int BYTES_PER_CHAR = 2;
+  private static final int BYTES_PER_LINE = 160;       // leaf element, attribute set and two positions
+  private static final int BYTES_PER_TOKEN = 96;       // reduced model token and its list node
+  
+  /** Estimates the heap space occupied by this document: its text and line structure, its reduced model, and its undo
+    * history.  The estimate is only meant to weigh documents against each other in the DocumentCache; it does not 
+    * acquire any locks and may be slightly stale.
+    * @return the estimated size of this document in bytes
+    */
+  public long getFootprintEstimate() {
+    CompoundUndoManager undoManager = _undoManager;
+    return (long) BYTES_PER_CHAR * getLength() 
+      + (long) BYTES_PER_LINE * getDefaultRootElement().getElementCount()
+      + (long) BYTES_PER_TOKEN * _reduced.getTokenCount()
+      + (undoManager == null ? 0 : undoManager.getFootprintEstimate());
+  }
+  
   /** Getter method for CompoundUndoManager
     * @return _undoManager
     */
@@ -1354,6 +1459,14 @@ public class DefinitionsDocument extends AbstractDJDocument implements Finalizab
     chng.addEdit(new CommandUndoableEdit(undoCommand, doCommand));    
   }
   
+  /** Edits only reach the undo manager through an UndoableEditListener (see DefinitionsPane), so the text of edits made
+    * while no listener is attached is not stored in the arena.
+    * @return the arena of the undo manager, or null if no listener is attached
+    */
+  protected UndoTextArena getUndoTextArena() {
+    return (getUndoableEditListeners().length == 0) ? null : _undoManager.getTextArena();
+  }
+  
   
   /** Formerly used to call editToBeUndone and editToBeRedone since they are protected methods in UndoManager. */
 //  private class OurUndoManager extends UndoManager {
@@ -40,6 +40,7 @@ import edu.rice.cs.drjava.DrJava;
 import edu.rice.cs.drjava.DrJavaTestCase;
 import edu.rice.cs.drjava.config.OptionConstants;
 import edu.rice.cs.drjava.model.GlobalEventNotifier;
+import edu.rice.cs.drjava.model.HighlightRunCache;
 import edu.rice.cs.drjava.model.definitions.reducedmodel.BraceReduction;
 import edu.rice.cs.drjava.model.definitions.reducedmodel.HighlightStatus;
 import edu.rice.cs.drjava.model.definitions.reducedmodel.ReducedModelStates;
@@ -50,6 +51,7 @@ import junit.framework.Test;
 import junit.framework.TestSuite;
 
 import javax.swing.text.BadLocationException;
+import java.util.Arrays;
 import java.util.List;
 
 /** Tests the functionality of the definitions document.
@@ -290,6 +292,56 @@ public final class DefinitionsDocumentTest extends DrJavaTestCase implements Red
     assertEquals(2, v.get(0).getLength());
   }
   
+  /** Tests that the highlight runs of a line are cached for painting and recomputed after an edit. */
+  public void testHighlightRunCache() {
+    Utilities.invokeAndWait(new Runnable() {
+      public void run() {
+        try {
+          final String s = "public class Foo {\n" +
+            "  private int _x = 0;\n" +
+            "}";
+          _doc.insertString(0, s, null);
+          HighlightRunCache cache = _doc.getHighlightRuns();
+          cache.resetCounters();
+          
+          int line2 = s.indexOf('\n') + 1;
+          int[] runs = cache.runsAt(line2 + 3);
+          assertEquals("line computed", 1, cache.getPaintMisses());
+          
+          // the runs cover the line, including the newline: "  ", "private", " ", "int", " _x = ", "0", ";\n"
+          int[] expected = { 
+            line2, 2, HighlightStatus.NORMAL, 
+            line2 + 2, 7, HighlightStatus.KEYWORD, 
+            line2 + 9, 1, HighlightStatus.NORMAL, 
+            line2 + 10, 3, HighlightStatus.TYPE, 
+            line2 + 13, 6, HighlightStatus.NORMAL, 
+            line2 + 19, 1, HighlightStatus.NUMBER,
+            line2 + 20, 2, HighlightStatus.NORMAL
+          };
+          assertTrue("runs of line 2", Arrays.equals(expected, runs));
+          
+          // painting the line again finds it cached
+          assertSame("cached runs", runs, cache.runsAt(line2));
+          assertEquals("no line computed", 1, cache.getPaintMisses());
+          assertEquals("cache hit", 1, cache.getPaintHits());
+          
+          // an edit on the first line invalidates the following lines
+          int[] first = cache.runsAt(0);
+          _doc.insertString(0, "/*", null);
+          assertNotSame("line recomputed", first, cache.runsAt(0));
+          int[] commented = cache.runsAt(line2 + 2);
+          assertEquals("whole line commented", 3, commented.length);
+          assertEquals(HighlightStatus.COMMENTED, commented[2]);
+          
+          // an edit on the last line leaves the earlier lines cached
+          _doc.insertString(_doc.getLength(), "*/", null);
+          assertSame("earlier line kept", commented, cache.runsAt(line2 + 2));
+        }
+        catch(BadLocationException e) { throw new UnexpectedException(e); }
+      }
+    });
+  }
+  
   /** Test going to the second line in a two-line document.
    * @throws BadLocationException if attempts to reference an invalid location
    */
@@ -588,6 +640,108 @@ public final class DefinitionsDocumentTest extends DrJavaTestCase implements Red
     }
   }
   
+  /** Tests that the package and class names are remembered in the outline of a revision until the text changes.
+   * @throws BadLocationException if attempts to reference an invalid location
+   * @throws ClassNameNotFoundException if the class cannot be found
+   */
+  public void testOutlineCachedPerRevision() throws BadLocationException, ClassNameNotFoundException {
+    StringBuilder body = new StringBuilder();
+    for (int i = 0; i < 1000; i++) body.append("  int x" + i + ";\n");  // longer than the parser's buffer
+    _doc.insertString(0, "package edu.rice;\n\nclass Bar { }\npublic class Foo {\n" + body + "}\n", null);
+    
+    long revision = _doc.getRevision();
+    DocumentOutline outline = _doc.getOutline();
+    assertEquals("outline revision", revision, outline.getRevision());
+    assertNull("package not yet computed", outline.getPackageName());
+    assertEquals("package name", "edu.rice", _doc.getPackageName());
+    assertEquals("main class name", "Foo", _doc.getMainClassName());
+    assertEquals("first class name", "Bar", _doc.getFirstTopLevelClassName());
+    assertSame("same revision, same outline", outline, _doc.getOutline());
+    assertEquals("qualified name from outline", "edu.rice.Foo", outline.getQualifiedClassName());
+    
+    _doc.remove(_doc.getText().indexOf(".rice"), ".rice".length());
+    assertTrue("edit advances revision", _doc.getRevision() > revision);
+    assertNotSame("new outline after edit", outline, _doc.getOutline());
+    assertEquals("package name after edit", "edu", _doc.getPackageName());
+    assertEquals("qualified name after edit", "edu.Foo", _doc.getQualifiedClassName());
+    assertEquals("old outline unchanged", "edu.rice", outline.getPackageName());
+    
+    _doc.remove(0, _doc.getLength());
+    try {
+      _doc.getMainClassName();
+      fail("no class in empty document");
+    }
+    catch (ClassNameNotFoundException e) { /* expected */ }
+    try {
+      _doc.getOutline().getMainClassName();
+      fail("outline should record that there is no class");
+    }
+    catch (ClassNameNotFoundException e) { /* expected */ }
+  }
+  
+  /** Tests that undo and redo keep the reduced model in sync when the undo history keeps the text of edits in its
+   * arena, and that consecutive typing is stored as a single run of the arena.
+   * @throws BadLocationException if attempts to reference an invalid location
+   */
+  public void testUndoTextArena() throws BadLocationException {
+    CompoundUndoManager undoManager = _doc.getUndoManager();
+    UndoTextArena arena = undoManager.getTextArena();
+    _doc.addUndoableEditListener(undoManager);
+    
+    String text = "int x; /* comment */ int y;";
+    int key = undoManager.startCompoundEdit();
+    for (int i = 0; i < text.length(); i++) _doc.insertString(i, text.substring(i, i + 1), null);
+    undoManager.endCompoundEdit(key);
+    assertEquals("typing stored as one run", text, arena.getText(arena.getStart(), arena.size()));
+    
+    int commentStart = text.indexOf("/*");
+    _doc.remove(commentStart, 2);
+    assertEquals("removed text appended", text + "/*", arena.getText(arena.getStart(), arena.size()));
+    _doc.setCurrentLocation(commentStart + 3);
+    assertEquals("comment opener removed", FREE, _doc.getStateAtCurrent());
+    
+    undoManager.undo();
+    Utilities.clearEventQueue();
+    assertEquals("undo removal", text, _doc.getText());
+    _doc.setCurrentLocation(commentStart + 3);
+    assertEquals("comment restored by undo", INSIDE_BLOCK_COMMENT, _doc.getStateAtCurrent());
+    
+    undoManager.undo();
+    Utilities.clearEventQueue();
+    assertEquals("undo typing", "", _doc.getText());
+    
+    undoManager.redo();
+    undoManager.redo();
+    Utilities.clearEventQueue();
+    assertEquals("redo typing and removal", "int x;  comment */ int y;", _doc.getText());
+    _doc.setCurrentLocation(commentStart + 3);
+    assertEquals("comment removed by redo", FREE, _doc.getStateAtCurrent());
+  }
+  
+  /** Tests that the undo history is trimmed, along with the text in its arena, once the histories of all documents
+   * exceed their cap.
+   * @throws BadLocationException if attempts to reference an invalid location
+   */
+  public void testUndoHistoryCap() throws BadLocationException {
+    CompoundUndoManager undoManager = _doc.getUndoManager();
+    UndoTextArena arena = undoManager.getTextArena();
+    _doc.addUndoableEditListener(undoManager);
+    
+    CompoundUndoManager.setMaxTotalFootprint(0);
+    try {
+      for (int i = 0; i < 10; i++) _doc.insertString(_doc.getLength(), "line " + i + "\n", null);
+      assertEquals("only the latest edit is kept", 1, undoManager.getEditCount());
+      assertEquals("text of discarded edits dropped", "line 9\n", arena.getText(arena.getStart(), arena.size()));
+      
+      undoManager.undo();
+      Utilities.clearEventQueue();
+      assertEquals("latest edit undone", 9 * "line 0\n".length(), _doc.getLength());
+      assertFalse("discarded edits cannot be undone", undoManager.canUndo());
+      assertTrue("unedited state is no longer reachable", undoManager.isModified());
+    }
+    finally { CompoundUndoManager.setMaxTotalFootprint(CompoundUndoManager.DEFAULT_MAX_TOTAL_FOOTPRINT); }
+  }
+  
   /** Test package-finding on document with a block comment between parts of package.
    * @throws BadLocationException if attempts to reference an invalid location
    * @throws InvalidPackageException if the package is invalid
@@ -1260,6 +1414,29 @@ public final class DefinitionsDocumentTest extends DrJavaTestCase implements Red
     assertFalse("Document should no longer be modified after redo.", _doc.isModifiedSinceSave());
   }
   
+  /** Verifies that cached query results are dropped by edits to the text they depend on and by nothing else.
+   * @throws BadLocationException if attempts to reference an invalid location
+   */
+  public void testQueryCacheInvalidation() throws BadLocationException {
+    _doc.insertString(0, "class A {\n  int x\n}", null);
+    assertEquals("#0.0", 8, _doc.findPrevEnclosingBrace(14, '{', '}'));
+    assertEquals("#0.1", -1, _doc.findCharOnLine(12, ';'));
+    
+    // A failed search depends on the text after the query position as well
+    _doc.insertString(17, ";", null);
+    assertEquals("#1.0", 17, _doc.findCharOnLine(12, ';'));
+    
+    // Edits after the text that a query examined do not change its answer
+    _doc.insertString(_doc.getLength(), "\n// end", null);
+    assertEquals("#2.0", 8, _doc.findPrevEnclosingBrace(14, '{', '}'));
+    
+    // An edit before the query position invalidates the cached answer
+    _doc.insertString(10, "{", null);
+    assertEquals("#3.0", 10, _doc.findPrevEnclosingBrace(14, '{', '}'));
+    _doc.remove(10, 1);
+    assertEquals("#3.1", 8, _doc.findPrevEnclosingBrace(14, '{', '}'));
+  }
+  
   protected static final String NEWLINE = "\n"; // Was StringOps.EOL;but swing usees '\n' for newLine
   
   protected static final String NESTED_CLASSES_TEXT =
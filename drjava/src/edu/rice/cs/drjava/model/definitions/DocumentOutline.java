@@ -0,0 +1,109 @@
+/*BEGIN_COPYRIGHT_BLOCK
+ *
+ * Copyright (c) 2001-2016, JavaPLT group at Rice University (drjava@rice.edu)
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *    * Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the names of DrJava, the JavaPLT group, Rice University, nor the
+ *      names of its contributors may be used to endorse or promote products
+ *      derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * This software is Open Source Initiative approved Open Source Software.
+ * Open Source Initative Approved is a trademark of the Open Source Initiative.
+ * 
+ * This file is part of DrJava.  Download the current version of this project
+ * from http://www.drjava.org/ or http://sourceforge.net/projects/drjava/
+ * 
+ * END_COPYRIGHT_BLOCK*/
+
+package edu.rice.cs.drjava.model.definitions;
+
+/** The structural facts about one revision of a DefinitionsDocument that are asked for repeatedly by the global model,
+  * the compiler and JUnit models, and project save: the package name and the names of the main and first top-level
+  * classes.  Each fact is computed by the document when it is first requested and is then remembered until the text
+  * changes, at which point the document starts a new outline (see {@link DefinitionsDocument#getOutline}).  An outline
+  * remains correct for as long as its revision of the text does, so it can answer for a document that has been evicted
+  * from the document cache, which only evicts unmodified documents.
+  */
+public class DocumentOutline {
+  
+  /** Recorded for a class name that the document does not declare.  Compared by identity. */
+  private static final String NOT_FOUND = new String("");
+  
+  private final long _revision;
+  
+  /* Each fact is null until it has been computed. */
+  private volatile String _packageName = null;
+  private volatile String _mainClassName = null;
+  private volatile String _firstClassName = null;
+  
+  /** @param revision the revision of the document described by this outline */
+  DocumentOutline(long revision) { _revision = revision; }
+  
+  /** @param revision the revision of the document described by this outline
+    * @param facts an outline of a document with the same text, whose facts are copied
+    */
+  DocumentOutline(long revision, DocumentOutline facts) {
+    _revision = revision;
+    _packageName = facts._packageName;
+    _mainClassName = facts._mainClassName;
+    _firstClassName = facts._firstClassName;
+  }
+  
+  /** @return the revision of the document described by this outline; see {@link DefinitionsDocument#getRevision} */
+  public long getRevision() { return _revision; }
+  
+  /** @return the package name, "" for the default package, or null if it has not been computed */
+  public String getPackageName() { return _packageName; }
+  
+  /** @return the name of the main class, or null if it has not been computed
+    * @throws ClassNameNotFoundException if the document was found to declare no top-level class
+    */
+  public String getMainClassName() throws ClassNameNotFoundException { return _found(_mainClassName); }
+  
+  /** @return the name of the first top-level class, or null if it has not been computed
+    * @throws ClassNameNotFoundException if the document was found to declare no top-level class
+    */
+  public String getFirstTopLevelClassName() throws ClassNameNotFoundException { return _found(_firstClassName); }
+  
+  /** @return the qualified name of the main class, or null if the package or main class has not been computed
+    * @throws ClassNameNotFoundException if the document was found to declare no top-level class
+    */
+  public String getQualifiedClassName() throws ClassNameNotFoundException {
+    String packageName = _packageName;
+    String mainClassName = getMainClassName();
+    if (packageName == null || mainClassName == null) return null;
+    return (packageName.equals("")) ? mainClassName : packageName + "." + mainClassName;
+  }
+  
+  void setPackageName(String name) { _packageName = name; }
+  
+  /** @param name the name of the main class, or null if there is none */
+  void setMainClassName(String name) { _mainClassName = (name == null) ? NOT_FOUND : name; }
+  
+  /** @param name the name of the first top-level class, or null if there is none */
+  void setFirstTopLevelClassName(String name) { _firstClassName = (name == null) ? NOT_FOUND : name; }
+  
+  private static String _found(String name) throws ClassNameNotFoundException {
+    if (name == NOT_FOUND) throw ClassNameNotFoundException.DEFAULT;
+    return name;
+  }
+}
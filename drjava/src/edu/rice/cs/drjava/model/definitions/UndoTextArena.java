@@ -0,0 +1,153 @@
+/*BEGIN_COPYRIGHT_BLOCK
+ *
+ * Copyright (c) 2001-2016, JavaPLT group at Rice University (drjava@rice.edu)
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *    * Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the names of DrJava, the JavaPLT group, Rice University, nor the
+ *      names of its contributors may be used to endorse or promote products
+ *      derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * This software is Open Source Initiative approved Open Source Software.
+ * Open Source Initative Approved is a trademark of the Open Source Initiative.
+ * 
+ * This file is part of DrJava.  Download the current version of this project
+ * from http://www.drjava.org/ or http://sourceforge.net/projects/drjava/
+ * 
+ * END_COPYRIGHT_BLOCK*/
+
+package edu.rice.cs.drjava.model.definitions;
+
+/** An append-only store for the text of a document's undo history.  Rather than holding a String of its own, each
+  * undoable edit records where its inserted or removed text starts in the arena, so consecutive typing fills a single
+  * contiguous run of chars instead of allocating a String per keystroke.  Positions are absolute: they remain valid
+  * when the text of edits that have been discarded from the history is dropped from the front of the arena.  The
+  * methods are synchronized because a CompoundUndoManager may trim its history on behalf of another document.
+  * @version $Id$
+  */
+public class UndoTextArena {
+  
+  private static final int INITIAL_CAPACITY = 256;
+  
+  /** The stored chars; _chars[i] is the char at absolute position _base + i. */
+  private char[] _chars;
+  
+  /** The absolute position of _chars[0]. */
+  private int _base;
+  
+  /** The absolute position of the first char that has not been discarded. */
+  private volatile int _start;
+  
+  /** The absolute position following the last char appended. */
+  private volatile int _end;
+  
+  public UndoTextArena() {
+    _chars = new char[INITIAL_CAPACITY];
+    _base = 0;
+    _start = 0;
+    _end = 0;
+  }
+  
+  /** Appends the given text to the arena.
+    * @param text the text to append
+    * @return the absolute position of the first appended char
+    */
+  public synchronized int append(CharSequence text) {
+    int length = text.length();
+    _ensureCapacity(length);
+    int pos = _end - _base;
+    if (text instanceof String) ((String) text).getChars(0, length, _chars, pos);
+    else for (int i = 0; i < length; i++) _chars[pos + i] = text.charAt(i);
+    int result = _end;
+    _end += length;
+    return result;
+  }
+  
+  /** @param pos an absolute position that has not been discarded
+    * @return the char at pos
+    */
+  public synchronized char charAt(int pos) {
+    _checkRange(pos, 1);
+    return _chars[pos - _base];
+  }
+  
+  /** @param pos the absolute position of the first char
+    * @param length the number of chars
+    * @return the text of the given range, which must not have been discarded
+    */
+  public synchronized String getText(int pos, int length) {
+    _checkRange(pos, length);
+    return new String(_chars, pos - _base, length);
+  }
+  
+  /** @return the absolute position of the first char that has not been discarded */
+  public synchronized int getStart() { return _start; }
+  
+  /** @return the absolute position at which the next appended text will start */
+  public synchronized int getEnd() { return _end; }
+  
+  /** @return the number of chars held by this arena; does not lock the arena, so the result may be slightly stale */
+  public int size() { return _end - _start; }
+  
+  /** Discards all text before the given absolute position.  The storage is compacted only once the discarded text makes
+    * up half of it, so discarding the text of one edit at a time takes amortized constant time per char.
+    * @param pos the absolute position of the first char to keep
+    */
+  public synchronized void discardBefore(int pos) {
+    if (pos <= _start) return;
+    _start = Math.min(pos, _end);
+    int used = _end - _base;
+    if (_start - _base >= used / 2) {
+      int size = _end - _start;
+      char[] chars = _chars;
+      if (size < chars.length / 4 && chars.length > INITIAL_CAPACITY) {
+        chars = new char[Math.max(INITIAL_CAPACITY, chars.length / 2)];
+      }
+      System.arraycopy(_chars, _start - _base, chars, 0, size);
+      _chars = chars;
+      _base = _start;
+    }
+  }
+  
+  /** Makes room for the given number of additional chars, first reclaiming any discarded text. */
+  private void _ensureCapacity(int length) {
+    int size = _end - _start;
+    if (_end - _base + length <= _chars.length) return;
+    char[] chars = _chars;
+    if (size + length > chars.length) {
+      int capacity = chars.length;
+      while (capacity < size + length) capacity *= 2;
+      chars = new char[capacity];
+    }
+    System.arraycopy(_chars, _start - _base, chars, 0, size);
+    _chars = chars;
+    _base = _start;
+  }
+  
+  private void _checkRange(int pos, int length) {
+    if (pos < _start || length < 0 || pos + length > _end) {
+      throw new IllegalArgumentException("Range [" + pos + ", " + (pos + length) + ") is not held by the arena [" +
+                                         _start + ", " + _end + ")");
+    }
+  }
+  
+  public String toString() { return "(UndoTextArena: [" + _start + ", " + _end + "))"; }
+}
@@ -0,0 +1,101 @@
+/*BEGIN_COPYRIGHT_BLOCK
+ *
+ * Copyright (c) 2001-2016, JavaPLT group at Rice University (drjava@rice.edu)
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *    * Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the names of DrJava, the JavaPLT group, Rice University, nor the
+ *      names of its contributors may be used to endorse or promote products
+ *      derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * This software is Open Source Initiative approved Open Source Software.
+ * Open Source Initative Approved is a trademark of the Open Source Initiative.
+ * 
+ * This file is part of DrJava.  Download the current version of this project
+ * from http://www.drjava.org/ or http://sourceforge.net/projects/drjava/
+ * 
+ * END_COPYRIGHT_BLOCK*/
+
+package edu.rice.cs.drjava.model.definitions;
+
+import edu.rice.cs.drjava.DrJavaTestCase;
+
+/** Tests the storage and discarding of text in UndoTextArena.
+  * @version $Id$
+  */
+public final class UndoTextArenaTest extends DrJavaTestCase {
+  
+  public void testAppendAndGet() {
+    UndoTextArena arena = new UndoTextArena();
+    assertEquals("first position", 0, arena.append("hello"));
+    assertEquals("appended at end", 5, arena.append(new StringBuilder(" world")));
+    assertEquals("size", 11, arena.size());
+    assertEquals("whole text", "hello world", arena.getText(0, 11));
+    assertEquals("part of text", "o w", arena.getText(4, 3));
+    assertEquals("char", 'w', arena.charAt(6));
+  }
+  
+  public void testGrowth() {
+    UndoTextArena arena = new UndoTextArena();
+    StringBuilder expected = new StringBuilder();
+    for (int i = 0; i < 1000; i++) {
+      String s = "edit " + i + ";";
+      assertEquals("position of edit " + i, expected.length(), arena.append(s));
+      expected.append(s);
+    }
+    assertEquals("text after growth", expected.toString(), arena.getText(0, expected.length()));
+  }
+  
+  public void testDiscard() {
+    UndoTextArena arena = new UndoTextArena();
+    StringBuilder expected = new StringBuilder();
+    int[] starts = new int[1000];
+    for (int i = 0; i < starts.length; i++) {
+      String s = "edit " + i + ";";
+      starts[i] = arena.append(s);
+      expected.append(s);
+    }
+    for (int i = 0; i < starts.length - 1; i++) {
+      arena.discardBefore(starts[i + 1]);
+      assertEquals("start after discarding edit " + i, starts[i + 1], arena.getStart());
+      assertEquals("text after discarding edit " + i, expected.substring(starts[i + 1]),
+                   arena.getText(starts[i + 1], expected.length() - starts[i + 1]));
+    }
+    assertEquals("positions stay absolute", "edit 999;", arena.getText(starts[999], "edit 999;".length()));
+    
+    arena.discardBefore(0);
+    assertEquals("discarding is not undone", starts[999], arena.getStart());
+    assertEquals("append after discarding", expected.length(), arena.append("more"));
+    assertEquals("text after discarding and appending", "edit 999;more",
+                 arena.getText(starts[999], arena.size()));
+    
+    try {
+      arena.getText(starts[998], 1);
+      fail("discarded text should not be available");
+    }
+    catch (IllegalArgumentException e) { /* expected */ }
+    try {
+      arena.charAt(arena.getEnd());
+      fail("text past the end should not be available");
+    }
+    catch (IllegalArgumentException e) { /* expected */ }
+  }
+}
@@ -70,41 +70,22 @@ public abstract class AbstractReducedModel implements ReducedModelStates {
     */
   void setBlockOffset(int offset) { _cursor.setBlockOffset(offset); }
   
-  /** Absolute offset for testing purposes. We don't keep track of absolute 
-   * offset as it causes too much confusion and trouble.
+  /** Absolute offset of the cursor.
    * @return the absolute offset of the cursor
    */
   public int absOffset() { return absOffset(_cursor); }
   
-  /** Absolute offset of the specified iterator.  Inefficient so only used for testing purposes. 
+  /** Absolute offset of the specified iterator.  Takes time logarithmic in the number of tokens.
    * @param cursor the cursor for which to get the offset
    * @return the absolute offset of the cursor
    */
-  public int absOffset(TokenList.Iterator cursor) {
-    int off = cursor.getBlockOffset();
-    TokenList.Iterator it = cursor.copy();
-    if (! it.atStart()) it.prev();
-    
-    while (! it.atStart()) {
-      off += it.current().getSize();
-      it.prev();
-    }
-    it.dispose();
-    return off;
-  }
+  public int absOffset(TokenList.Iterator cursor) { return cursor.weightBefore() + cursor.getBlockOffset(); }
   
-  public int getLength() {
-    TokenList.Iterator it = _tokens.getIterator();
-    it.next();
-    if (it.atEnd()) return 0;
-    int len = 0;
-    while (! it.atEnd()) {
-      len += it.current().getSize();
-      it.next();
-    }
-    it.dispose();
-    return len;
-  }
+  /** @return the number of characters represented by this reduced model */
+  public int getLength() { return _tokens.totalWeight(); }
+  
+  /** @return the number of tokens in this reduced model */
+  public int getTokenCount() { return _tokens.length(); }
   
   /** @return the shadowing state of _cursor; only makes sense for ReducedModelComment. */
   public ReducedModelState getState() { return _cursor.getStateAtCurrent(); }
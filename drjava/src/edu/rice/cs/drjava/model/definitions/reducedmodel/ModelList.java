@@ -41,6 +41,13 @@ import java.util.Set;
 
 /** A doubly-linked list class with header and trailer nodes. Allows multiple iterators to make modifications to the 
   * same list without failing unlike the iterators for java.util.*List.
+  * <p>
+  * The nodes between the header and the trailer are also kept in a randomized balanced tree (a treap ordered by list
+  * position) in which every node records the number of nodes and the total {@link #weight} of its subtree.  The
+  * links still make moving to an adjacent node a constant-time operation, while the tree supports locating the node
+  * at a given cumulative weight ({@link ModelIterator#seek}), computing the weight preceding a node, and removing a
+  * range of nodes in logarithmic time.  For a {@link TokenList}, the weight of a token is its size in characters, so
+  * the tree indexes tokens by document offset.
   * @version $Id$
   */
 class ModelList<T> {
@@ -50,6 +57,13 @@ class ModelList<T> {
   private int _length;
   /** a set of objects that can trigger and listen for updates to the list */
   private Set<ModelIterator> _listeners;
+  /** root of the balanced tree containing the nodes between _head and _tail; null if the list is empty */
+  private Node<T> _root;
+  /** state of the generator of tree priorities; a fixed seed keeps the tree shape reproducible */
+  private int _seed = 0x2545F491;
+  /** results of the last call to _split */
+  private Node<T> _splitLeft;
+  private Node<T> _splitRight;
 
   /** Constructor.  Initializes the head and tail nodes, as well as the listener table and the length variable. */
   ModelList() {
@@ -62,6 +76,7 @@ class ModelList<T> {
     _tail._prev = _head;
     _tail._next = null;
     _length = 0;
+    _root = null;
     
     /* We use a WeakHashSet so that listeners do not leak. That is, even if the dispose method is not called, when they
      * are no longer strongly referenced, they will be automatically removed from the listener set. */
@@ -70,6 +85,20 @@ class ModelList<T> {
 
   public void insertFront(T item) { insert(_head._next, item); }
   
+  /** Gets the weight of an item, i.e., its contribution to the cumulative weights indexed by the tree.  The base list
+    * does not index any weight.
+    * @param item the item being weighed
+    * @return the weight of item
+    */
+  int weight(T item) { return 0; }
+  
+  /** Called when item is placed in node (or removed from the list, in which case node is null).  Subclasses whose
+    * items change weight must record the node and call {@link Node#adjustWeight} on every change.
+    * @param item the item
+    * @param node the node now containing item, or null
+    */
+  void attach(T item, Node<T> node) { }
+  
   /** Insert a node immediately before the specified point. Assumes point is not head. 
    * @param point the point at which to insert
    * @param item the item to insert
@@ -77,7 +106,15 @@ class ModelList<T> {
    */
   private Node<T> insert(Node<T> point, T item) {
     assert point != _head;
+    int index = _indexOf(point);
     Node<T> newNode = point.insert(item);
+    newNode._priority = _nextPriority();
+    newNode._itemWeight = weight(item);
+    newNode.update();
+    _split(_root, index);
+    Node<T> right = _splitRight;
+    _setRoot(_merge(_merge(_splitLeft, newNode), right));
+    attach(item, newNode);
     _length++;
     return newNode;
   }
@@ -87,9 +124,31 @@ class ModelList<T> {
    */
   private void remove(Node<T> point) {
     assert point != _head && point != _tail;
+    int index = _indexOf(point);
     point.remove();
+    _split(_root, index);
+    Node<T> left = _splitLeft;
+    _split(_splitRight, 1);
+    assert _splitLeft == point;
+    _setRoot(_merge(left, _splitRight));
+    attach(point._item, null);
     _length--;
   } 
+  
+  /** Removes the nodes strictly between left and right from the tree.  The links must be updated by the caller.
+    * @param left the node preceding the removed range (possibly _head)
+    * @param right the node following the removed range (possibly _tail)
+    * @return the number of nodes removed
+    */
+  private int removeRange(Node<T> left, Node<T> right) {
+    int from = (left == _head) ? 0 : _indexOf(left) + 1;
+    int count = _indexOf(right) - from;
+    _split(_root, from);
+    Node<T> before = _splitLeft;
+    _split(_splitRight, count);
+    _setRoot(_merge(before, _splitRight));
+    return count;
+  }
 
   private void addListener(ModelIterator that) { _listeners.add(that); }
 
@@ -101,6 +160,9 @@ class ModelList<T> {
   public boolean isEmpty() { return _head._next == _tail; }
 
   public int length() { return _length; }
+  
+  /** @return the total weight of the items in the list; for a TokenList, the length of the document. */
+  public int totalWeight() { return Node.weightOf(_root); }
 
   /** Create a new iterator for this list and register it as one of the 
    * listeners which are notified when the list is
@@ -108,12 +170,113 @@ class ModelList<T> {
    * @return the newly-created iterator
    */
   public ModelIterator getIterator() { return new ModelIterator(); }
+  
+  /** @param node a node of this list other than _head
+    * @return the number of items preceding node; _length for _tail
+    */
+  private int _indexOf(Node<T> node) {
+    if (node == _tail) return _length;
+    int index = Node.countOf(node._left);
+    for (Node<T> n = node; n._parent != null; n = n._parent) {
+      if (n == n._parent._right) index += Node.countOf(n._parent._left) + 1;
+    }
+    return index;
+  }
+  
+  /** @param node a node of this list
+    * @return the total weight of the items preceding node
+    */
+  private int _weightBefore(Node<T> node) {
+    if (node == _head) return 0;
+    if (node == _tail) return totalWeight();
+    int w = Node.weightOf(node._left);
+    for (Node<T> n = node; n._parent != null; n = n._parent) {
+      if (n == n._parent._right) w += Node.weightOf(n._parent._left) + n._parent._itemWeight;
+    }
+    return w;
+  }
+  
+  private void _setRoot(Node<T> root) {
+    _root = root;
+    if (root != null) root._parent = null;
+  }
+  
+  /** @return a pseudo-random tree priority (xorshift) */
+  private int _nextPriority() {
+    int x = _seed;
+    x ^= x << 13;
+    x ^= x >>> 17;
+    x ^= x << 5;
+    _seed = x;
+    return x;
+  }
+  
+  /** Splits the tree rooted at t into a tree holding its first k nodes and a tree holding the rest, leaving their
+    * roots (with null parents) in _splitLeft and _splitRight.
+    * @param t the root of the tree to split
+    * @param k the number of nodes that go to the left tree
+    */
+  private void _split(Node<T> t, int k) {
+    if (t == null) {
+      _splitLeft = null;
+      _splitRight = null;
+      return;
+    }
+    t._parent = null;
+    if (k <= Node.countOf(t._left)) {
+      _split(t._left, k);
+      t._left = _splitRight;
+      if (_splitRight != null) _splitRight._parent = t;
+      t.update();
+      _splitRight = t;
+    }
+    else {
+      _split(t._right, k - Node.countOf(t._left) - 1);
+      t._right = _splitLeft;
+      if (_splitLeft != null) _splitLeft._parent = t;
+      t.update();
+      _splitLeft = t;
+    }
+  }
+  
+  /** Joins two trees, all nodes of a preceding all nodes of b.
+    * @return the root of the joined tree
+    */
+  private Node<T> _merge(Node<T> a, Node<T> b) {
+    if (a == null) return b;
+    if (b == null) return a;
+    if (a._priority > b._priority) {
+      Node<T> r = _merge(a._right, b);
+      a._right = r;
+      r._parent = a;
+      a.update();
+      return a;
+    }
+    else {
+      Node<T> l = _merge(a, b._left);
+      b._left = l;
+      l._parent = b;
+      b.update();
+      return b;
+    }
+  }
 
-  /** The Node class for ModelLists.  The _prev and _next pointers are mutable.  The _item field is null in _head and _tail. */
-  private static class Node<T> {
+  /** The Node class for ModelLists.  The _prev and _next pointers are mutable.  The _item field is null in _head and
+    * _tail, which are not part of the tree.
+    */
+  static class Node<T> {
     Node<T> _prev;
     Node<T> _next;
     T _item;
+    
+    /* tree links and augmentation; _count and _weight summarize the subtree rooted at this node */
+    Node<T> _parent;
+    Node<T> _left;
+    Node<T> _right;
+    int _priority;
+    int _count;
+    int _weight;
+    int _itemWeight;
 
     /** Constructor for _head and _tail nodes. */
     Node() { }
@@ -129,6 +292,24 @@ class ModelList<T> {
       _next = succ;
     }
     
+    static int countOf(Node<?> n) { return (n == null) ? 0 : n._count; }
+    
+    static int weightOf(Node<?> n) { return (n == null) ? 0 : n._weight; }
+    
+    /** Recomputes the subtree summary of this node from its children. */
+    void update() {
+      _count = 1 + countOf(_left) + countOf(_right);
+      _weight = _itemWeight + weightOf(_left) + weightOf(_right);
+    }
+    
+    /** Records a change in the weight of the item of this node.
+      * @param delta the change in weight
+      */
+    void adjustWeight(int delta) {
+      _itemWeight += delta;
+      for (Node<T> n = this; n != null; n = n._parent) n._weight += delta;
+    }
+    
     /** Insert a new node before "this". Assumes that "this" is not the head node. 
      * @param item item to insert
      * @return the newly-inserted node
@@ -228,6 +409,40 @@ class ModelList<T> {
     }
     
     public int pos() { return _pos; }
+    
+    /** @return the total weight of the items preceding the current node; logarithmic in the length of the list. */
+    public int weightBefore() { return _weightBefore(_point); }
+    
+    /** Moves to the first item whose weight range contains the cumulative weight w, i.e., the first item for which w
+      * is less than the total weight of the items up to and including it.  Moves to the tail if w is the total weight
+      * of the list.  Takes time logarithmic in the length of the list.
+      * @param w a cumulative weight between 0 and the total weight of the list
+      * @return the difference between w and the total weight of the items preceding the new current node
+      * @throws IllegalArgumentException if w is negative or exceeds the total weight of the list
+      */
+    public int seek(int w) {
+      if (w < 0) throw new IllegalArgumentException("At Start");
+      int index = 0;
+      Node<T> n = _root;
+      while (n != null) {
+        int leftWeight = Node.weightOf(n._left);
+        if (w < leftWeight) n = n._left;
+        else if (w < leftWeight + n._itemWeight) {
+          _point = n;
+          _pos = index + Node.countOf(n._left) + 1;
+          return w - leftWeight;
+        }
+        else {
+          w -= leftWeight + n._itemWeight;
+          index += Node.countOf(n._left) + 1;
+          n = n._right;
+        }
+      }
+      if (w > 0) throw new IllegalArgumentException("At end");
+      _point = _tail;
+      _pos = _length + 1;
+      return 0;
+    }
 
     /** Inserts an item before the current item.  If current is head, we need 
      * to move to the next node to perform the insert properly.  Otherwise, 
@@ -297,6 +512,8 @@ class ModelList<T> {
         rightPoint = iter._point;
       }
       
+      int removed = removeRange(leftPoint, rightPoint);
+      assert removed == rightPos - leftPos - 1;
       rightPoint._prev = leftPoint;
       leftPoint._next = rightPoint;
       _length -= rightPos - leftPos - 1;  //determine new length
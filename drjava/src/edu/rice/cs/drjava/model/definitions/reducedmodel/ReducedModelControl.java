@@ -81,6 +81,9 @@ public class ReducedModelControl implements BraceReduction {
   /** @return the absolute offset of the walker in the comment model, which is expensive.  Used for testing purposes only. */
   public int walkerOffset() { return _rmc.walkerOffset(); }
   
+  /** @return the total number of tokens in the brace and comment models; used to estimate memory consumption. */
+  public int getTokenCount() { return _rmb.getTokenCount() + _rmc.getTokenCount(); }
+  
 //  private ReducedModelBrace _getRMB() { return _rmb; }
   
 //  private ReducedModelComment _getRMC() { return _rmc; }
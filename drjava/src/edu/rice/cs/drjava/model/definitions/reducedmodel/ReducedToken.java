@@ -42,10 +42,27 @@ package edu.rice.cs.drjava.model.definitions.reducedmodel;
 public abstract class ReducedToken implements ReducedModelStates {
   private volatile ReducedModelState _state;
   
+  /** The node holding this token in the offset index of its TokenList, or null if the token is not in a list. */
+  private volatile ModelList.Node<?> _node;
+  
   public ReducedToken(ReducedModelState state) {
     _state = state;
   }
   
+  /** Records the TokenList node holding this token.
+    * @param node the node, or null if the token has been removed from its list
+    */
+  void setNode(ModelList.Node<?> node) { _node = node; }
+  
+  /** Propagates a change in the size of this token to the offset index of the TokenList containing it.  Must be
+    * called by every method that changes the value of getSize().
+    * @param delta the change in size
+    */
+  void sizeChanged(int delta) {
+    ModelList.Node<?> node = _node;
+    if (node != null && delta != 0) node.adjustWeight(delta);
+  }
+  
   /** Get the size of the token.
     * @return the number of characters represented by the token
     */
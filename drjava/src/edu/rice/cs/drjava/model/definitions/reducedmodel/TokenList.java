@@ -36,14 +36,24 @@
 
 package edu.rice.cs.drjava.model.definitions.reducedmodel;
 
-/** A list of reduced model tokens.  Uses ModelList as its base.
+/** A list of reduced model tokens.  Uses ModelList as its base, weighting each token by its size so that the list
+  * is indexed by document offset.
   * @version $Id$
   */
 public class TokenList extends ModelList<ReducedToken> implements /*imports*/ ReducedModelStates {
   
+  /** Maximum number of tokens that a move walks one at a time before it falls back on an indexed seek.  Short moves
+    * (typing, arrow keys) stay on the constant-time links; long ones cost time logarithmic in the number of tokens.
+    */
+  static final int MAX_WALK = 16;
+  
   /** Gets a TokenList.Iterator for this list.  Overrides the weaker method in {@code ModelList<ReducedToken>.Iterator}. */
   public Iterator getIterator() { return new Iterator(); }
   
+  int weight(ReducedToken item) { return item.getSize(); }
+  
+  void attach(ReducedToken item, Node<ReducedToken> node) { item.setNode(node); }
+  
   public class Iterator extends ModelIterator {
     
     private int _offset;
@@ -218,7 +228,9 @@ public class TokenList extends ModelList<ReducedToken> implements /*imports*/ Re
       count = count + currentOffset;
       
       // Process tokens moving forward
+      int steps = 0;
       while (count >= size) { // advance one token
+        if (++steps > MAX_WALK) return seek(weightBefore() + count);
         count = count - size;
         next();
         if (atEnd()) {
@@ -257,7 +269,9 @@ public class TokenList extends ModelList<ReducedToken> implements /*imports*/ Re
       }
       else if (atStart()) throw new IllegalArgumentException("At Start");
       
+      int steps = 0;
       while (count > currentOffset) {
+        if (++steps > MAX_WALK) return seek(weightBefore() + currentOffset - count);
         count = count - currentOffset;
         prev();
         
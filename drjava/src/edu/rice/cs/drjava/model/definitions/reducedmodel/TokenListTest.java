@@ -0,0 +1,210 @@
+/*BEGIN_COPYRIGHT_BLOCK
+ *
+ * Copyright (c) 2001-2016, JavaPLT group at Rice University (drjava@rice.edu)
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *    * Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the names of DrJava, the JavaPLT group, Rice University, nor the
+ *      names of its contributors may be used to endorse or promote products
+ *      derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * This software is Open Source Initiative approved Open Source Software.
+ * Open Source Initative Approved is a trademark of the Open Source Initiative.
+ * 
+ * This file is part of DrJava.  Download the current version of this project
+ * from http://www.drjava.org/ or http://sourceforge.net/projects/drjava/
+ * 
+ * END_COPYRIGHT_BLOCK*/
+
+
+package edu.rice.cs.drjava.model.definitions.reducedmodel;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+/** Tests the offset index of TokenList against the linear walks it replaces for long moves.  The main method is a
+  * benchmark of random seeks, typing at the end, and full-document highlighting over a large file.
+  * @version $Id$
+  */
+public final class TokenListTest extends BraceReductionTestCase {
+  
+  /** Fragments of Java text containing every kind of reduced model token. */
+  private static final String[] FRAGMENTS = {
+    "int x = foo(a[i], b);", "{", "}", " ", "  ", "\n", "// line comment", "/* block */", "/*", "*/", "\"str\"",
+    "'c'", "\\\\", "\\\"", "\"", "'", "/", "*", "abc", "(", ")", "[", "]"
+  };
+  
+  private static String _randomText(Random r, int fragments) {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < fragments; i++) sb.append(FRAGMENTS[r.nextInt(FRAGMENTS.length)]);
+    return sb.toString();
+  }
+  
+  private static void _insert(ReducedModelControl model, String text) {
+    for (int i = 0; i < text.length(); i++) model.insertChar(text.charAt(i));
+  }
+  
+  /** Computes the offset of a cursor by summing token sizes, as absOffset did before the index existed. */
+  private static int _linearOffset(TokenList.Iterator cursor) {
+    int off = cursor.getBlockOffset();
+    TokenList.Iterator it = cursor.copy();
+    if (! it.atStart()) it.prev();
+    while (! it.atStart()) {
+      off += it.current().getSize();
+      it.prev();
+    }
+    it.dispose();
+    return off;
+  }
+  
+  private static void _assertSameLocation(String msg, ReducedModelControl expected, ReducedModelControl actual) {
+    assertEquals(msg + " offset", expected.absOffset(), actual.absOffset());
+    assertEquals(msg + " brace block offset", expected._rmb.getBlockOffset(), actual._rmb.getBlockOffset());
+    assertEquals(msg + " comment block offset", expected._rmc.getBlockOffset(), actual._rmc.getBlockOffset());
+    assertEquals(msg + " brace pos", expected._rmb._cursor.pos(), actual._rmb._cursor.pos());
+    assertEquals(msg + " comment pos", expected._rmc._cursor.pos(), actual._rmc._cursor.pos());
+    assertEquals(msg + " state", expected.getStateAtCurrent(), actual.getStateAtCurrent());
+  }
+  
+  /** Long moves (which seek) must end where a sequence of single-character moves (which walk) ends. */
+  public void testSeekAgreesWithWalk() {
+    Random r = new Random(17);
+    String text = _randomText(r, 2000);
+    _insert(model0, text);
+    _insert(model1, text);
+    int len = text.length();
+    assertEquals("length", len, model0._rmc.getLength());
+    assertEquals("length", len, model0._rmb.getLength());
+    
+    int loc = len;
+    for (int i = 0; i < 200; i++) {
+      int target = r.nextInt(len + 1);
+      model0.move(target - loc);
+      while (loc < target) { model1.move(1); loc++; }
+      while (loc > target) { model1.move(-1); loc--; }
+      _assertSameLocation("move to " + target, model1, model0);
+      assertEquals("linear offset", target, _linearOffset(model0._rmc._cursor));
+      assertEquals("linear offset", target, _linearOffset(model0._rmb._cursor));
+      int hlen = Math.min(40, len - target);
+      ArrayList<HighlightStatus> expected = model1.getHighlightStatus(target, hlen);
+      ArrayList<HighlightStatus> actual = model0.getHighlightStatus(target, hlen);
+      assertEquals("highlight runs at " + target, expected.size(), actual.size());
+      for (int j = 0; j < expected.size(); j++) {
+        assertEquals("highlight location", expected.get(j).getLocation(), actual.get(j).getLocation());
+        assertEquals("highlight length", expected.get(j).getLength(), actual.get(j).getLength());
+        assertEquals("highlight state", expected.get(j).getState(), actual.get(j).getState());
+      }
+    }
+  }
+  
+  /** The index must track token splits, merges, growth and collapses caused by arbitrary edits. */
+  public void testIndexTracksEdits() {
+    Random r = new Random(42);
+    _insert(model0, _randomText(r, 300));
+    int len = model0._rmc.getLength();
+    for (int i = 0; i < 500; i++) {
+      int loc = model0.absOffset();
+      int target = r.nextInt(len + 1);
+      model0.move(target - loc);
+      if (r.nextBoolean() || len == 0) {
+        String text = _randomText(r, 1 + r.nextInt(3));
+        _insert(model0, text);
+        len += text.length();
+      }
+      else {
+        int count = r.nextInt(Math.min(60, len - target) + 1);
+        model0.delete(count);
+        len -= count;
+      }
+      assertEquals("comment model length", len, model0._rmc.getLength());
+      assertEquals("brace model length", len, model0._rmb.getLength());
+      assertEquals("comment cursor", _linearOffset(model0._rmc._cursor), model0._rmc.absOffset());
+      assertEquals("brace cursor", _linearOffset(model0._rmb._cursor), model0._rmb.absOffset());
+      assertEquals("cursors agree", model0._rmc.absOffset(), model0._rmb.absOffset());
+    }
+  }
+  
+  private static final int WARMUP_ITERATIONS = 3;
+  private static final int MEASURED_ITERATIONS = 5;
+  
+  /** Runs one benchmark: WARMUP_ITERATIONS untimed rounds, then prints the mean time per operation over
+    * MEASURED_ITERATIONS timed rounds of ops operations each.
+    */
+  private static void _bench(String name, int ops, Runnable op) {
+    for (int i = 0; i < WARMUP_ITERATIONS; i++) for (int j = 0; j < ops; j++) op.run();
+    long total = 0;
+    for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+      long start = System.nanoTime();
+      for (int j = 0; j < ops; j++) op.run();
+      total += System.nanoTime() - start;
+    }
+    double usPerOp = total / 1000.0 / ((double) ops * MEASURED_ITERATIONS);
+    System.out.println(String.format("%-24s %12.2f us/op", name, usPerOp));
+  }
+  
+  /** Benchmark over a 100,000 line file.
+    * @param args optional number of lines
+    */
+  public static void main(String[] args) {
+    int lines = (args.length > 0) ? Integer.parseInt(args[0]) : 100000;
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < lines; i++) {
+      switch (i % 4) {
+        case 0: sb.append("  public int f(int[] a) { return a[0]; } // comment\n"); break;
+        case 1: sb.append("  String s = \"text with (parens)\"; char c = '\\'';\n"); break;
+        case 2: sb.append("  /* block comment { } */ foo(bar[1], baz);\n"); break;
+        default: sb.append("  if (x) { y = z * 2 / 3; }\n");
+      }
+    }
+    final String text = sb.toString();
+    final ReducedModelControl model = new ReducedModelControl();
+    long start = System.nanoTime();
+    _insert(model, text);
+    System.out.println(lines + " lines, " + text.length() + " chars, built in " +
+                       (System.nanoTime() - start) / 1000000 + " ms");
+    
+    final Random r = new Random(1);
+    final int[] loc = { text.length() };
+    _bench("random seek", 2000, new Runnable() {
+      public void run() {
+        int target = r.nextInt(text.length() + 1);
+        model.move(target - loc[0]);
+        loc[0] = target;
+      }
+    });
+    _bench("typing at end", 2000, new Runnable() {
+      public void run() {
+        model.move(model._rmc.getLength() - loc[0]);
+        model.insertChar('x');
+        loc[0] = model._rmc.getLength();
+        model.move(-loc[0]);  // return to the top of the file, as when editing the end while viewing the start
+        loc[0] = 0;
+      }
+    });
+    _bench("full highlight", 5, new Runnable() {
+      public void run() {
+        model.move(- loc[0]);
+        loc[0] = 0;
+        model.getHighlightStatus(0, model._rmc.getLength());
+      }
+    });
+  }
+}
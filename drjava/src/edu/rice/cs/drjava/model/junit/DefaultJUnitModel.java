@@ -46,6 +46,7 @@ import java.util.LinkedList;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 import edu.rice.cs.drjava.config.BooleanOption;
 import edu.rice.cs.drjava.model.GlobalModel;
@@ -117,6 +118,9 @@ public class DefaultJUnitModel implements JUnitModel, JUnitModelCallback {
   /** The document used to display JUnit test results.  Used only for testing. */
   private final SwingDocument _junitDoc = new SwingDocument();
   
+  /** The dependencies recorded for the test classes; kept with the project file if a project is open. */
+  private final TestImpactIndex _impactIndex = new TestImpactIndex();
+  
   /** Main constructor.
     * @param jvm RMI interface to a secondary JVM for running tests
     * @param compilerModel the CompilerModel, used only as a lock to prevent simultaneous test and compile
@@ -152,6 +156,8 @@ public class DefaultJUnitModel implements JUnitModel, JUnitModelCallback {
       return (this.coverageMetadata != null) ? this.coverageMetadata.getFlag() : false; 
   }
   
+  public byte[] getLineCoverage(String className) { return _jvm.getLineCoverage(className).unwrap(null); }
+  
   //------------------------Listener Management -----------------------------//
   
   /** Add a JUnitListener to the model.
@@ -191,6 +197,8 @@ public class DefaultJUnitModel implements JUnitModel, JUnitModelCallback {
     junitOpenDefDocs(lod, true);
   }
   
+  public void clearTestImpact() { _testImpactIndex().clear(); }
+  
 //  /** Forwards the classnames and files to the test manager to test all of them; does not notify 
 //    * since we don't have ODD's to send out with the notification of junit start.
 //    * @param qualifiedClassnames a list of all the qualified class names to test.
@@ -482,6 +490,21 @@ public class DefaultJUnitModel implements JUnitModel, JUnitModelCallback {
       throw new UnexpectedException(e); // triggers _junitInterrupted which runs hourglassOff
     }
     
+    /* When testing all documents, skip the test classes unaffected by changes since they last passed */
+    int unaffected = 0;
+    if (allTests && edu.rice.cs.drjava.DrJava.getConfig().getSetting(OptionConstants.JUNIT_TEST_IMPACT)) {
+      TestImpactIndex index = _testImpactIndex();
+      for (int i = classNames.size() - 1; i >= 0; i--) {
+        if (! index.isAffected(classNames.get(i))) {
+          classNames.remove(i);
+          files.remove(i);
+          unaffected++;
+        }
+      }
+      _log.log(unaffected + " test classes are unaffected by changes");
+    }
+    final boolean skippedTests = (unaffected > 0);
+    
     /** Run the junit test suite that has already been set up on the slave JVM */
     _testInProgress = true;
     // System.err.println("Spawning test thread");
@@ -503,7 +526,8 @@ public class DefaultJUnitModel implements JUnitModel, JUnitModelCallback {
           List<String> tests = _jvm.findTestClasses(classNames, files, coverageMetadata).unwrap(null);
 
           if (tests == null || tests.isEmpty()) {
-            nonTestCase(allTests, false);
+            if (skippedTests && tests != null) _allTestsUnaffected();
+            else nonTestCase(allTests, false);
             return;
           }
         }
@@ -527,6 +551,23 @@ public class DefaultJUnitModel implements JUnitModel, JUnitModelCallback {
    
 //-------------------------------- Helpers --------------------------------//
   
+  /** @return the test impact index, first loading the index kept with the current project (if it isn't loaded) */
+  private TestImpactIndex _testImpactIndex() {
+    File file = _model.isProjectActive() ? new File(_model.getProjectFile().getPath() + ".tests") : null;
+    synchronized(_impactIndex) {
+      File loaded = _impactIndex.getFile();
+      if ((file == null) ? (loaded != null) : ! file.equals(loaded)) _impactIndex.load(file);
+    }
+    return _impactIndex;
+  }
+  
+  /** Reports a run in which every test class was skipped as an empty, successful test suite. */
+  private void _allTestsUnaffected() {
+    _notifyJUnitStarted();
+    testSuiteStarted(0);
+    testSuiteEnded(new JUnitError[0]);
+  }
+  
   /** Helper method to notify JUnitModel listeners that JUnit test suite execution has started. */
   private void _notifyJUnitStarted() { 
     // Use EventQueue.invokeLater so that notification is deferred when running in the event thread.
@@ -648,6 +689,15 @@ public class DefaultJUnitModel implements JUnitModel, JUnitModelCallback {
   }
 
   
+  /** Called when the dependencies of the passing test classes have been recorded.  Does not necessarily run in event
+    * thread.
+    * @param dependencies maps test class names to the class files they loaded, and the checksums of those files
+    * @param unrecorded the names of the test classes that ran but were not recorded, because they failed
+    */
+  public void testDependenciesRecorded(Map<String, Map<File, Long>> dependencies, Set<String> unrecorded) {
+    _testImpactIndex().record(dependencies, unrecorded);
+  }
+  
   /** Called when the JUnitTestManager wants to open a file that is not currently open.
     * @param className the name of the class for which we want to find the file
     * @return the file associated with the given class
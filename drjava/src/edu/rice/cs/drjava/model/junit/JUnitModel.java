@@ -58,6 +58,12 @@ public interface JUnitModel {
   public JUnitResultTuple getFinalResult(); 
   public boolean getCoverage();
   
+  /** Fetches the coverage of a class in the last test run with code coverage.
+    * @param className the fully qualified name of the class
+    * @return the ICounter status (such as NOT_COVERED) of each line of the class, or null if it is unavailable
+    */
+  public byte[] getLineCoverage(String className);
+  
   //-------------------------- Listener Management --------------------------//
   
   /** Add a JUnitListener to the model.
@@ -93,6 +99,11 @@ public interface JUnitModel {
     */
   public void junitProject();
   
+  /** Forgets the recorded dependencies of all test classes, so that the next run of junitAll or junitProject runs
+    * every test class, whether or not it is affected by changes since it last passed.
+    */
+  public void clearTestImpact();
+  
   /** Runs JUnit over a list of documents.  Synchronized against the compiler model to prevent 
     * testing and compiling at the same time, which would create invalid results.
     * @param lod the list of documents that are to be run through JUnit testing.
@@ -37,6 +37,8 @@
 package edu.rice.cs.drjava.model.junit;
 
 import java.io.File;
+import java.util.Map;
+import java.util.Set;
 import edu.rice.cs.util.classloader.ClassFileError;
 
 /** Callback interface which allows an JUnitModel to respond to tests running in a remote JVM.
@@ -78,6 +80,14 @@ public interface JUnitModelCallback {
     */
   public void testSuiteEnded(JUnitError[] errors);
   
+  /** Called before testSuiteEnded when test dependencies are being recorded.
+    * @param dependencies maps the names of the test classes that passed to the class files they loaded, and the
+    *        checksums (see {@link TestImpactIndex#checksum}) of those files
+    * @param unrecorded the names of the test classes that ran but were not recorded, because they failed (or
+    *        because a fault could not be attributed to one of them); whatever was recorded for them earlier is stale
+    */
+  public void testDependenciesRecorded(Map<String, Map<File, Long>> dependencies, Set<String> unrecorded);
+  
   /** Called when the JUnitTestManager wants to open a file that is not currently open.
     * @param className the name of the class for which we want to find the file
     * @return the file associated with the given class
@@ -37,25 +37,26 @@
 package edu.rice.cs.drjava.model.junit;
 
 import java.util.Map;
-import java.util.List;
 
 import java.io.Serializable;
 
 public class JUnitResultTuple implements Serializable {
 
     private boolean retval;
-    private Map<String, List<String>> lineColors;
+    /** The ICounter status of each line of each class, as computed by ReportGenerator.getLineCoverage; null if 
+      * coverage was not analyzed. */
+    private Map<String, byte[]> lineCoverage;
 
-    public JUnitResultTuple(boolean retval, Map<String, List<String>> lineColors) {
+    public JUnitResultTuple(boolean retval, Map<String, byte[]> lineCoverage) {
         this.retval = retval;
-        this.lineColors = lineColors;  
+        this.lineCoverage = lineCoverage;  
     }
 
     public boolean getRetval() {
         return this.retval;
     }
 
-    public Map<String, List<String>> getLineColors() {
-        return this.lineColors;
+    public Map<String, byte[]> getLineCoverage() {
+        return this.lineCoverage;
     }
 }
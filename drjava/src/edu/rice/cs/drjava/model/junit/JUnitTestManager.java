@@ -37,22 +37,27 @@
 package edu.rice.cs.drjava.model.junit;
 
 import java.io.File;
-import java.io.InputStream;
 
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLClassLoader;
 
+import java.lang.annotation.Annotation;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.Enumeration;
 import java.util.Arrays;
 
+import edu.rice.cs.drjava.model.coverage.CoverageAnalyzer;
 import edu.rice.cs.drjava.model.coverage.CoverageMetadata;
 import edu.rice.cs.drjava.model.coverage.ReportGenerator;
 
@@ -72,6 +77,7 @@ import edu.rice.cs.plt.reflect.EmptyClassLoader;
 import static edu.rice.cs.plt.debug.DebugUtil.error;
 
 import junit.framework.JUnit4TestAdapter;
+import junit.framework.JUnit4TestAdapterCache;
 
 import junit.framework.AssertionFailedError;
 
@@ -81,7 +87,6 @@ import junit.framework.TestSuite;
 import junit.framework.TestFailure;
 import junit.framework.JUnit4TestCaseFacade;
 
-import org.jacoco.core.analysis.Analyzer;
 import org.jacoco.core.analysis.CoverageBuilder;
 import org.jacoco.core.analysis.IBundleCoverage;
 import org.jacoco.core.data.ExecutionDataStore;
@@ -125,6 +130,15 @@ public class JUnitTestManager {
   private List<String> _nonTestClassNames = null;
   private JUnitResultTuple _finalResult = new JUnitResultTuple(false, null);
   
+  /** Analyzes coverage, reusing the analyses of unchanged classes from earlier runs. */
+  private final CoverageAnalyzer _coverageAnalyzer = new CoverageAnalyzer();
+  
+  /** The number of threads on which test classes are run; 1 (or less) runs them sequentially. */
+  private volatile int _threads = 1;
+  
+  /** Whether the class files loaded by each passing test class are reported to the main JVM. */
+  private volatile boolean _recordDependencies = false;
+  
   /** Standard constructor 
     * @param jmc a JUnitModelCallback
     * @param loaderFactory factory to create class loaders
@@ -134,9 +148,29 @@ public class JUnitTestManager {
     _classPathManager = loaderFactory;
   }
   
+  /** Sets the number of threads on which subsequent suites run their test classes.
+    * @param threads the number of threads; 1 (or less) runs test classes sequentially
+    */
+  public void setThreads(int threads) { _threads = threads; }
+  
+  /** Sets whether subsequent suites record the class files loaded by each test class, and report those of the
+    * classes that passed to the main JVM (see {@link JUnitModelCallback#testDependenciesRecorded}).
+    * @param record true if dependencies are to be recorded
+    */
+  public void setRecordDependencies(boolean record) { _recordDependencies = record; }
+  
   /** @return result of the last JUnit run */  
   public JUnitResultTuple getFinalResult() { return _finalResult; }
   
+  /** @param className the fully qualified name of a class
+    * @return the ICounter status of each line of the class in the last run with code coverage (see 
+    *         {@link ReportGenerator#getLineCoverage}), or null if the class was not analyzed
+    */
+  public byte[] getLineCoverage(String className) {
+    Map<String, byte[]> lineCoverage = _finalResult.getLineCoverage();
+    return (lineCoverage == null) ? null : lineCoverage.get(className.replace('.', '/'));
+  }
+  
   /** Used to load class files in the analysis phase of code coverage
     * @return URLClassLoader with DrJava classpath
     */
@@ -162,7 +196,7 @@ public class JUnitTestManager {
   public List<String> findTestClasses(final List<String> classNames, final List<File> files, 
                                       final CoverageMetadata coverageMetadata) {
     
-    _log.log("findTestClasses(" + classNames + ", " + files + ", " + coverageMetadata + ") called");
+    _log.log("findTestClasses(%s, %s, %s) called", classNames, files, coverageMetadata);
     boolean doCoverage = coverageMetadata.getFlag();
     
     // Set up the loader
@@ -199,16 +233,16 @@ public class JUnitTestManager {
       String cName = pair.first();
       try {
         Class<?> possibleTest = _testRunner.loadPossibleTest(cName); 
-        _log.log("Exploring possibleTest " + possibleTest);
+        _log.log("Exploring possibleTest %s", possibleTest);
         if (_isJUnitTest(possibleTest)) {
           _testClassNames.add(cName);
           _testFiles.add(pair.second());
           Test test = new JUnit4TestAdapter(possibleTest);
           _suite.addTest(test); 
-          _log.log("Adding test " + test + " to test suite"); 
+          _log.log("Adding test %s to test suite", test);
         } else { // cName is a program class that is not a test class
           _nonTestClassNames.add(cName);
-          _log.log("adding " + cName + " to nonTestClassNames");
+          _log.log("adding %s to nonTestClassNames", cName);
         }
       }
       catch (ClassNotFoundException e) { error.log(e); }
@@ -220,8 +254,8 @@ public class JUnitTestManager {
     }
     
 //    debug.logEnd("result", _testClassNames);
-    _log.log("accumulated non test class names: " + _nonTestClassNames);
-    _log.log("returning: " + _testClassNames);
+    _log.log("accumulated non test class names: %s", _nonTestClassNames);
+    _log.log("returning: %s", _testClassNames);
     
     return _testClassNames;
   }
@@ -238,7 +272,7 @@ public class JUnitTestManager {
       _finalResult = new JUnitResultTuple(false, null);
       return false;
     }
-    Map<String, List<String>> lineColors = null;
+    Map<String, byte[]> lineCoverage = null;
     _finalResult = new JUnitResultTuple(true, null);
     
 //    _log.log("runTestSuite() in SlaveJVM called");
@@ -246,8 +280,13 @@ public class JUnitTestManager {
     /* Declare fault array for amalgamating errors and failures */
     JUnitError[] faults = new JUnitError[0];
     try {
-      _log.log("Calling _testRunner.runSuite(" + _suite + ")");
-      TestResult result = _testRunner.runSuite(_suite);
+      TestResult result;
+      if (_recordDependencies && _runtime == null) { result = _runRecordingDependencies(); }
+      else if (_threads > 1 && _runtime == null && _testClassNames.size() > 1) { result = _runInParallel(); }
+      else {
+        _log.log("Calling _testRunner.runSuite(" + _suite + ")");
+        result = _testRunner.runSuite(_suite);
+      }
       
       /* A fault is either an error or a failure. */
       int faultCount = result.errorCount() + result.failureCount();
@@ -289,21 +328,8 @@ public class JUnitTestManager {
         _runtime.shutdown();
         
         /** Together with the original class definitions we can calculate coverage information. */
-        final CoverageBuilder coverageBuilder = new CoverageBuilder();
-        final Analyzer analyzer = new Analyzer(_executionDataStore, coverageBuilder);
-        URLClassLoader urlCL = newURLLoader();
-        
-        String cName = null;
-        try {
-          for (int j = 0; j < _nonTestClassNames.size(); j++) {
-            cName = _nonTestClassNames.get(j);
-            InputStream is = urlCL.getResource(cName + ".class").openStream();
-            _log.log("Constructed InputStream " + is + " for class " + cName);
-            analyzer.analyzeClass(is, cName);
-          } 
-        } catch(Exception e) {
-          throw new UnexpectedException(e, "Coverage analysis threw this exception while processing class " + cName);
-        }
+        final CoverageBuilder coverageBuilder =
+          _coverageAnalyzer.analyze(_nonTestClassNames, newURLLoader(), _executionDataStore);
         
         /* Run the structure analyzer on the project source folder to build up the coverage model. In flat file
          * mode, only the first source directory (if there are multiple source directories) is analyzed.  TODO:
@@ -319,8 +345,8 @@ public class JUnitTestManager {
         if (! f.exists()) _log.log("****** Project root does not exist!");
         _log.log("Creating coverage report for code base rooted at " + f);
         rg.createReport(bundleCoverage, _executionDataStore, sessionInfos, f);
-        lineColors = rg.getAllLineColors();
-        _finalResult = new JUnitResultTuple(true, lineColors);
+        lineCoverage = rg.getAllLineCoverage();
+        _finalResult = new JUnitResultTuple(true, lineCoverage);
         
       } else {
         _log.log("runtime was null");
@@ -344,6 +370,84 @@ public class JUnitTestManager {
     return _finalResult.getRetval();
   }
   
+  /** Runs the pending test classes on {@code _threads} threads.  Each class is reloaded by a class loader of its own,
+    * so that classes running at the same time don't share the static state of program classes.  Classes annotated
+    * {@code @NotThreadSafe} (from any package, such as net.jcip.annotations) are run afterwards, one at a time, by
+    * the loader used to find them.  Not used with code coverage, which requires that all classes share the
+    * instrumenting loader.
+    * @return the merged result of all test classes
+    */
+  private TestResult _runInParallel() throws ClassNotFoundException {
+    final ClassLoader defaultLoader = JUnitTestManager.class.getClassLoader();
+    List<Test> parallel = new ArrayList<Test>();
+    List<Test> sequential = new ArrayList<Test>();
+    for (String cName : _testClassNames) {
+      Class<?> c = _testRunner.loadPossibleTest(cName);
+      // separate adapter caches: the default cache is shared, and is not thread-safe
+      if (_isNotThreadSafe(c)) { sequential.add(new JUnit4TestAdapter(c, new JUnit4TestAdapterCache())); }
+      else {
+        Class<?> isolated = _classPathManager.value(defaultLoader).loadClass(cName);
+        parallel.add(new JUnit4TestAdapter(isolated, new JUnit4TestAdapterCache()));
+      }
+    }
+    _log.log("Running " + parallel.size() + " test classes on " + _threads + " threads, then " + sequential.size() +
+             " sequentially");
+    return _testRunner.runSuiteInParallel(parallel, sequential, _threads);
+  }
+  
+  /** Runs the pending test classes, each reloaded by a {@link JacocoClassLoader} of its own that defines (without
+    * instrumenting) the classes in the class path directories.  The class files each loader defined are the program
+    * classes its test class depends on; those of the test classes without faults are reported to the main JVM, along
+    * with the names of the test classes with faults, so that their earlier records are discarded.
+    * Classes in jar files are not recorded.  Not used with code coverage, which instruments the classes instead.
+    * @return the result of all test classes
+    */
+  private TestResult _runRecordingDependencies() throws ClassNotFoundException {
+    final ClassLoader parent = _classPathManager.value(JUnitTestManager.class.getClassLoader());
+    Map<String, JacocoClassLoader> loaders = new HashMap<String, JacocoClassLoader>();
+    TestSuite suite = new TestSuite();
+    for (String cName : _testClassNames) {
+      JacocoClassLoader loader = new JacocoClassLoader(_classPathManager.getClassPath(), null, parent);
+      loaders.put(cName, loader);
+      suite.addTest(new JUnit4TestAdapter(loader.loadClass(cName), new JUnit4TestAdapterCache()));
+    }
+    TestResult result = _testRunner.runSuite(suite);
+    
+    // faults that can't be attributed to one of the test classes leave all of them unrecorded
+    Set<String> unrecorded = new HashSet<String>();
+    List<TestFailure> faults = new ArrayList<TestFailure>();
+    faults.addAll(Collections.list(result.errors()));
+    faults.addAll(Collections.list(result.failures()));
+    for (TestFailure f : faults) {
+      Test t = f.failedTest();
+      String cName = (t instanceof JUnit4TestCaseFacade) ? ((JUnit4TestCaseFacade) t).getDescription().getClassName()
+                                                         : null;
+      if (cName == null || ! _testClassNames.contains(cName)) {
+        unrecorded.addAll(_testClassNames);
+        loaders.clear();
+        break;
+      }
+      unrecorded.add(cName);
+      loaders.remove(cName);
+    }
+    
+    Map<String, Map<File, Long>> dependencies = new HashMap<String, Map<File, Long>>();
+    for (Map.Entry<String, JacocoClassLoader> e : loaders.entrySet()) {
+      dependencies.put(e.getKey(), e.getValue().getDefinedFiles());
+    }
+    _log.log("Recorded dependencies of " + dependencies.keySet() + "; not recorded: " + unrecorded);
+    _jmc.testDependenciesRecorded(dependencies, unrecorded);
+    return result;
+  }
+  
+  /** @return true iff the given class has an annotation named NotThreadSafe */
+  private static boolean _isNotThreadSafe(Class<?> c) {
+    for (Annotation a : c.getAnnotations()) {
+      if (a.annotationType().getSimpleName().equals("NotThreadSafe")) { return true; }
+    }
+    return false;
+  }
+  
   private void _reset() {
     _suite = null;
     _testClassNames = null;
@@ -358,7 +462,7 @@ public class JUnitTestManager {
     * @return true iff the given class is an instance of junit.framework.Test
     */
   private boolean _isJUnitTest(Class<?> c) {
-    _log.log("Testing class " + c + " to determine if it is a JUnit test class");
+    _log.log("Testing class %s to determine if it is a JUnit test class", c);
 
     // test first for JUnit 4 annotated test methods
     for (Method method : c.getDeclaredMethods()) {
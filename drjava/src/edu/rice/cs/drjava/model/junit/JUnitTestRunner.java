@@ -36,6 +36,16 @@
 
 package edu.rice.cs.drjava.model.junit;
 
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
 import junit.runner.*;
 import junit.framework.*;
 
@@ -64,6 +74,9 @@ public class JUnitTestRunner extends BaseTestRunner {
 
   /** The current number of failures in the result. */
   private int _failureCount;
+
+  /** The shards of a parallel run that have not yet been completely reported; the first is reported as it runs. */
+  private LinkedList<Shard> _pendingShards;
   
   
 
@@ -78,6 +91,7 @@ public class JUnitTestRunner extends BaseTestRunner {
     _result = null;
     _errorCount = 0;
     _failureCount = 0;
+    _pendingShards = null;
   }
  
   public synchronized TestResult runSuite(TestSuite suite) {
@@ -93,6 +107,142 @@ public class JUnitTestRunner extends BaseTestRunner {
     return _result;
   }
   
+  /** Runs the tests in {@code parallel} on a pool of {@code threads} threads, and then the tests in
+    * {@code sequential}, one at a time.  Each test (typically the adapter for a test class) runs on a single thread
+    * with its own TestResult, and progress is reported for one test at a time, in order: the events of the first
+    * unfinished test are reported as they occur, and the events of later tests are held until it finishes.  Thus
+    * the callbacks for each test class form a contiguous sequence, as in a sequential run.
+    * @return a TestResult holding the errors and failures of all tests, in order
+    */
+  public TestResult runSuiteInParallel(List<Test> parallel, List<Test> sequential, int threads) {
+    List<Shard> shards = new ArrayList<Shard>();
+    int count = 0;
+    for (Test t : parallel) { shards.add(new Shard(t)); count += t.countTestCases(); }
+    for (Test t : sequential) { shards.add(new Shard(t)); count += t.countTestCases(); }
+    synchronized(this) {
+      _errorCount = 0;
+      _failureCount = 0;
+      _result = new TestResult();
+      _pendingShards = new LinkedList<Shard>(shards);
+    }
+    _jmc.testSuiteStarted(count);
+    
+    // Not synchronized: the workers report progress through this runner
+    if (! parallel.isEmpty()) {
+      ExecutorService pool = Executors.newFixedThreadPool(Math.min(threads, parallel.size()), new ThreadFactory() {
+        private int _count = 0;
+        public Thread newThread(Runnable r) {
+          Thread t = new Thread(r, "JUnit worker " + (++_count));
+          t.setDaemon(true);
+          return t;
+        }
+      });
+      try {
+        List<Future<?>> futures = new ArrayList<Future<?>>();
+        for (Shard s : shards.subList(0, parallel.size())) { futures.add(pool.submit(s)); }
+        for (Future<?> f : futures) { f.get(); }
+      }
+      catch (InterruptedException e) { throw new UnexpectedException(e); }
+      catch (ExecutionException e) { throw new UnexpectedException(e.getCause()); }
+      finally { pool.shutdownNow(); }
+    }
+    for (Shard s : shards.subList(parallel.size(), shards.size())) { s.run(); }
+    
+    // Merge the results; this result has no listeners, so nothing is reported again
+    TestResult merged = new TestResult();
+    for (Shard s : shards) {
+      Enumeration<TestFailure> errors = s._result.errors();
+      while (errors.hasMoreElements()) {
+        TestFailure error = errors.nextElement();
+        merged.addError(error.failedTest(), error.thrownException());
+      }
+      Enumeration<TestFailure> failures = s._result.failures();
+      while (failures.hasMoreElements()) {
+        TestFailure failure = failures.nextElement();
+        merged.addFailure(failure.failedTest(), (AssertionFailedError) failure.thrownException());
+      }
+    }
+    synchronized(this) {
+      _result = merged;
+      _pendingShards = null;
+    }
+    return merged;
+  }
+  
+  /** Report the events of a shard, if it is the first pending one.  Then, if it has finished, move on to the next
+    * pending shard, reporting the events it has accumulated so far.
+    */
+  private synchronized void _report(Shard s) {
+    while (! _pendingShards.isEmpty() && _pendingShards.getFirst() == s) {
+      for (Runnable event : s._events) { event.run(); }
+      s._events.clear();
+      if (s._finished) {
+        _pendingShards.removeFirst();
+        if (_pendingShards.isEmpty()) { break; }
+        s = _pendingShards.getFirst();
+      }
+      else { break; }
+    }
+  }
+  
+  /** A test run on a single thread as part of a parallel run. */
+  private class Shard implements Runnable, TestListener {
+    private final Test _test;
+    private final TestResult _result;
+    /** Reports that have not yet been passed on to _jmc; guarded by JUnitTestRunner.this. */
+    private final List<Runnable> _events;
+    /** Whether _test has finished; guarded by JUnitTestRunner.this. */
+    private boolean _finished;
+    /** Whether the currently running test has failed (2), had an error (1), or neither (0); only used by the
+      * thread running _test. */
+    private int _status;
+    
+    public Shard(Test test) {
+      _test = test;
+      _result = new TestResult();
+      _result.addListener(this);
+      _events = new ArrayList<Runnable>();
+      _finished = false;
+      _status = 0;
+    }
+    
+    public void run() {
+      try { _test.run(_result); }
+      finally {
+        synchronized(JUnitTestRunner.this) {
+          _finished = true;
+          _report(this);
+        }
+      }
+    }
+    
+    public void startTest(Test test) {
+      _status = 0;
+      final String testName = test.toString();
+      _addEvent(new Runnable() { public void run() { _jmc.testStarted(testName); } });
+    }
+    
+    public void addError(Test test, Throwable t) { if (_status == 0) { _status = TestRunListener.STATUS_ERROR; } }
+    
+    public void addFailure(Test test, AssertionFailedError t) {
+      if (_status == 0) { _status = TestRunListener.STATUS_FAILURE; }
+    }
+    
+    public void endTest(Test test) {
+      final String testName = test.toString();
+      final boolean success = (_status == 0);
+      final boolean failure = (_status == TestRunListener.STATUS_FAILURE);
+      _addEvent(new Runnable() { public void run() { _jmc.testEnded(testName, success, failure); } });
+    }
+    
+    private void _addEvent(Runnable event) {
+      synchronized(JUnitTestRunner.this) {
+        _events.add(event);
+        _report(this);
+      }
+    }
+  }
+  
   public Class<?> loadPossibleTest(String className) throws ClassNotFoundException {
     Class<?> c =_loader.loadClass(className);
     _log.log("Test class " + c + " loaded");
@@ -0,0 +1,146 @@
+/*BEGIN_COPYRIGHT_BLOCK
+ *
+ * Copyright (c) 2001-2016, JavaPLT group at Rice University (drjava@rice.edu)
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *    * Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the names of DrJava, the JavaPLT group, Rice University, nor the
+ *      names of its contributors may be used to endorse or promote products
+ *      derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * This software is Open Source Initiative approved Open Source Software.
+ * Open Source Initative Approved is a trademark of the Open Source Initiative.
+ * 
+ * This file is part of DrJava.  Download the current version of this project
+ * from http://www.drjava.org/ or http://sourceforge.net/projects/drjava/
+ * 
+ * END_COPYRIGHT_BLOCK*/
+
+
+package edu.rice.cs.drjava.model.junit;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import edu.rice.cs.drjava.DrJavaTestCase;
+import edu.rice.cs.util.classloader.ClassFileError;
+
+import junit.framework.JUnit4TestAdapter;
+import junit.framework.JUnit4TestAdapterCache;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestResult;
+
+/** Tests the parallel mode of JUnitTestRunner.
+  * @version $Id$
+  */
+public final class JUnitTestRunnerTest extends DrJavaTestCase {
+  
+  private static final AtomicInteger _running = new AtomicInteger(0);
+  private static final AtomicInteger _maxRunning = new AtomicInteger(0);
+  
+  /** Simulates a test that takes a while to run. */
+  private static void _work() throws InterruptedException {
+    int running = _running.incrementAndGet();
+    synchronized(_maxRunning) { if (running > _maxRunning.get()) { _maxRunning.set(running); } }
+    Thread.sleep(100);
+    _running.decrementAndGet();
+  }
+  
+  public static class SampleA extends TestCase {
+    public void testOne() throws Exception { _work(); }
+    public void testTwo() throws Exception { _work(); fail("expected failure"); }
+  }
+  
+  public static class SampleB extends TestCase {
+    public void testOne() throws Exception { _work(); }
+    public void testTwo() throws Exception { _work(); throw new RuntimeException("expected error"); }
+    public void testThree() throws Exception { _work(); }
+  }
+  
+  public static class SampleC extends TestCase {
+    public void testOne() throws Exception { _work(); }
+  }
+  
+  /** Records the callbacks made during a test run. */
+  private static class Recorder implements JUnitModelCallback {
+    public final List<String> events = Collections.synchronizedList(new ArrayList<String>());
+    public volatile int numTests = -1;
+    public void nonTestCase(boolean isTestAll, boolean didCompileFail) { }
+    public void classFileError(ClassFileError e) { }
+    public void testSuiteStarted(int n) { numTests = n; }
+    public void testStarted(String testName) { events.add("start " + testName); }
+    public void testEnded(String testName, boolean wasSuccessful, boolean causedError) {
+      events.add("end " + testName + " " + wasSuccessful + " " + causedError);
+    }
+    public void testSuiteEnded(JUnitError[] errors) { }
+    public void testDependenciesRecorded(Map<String, Map<File, Long>> dependencies, Set<String> unrecorded) { }
+    public File getFileForClassName(String className) { return null; }
+    public Iterable<File> getClassPath() { return null; }
+    public void junitJVMReady() { }
+  }
+  
+  private static Test _adapter(Class<?> c) { return new JUnit4TestAdapter(c, new JUnit4TestAdapterCache()); }
+  
+  public void testRunSuiteInParallel() {
+    Recorder r = new Recorder();
+    JUnitTestRunner runner = new JUnitTestRunner(r, getClass().getClassLoader());
+    List<Test> parallel = new ArrayList<Test>();
+    parallel.add(_adapter(SampleA.class));
+    parallel.add(_adapter(SampleB.class));
+    List<Test> sequential = new ArrayList<Test>();
+    sequential.add(_adapter(SampleC.class));
+    
+    _maxRunning.set(0);
+    TestResult result = runner.runSuiteInParallel(parallel, sequential, 4);
+    
+    assertEquals(6, r.numTests);
+    // JUnit4TestAdapter reports all faults as errors
+    assertEquals(2, result.errorCount() + result.failureCount());
+    assertTrue("tests ran concurrently", _maxRunning.get() > 1);
+    
+    // Each test's start is immediately followed by its end, and each class's tests are contiguous
+    assertEquals(12, r.events.size());
+    Set<String> finishedClasses = new HashSet<String>();
+    String currentClass = null;
+    for (int i = 0; i < r.events.size(); i += 2) {
+      String start = r.events.get(i);
+      String end = r.events.get(i + 1);
+      assertTrue(start, start.startsWith("start "));
+      String name = start.substring("start ".length());
+      assertTrue(end, end.startsWith("end " + name + " "));
+      String className = name.substring(name.indexOf('(') + 1, name.indexOf(')'));
+      if (! className.equals(currentClass)) {
+        assertTrue("class " + className + " is contiguous", finishedClasses.add(className));
+        currentClass = className;
+      }
+      assertEquals(end, ! name.startsWith("testTwo("), end.contains(" true "));
+    }
+    assertEquals(3, finishedClasses.size());
+    assertTrue(currentClass.endsWith("SampleC"));
+  }
+}
@@ -0,0 +1,162 @@
+/*BEGIN_COPYRIGHT_BLOCK
+ *
+ * Copyright (c) 2001-2016, JavaPLT group at Rice University (drjava@rice.edu)
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *    * Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the names of DrJava, the JavaPLT group, Rice University, nor the
+ *      names of its contributors may be used to endorse or promote products
+ *      derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * This software is Open Source Initiative approved Open Source Software.
+ * Open Source Initative Approved is a trademark of the Open Source Initiative.
+ * 
+ * This file is part of DrJava.  Download the current version of this project
+ * from http://www.drjava.org/ or http://sourceforge.net/projects/drjava/
+ * 
+ * END_COPYRIGHT_BLOCK*/
+
+package edu.rice.cs.drjava.model.junit;
+
+import java.io.File;
+import java.io.IOException;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import edu.rice.cs.plt.io.IOUtil;
+import edu.rice.cs.util.Log;
+
+/** Records the class files that each test class loaded the last time it passed, together with checksums of their
+  * contents.  A test class whose recorded class files are all unchanged (in particular, after a compilation that
+  * regenerated them identically) is unaffected by the changes since it passed, and need not be run again.  Test
+  * classes that have not been recorded are always affected.  The index can be kept in a file, which is rewritten
+  * whenever new dependencies are recorded.  Thread-safe.
+  * @version $Id$
+  */
+public class TestImpactIndex {
+  
+  /** log for use in debugging */
+  private static final Log _log = new Log("TestImpactIndex.txt", false);
+  
+  /** Maps the name of each recorded test class to its class files and their checksums. */
+  private final Map<String, Map<File, Long>> _dependencies = new HashMap<String, Map<File, Long>>();
+  
+  /** The file in which the index is kept; null if it is only kept in memory. */
+  private File _file = null;
+  
+  /** @return the file in which the index is kept, or null if it is only kept in memory */
+  public synchronized File getFile() { return _file; }
+  
+  /** Replaces the contents of the index with those saved in the given file (if it exists and can be read), and keeps
+    * the index in that file from now on.
+    * @param file the file in which to keep the index; null to keep it only in memory
+    */
+  public synchronized void load(File file) {
+    _dependencies.clear();
+    _file = file;
+    if (file == null || ! file.isFile()) return;
+    try {
+      // each test class is a line of its own, followed by a tab-indented line for each of its class files
+      Map<File, Long> current = null;
+      Iterator<String> lines = IOUtil.readLines(file);
+      while (lines.hasNext()) {
+        String line = lines.next();
+        if (line.length() == 0) continue;
+        if (line.charAt(0) != '\t') {
+          current = new HashMap<File, Long>();
+          _dependencies.put(line, current);
+        }
+        else if (current != null) {
+          int tab = line.indexOf('\t', 1);
+          current.put(new File(line.substring(tab + 1)), Long.valueOf(line.substring(1, tab)));
+        }
+      }
+    }
+    catch (IOException e) { _log.log("Could not read " + file, e); _dependencies.clear(); }
+    catch (RuntimeException e) { _log.log("Corrupt test impact index " + file, e); _dependencies.clear(); }
+  }
+  
+  /** Records the dependencies of the given test classes, replacing any previously recorded for them.
+    * @param dependencies maps test class names to the class files they loaded, and the checksums of those files
+    */
+  public void record(Map<String, Map<File, Long>> dependencies) {
+    record(dependencies, Collections.<String>emptySet());
+  }
+  
+  /** Records the dependencies of the test classes that passed, and forgets those of the test classes that failed, so
+    * that the latter are affected until they pass again.
+    * @param dependencies maps test class names to the class files they loaded, and the checksums of those files
+    * @param failed the names of test classes whose recorded dependencies, if any, are stale
+    */
+  public synchronized void record(Map<String, Map<File, Long>> dependencies, Iterable<String> failed) {
+    for (String className : failed) { _dependencies.remove(className); }
+    for (Map.Entry<String, Map<File, Long>> e : dependencies.entrySet()) {
+      _dependencies.put(e.getKey(), new HashMap<File, Long>(e.getValue()));
+    }
+    _save();
+  }
+  
+  /** Forgets all recorded dependencies, so that all test classes are affected. */
+  public synchronized void clear() {
+    _dependencies.clear();
+    _save();
+  }
+  
+  /** @param className the name of a test class
+    * @return true unless the test class has been recorded, and all its recorded class files are unchanged
+    */
+  public synchronized boolean isAffected(String className) {
+    Map<File, Long> files = _dependencies.get(className);
+    if (files == null) return true;
+    for (Map.Entry<File, Long> e : files.entrySet()) {
+      File f = e.getKey();
+      try { if (! f.isFile() || checksum(IOUtil.toByteArray(f)) != e.getValue().longValue()) return true; }
+      catch (IOException ex) { return true; }
+    }
+    return false;
+  }
+  
+  /** @param bytes the contents of a class file
+    * @return the CRC-32 checksum of bytes, as recorded by the index
+    */
+  public static long checksum(byte[] bytes) {
+    CRC32 crc = new CRC32();
+    crc.update(bytes);
+    return crc.getValue();
+  }
+  
+  /** Writes the index to its file, if any. */
+  private void _save() {
+    if (_file == null) return;
+    StringBuilder sb = new StringBuilder();
+    for (Map.Entry<String, Map<File, Long>> test : _dependencies.entrySet()) {
+      sb.append(test.getKey()).append('\n');
+      for (Map.Entry<File, Long> dep : test.getValue().entrySet()) {
+        sb.append('\t').append(dep.getValue()).append('\t').append(dep.getKey().getPath()).append('\n');
+      }
+    }
+    if (! IOUtil.attemptWriteStringToFile(_file, sb.toString())) _log.log("Could not write " + _file);
+  }
+}
@@ -0,0 +1,158 @@
+/*BEGIN_COPYRIGHT_BLOCK
+ *
+ * Copyright (c) 2001-2016, JavaPLT group at Rice University (drjava@rice.edu)
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *    * Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the names of DrJava, the JavaPLT group, Rice University, nor the
+ *      names of its contributors may be used to endorse or promote products
+ *      derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * This software is Open Source Initiative approved Open Source Software.
+ * Open Source Initative Approved is a trademark of the Open Source Initiative.
+ * 
+ * This file is part of DrJava.  Download the current version of this project
+ * from http://www.drjava.org/ or http://sourceforge.net/projects/drjava/
+ * 
+ * END_COPYRIGHT_BLOCK*/
+
+package edu.rice.cs.drjava.model.junit;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import edu.rice.cs.drjava.DrJavaTestCase;
+import edu.rice.cs.plt.io.IOUtil;
+
+/** Tests TestImpactIndex.
+  * @version $Id$
+  */
+public final class TestImpactIndexTest extends DrJavaTestCase {
+  
+  private File _tempDir;
+  private File _a;
+  private File _b;
+  
+  public void setUp() throws Exception {
+    super.setUp();
+    String user = System.getProperty("user.name");
+    _tempDir = IOUtil.createAndMarkTempDirectory("DrJava-test-" + user, "");
+    _a = new File(_tempDir, "A.class");
+    _b = new File(_tempDir, "B.class");
+    IOUtil.writeStringToFile(_a, "class A");
+    IOUtil.writeStringToFile(_b, "class B");
+  }
+  
+  public void tearDown() throws Exception {
+    IOUtil.deleteRecursively(_tempDir);
+    _tempDir = null;
+    super.tearDown();
+  }
+  
+  /** @return a map from test to the current checksums of the given files */
+  private Map<String, Map<File, Long>> _dependencies(String test, File... files) throws Exception {
+    Map<File, Long> checksums = new HashMap<File, Long>();
+    for (File f : files) { checksums.put(f, TestImpactIndex.checksum(IOUtil.toByteArray(f))); }
+    Map<String, Map<File, Long>> result = new HashMap<String, Map<File, Long>>();
+    result.put(test, checksums);
+    return result;
+  }
+  
+  public void testAffected() throws Exception {
+    TestImpactIndex index = new TestImpactIndex();
+    index.record(_dependencies("ATest", _a));
+    index.record(_dependencies("BTest", _a, _b));
+    assertFalse(index.isAffected("ATest"));
+    assertFalse(index.isAffected("BTest"));
+    assertTrue("unrecorded test", index.isAffected("CTest"));
+    
+    // rewriting a file with the same contents (as a compilation might) doesn't affect its tests
+    IOUtil.writeStringToFile(_b, "class B");
+    assertFalse(index.isAffected("BTest"));
+    
+    IOUtil.writeStringToFile(_b, "class B { }");
+    assertFalse(index.isAffected("ATest"));
+    assertTrue(index.isAffected("BTest"));
+    
+    _a.delete();
+    assertTrue(index.isAffected("ATest"));
+    
+    index.clear();
+    index.record(_dependencies("BTest", _b));
+    assertFalse(index.isAffected("BTest"));
+    index.clear();
+    assertTrue(index.isAffected("BTest"));
+  }
+  
+  /** A test class that passed and then failed, without any change to the class files it loaded, is not skipped. */
+  public void testFailureForgetsDependencies() throws Exception {
+    File file = new File(_tempDir, "project.drjava.tests");
+    TestImpactIndex index = new TestImpactIndex();
+    index.load(file);
+    index.record(_dependencies("ATest", _a));
+    index.record(_dependencies("BTest", _a, _b));
+    assertFalse(index.isAffected("ATest"));
+    
+    index.record(_dependencies("BTest", _a, _b), Collections.singleton("ATest"));
+    assertTrue("failed test", index.isAffected("ATest"));
+    assertFalse(index.isAffected("BTest"));
+    TestImpactIndex reloaded = new TestImpactIndex();
+    reloaded.load(file);
+    assertTrue("failed test after reloading", reloaded.isAffected("ATest"));
+    assertFalse(reloaded.isAffected("BTest"));
+    
+    // a failure that can't be attributed to one test class forgets all that ran, even with no passing classes
+    index.record(new HashMap<String, Map<File, Long>>(), Arrays.asList("ATest", "BTest"));
+    assertTrue(index.isAffected("BTest"));
+    
+    index.record(_dependencies("ATest", _a));
+    assertFalse("passed again", index.isAffected("ATest"));
+  }
+  
+  public void testPersistence() throws Exception {
+    File file = new File(_tempDir, "project.drjava.tests");
+    TestImpactIndex index = new TestImpactIndex();
+    index.load(file);
+    index.record(_dependencies("ATest", _a));
+    index.record(_dependencies("BTest", _a, _b));
+    
+    TestImpactIndex reloaded = new TestImpactIndex();
+    reloaded.load(file);
+    assertEquals(file, reloaded.getFile());
+    assertFalse(reloaded.isAffected("ATest"));
+    assertFalse(reloaded.isAffected("BTest"));
+    IOUtil.writeStringToFile(_b, "class B { }");
+    assertFalse(reloaded.isAffected("ATest"));
+    assertTrue(reloaded.isAffected("BTest"));
+    
+    // a corrupt file is ignored
+    IOUtil.writeStringToFile(file, "ATest\n\tnot a checksum\n");
+    reloaded.load(file);
+    assertTrue(reloaded.isAffected("ATest"));
+    
+    reloaded.load(null);
+    assertNull(reloaded.getFile());
+    assertTrue(reloaded.isAffected("ATest"));
+  }
+}
@@ -109,6 +109,18 @@ public class DefaultInteractionsModel extends RMIInteractionsModel {
     _log.log("Printing string '" + s + "'");
   }
   
+  /** Called when the repl prints a batch of output.  This method can safely be called from outside the event thread.
+    * @param text the printed segments, in order
+    * @param isErr {@code isErr[i]} is true iff {@code text[i]} was printed to System.err
+    */
+  public void replSystemPrintBatch(String[] text, boolean[] isErr) {
+    super.replSystemPrintBatch(text, isErr);  // Print the batch to interactions pane
+    for (int i = 0; i < text.length; i++) {   // Print the batch to console
+      if (isErr[i]) { _model.systemErrPrint(text[i]); }
+      else { _model.systemOutPrint(text[i]); }
+    }
+  }
+  
   /** Returns a line of text entered by the user at the equivalent of System.in.  This method may be safely called
     * from outside the event thread. */
   public String getConsoleInput() { 
@@ -39,6 +39,7 @@ package edu.rice.cs.drjava.model.repl;
 import edu.rice.cs.drjava.model.AbstractDJDocument;
 import edu.rice.cs.drjava.model.definitions.indent.Indenter;
 import edu.rice.cs.drjava.model.definitions.CompoundUndoManager;
+import edu.rice.cs.drjava.model.definitions.UndoTextArena;
 import edu.rice.cs.drjava.model.GlobalEventNotifier;
 
 import edu.rice.cs.plt.tuple.Pair;
@@ -157,6 +158,14 @@ public class InteractionsDJDocument extends AbstractDJDocument implements Consol
     chng.addEdit(new CommandUndoableEdit(undoCommand, doCommand));    
   }
   
+  /** Edits only reach the undo manager through an UndoableEditListener (see InteractionsPane), so the text of edits
+    * made while no listener is attached is not stored in the arena.
+    * @return the arena of the undo manager, or null if no listener is attached
+    */
+  protected UndoTextArena getUndoTextArena() {
+    return (getUndoableEditListeners().length == 0) ? null : _undoManager.getTextArena();
+  }
+  
   public boolean undoManagerCanUndo() { return _undoManager.canUndo(); }
   
   public boolean undoManagerCanRedo() { return _undoManager.canRedo(); }
@@ -576,6 +576,29 @@ public abstract class InteractionsModel implements InteractionsModelCallback {
       else delayCount--;
   }
   
+  /** Called when the repl prints a batch of output to System.out and System.err.  The entire batch is inserted into
+    * the interactions document by a single event-thread task, and counts as a single write for the purpose of the
+    * flooding delay.  This method can safely be called from outside the event thread.
+    * @param text the printed segments, in order
+    * @param isErr {@code isErr[i]} is true iff {@code text[i]} was printed to System.err
+    */
+  public void replSystemPrintBatch(final String[] text, final boolean[] isErr) {
+    Utilities.invokeLater(new Runnable() {
+      public void run() {
+        for (int i = 0; i < text.length; i++) {
+          _document.insertBeforeLastPrompt(text[i], isErr[i] ? ConsoleDocument.SYSTEM_ERR_STYLE
+                                                              : ConsoleDocument.SYSTEM_OUT_STYLE);
+        }
+      }
+    });
+    if (delayCount == 0) {
+      scrollToCaret();
+      _writerDelay();
+      delayCount = DELAY_INTERVAL;
+    }
+    else delayCount--;
+  }
+  
   /** Returns a line of text entered by the user at the equivalent of System.in.  Only executes in the event thread. */
   public String getConsoleInput() { return _inputListener.getConsoleInput(); }
   
@@ -62,6 +62,12 @@ public interface InteractionsModelCallback {
     */
   public void replSystemErrPrint(String s);
   
+  /** Called when the repl prints a batch of output to System.out and System.err.
+    * @param text the printed segments, in order
+    * @param isErr {@code isErr[i]} is true iff {@code text[i]} was printed to System.err
+    */
+  public void replSystemPrintBatch(String[] text, boolean[] isErr);
+  
   /** Called when input is request from System.in.
     * @return the input given to System.in
     */
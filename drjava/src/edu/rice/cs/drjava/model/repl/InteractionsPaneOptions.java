@@ -37,6 +37,8 @@
 package edu.rice.cs.drjava.model.repl;
 
 import edu.rice.cs.dynamicjava.Options;
+import edu.rice.cs.dynamicjava.symbol.StandardTypeSystem;
+import edu.rice.cs.dynamicjava.symbol.TypeSystem;
 
 /** Interpreter options that can be changed.
   * @version $Id$
@@ -44,11 +46,15 @@ import edu.rice.cs.dynamicjava.Options;
 public class InteractionsPaneOptions extends Options {
   private volatile boolean _enforceAllAccess = false;
   public boolean enforceAllAccess() { return _enforceAllAccess; }
-  public void setEnforceAllAccess(boolean enforce) { _enforceAllAccess = enforce; }
+  public void setEnforceAllAccess(boolean enforce) {
+    if (enforce != _enforceAllAccess) { _enforceAllAccess = enforce; _accessChanged(); }
+  }
   
   private volatile boolean _enforcePrivateAccess = false;
   public boolean enforcePrivateAccess() { return _enforcePrivateAccess; }
-  public void setEnforcePrivateAccess(boolean enforce) { _enforcePrivateAccess = enforce; }
+  public void setEnforcePrivateAccess(boolean enforce) {
+    if (enforce != _enforcePrivateAccess) { _enforcePrivateAccess = enforce; _accessChanged(); }
+  }
   
   private volatile boolean _requireSemicolon = false;
   public boolean requireSemicolon() { return _requireSemicolon; }
@@ -57,4 +63,14 @@ public class InteractionsPaneOptions extends Options {
   private volatile boolean _requireVariableType = false;
   public boolean requireVariableType() { return _requireVariableType; }
   public void setRequireVariableType(boolean require) { _requireVariableType = require; }
+  
+  private volatile boolean _compileMethodBodies = false;
+  public boolean compileMethodBodies() { return _compileMethodBodies; }
+  public void setCompileMethodBodies(boolean compile) { _compileMethodBodies = compile; }
+  
+  /** The type system memoizes method lookups, which depend on accessibility, so its memos are discarded. */
+  private void _accessChanged() {
+    TypeSystem ts = typeSystem();
+    if (ts instanceof StandardTypeSystem) { ((StandardTypeSystem) ts).clearMemos(); }
+  }
 }
@@ -194,6 +194,9 @@ public abstract class RMIInteractionsModel extends InteractionsModel {
   /** @param require true if variable declarations are required to include an explicit type. */
   public void setRequireVariableType(boolean require) { _jvm.setRequireVariableType(require); }
   
+  /** @param compile true if the bodies of declared methods are compiled to bytecode where possible. */
+  public void setCompileMethodBodies(boolean compile) { _jvm.setCompileMethodBodies(compile); }
+  
   /** Gets the interpreter class path from the interpreter jvm.
     * @return a list of class path elements
     */
@@ -0,0 +1,255 @@
+/*BEGIN_COPYRIGHT_BLOCK
+ *
+ * Copyright (c) 2001-2016, JavaPLT group at Rice University (drjava@rice.edu)
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *    * Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the names of DrJava, the JavaPLT group, Rice University, nor the
+ *      names of its contributors may be used to endorse or promote products
+ *      derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * This software is Open Source Initiative approved Open Source Software.
+ * Open Source Initative Approved is a trademark of the Open Source Initiative.
+ * 
+ * This file is part of DrJava.  Download the current version of this project
+ * from http://www.drjava.org/ or http://sourceforge.net/projects/drjava/
+ * 
+ * END_COPYRIGHT_BLOCK*/
+
+
+package edu.rice.cs.drjava.model.repl.newjvm;
+
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static edu.rice.cs.plt.debug.DebugUtil.error;
+
+/** A bounded buffer for the text that the interpreter JVM writes to System.out and System.err.  Writers append to the
+  * buffer and return immediately; a daemon flusher thread delivers the buffered text to a {@link Sink} in batches,
+  * either as soon as {@code flushThreshold} characters are pending or {@code flushDelay} milliseconds after the first
+  * pending write.  Consecutive writes to the same stream are coalesced into a single segment, and segments are
+  * delivered in the order in which they were written, so the interleaving of stdout and stderr is preserved.  Once
+  * {@code capacity} characters are pending, writers block until the flusher has taken the pending batch, so a runaway
+  * print loop is throttled to the speed of the sink instead of paying one remote call per write.
+  * <p>
+  * This class is used in the interpreter JVM, so it must not refer to DrJava's config framework.
+  * @version $Id$
+  */
+public class BufferedOutputChannel {
+  
+  /** Default number of pending characters at which writers block. */
+  public static final int DEFAULT_CAPACITY = 64 * 1024;
+  
+  /** Default number of pending characters that triggers a flush. */
+  public static final int DEFAULT_FLUSH_THRESHOLD = 8 * 1024;
+  
+  /** Default number of milliseconds a write may remain pending before it is flushed. */
+  public static final int DEFAULT_FLUSH_DELAY = 20;
+  
+  /** The destination of the batches produced by a {@link BufferedOutputChannel}. */
+  public interface Sink {
+    /** Delivers a batch of output.  Consecutive segments always belong to different streams.
+      * @param text the segments of the batch, in the order in which they were written
+      * @param isErr {@code isErr[i]} is true iff {@code text[i]} was written to System.err
+      * @throws RemoteException if remote communication fails
+      */
+    public void print(String[] text, boolean[] isErr) throws RemoteException;
+  }
+  
+  private final Sink _sink;
+  private final int _capacity;
+  private final int _flushThreshold;
+  private final int _flushDelay;
+  private final Thread _flusher;
+  
+  /** Lock protecting all of the mutable fields below. */
+  private final Object _lock = new Object();
+  
+  /** Pending segments, in order; the last element is the one being appended to. */
+  private final List<StringBuilder> _segments = new ArrayList<StringBuilder>();
+  private final List<Boolean> _segmentIsErr = new ArrayList<Boolean>();
+  private int _pendingChars = 0;
+  
+  /** Time (in ms) of the oldest pending write. */
+  private long _firstPendingTime = 0;
+  
+  /** Total number of characters ever written, and total number delivered to the sink.  Used by {@link #flush}. */
+  private long _written = 0;
+  private long _delivered = 0;
+  
+  private boolean _flushRequested = false;
+  private boolean _closed = false;
+  
+  /** Creates a channel with default capacity, flush threshold and flush delay.
+    * @param sink the destination of the batches
+    */
+  public BufferedOutputChannel(Sink sink) {
+    this(sink, DEFAULT_CAPACITY, DEFAULT_FLUSH_THRESHOLD, DEFAULT_FLUSH_DELAY);
+  }
+  
+  /** Creates a channel and starts its flusher thread.
+    * @param sink the destination of the batches
+    * @param capacity number of pending characters at which writers block
+    * @param flushThreshold number of pending characters that triggers a flush
+    * @param flushDelay maximum number of milliseconds a write remains pending
+    */
+  public BufferedOutputChannel(Sink sink, int capacity, int flushThreshold, int flushDelay) {
+    if (capacity < 1 || flushThreshold < 1 || flushThreshold > capacity || flushDelay < 0) {
+      throw new IllegalArgumentException("Invalid buffer parameters");
+    }
+    _sink = sink;
+    _capacity = capacity;
+    _flushThreshold = flushThreshold;
+    _flushDelay = flushDelay;
+    _flusher = new Thread("Output Flusher") {
+      public void run() { _flushLoop(); }
+    };
+    _flusher.setDaemon(true);
+    _flusher.start();
+  }
+  
+  /** Appends text written to System.out.  Blocks while the buffer is full.
+    * @param s the text to append
+    */
+  public void writeOut(String s) { _write(s, false); }
+  
+  /** Appends text written to System.err.  Blocks while the buffer is full.
+    * @param s the text to append
+    */
+  public void writeErr(String s) { _write(s, true); }
+  
+  private void _write(String s, boolean isErr) {
+    if (s.length() == 0) { return; }
+    if (Thread.currentThread() == _flusher) {
+      // Output produced while delivering a batch (e.g., by a logging sink) must not wait for the flusher.
+      _deliver(new String[] { s }, new boolean[] { isErr });
+      return;
+    }
+    boolean direct = false;
+    synchronized(_lock) {
+      boolean interrupted = false;
+      while (_pendingChars >= _capacity && ! _closed) {
+        try { _lock.wait(); }
+        catch (InterruptedException e) { interrupted = true; }
+      }
+      if (interrupted) { Thread.currentThread().interrupt(); }
+      if (_closed) { direct = true; }
+      else {
+        int last = _segments.size() - 1;
+        if (last >= 0 && _segmentIsErr.get(last) == isErr) { _segments.get(last).append(s); }
+        else {
+          _segments.add(new StringBuilder(s));
+          _segmentIsErr.add(isErr);
+        }
+        if (_pendingChars == 0) { _firstPendingTime = System.currentTimeMillis(); }
+        _pendingChars += s.length();
+        _written += s.length();
+        _lock.notifyAll();
+      }
+    }
+    if (direct) { _deliver(new String[] { s }, new boolean[] { isErr }); }
+  }
+  
+  /** Blocks until all text written before this call has been delivered to the sink.  Has no effect if the flusher
+    * thread has died or if called by the flusher thread itself.
+    */
+  public void flush() {
+    if (Thread.currentThread() == _flusher) { return; }
+    synchronized(_lock) {
+      long target = _written;
+      if (_delivered >= target) { return; }
+      _flushRequested = true;
+      _lock.notifyAll();
+      boolean interrupted = false;
+      while (_delivered < target && _flusher.isAlive()) {
+        try { _lock.wait(); }
+        catch (InterruptedException e) { interrupted = true; }
+      }
+      if (interrupted) { Thread.currentThread().interrupt(); }
+    }
+  }
+  
+  /** Delivers all pending text and stops the flusher thread.  Subsequent writes are delivered synchronously, one
+    * write per batch.
+    */
+  public void close() {
+    synchronized(_lock) {
+      _closed = true;
+      _lock.notifyAll();
+    }
+    flush();
+  }
+  
+  /** Body of the flusher thread: repeatedly waits for a batch to become due and delivers it. */
+  private void _flushLoop() {
+    while (true) {
+      String[] text;
+      boolean[] isErr;
+      long end;
+      synchronized(_lock) {
+        try {
+          while (true) {
+            if (_pendingChars == 0) {
+              if (_closed) { return; }
+              _lock.wait();
+              continue;
+            }
+            if (_pendingChars >= _flushThreshold || _flushRequested || _closed) { break; }
+            long remaining = _firstPendingTime + _flushDelay - System.currentTimeMillis();
+            if (remaining <= 0) { break; }
+            _lock.wait(remaining);
+          }
+        }
+        catch (InterruptedException e) { /* deliver whatever is pending */ }
+        
+        int n = _segments.size();
+        text = new String[n];
+        isErr = new boolean[n];
+        for (int i = 0; i < n; i++) {
+          text[i] = _segments.get(i).toString();
+          isErr[i] = _segmentIsErr.get(i);
+        }
+        _segments.clear();
+        _segmentIsErr.clear();
+        _pendingChars = 0;
+        _flushRequested = false;
+        end = _written;
+        _lock.notifyAll();  // wake up writers blocked on a full buffer
+      }
+      
+      _deliver(text, isErr);
+      
+      synchronized(_lock) {
+        _delivered = end;
+        _lock.notifyAll();  // wake up callers of flush()
+      }
+    }
+  }
+  
+  /** Hands a batch to the sink.  Failures are logged; there is no writer to report them to. */
+  private void _deliver(String[] text, boolean[] isErr) {
+    if (text.length == 0) { return; }
+    try { _sink.print(text, isErr); }
+    catch (RemoteException re) { error.log("Main JVM can't be reached for output", re); }
+    catch (RuntimeException e) { error.log("Output sink failed", e); }
+  }
+}
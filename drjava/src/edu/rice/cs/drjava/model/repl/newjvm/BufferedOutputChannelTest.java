@@ -0,0 +1,162 @@
+/*BEGIN_COPYRIGHT_BLOCK
+ *
+ * Copyright (c) 2001-2016, JavaPLT group at Rice University (drjava@rice.edu)
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *    * Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the names of DrJava, the JavaPLT group, Rice University, nor the
+ *      names of its contributors may be used to endorse or promote products
+ *      derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * This software is Open Source Initiative approved Open Source Software.
+ * Open Source Initative Approved is a trademark of the Open Source Initiative.
+ * 
+ * This file is part of DrJava.  Download the current version of this project
+ * from http://www.drjava.org/ or http://sourceforge.net/projects/drjava/
+ * 
+ * END_COPYRIGHT_BLOCK*/
+
+
+package edu.rice.cs.drjava.model.repl.newjvm;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import edu.rice.cs.drjava.DrJavaTestCase;
+import edu.rice.cs.plt.concurrent.ConcurrentUtil;
+
+/** Tests the batching, ordering and backpressure behavior of BufferedOutputChannel.  Running the class as a program
+  * prints a benchmark comparing per-write delivery with batched delivery through a sink that simulates the latency
+  * of a remote call.
+  * @version $Id$
+  */
+public final class BufferedOutputChannelTest extends DrJavaTestCase {
+  
+  /** Records every batch delivered to it, optionally sleeping to simulate a slow remote call. */
+  private static class RecordingSink implements BufferedOutputChannel.Sink {
+    private final int _delay;
+    private final List<String[]> _texts = new ArrayList<String[]>();
+    private final List<boolean[]> _isErrs = new ArrayList<boolean[]>();
+    private volatile int _maxBatchChars = 0;
+    
+    public RecordingSink(int delay) { _delay = delay; }
+    
+    public void print(String[] text, boolean[] isErr) {
+      if (_delay > 0) { ConcurrentUtil.sleep(_delay); }
+      int chars = 0;
+      for (String s : text) { chars += s.length(); }
+      synchronized(this) {
+        _texts.add(text);
+        _isErrs.add(isErr);
+        if (chars > _maxBatchChars) { _maxBatchChars = chars; }
+      }
+    }
+    
+    public synchronized int batches() { return _texts.size(); }
+    
+    /** @return all output delivered so far, with stderr segments wrapped in brackets */
+    public synchronized String transcript() {
+      StringBuilder sb = new StringBuilder();
+      for (int b = 0; b < _texts.size(); b++) {
+        for (int i = 0; i < _texts.get(b).length; i++) {
+          if (_isErrs.get(b)[i]) { sb.append('[').append(_texts.get(b)[i]).append(']'); }
+          else { sb.append(_texts.get(b)[i]); }
+        }
+      }
+      return sb.toString();
+    }
+  }
+  
+  public void testFlushPreservesOrderAndCoalesces() {
+    RecordingSink sink = new RecordingSink(0);
+    BufferedOutputChannel channel = new BufferedOutputChannel(sink, 1000, 1000, 10000);
+    channel.writeOut("a");
+    channel.writeOut("b");
+    channel.writeErr("c");
+    channel.writeErr("d");
+    channel.writeOut("e");
+    channel.flush();
+    assertEquals("one batch", 1, sink.batches());
+    assertEquals("segments coalesced", 3, sink._texts.get(0).length);
+    assertEquals("order preserved", "ab[cd]e", sink.transcript());
+    channel.close();
+  }
+  
+  public void testDelayedFlush() {
+    RecordingSink sink = new RecordingSink(0);
+    BufferedOutputChannel channel = new BufferedOutputChannel(sink, 1000, 1000, 10);
+    channel.writeOut("x");
+    for (int i = 0; i < 500 && sink.batches() == 0; i++) { ConcurrentUtil.sleep(10); }
+    assertEquals("output delivered without explicit flush", "x", sink.transcript());
+    channel.close();
+  }
+  
+  public void testBackpressure() {
+    RecordingSink sink = new RecordingSink(5);
+    BufferedOutputChannel channel = new BufferedOutputChannel(sink, 100, 50, 10000);
+    StringBuilder expected = new StringBuilder();
+    for (int i = 0; i < 200; i++) {
+      channel.writeOut("line " + i + "\n");
+      if (i % 7 == 0) { channel.writeErr("e" + i); expected.append("line " + i + "\n[e" + i + "]"); }
+      else { expected.append("line " + i + "\n"); }
+    }
+    channel.flush();
+    assertEquals("all output delivered in order", expected.toString(), sink.transcript());
+    assertTrue("batches are bounded by the capacity", sink._maxBatchChars < 2 * 100);
+    channel.close();
+  }
+  
+  public void testWriteAfterClose() {
+    RecordingSink sink = new RecordingSink(0);
+    BufferedOutputChannel channel = new BufferedOutputChannel(sink);
+    channel.writeOut("before");
+    channel.close();
+    assertEquals("close flushes", "before", sink.transcript());
+    channel.writeErr("after");
+    assertEquals("writes after close are delivered directly", "before[after]", sink.transcript());
+  }
+  
+  /** Prints the throughput, in lines per second, of delivering each line with its own (simulated) remote call, as
+    * the interpreter JVM used to, and of delivering the same lines through a BufferedOutputChannel.
+    * @param args optional: number of lines and simulated call latency in ms
+    */
+  public static void main(String[] args) {
+    int lines = (args.length > 0) ? Integer.parseInt(args[0]) : 20000;
+    int latency = (args.length > 1) ? Integer.parseInt(args[1]) : 1;
+    
+    RecordingSink direct = new RecordingSink(latency);
+    long start = System.nanoTime();
+    for (int i = 0; i < lines; i++) { direct.print(new String[] { "line " + i + "\n" }, new boolean[] { false }); }
+    double directRate = lines / ((System.nanoTime() - start) / 1e9);
+    
+    RecordingSink batched = new RecordingSink(latency);
+    BufferedOutputChannel channel = new BufferedOutputChannel(batched);
+    start = System.nanoTime();
+    for (int i = 0; i < lines; i++) { channel.writeOut("line " + i + "\n"); }
+    channel.flush();
+    double batchedRate = lines / ((System.nanoTime() - start) / 1e9);
+    channel.close();
+    
+    System.out.printf("%d lines, %d ms per call%n", lines, latency);
+    System.out.printf("per-write calls: %12.0f lines/s (%d calls)%n", directRate, direct.batches());
+    System.out.printf("batched:         %12.0f lines/s (%d calls)%n", batchedRate, batched.batches());
+  }
+}
@@ -37,6 +37,7 @@
 package edu.rice.cs.drjava.model.repl.newjvm;
 
 import java.io.File;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.lang.ClassLoader;
 
@@ -44,6 +45,7 @@ import edu.rice.cs.plt.io.IOUtil;
 import edu.rice.cs.plt.iter.IterUtil;
 import edu.rice.cs.plt.lambda.Lambda;
 import edu.rice.cs.plt.reflect.PathClassLoader;
+import edu.rice.cs.plt.reflect.VersionedPath;
 
 /** Maintains a dynamic class path, allowing entries to be incrementally added in the appropriate
   * place in the list.  This class is used in the interpreter JVM, and may be accessed concurrently.
@@ -58,9 +60,16 @@ public class ClassPathManager implements Lambda<ClassLoader, ClassLoader> {
   private final LinkedList<File> _projectFilesCP;  /* The open project files. */
   private final LinkedList<File> _externalFilesCP; /* The open external files. */
   private final LinkedList<File> _extraCP;         /* The extra preferences class path. */
+  private final Iterable<Iterable<File>> _allPaths;
+  
+  /** Incremented (while synchronized) whenever one of the lists changes. */
+  private volatile long _version;
+  /** A snapshot of the full path at {@code _version}, or {@code null} if it hasn't been computed. */
+  private Iterable<File> _snapshot;
+  
   // these can be accessed concurrently:
   
-  private final Iterable<File> _fullPath;
+  private final VersionedPath _fullPath;
   
   public ClassPathManager(Iterable<File> builtInCP) {
     _projectCP = new LinkedList<File>();
@@ -68,17 +77,16 @@ public class ClassPathManager implements Lambda<ClassLoader, ClassLoader> {
     _projectFilesCP = new LinkedList<File>();
     _externalFilesCP = new LinkedList<File>();
     _extraCP = new LinkedList<File>();
-    // conversions to SizedIterables are necessary to support 1.4 compatibility
-    Iterable<Iterable<File>> allPaths =
-      IterUtil.<Iterable<File>>make(IterUtil.asSizedIterable(_projectCP),
-                                    IterUtil.asSizedIterable(_buildCP),
-                                    IterUtil.asSizedIterable(_projectFilesCP),
-                                    IterUtil.asSizedIterable(_externalFilesCP),
-                                    IterUtil.asSizedIterable(_extraCP),
-                                    IterUtil.snapshot(builtInCP));
-    // lazily map the lists to their snapshots -- the snapshot code executes every time
-    // _fullPath is traversed
-    _fullPath = IterUtil.collapse(IterUtil.map(allPaths, _makeSafeSnapshot));
+    _allPaths = IterUtil.<Iterable<File>>make(_projectCP, _buildCP, _projectFilesCP, _externalFilesCP, _extraCP,
+                                              IterUtil.snapshot(builtInCP));
+    _version = 0;
+    _snapshot = null;
+    // a dynamic view of the lists; it is only re-snapshotted after a change
+    _fullPath = new VersionedPath() {
+      public long version() { return _version; }
+      public Iterator<File> iterator() { return _fullPathSnapshot().iterator(); }
+      public String toString() { return IterUtil.toString(_fullPathSnapshot()); }
+    };
     updateProperty();
   }
   
@@ -88,17 +96,23 @@ public class ClassPathManager implements Lambda<ClassLoader, ClassLoader> {
     System.setProperty(INTERACTIONS_CLASS_PATH_PROPERTY,IOUtil.pathToString(_fullPath));
   }
   
-  private final Lambda<Iterable<File>, Iterable<File>> _makeSafeSnapshot =
-    new Lambda<Iterable<File>, Iterable<File>>() {
-    public Iterable<File> value(Iterable<File> arg) {
-      synchronized(ClassPathManager.this) { return IterUtil.snapshot(arg); }
-    }
-  };
+  private synchronized Iterable<File> _fullPathSnapshot() {
+    if (_snapshot == null) { _snapshot = IterUtil.snapshot(IterUtil.collapse(_allPaths)); }
+    return _snapshot;
+  }
+  
+  /** Record a change to one of the lists. */
+  private void _changed() {
+    assert Thread.holdsLock(this);
+    _snapshot = null;
+    _version++;
+    updateProperty();
+  }
   
   /** Adds the entry to the front of the project classpath (this is the classpath specified in project properties)
     * @param f the file to be added to the classpath
     */
-  public synchronized void addProjectCP(File f) { _projectCP.addFirst(f); updateProperty(); }
+  public synchronized void addProjectCP(File f) { _projectCP.addFirst(f); _changed(); }
   
   public synchronized Iterable<File> getProjectCP() { return IterUtil.snapshot(_projectCP); }
   
@@ -108,7 +122,7 @@ public class ClassPathManager implements Lambda<ClassLoader, ClassLoader> {
   public synchronized void addBuildDirectoryCP(File f) {
     _buildCP.remove(f); // eliminate duplicates
     _buildCP.addFirst(f);
-    updateProperty();
+    _changed();
   }
   
   public synchronized Iterable<File> getBuildDirectoryCP() { return IterUtil.snapshot(_buildCP); }
@@ -119,7 +133,7 @@ public class ClassPathManager implements Lambda<ClassLoader, ClassLoader> {
   public synchronized void addProjectFilesCP(File f) {
     _projectFilesCP.remove(f); // eliminate duplicates
     _projectFilesCP.addFirst(f);
-    updateProperty();
+    _changed();
   }
   
   public synchronized Iterable<File> getProjectFilesCP() { return IterUtil.snapshot(_projectFilesCP); }
@@ -130,7 +144,7 @@ public class ClassPathManager implements Lambda<ClassLoader, ClassLoader> {
   public synchronized void addExternalFilesCP(File f) {
     _externalFilesCP.remove(f); // eliminate duplicates
     _externalFilesCP.addFirst(f);
-    updateProperty();
+    _changed();
   }
   
   public synchronized Iterable<File> getExternalFilesCP() { return IterUtil.snapshot(_externalFilesCP); }
@@ -141,7 +155,7 @@ public class ClassPathManager implements Lambda<ClassLoader, ClassLoader> {
   public synchronized void addExtraCP(File f) {
     _extraCP.remove(f); // eliminate duplicates
     _extraCP.addFirst(f);
-    updateProperty();
+    _changed();
   }
   
   public Iterable<File> getExtraCP() { return IterUtil.snapshot(_extraCP); }
@@ -113,6 +113,9 @@ public class InterpreterJVM extends AbstractSlaveJVM implements InterpreterJVMRe
   /** Remote reference to the MainJVM class in DrJava's primary JVM.  Assigned ONLY once. */
   private volatile MainJVMRemoteI _mainJVM;
   
+  /** Buffers System.out and System.err and forwards them to _mainJVM in batches.  Assigned ONLY once. */
+  private volatile BufferedOutputChannel _output;
+  
   /** Private constructor; use the singleton ONLY instance. */
   private InterpreterJVM() {
     super("Reset Interactions Thread", "Poll DrJava Thread");
@@ -140,9 +143,21 @@ public class InterpreterJVM extends AbstractSlaveJVM implements InterpreterJVMRe
     //_dialog("handleStart");
     _mainJVM = (MainJVMRemoteI) mainJVM;
     
+    _output = new BufferedOutputChannel(new BufferedOutputChannel.Sink() {
+      public void print(String[] text, boolean[] isErr) throws RemoteException {
+        _mainJVM.systemPrintBatch(text, isErr);
+      }
+    });
+    
+    // deliver buffered output if user code calls System.exit
+    Runtime.getRuntime().addShutdownHook(new Thread("Flush Output Thread") {
+      public void run() { _output.close(); }
+    });
+    
     // redirect stdin
     System.setIn(new InputStreamRedirector() {
       protected String _getInput() {
+        _output.flush();  // make pending output (typically a prompt) visible before blocking for input
         try { return _mainJVM.getConsoleInput(); }
         catch(RemoteException re) {
           error.log(re);
@@ -153,24 +168,12 @@ public class InterpreterJVM extends AbstractSlaveJVM implements InterpreterJVMRe
     
     // redirect stdout
     System.setOut(new PrintStream(new OutputStreamRedirector() {
-      public void print(String s) {
-        try { _mainJVM.systemOutPrint(s); }
-        catch (RemoteException re) {
-          error.log(re);
-          throw new UnexpectedException("Main JVM can't be reached for output.\n" + re);
-        }
-      }
+      public void print(String s) { _output.writeOut(s); }
     }));
     
     // redirect stderr
     System.setErr(new PrintStream(new OutputStreamRedirector() {
-      public void print(String s) {
-        try { _mainJVM.systemErrPrint(s); }
-        catch (RemoteException re) {
-          error.log(re);
-          throw new UnexpectedException("Main JVM can't be reached for output.\n" + re);
-        }
-      }
+      public void print(String s) { _output.writeErr(s); }
     }));
     
     /* On Windows, any frame or dialog opened from Interactions pane will appear *behind* DrJava's frame, unless a 
@@ -186,6 +189,12 @@ public class InterpreterJVM extends AbstractSlaveJVM implements InterpreterJVMRe
     //_dialog("interpreter JVM started");
   }
   
+  /** Blocks until all output printed so far has been forwarded to the MainJVM. */
+  private void _flushOutput() {
+    BufferedOutputChannel output = _output;
+    if (output != null) { output.flush(); }
+  }
+  
   /* Concurrent operations on _interpreters. */ 
   private Interpreter getInterpreter(String name) {
     synchronized(_interpreters) {return _interpreters.get(name); }
@@ -249,7 +258,10 @@ public class InterpreterJVM extends AbstractSlaveJVM implements InterpreterJVMRe
     try { result = interpreter.interpret(input); }
     catch (InterpreterException e) { debug.logEnd(); return InterpretResult.exception(e); }
     catch (Throwable e) { debug.logEnd(); return InterpretResult.unexpectedException(e); }
-    finally { removeBusyInterpreter(interpreter); }
+    finally {
+      _flushOutput();  // output of the interaction must reach MainJVM before its result
+      removeBusyInterpreter(interpreter);
+    }
     
     return result.apply(new OptionVisitor<Object, InterpretResult>() {
       public InterpretResult forNone() { return InterpretResult.noValue(); }
@@ -523,6 +535,13 @@ public class InterpreterJVM extends AbstractSlaveJVM implements InterpreterJVMRe
     }
   }
   
+  /** Compile the bodies of methods declared in the interpreter to bytecode where possible. */
+  public void setCompileMethodBodies(boolean compile) {
+    synchronized(_stateLock) {
+      _interpreterOptions.setCompileMethodBodies(compile);
+    }
+  }
+  
   // ---------- JUnit methods ----------
   /** Sets up a JUnit test suite in the Interpreter JVM and finds which classes are really TestCases classes (by 
     * loading them).  Unsynchronized because it contains a remote call and does not involve mutable local state.
@@ -541,6 +560,15 @@ public class InterpreterJVM extends AbstractSlaveJVM implements InterpreterJVMRe
     */
   public boolean runTestSuite() throws RemoteException { return _junitTestManager.runTestSuite(); }
   
+  /** Sets the number of threads on which subsequent test suites run their test classes. */
+  public void setJUnitThreads(int threads) { _junitTestManager.setThreads(threads); }
+  
+  /** Sets whether subsequent test suites record the dependencies of their test classes. */
+  public void setJUnitTestImpact(boolean record) { _junitTestManager.setRecordDependencies(record); }
+  
+  /** Gets the line coverage of a class in the last test run with code coverage. */
+  public byte[] getLineCoverage(String className) { return _junitTestManager.getLineCoverage(className); }
+  
   /** Notifies Main JVM that JUnit has been invoked on a non TestCase class.  Unsynchronized because it contains a 
     * remote call and does not involve mutable local state.
     * @param isTestAll whether or not it was a use of the test all button
@@ -593,10 +621,21 @@ public class InterpreterJVM extends AbstractSlaveJVM implements InterpreterJVMRe
     * @param errors The array of errors from all failed tests in the suite.
     */
   public void testSuiteEnded(JUnitError[] errors) {
+    _flushOutput();
     try { _mainJVM.testSuiteEnded(errors); }
     catch (RemoteException re) { error.log(re); }
   }
   
+  /** Notifies that the dependencies of the passing test classes have been recorded.  Unsynchronized because it
+    * contains a remote call and does not involve mutable local state.
+    * @param dependencies maps test class names to the class files they loaded, and the checksums of those files
+    * @param unrecorded the names of the test classes that ran but were not recorded, because they failed
+    */
+  public void testDependenciesRecorded(Map<String, Map<File, Long>> dependencies, Set<String> unrecorded) {
+    try { _mainJVM.testDependenciesRecorded(dependencies, unrecorded); }
+    catch (RemoteException re) { error.log(re); }
+  }
+  
   /** Called when the JUnitTestManager wants to open a file that is not currently open.  Unsynchronized because it 
     * contains a remote call and does not involve mutable local state.
     * @param className the name of the class for which we want to find the file
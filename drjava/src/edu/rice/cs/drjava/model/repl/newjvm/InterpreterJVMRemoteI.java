@@ -54,6 +54,23 @@ public interface InterpreterJVMRemoteI extends SlaveRemote {
     List<File> files, CoverageMetadata coverageMetadata) throws RemoteException;
   
   public boolean runTestSuite() throws RemoteException;
+  
+  /** @param threads the number of threads on which to run test classes; 1 runs them sequentially
+   * @throws RemoteException if communication over RMI fails
+   */
+  public void setJUnitThreads(int threads) throws RemoteException;
+  
+  /** @param record true if the class files loaded by each passing test class are to be reported to the main JVM
+   * @throws RemoteException if communication over RMI fails
+   */
+  public void setJUnitTestImpact(boolean record) throws RemoteException;
+  
+  /** @param className the fully qualified name of a class
+   * @return the ICounter status of each line of the class in the last test run with code coverage, or null if the
+   *         class was not analyzed
+   * @throws RemoteException if communication over RMI fails
+   */
+  public byte[] getLineCoverage(String className) throws RemoteException;
 
   //public JUnitResultTuple getLastJUnitResult();
 
@@ -78,6 +95,12 @@ public interface InterpreterJVMRemoteI extends SlaveRemote {
    */
   public void setRequireVariableType(boolean require) throws RemoteException;
   
+  /** @param compile true if the interpreter compiles the bodies of declared methods to bytecode
+   *                where possible.
+   * @throws RemoteException if communication over RMI fails
+   */
+  public void setCompileMethodBodies(boolean compile) throws RemoteException;
+  
   /** Adds a named Interpreter to the list.
    * @param name the unique name for the interpreter
    * @throws IllegalArgumentException if the name is not unique
@@ -43,6 +43,7 @@ import java.net.SocketException;
 import java.util.List;
 import java.util.ArrayList;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.TimeoutException;
 
 import edu.rice.cs.drjava.DrJava;
@@ -229,6 +230,17 @@ public class MainJVM extends AbstractMasterJVM implements MainJVMRemoteI {
     debug.logEnd();
   }
   
+  /** Forwards a batch of System.out and System.err output from InterpreterJVM to the local InteractionsModel, which
+    * applies the whole batch to the interactions document at once.
+    * @param text the printed segments, in the order in which they were printed in the other JVM
+    * @param isErr {@code isErr[i]} is true iff {@code text[i]} was printed to System.err
+    */
+  public void systemPrintBatch(String[] text, boolean[] isErr) {
+    debug.logStart();
+    _interactionsModel.replSystemPrintBatch(text, isErr);
+    debug.logEnd();
+  }
+  
   /** Asks the main jvm for input from the console.
    * @return the console input
    */
@@ -285,6 +297,15 @@ public class MainJVM extends AbstractMasterJVM implements MainJVMRemoteI {
     _junitModel.testSuiteEnded(errors);
   }
  
+  /** Called when the dependencies of the passing test classes have been recorded. Forwards from the other JVM to the
+   * local JUnit model.
+   * @param dependencies maps test class names to the class files they loaded, and the checksums of those files
+   * @param unrecorded the names of the test classes that ran but were not recorded, because they failed
+   */
+  public void testDependenciesRecorded(Map<String, Map<File, Long>> dependencies, Set<String> unrecorded) {
+    _junitModel.testDependenciesRecorded(dependencies, unrecorded);
+  }
+ 
   /** Called when the JUnitTestManager wants to open a file that is not currently open.
    * @param className the name of the class for which we want to find the file
    * @return the file associated with the given class
@@ -476,6 +497,18 @@ public class MainJVM extends AbstractMasterJVM implements MainJVMRemoteI {
     catch (RemoteException e) { _handleRemoteException(e); return Option.none(); }
   }
   
+  /** Gets the ICounter status of each line of a class in the last test run with code coverage.
+    * The result is "none" if the remote JVM is unavailable or if an exception occurs.
+    * @param className the fully qualified name of the class
+    * @return the line statuses, or null (wrapped in an Option) if the class was not analyzed
+    */
+  public Option<byte[]> getLineCoverage(String className) {
+    InterpreterJVMRemoteI remote = _state.value().interpreter(false);
+    if (remote == null) { return Option.none(); }
+    try { return Option.some(remote.getLineCoverage(className)); } 
+    catch (RemoteException e) { _handleRemoteException(e); return Option.none(); }
+  }
+  
   /** Runs the JUnit test suite already cached in the Interpreter JVM.  
     * Blocks until the remote JVM is available.
     * @return {@code false} if no test suite is cached, the remote JVM is 
@@ -595,6 +628,18 @@ public class MainJVM extends AbstractMasterJVM implements MainJVMRemoteI {
     catch (RemoteException e) { _handleRemoteException(e); return false; }
   }
   
+  /** Compile the bodies of methods declared in the interpreter to bytecode where possible.
+   * Blocks until the interpreter is connected.
+   * @param compile value to be set
+   * @return {@code false} if the remote JVM is unavailable or if an exception occurs; true otherwise.
+   */
+  public boolean setCompileMethodBodies(boolean compile) {
+    InterpreterJVMRemoteI remote = _state.value().interpreter(false);
+    if (remote == null) { return false; }
+    try { remote.setCompileMethodBodies(compile); return true; }
+    catch (RemoteException e) { _handleRemoteException(e); return false; }
+  }
+  
   /*
    * === Helper methods ===
    */
@@ -897,6 +942,18 @@ public class MainJVM extends AbstractMasterJVM implements MainJVMRemoteI {
         try { i.setRequireVariableType(requireVariableType); }
         catch (RemoteException re) { _handleRemoteException(re); }
         
+        Boolean compileMethodBodies = DrJava.getConfig().getSetting(OptionConstants.DYNAMICJAVA_COMPILE_METHOD_BODIES);
+        try { i.setCompileMethodBodies(compileMethodBodies); }
+        catch (RemoteException re) { _handleRemoteException(re); }
+        
+        Integer junitThreads = DrJava.getConfig().getSetting(OptionConstants.JUNIT_PARALLEL_THREADS);
+        try { i.setJUnitThreads(junitThreads); }
+        catch (RemoteException re) { _handleRemoteException(re); }
+        
+        Boolean junitTestImpact = DrJava.getConfig().getSetting(OptionConstants.JUNIT_TEST_IMPACT);
+        try { i.setJUnitTestImpact(junitTestImpact); }
+        catch (RemoteException re) { _handleRemoteException(re); }
+        
         // Note that _workingDir isn't guaranteed to be the dir at the time startup began.  Is that a problem?
         // (Is the user ever going to see a working dir message that doesn't match the actual setting?)
         _interactionsModel.interpreterReady(_workingDir);
@@ -1099,6 +1156,7 @@ public class MainJVM extends AbstractMasterJVM implements MainJVMRemoteI {
     public int getDebugPort() throws IOException { return -1; }
     public void replSystemOutPrint(String s) { }
     public void replSystemErrPrint(String s) { }
+    public void replSystemPrintBatch(String[] text, boolean[] isErr) { }
     public String getConsoleInput() {
       throw new IllegalStateException("Cannot request input from dummy interactions model!");
     }
@@ -1131,6 +1189,7 @@ public class MainJVM extends AbstractMasterJVM implements MainJVMRemoteI {
     public void testStarted(String testName) { }
     public void testEnded(String testName, boolean wasSuccessful, boolean causedError) { }
     public void testSuiteEnded(JUnitError[] errors) { }
+    public void testDependenciesRecorded(Map<String, Map<File, Long>> dependencies, Set<String> unrecorded) { }
     public File getFileForClassName(String className) { return null; }
     public Iterable<File> getClassPath() { return IterUtil.empty(); }
     public void junitJVMReady() { }
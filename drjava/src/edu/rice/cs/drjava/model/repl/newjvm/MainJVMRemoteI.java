@@ -38,6 +38,8 @@ package edu.rice.cs.drjava.model.repl.newjvm;
 
 import java.io.File;
 import java.rmi.RemoteException;
+import java.util.Map;
+import java.util.Set;
 import edu.rice.cs.util.newjvm.*;
 import edu.rice.cs.drjava.model.junit.JUnitError;
 import edu.rice.cs.util.classloader.ClassFileError;
@@ -61,6 +63,14 @@ public interface MainJVMRemoteI extends MasterRemote {
     */
   public void systemOutPrint(String s) throws RemoteException;
   
+  /** Forwards a batch of output to System.out and System.err from InterpreterJVM to the MainJVM for output to the
+    * user.  Consecutive segments always belong to different streams.
+    * @param text the printed segments, in the order in which they were printed in the other JVM
+    * @param isErr {@code isErr[i]} is true iff {@code text[i]} was printed to System.err
+    * @throws RemoteException if remote communication fails
+    */
+  public void systemPrintBatch(String[] text, boolean[] isErr) throws RemoteException;
+  
   /** Asks the main jvm for input from the console.
    * @return the console input
     * @throws RemoteException if remote communication fails
@@ -108,6 +118,15 @@ public interface MainJVMRemoteI extends MasterRemote {
     */
   public void testSuiteEnded(JUnitError[] errors) throws RemoteException;
   
+  /** Called before testSuiteEnded when test dependencies are being recorded.
+    * @param dependencies maps the names of the test classes that passed to the class files they loaded, and the
+    *        checksums of those files
+    * @param unrecorded the names of the test classes that ran but were not recorded, because they failed
+    * @throws RemoteException if remote communication fails
+    */
+  public void testDependenciesRecorded(Map<String, Map<File, Long>> dependencies, Set<String> unrecorded)
+    throws RemoteException;
+  
   /** Called when the JUnitTestManager wants to open a file that is not currently open.
     * @param className the name of the class for which we want to find the file
     * @return the file associated with the given class
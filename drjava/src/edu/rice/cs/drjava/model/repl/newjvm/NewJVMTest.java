@@ -270,6 +270,12 @@ public final class NewJVMTest extends DrJavaTestCase {
 
     public void systemErrPrint(String s) { _errBuf += s; }
     public void systemOutPrint(String s) { _outBuf += s; }
+    public void systemPrintBatch(String[] text, boolean[] isErr) {
+      for (int i = 0; i < text.length; i++) {
+        if (isErr[i]) { systemErrPrint(text[i]); }
+        else { systemOutPrint(text[i]); }
+      }
+    }
 
     private class TestResultHandler implements InterpretResult.Visitor<Void> {
       public Void forNoValue() {
@@ -51,14 +51,15 @@ import edu.rice.cs.drjava.DrJava;
 import edu.rice.cs.drjava.config.*;
 import edu.rice.cs.drjava.model.SingleDisplayModel;
 import edu.rice.cs.drjava.model.OpenDefinitionsDocument;
+import edu.rice.cs.drjava.model.FindAllSearch;
 import edu.rice.cs.drjava.model.FindReplaceMachine;
 import edu.rice.cs.drjava.model.FindResult;
 import edu.rice.cs.drjava.model.ClipboardHistoryModel;
 import edu.rice.cs.drjava.model.MovingDocumentRegion;
 import edu.rice.cs.drjava.model.RegionManager;
-import edu.rice.cs.plt.lambda.Runnable1;
 import edu.rice.cs.util.UnexpectedException;
 import edu.rice.cs.util.swing.BorderlessScrollPane;
+import edu.rice.cs.util.swing.DocumentIterator;
 import edu.rice.cs.util.text.SwingDocument;
 
 /** The tabbed panel that handles requests for finding and replacing text.
@@ -590,7 +591,8 @@ class FindReplacePanel extends TabbedPanel implements ClipboardOwner {
     EventQueue.invokeLater(new Runnable() { public void run() { panel.getRegTree().scrollRowToVisible(0); } });
   }
   
-  /** Performs "find all" with the specified options. 
+  /** Performs "find all" with the specified options.  The documents are searched in the background by a FindAllSearch;
+    * the results are added to rm (and thereby to panel) as they arrive.
     * @param searchStr string to search for
     * @param searchAll true if we should search all documents
     * @param searchSelectionOnly true if we should search only the current selection
@@ -615,96 +617,114 @@ class FindReplacePanel extends TabbedPanel implements ClipboardOwner {
     final int searchLen = searchStr.length();
     if (searchLen == 0) return;
     
+    /* Collect the documents to search in the order in which FindReplaceMachine visits them. */
+    final List<OpenDefinitionsDocument> docs = new ArrayList<OpenDefinitionsDocument>();
+    if (searchAll) {
+      OpenDefinitionsDocument doc = startDoc;
+      final DocumentIterator docIterator = _model.getDocumentIterator();
+      final int n = docIterator.getDocumentCount();
+      for (int i = 0; i < n && doc != null; i++) {
+        if (! noTestCases || ! _isTestCase(doc)) docs.add(doc);
+        doc = docIterator.getNextDocument(doc, _frame);
+      }
+    }
+    else if (! noTestCases || ! _isTestCase(startDoc)) docs.add(startDoc);
+    
+    final boolean selectionOnly = searchSelectionOnly && ! searchAll;
+    final int selStart = selectionOnly ? region.getStartOffset() : 0;
+    final int selEnd = selectionOnly ? region.getEndOffset() : Integer.MAX_VALUE;
+    
     _frame.setStatusMessage("Finding All");
-    final OpenDefinitionsDocument oldDoc = _machine.getDocument();
-    final OpenDefinitionsDocument oldFirstDoc = _machine.getFirstDoc();
-    final String oldFindWord = _machine.getFindWord();
-    final boolean oldSearchAll = _machine.getSearchAllDocuments();
-    final boolean oldSearchSelectionOnly = _machine.getSearchSelectionOnly();
-    final boolean oldMatchCase = _machine.getMatchCase();
-    final boolean oldWholeWord = _machine.getMatchWholeWord();
-    final boolean oldNoComments = _machine.getIgnoreCommentsAndStrings();
-    final boolean oldNoTestCases = _machine.getIgnoreTestCases();
-    final int oldPosition = _machine.getCurrentOffset();
+    final FindAllListener listener = new FindAllListener(searchLen, searchSelectionOnly, rm, region, panel);
+    final FindAllSearch search = 
+      new FindAllSearch(docs, searchStr, matchCase, wholeWord, noComments, selStart, selEnd, listener);
+    panel.setSearch(search);
+    search.start();
+    listener.startTimer();
+  }
+  
+  /** @return true if doc is a test case, judging by its file name. */
+  private static boolean _isTestCase(OpenDefinitionsDocument doc) {
+    for (String ext: OptionConstants.LANGUAGE_LEVEL_EXTENSIONS) {
+      if (doc.getFileName().endsWith("Test" + ext)) return true;
+    }
+    return false;
+  }
+  
+  /** Adds the results of a background "find all" to a FindResultsPanel as they arrive.  The panel is shown as soon as
+    * the first results arrive, or after SHOW_PANEL_DELAY milliseconds if the search is still running then, so that a
+    * long search can be stopped.  Only accessed in the event thread.
+    */
+  private class FindAllListener implements FindAllSearch.Listener {
+    private static final int SHOW_PANEL_DELAY = 300;
     
-//    _updateMachine();
-    _machine.setDocument(startDoc);
-    if (_machine.getFirstDoc() == null) _machine.setFirstDoc(startDoc);
-    _machine.setSearchAllDocuments(searchAll);
-    _machine.setSearchSelectionOnly(searchSelectionOnly);
-    _machine.setMatchCase(matchCase);
-    if (wholeWord) { _machine.setMatchWholeWord(); }
-    else { _machine.setFindAnyOccurrence(); }
-    _machine.setIgnoreCommentsAndStrings(noComments);
-    _machine.setPosition(startDoc.getCurrentLocation());
-    _machine.setIgnoreTestCases(noTestCases);
-
-    _machine.setFindWord(searchStr);
-    final String replaceStr = _replaceField.getText();
-    _machine.setReplaceWord(replaceStr);
-    _frame.clearStatusMessage();
-    final List<FindResult> results = new ArrayList<FindResult>();
-    
-    _frame.hourglassOn();
-    try {
-      /* Accumulate all occurrences of searchStr in results. */
-      final int count = _machine.processAll(new Runnable1<FindResult>() {
-        public void run(FindResult fr) { results.add(fr); }
-      }, region);
-      
-      _machine.setDocument(oldDoc);
-      _machine.setFirstDoc(oldFirstDoc);
-      _machine.setFindWord(oldFindWord);
-      _machine.setSearchAllDocuments(oldSearchAll);
-      _machine.setSearchSelectionOnly(oldSearchSelectionOnly);
-      _machine.setMatchCase(oldMatchCase);
-      if (oldWholeWord) { _machine.setMatchWholeWord(); }
-      else { _machine.setFindAnyOccurrence(); }
-      _machine.setIgnoreCommentsAndStrings(oldNoComments);
-      _machine.setIgnoreTestCases(oldNoTestCases);
-      _machine.setPosition(oldPosition);
-
+    private final int _searchLen;
+    private final boolean _searchSelectionOnly;
+    private final RegionManager<MovingDocumentRegion> _rm;
+    private final MovingDocumentRegion _region;
+    private final FindResultsPanel _panel;
+    private final Timer _timer;
+    private boolean _shown = false;
+    private boolean _done = false;
+    
+    FindAllListener(int searchLen, boolean searchSelectionOnly, RegionManager<MovingDocumentRegion> rm, 
+                    MovingDocumentRegion region, FindResultsPanel panel) {
+      _searchLen = searchLen;
+      _searchSelectionOnly = searchSelectionOnly;
+      _rm = rm;
+      _region = region;
+      _panel = panel;
+      _timer = new Timer(SHOW_PANEL_DELAY, new ActionListener() {
+        public void actionPerformed(ActionEvent e) { if (! _done) _show(); }
+      });
+      _timer.setRepeats(false);
+    }
+    
+    void startTimer() { if (! _done) _timer.start(); }
+    
+    private void _show() {
+      if (_shown) return;
+      _shown = true;
+      _frame.showFindResultsPanel(_panel);
+    }
+    
+    public void resultsFound(OpenDefinitionsDocument doc, List<FindResult> results) {
       for (FindResult fr: results) {
-         
-        final OpenDefinitionsDocument doc = fr.getDocument();
-        
-        if (_model.getActiveDocument() != doc) _model.setActiveDocument(doc);
-        else _model.refreshActiveDocument();
-        
         final int end = fr.getFoundOffset();
-        final int start = end - searchLen;
+        final int start = end - _searchLen;
         final int lineStart = doc._getLineStartPos(start);
         final int lineEnd = doc._getLineEndPos(end);
-        
-        rm.addRegion(new MovingDocumentRegion(doc, start, end, lineStart, lineEnd));                       
+        _rm.addRegion(new MovingDocumentRegion(doc, start, end, lineStart, lineEnd));
+      }
+      _show();
+    }
+    
+    public void searchFinished(int count, boolean cancelled) {
+      _done = true;
+      _timer.stop();
+      _panel.updateButtons();
+      String occurrences = count + " occurrence" + ((count == 1) ? "" : "s");
+      if (cancelled) {
+        _frame.setStatusMessage("Find All stopped after finding " + occurrences + ".");
+        return;
       }
       
-//      EventQueue.invokeLater(new Runnable() {
-//        public void run() {
-      if (count > 0) _frame.showFindResultsPanel(panel);
-      else { 
+      if (count == 0) { 
         Toolkit.getDefaultToolkit().beep();
-        panel.freeResources(); 
+        if (_shown) _panel._close();  // also frees the resources of the panel
+        else _panel.freeResources();
       }
-      _frame.setStatusMessage("Found " + count + " occurrence" + ((count == 1) ? "" : "s") + ".");
-//        }
-//      });
-          
-      if (searchSelectionOnly) {
+      _frame.setStatusMessage("Found " + occurrences + ".");
+      
+      if (_searchSelectionOnly) {
         EventQueue.invokeLater(new Runnable() { public void run() { 
           if (_defPane != null) {
             _defPane.requestFocusInWindow();
-            _defPane.setSelectionStart(region.getStartOffset());
-            _defPane.setSelectionEnd(region.getEndOffset());
+            _defPane.setSelectionStart(_region.getStartOffset());
+            _defPane.setSelectionEnd(_region.getEndOffset());
           }
         } });
-      }          
-    }
-    finally { 
-      _frame.hourglassOff(); 
-      
-      // extracted from run() above because findAll occasionally left active document in inconsistent state 
-      _model.setActiveDocument(startDoc);
+      }
     }
   }
   
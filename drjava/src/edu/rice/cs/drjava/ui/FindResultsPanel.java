@@ -53,6 +53,7 @@ import javax.swing.border.CompoundBorder;
 import javax.swing.border.LineBorder;
 import javax.swing.border.MatteBorder;
 
+import edu.rice.cs.drjava.model.FindAllSearch;
 import edu.rice.cs.drjava.model.MovingDocumentRegion;
 import edu.rice.cs.drjava.model.OpenDefinitionsDocument;
 import edu.rice.cs.drjava.model.RegionManager;
@@ -81,12 +82,16 @@ public class FindResultsPanel extends RegionsTreePanel<MovingDocumentRegion> {
   private final MovingDocumentRegion _region; //document region used for search limited selection function
     
   private volatile JButton _findAgainButton;
+  private volatile JButton _stopButton;
   private volatile JButton _goToButton;
   private volatile JButton _bookmarkButton;
   private volatile JButton _removeButton;
   private volatile JComboBox<Color> _colorBox;
   private volatile int _lastIndex;
   
+  /** The background search feeding this panel, or null if there is none. */
+  private volatile FindAllSearch _search;
+  
   /** Saved option listeners kept in this field so they can be removed for garbage collection  */
   private final LinkedList<Pair<Option<Color>, OptionListener<Color>>> _colorOptionListeners = 
     new LinkedList<Pair<Option<Color>, OptionListener<Color>>>();
@@ -211,6 +216,11 @@ public class FindResultsPanel extends RegionsTreePanel<MovingDocumentRegion> {
       public void actionPerformed(ActionEvent ae) { _findAgain(); }
     };
     _findAgainButton = new JButton(findAgainAction);
+    
+    Action stopAction = new AbstractAction("Stop") {
+      public void actionPerformed(ActionEvent ae) { stopSearch(); }
+    };
+    _stopButton = new JButton(stopAction);
 
     Action goToAction = new AbstractAction("Go to") {
       public void actionPerformed(ActionEvent ae) { goToRegion(); }
@@ -276,7 +286,8 @@ public class FindResultsPanel extends RegionsTreePanel<MovingDocumentRegion> {
                                               DefinitionsPane.FIND_RESULTS_PAINTERS[_lastIndex]);
     
     updateButtons();
-    return new JComponent[] { _findAgainButton, _goToButton, _bookmarkButton, _removeButton, highlightPanel, _colorBox};
+    return new JComponent[] { _findAgainButton, _stopButton, _goToButton, _bookmarkButton, _removeButton, highlightPanel,
+      _colorBox};
   }
   
   /** @return the selected painter for these find results. */
@@ -308,6 +319,22 @@ public class FindResultsPanel extends RegionsTreePanel<MovingDocumentRegion> {
     }
   }
   
+  /** Sets the background search that feeds this panel, stopping the previous one.
+    * @param search the new search
+    */
+  void setSearch(FindAllSearch search) {
+    stopSearch();
+    _search = search;
+    updateButtons();
+  }
+  
+  /** Stops the background search that feeds this panel, if it is still running. */
+  void stopSearch() {
+    FindAllSearch search = _search;
+    if (search != null && ! search.isFinished()) search.cancel();
+    updateButtons();
+  }
+  
   /** Turn the selected regions into bookmarks. */
   private void _bookmark() {  // TODO: consolidate with _toggleBookmark in MainFrame/AbstractGlobalModel?
     updateButtons();
@@ -335,6 +362,8 @@ public class FindResultsPanel extends RegionsTreePanel<MovingDocumentRegion> {
     OpenDefinitionsDocument odd = null;
     if (_doc != null) { odd = _doc.get(); }
     _findAgainButton.setEnabled(odd != null || _searchAll);
+    FindAllSearch search = _search;
+    _stopButton.setEnabled(search != null && ! search.isFinished());
     _goToButton.setEnabled(regs.size() == 1);
     _bookmarkButton.setEnabled(regs.size() > 0);
     _removeButton.setEnabled(regs.size() > 0);
@@ -380,6 +409,7 @@ public class FindResultsPanel extends RegionsTreePanel<MovingDocumentRegion> {
   @Override
   protected void _close() {
 //    System.err.println("FindResultsPanel.close() called on " + this);
+    stopSearch();
     getRegionManager().clearRegions();  // removes and unhighlights each region; regionListener closes the panel at the end
     getGlobalModel().removeFindResultsManager(getRegionManager());  // removes manager from global model (should be done by listener!)
     _frame.removeCurrentLocationHighlight();
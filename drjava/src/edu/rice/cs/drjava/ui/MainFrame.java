@@ -49,6 +49,7 @@ import java.awt.dnd.*;
 import java.beans.*;
 import java.io.*;
 import java.util.AbstractMap;
+import java.util.AbstractSet;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -57,7 +58,9 @@ import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.Map;
 import java.util.Set;
@@ -1034,6 +1037,22 @@ public class MainFrame extends SwingFrame implements ClipboardOwner, DropTargetL
     
   };
   
+  /** Runs JUnit over all open JUnit tests (or those in the project directory), including those unaffected by changes
+    * since they last passed. */
+  private volatile AbstractAction _junitRunAllAction = new AbstractAction("Run All Tests") {
+    { _addGUIAvailabilityListener(this,                                             // init
+                                 GUIAvailabilityListener.ComponentType.JUNIT,
+                                 GUIAvailabilityListener.ComponentType.COMPILER,
+                                 GUIAvailabilityListener.ComponentType.INTERACTIONS); }
+    public void actionPerformed(ActionEvent e) {
+      if (_mainSplit.getDividerLocation() > _mainSplit.getMaximumDividerLocation()) _mainSplit.resetToPreferredSizes();
+      _model.getJUnitModel().clearTestImpact();
+      if (_model.isProjectActive()) _junitProject();
+      else _junitAll();
+      _findReplace.updateFirstDocInSearch();
+    }
+  };
+  
   /** Runs JUnit over all open JUnit tests in the project directory. */
   private volatile AbstractAction _junitProjectAction = new AbstractAction("Test Project") {
     { _addGUIAvailabilityListener(this,                                             // init
@@ -1856,11 +1875,25 @@ public class MainFrame extends SwingFrame implements ClipboardOwner, DropTargetL
     return s;
   }
 
-  /** @return the set of all classes, scanned after the last compile. */
+  /** @return the set of all classes in the class name index; a live view. */
   public Set<GoToFileListEntry> getCompleteClassSet() { return _completeClassSet; }
 
-  /** Clear the set of all classes. */
-  public void clearCompleteClassSet() { _completeClassSet.clear(); }
+  /** Points the class name index at the current build directory and extra class path, or at nothing if class files
+    * should not be scanned.  The index keeps its contents if they still apply.
+    * @param refresh whether to also bring the index up to date with the file system
+    */
+  void updateClassNameIndex(boolean refresh) {
+    File buildDir = null;
+    List<File> jars = new ArrayList<File>();
+    if (DrJava.getConfig().getSetting(DIALOG_COMPLETE_SCAN_CLASS_FILES).booleanValue()) {
+      buildDir = _model.getBuildDirectory();
+      if (buildDir == FileOps.NULL_FILE) { buildDir = null; }
+      for (File f: _model.getExtraClassPath()) { jars.add(f); }
+      jars.addAll(DrJava.getConfig().getSetting(EXTRA_CLASSPATH));
+    }
+    _classNameIndex.setRoots(buildDir, jars);
+    if (refresh) { _classNameIndex.refresh(); }
+  }
   
   /** Clears the Java API class set. */
   public void clearJavaAPISet() { _javaAPISet.clear(); }
@@ -3775,10 +3808,11 @@ public class MainFrame extends SwingFrame implements ClipboardOwner, DropTargetL
       DrJava.getConfig().addOptionListener(JAVADOC_ADDITIONAL_LINKS, additionalLinkOptionListener);
       OptionListener<Boolean> scanClassesOptionListener = new OptionListener<Boolean>() {
         public void optionChanged(OptionEvent<Boolean> oce) {
-          clearCompleteClassSet();
+          updateClassNameIndex(false);
         }
       };
       DrJava.getConfig().addOptionListener(DIALOG_COMPLETE_SCAN_CLASS_FILES, scanClassesOptionListener);
+      _model.addFileIndexListener(_classNameIndex);  // follow builds made outside of DrJava
       
       // Initialize cached frames and dialogs 
       _configFrame = new ConfigFrame(MainFrame.this);
@@ -4891,7 +4925,7 @@ public class MainFrame extends SwingFrame implements ClipboardOwner, DropTargetL
       _openProjectUpdate();
       
       if (_mainListener.someFilesNotFound()) _model.setProjectChanged(true);
-      clearCompleteClassSet(); // reset auto-completion list
+      updateClassNameIndex(false); // index the project's build directory
       addToBrowserHistory();
     }
     catch(MalformedProjectFileException e) {
@@ -4943,9 +4977,6 @@ public class MainFrame extends SwingFrame implements ClipboardOwner, DropTargetL
   boolean _closeProject(boolean quitting) {
     // TODO: in some cases, it is possible to see the documents being removed in the navigation pane
     //       this can cause errors. fix this.
-    clearCompleteClassSet(); // reset auto-completion list
-    _autoImportClassSet = new HashSet<JavaAPIListEntry>(); // reset auto-import list
-    
     if (_checkProjectClose()) {
 
       List<OpenDefinitionsDocument> projDocs = _model.getProjectDocuments();
@@ -4968,6 +4999,7 @@ public class MainFrame extends SwingFrame implements ClipboardOwner, DropTargetL
       _guiAvailabilityNotifier.unavailable(GUIAvailabilityListener.ComponentType.PROJECT);
       _setUpContextMenus();
       _currentProjFile = FileOps.NULL_FILE;
+      updateClassNameIndex(false); // stop indexing the project's build directory
       return true;
     }
     else {
@@ -5580,6 +5612,7 @@ public class MainFrame extends SwingFrame implements ClipboardOwner, DropTargetL
     
     //DrJava.consoleOut().println("Quitting DrJava...");
     dispose();    // Free GUI elements of this frame
+    _classNameIndex.dispose();
     _model.quit();
   }
   
@@ -5786,70 +5819,28 @@ public class MainFrame extends SwingFrame implements ClipboardOwner, DropTargetL
   
   private void _clean() { _model.cleanBuildDirectory(); }  // The model performs this as an AsyncTask
   
-  /** List with entries for the complete dialog. */
-  HashSet<GoToFileListEntry> _completeClassSet = new HashSet<GoToFileListEntry>();
-  
-  /** List with entries for the auto-import dialog. */
-  HashSet<JavaAPIListEntry> _autoImportClassSet = new HashSet<JavaAPIListEntry>();
-  
-  /** Scan the build directory for class files and update the auto-completion list. */
-  private void _scanClassFiles() {
-    
-    String trace = Arrays.toString(Thread.currentThread().getStackTrace());
-    _log.log("#### _scanClassFiles() called with trace:\n" + trace);
-    Thread t = new Thread(new Runnable() {
-      public void run() {
-        File buildDir = _model.getBuildDirectory();
-        HashSet<GoToFileListEntry> hs = new HashSet<GoToFileListEntry>();
-        HashSet<JavaAPIListEntry> hs2 = new HashSet<JavaAPIListEntry>();
-        if (buildDir != null) {
-          List<File> classFiles = _model.getClassFiles();
-          DummyOpenDefDoc dummyDoc = new DummyOpenDefDoc();
-          for(File f: classFiles) {
-            String s = f.toString();
-            if (s.lastIndexOf(File.separatorChar) >= 0) {
-              s = s.substring(s.lastIndexOf(File.separatorChar)+1);
-            }
-            s = s.substring(0, s.lastIndexOf(".class"));
-            s = s.replace('$', '.');
-            int pos = 0;
-            boolean ok = true;
-            while ((pos=s.indexOf('.', pos)) >= 0) {
-              if (s.length() <= pos + 1 || Character.isDigit(s.charAt(pos + 1))) {
-                ok = false;
-                break;
-              }
-              ++pos;
-            }
-            if (ok) {
-              if (s.lastIndexOf('.') >= 0) {
-                s = s.substring(s.lastIndexOf('.') + 1);
-              }
-              GoToFileListEntry entry = new GoToFileListEntry(dummyDoc, s);
-              hs.add(entry);
-              try {
-                String rel = FileOps.stringMakeRelativeTo(f, buildDir);
-                String full = rel.replace(File.separatorChar, '.');
-                full = full.substring(0, full.lastIndexOf(".class"));
-                if (full.indexOf('$') < 0) {
-                  // No '$' in the name means not an inner class. we do not support inner classes, because that would
-                  // mean having to determine public static scope
-                  hs2.add(new JavaAPIListEntry(s, full, null));
-                }
-              }
-              catch(IOException ioe) { /* ignore, just don't add this one */ }
-              catch(SecurityException se) { /* ignore, just don't add this one */ }
-            }
-          }
-        }
-        clearCompleteClassSet();
-        _completeClassSet.addAll(hs);
-        _autoImportClassSet = new HashSet<JavaAPIListEntry>(hs2);
-      }
-    });
-    t.setPriority(Thread.MIN_PRIORITY);
-    t.start();
-  }
+  /** Index of the classes in the build directory and in the jars on the extra class path. */
+  final ClassNameIndex _classNameIndex = 
+    new ClassNameIndex(new File(DrJava.getPropertiesFile().getPath() + "-class-index"));
+  
+  /** Entries for the complete dialog: one per simple name in the class name index. */
+  final Set<GoToFileListEntry> _completeClassSet = new AbstractSet<GoToFileListEntry>() {
+    private final DummyOpenDefDoc _dummyDoc = new DummyOpenDefDoc();
+    public int size() { return _classNameIndex.getSimpleNames().size(); }
+    public boolean contains(Object o) {
+      if (! (o instanceof GoToFileListEntry)) { return false; }
+      GoToFileListEntry e = (GoToFileListEntry) o;
+      return e.getFullPackage().length() == 0 && _classNameIndex.getSimpleNames().contains(e.getClassName());
+    }
+    public Iterator<GoToFileListEntry> iterator() {
+      final Iterator<String> names = _classNameIndex.getSimpleNames().iterator();
+      return new Iterator<GoToFileListEntry>() {
+        public boolean hasNext() { return names.hasNext(); }
+        public GoToFileListEntry next() { return new GoToFileListEntry(_dummyDoc, names.next()); }
+        public void remove() { throw new UnsupportedOperationException(); }
+      };
+    }
+  };
   
   private void _runProject() {
     if (_model.isProjectActive()) {
@@ -6526,6 +6517,8 @@ public class MainFrame extends SwingFrame implements ClipboardOwner, DropTargetL
     
     _setUpAction(_junitAction, "Test Current", "Run JUnit over the current document");
     _setUpAction(_junitAllAction, "Test", "Run JUnit over all open JUnit tests");
+    _setUpAction(_junitRunAllAction, "Run All Tests", "Test",
+                 "Run JUnit over all open JUnit tests, including those unaffected by changes");
 
     _setUpAction(_coverageAction, "Code Coverage", "Generate code coverage reports");
 
@@ -6953,6 +6946,7 @@ public class MainFrame extends SwingFrame implements ClipboardOwner, DropTargetL
     _addMenuItem(toolsMenu, _compileAllAction, KEY_COMPILE_ALL, updateKeyboardManager);
     _addMenuItem(toolsMenu, _compileAction, KEY_COMPILE, updateKeyboardManager);
     _addMenuItem(toolsMenu, _junitAllAction, KEY_TEST_ALL, updateKeyboardManager);
+    _addMenuItem(toolsMenu, _junitRunAllAction, KEY_RUN_ALL_TESTS, updateKeyboardManager);
     _addMenuItem(toolsMenu, _junitAction, KEY_TEST, updateKeyboardManager);
     toolsMenu.addSeparator();
     
@@ -9512,10 +9506,7 @@ public class MainFrame extends SwingFrame implements ClipboardOwner, DropTargetL
         
         _updateDebugStatus();
       }
-      if ((DrJava.getConfig().getSetting(DIALOG_COMPLETE_SCAN_CLASS_FILES).booleanValue()) && 
-          (_model.getBuildDirectory() != null)) {
-        _scanClassFiles();
-      }
+      updateClassNameIndex(true);
       if (_junitPanel.isDisplayed()) _resetJUnit();
       _model.refreshActiveDocument();
     }
@@ -10723,41 +10714,41 @@ public class MainFrame extends SwingFrame implements ClipboardOwner, DropTargetL
         Utilities.invokeLater(new Runnable() {
           public void run() {
             // but now run this in the event thread again
-            List<JavaAPIListEntry> autoImportList = new ArrayList<JavaAPIListEntry>(apiSet);
-            if (DrJava.getConfig().getSetting(DIALOG_COMPLETE_SCAN_CLASS_FILES).booleanValue() &&
-                _autoImportClassSet.size() > 0) {
-//              _log.log("Auto-import class set = " + _autoImportClassSet);
-              autoImportList.addAll(_autoImportClassSet);
+            // a set, since the index (which includes jars on the extra class path) and the open documents overlap
+            Set<JavaAPIListEntry> autoImportSet = new LinkedHashSet<JavaAPIListEntry>(apiSet);
+            if (DrJava.getConfig().getSetting(DIALOG_COMPLETE_SCAN_CLASS_FILES).booleanValue()) {
+              for (String full: _classNameIndex.getTopLevelNames()) {
+                autoImportSet.add(new JavaAPIListEntry(full.substring(full.lastIndexOf('.') + 1), full, null));
+              }
             }
-            else {
-              File projectRoot = _model.getProjectRoot();
-              List<OpenDefinitionsDocument> docs = _model.getOpenDefinitionsDocuments();
-              if (docs != null) {
-                for (OpenDefinitionsDocument d: docs) {
-                  if (d.isUntitled()) continue;
-                  try {
-                    String rel = FileOps.stringMakeRelativeTo(d.getRawFile(), projectRoot);
-                    String full = rel.replace(File.separatorChar, '.');
-                    
-                    // TODO: What about Habanero Java extension?
-                    for (String ext: DrJavaFileUtils.getSourceFileExtensions()) {
-                      if (full.endsWith(ext)) {
-                        full = full.substring(0, full.lastIndexOf(ext));
-                        break;
-                      }
+            // open documents may not have been compiled yet, so they are added even if the build directory is indexed
+            File projectRoot = _model.getProjectRoot();
+            List<OpenDefinitionsDocument> docs = _model.getOpenDefinitionsDocuments();
+            if (docs != null) {
+              for (OpenDefinitionsDocument d: docs) {
+                if (d.isUntitled()) continue;
+                try {
+                  String rel = FileOps.stringMakeRelativeTo(d.getRawFile(), projectRoot);
+                  String full = rel.replace(File.separatorChar, '.');
+                  
+                  // TODO: What about Habanero Java extension?
+                  for (String ext: DrJavaFileUtils.getSourceFileExtensions()) {
+                    if (full.endsWith(ext)) {
+                      full = full.substring(0, full.lastIndexOf(ext));
+                      break;
                     }
-                    String simple = full;
-                    if (simple.lastIndexOf('.') >= 0) simple = simple.substring(simple.lastIndexOf('.') + 1);
-                    
-//                    _log.log("**** Creating new JavaAPIEntry with simple name = " + simple + " and full name = " + full);
-                    JavaAPIListEntry entry = new JavaAPIListEntry(simple, full, null);
-                    if (! autoImportList.contains(entry)) { autoImportList.add(entry); }
                   }
-                  catch(IOException ioe) { /* ignore, just don't add this one */ }
-                  catch(SecurityException se) { /* ignore, just don't add this one */ }
+                  String simple = full;
+                  if (simple.lastIndexOf('.') >= 0) simple = simple.substring(simple.lastIndexOf('.') + 1);
+                  
+//                  _log.log("**** Creating new JavaAPIEntry with simple name = " + simple + " and full name = " + full);
+                  autoImportSet.add(new JavaAPIListEntry(simple, full, null));
                 }
+                catch(IOException ioe) { /* ignore, just don't add this one */ }
+                catch(SecurityException se) { /* ignore, just don't add this one */ }
               }
             }
+            List<JavaAPIListEntry> autoImportList = new ArrayList<JavaAPIListEntry>(autoImportSet);
             PredictiveInputModel<JavaAPIListEntry> pim =
               new PredictiveInputModel<JavaAPIListEntry>(true, new PrefixStrategy<JavaAPIListEntry>(), autoImportList);
             pim.setMask(s);
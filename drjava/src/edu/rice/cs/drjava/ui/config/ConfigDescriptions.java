@@ -454,6 +454,11 @@ public class ConfigDescriptions {
         "Delete language level class files?",
         "Whether DrJava should delete class files in directories with language level files.");
     
+    add(OptionConstants.SKIP_UP_TO_DATE_LL_FILES,
+        "Skip up-to-date language level files",
+        "<html>Whether language level files whose generated .java file is newer than the<br>" +
+        "language level file are neither type-checked nor converted again.</html>");
+    
     add(OptionConstants.NEW_VERSION_NOTIFICATION,
         "Check for new versions?",
         "Whether DrJava should check for new versions on drjava.org.");
@@ -471,6 +476,11 @@ public class ConfigDescriptions {
     add(OptionConstants.BROWSER_HISTORY_MAX_SIZE,
         "Maximum Size of Browser History", 
         "Determines how many entries are kept in the browser history.");
+    add(OptionConstants.DOCUMENT_CACHE_MEMORY_BUDGET,
+        "Memory for Unmodified Documents (MB)", 
+        "<html>The amount of memory that may be used to keep unmodified documents<br>" +
+        "in memory. Documents beyond this limit are reloaded when needed.<br>" +
+        "Use 0 for no limit.</html>");
     
     /* Check box options */
     add(OptionConstants.AUTO_CLOSE_COMMENTS, "Automatically Close Block Comments", 
@@ -559,6 +569,10 @@ public class ConfigDescriptions {
     add(OptionConstants.SHOW_FALLTHROUGH_WARNINGS, "Show Fall-Through Warnings",
         "<html>Warn about <code>switch</code> block cases that fall through to the next case.</html>");
     
+    add(OptionConstants.INCREMENTAL_COMPILATION, "Compile Incrementally",
+        "<html>Whether Compile All and Compile Project only recompile the files modified since<br>" +
+        "the last build and the files that depend on them.</html>");
+    
     /*
      * The drop down box containing the compiler names
      */
@@ -608,6 +622,11 @@ public class ConfigDescriptions {
         "Require Variable Type",
         "<html>Whether DrJava should require a variable type for<br>"+
         "variable declarations in the Interactions Pane.</html>");
+    add(OptionConstants.DYNAMICJAVA_COMPILE_METHOD_BODIES, 
+        "Compile Method Bodies",
+        "<html>Whether DrJava should compile the bodies of methods declared<br>"+
+        "in the Interactions Pane to bytecode where possible, instead of<br>"+
+        "interpreting them each time they are called.</html>");
     
     /** Add all of the components for the JUnit panel of the preferences window. */
     add(OptionConstants.JUNIT_LOCATION_ENABLED, "Use external JUnit",
@@ -618,6 +637,13 @@ public class ConfigDescriptions {
         "<html>Optional location of the JUnit or ConcJUnit jar file.<br>"+
         "(Changes will not be applied until the Interactions Pane<br>"+
         "is reset.)</html>");
+    add(OptionConstants.JUNIT_PARALLEL_THREADS, "Parallel Test Threads",
+        "<html>The number of threads on which test classes are run at the<br>"+
+        "same time. Each class is loaded separately, so classes don't share<br>"+
+        "static state; classes annotated @NotThreadSafe run afterwards, one<br>"+
+        "at a time. 1 runs all classes sequentially.<br>"+
+        "(Changes will not be applied until the Interactions Pane<br>"+
+        "is reset.)</html>");
     add(OptionConstants.CONCJUNIT_CHECKS_ENABLED, "Enabled ConcJUnit Checks",
         "<html>The concurrent unit testing checks that should be performed.<br>"+
         "'none' uses plain JUnit. ConcJUnit can also detect failures in<br>"+
@@ -637,6 +663,15 @@ public class ConfigDescriptions {
     add(OptionConstants.FORCE_TEST_SUFFIX,
         "Require test classes in projects to end in \"Test\"",
         "Whether to force test classes in projects to end in \"Test\".");
+    
+    add(OptionConstants.JUNIT_TEST_IMPACT,
+        "Only run tests affected by changes",
+        "<html>Whether testing all documents or a project only runs the test<br>"+
+        "classes whose program classes have changed since they last passed.<br>"+
+        "The classes each test loads are recorded when it runs, which runs<br>"+
+        "test classes one at a time. Use \"Run All Tests\" to run every class.<br>"+
+        "(Changes will not be applied until the Interactions Pane<br>"+
+        "is reset.)</html>");
 
     add(OptionConstants.LANGUAGE_LEVEL,
         "Language Level",
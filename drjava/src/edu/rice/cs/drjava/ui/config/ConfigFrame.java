@@ -1030,6 +1030,10 @@ public class ConfigFrame extends SwingFrame {
 
     addOptionComponent(panel, 
                        newForcedChoiceOptionComponent(OptionConstants.DELETE_LL_CLASS_FILES));
+    
+    addOptionComponent(panel, 
+                       newBooleanOptionComponent(OptionConstants.SKIP_UP_TO_DATE_LL_FILES, false)
+                         .setEntireColumn(true));
 
     addOptionComponent(panel, 
                        new LabelComponent("<html>&nbsp;&nbsp;&nbsp;&nbsp;&nbsp;&nbsp;&nbsp;&nbsp;&nbsp;&nbsp;&nbsp;" +
@@ -1051,6 +1055,7 @@ public class ConfigFrame extends SwingFrame {
     addOptionComponent(panel, newIntegerOptionComponent(OptionConstants.INDENT_INC));
     addOptionComponent(panel, newIntegerOptionComponent(OptionConstants.RECENT_FILES_MAX_SIZE));
     addOptionComponent(panel, newIntegerOptionComponent(OptionConstants.BROWSER_HISTORY_MAX_SIZE));
+    addOptionComponent(panel, newIntegerOptionComponent(OptionConstants.DOCUMENT_CACHE_MEMORY_BUDGET));
     
     /* Check box options */
     addOptionComponent(panel, 
@@ -1227,6 +1232,10 @@ public class ConfigFrame extends SwingFrame {
     addOptionComponent(panel, 
                        newBooleanOptionComponent(OptionConstants.SHOW_FALLTHROUGH_WARNINGS, false)
                          .setEntireColumn(true));
+    
+    addOptionComponent(panel, 
+                       newBooleanOptionComponent(OptionConstants.INCREMENTAL_COMPILATION, false)
+                         .setEntireColumn(true));
     addOptionComponent(panel, 
                        new LabelComponent("<html><br><br>Note: Some of these options may not be effective, depending on the<br>"+
                                           "compiler you are using.</html>",
@@ -1332,6 +1341,7 @@ public class ConfigFrame extends SwingFrame {
                        newForcedChoiceOptionComponent(OptionConstants.DYNAMICJAVA_ACCESS_CONTROL));
     addOptionComponent(panel, newBooleanOptionComponent(OptionConstants.DYNAMICJAVA_REQUIRE_SEMICOLON));
     addOptionComponent(panel, newBooleanOptionComponent(OptionConstants.DYNAMICJAVA_REQUIRE_VARIABLE_TYPE));
+    addOptionComponent(panel, newBooleanOptionComponent(OptionConstants.DYNAMICJAVA_COMPILE_METHOD_BODIES));
     
     panel.displayComponents();
   }
@@ -1396,6 +1406,8 @@ public class ConfigFrame extends SwingFrame {
     });
     junitLoc.setFileFilter(ClassPathFilter.ONLY);
     addOptionComponent(panel, junitLoc);
+    
+    addOptionComponent(panel, newIntegerOptionComponent(OptionConstants.JUNIT_PARALLEL_THREADS));
 
     addOptionComponent(panel, new LabelComponent("<html>&nbsp;</html>", this, true));
 
@@ -1580,6 +1592,8 @@ public class ConfigFrame extends SwingFrame {
       newBooleanOptionComponent(OptionConstants.FORCE_TEST_SUFFIX,false)
       .setEntireColumn(true);
     addOptionComponent(panel, forceTestSuffix);
+    addOptionComponent(panel, newBooleanOptionComponent(OptionConstants.JUNIT_TEST_IMPACT, false)
+                         .setEntireColumn(true));
     
     panel.displayComponents();
   }
@@ -47,11 +47,15 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Set;
 
 import javax.swing.*;
 import javax.swing.event.*;
 import javax.swing.border.EmptyBorder;
+import javax.swing.text.Element;
 
+import edu.rice.cs.drjava.model.DummyGlobalModelListener;
 import edu.rice.cs.drjava.model.OpenDefinitionsDocument;
 import edu.rice.cs.drjava.model.SingleDisplayModel;
 import edu.rice.cs.drjava.model.compiler.CompilerListener;
@@ -82,6 +86,8 @@ import edu.rice.cs.util.swing.Utilities;
 
 import edu.rice.cs.drjava.model.junit.JUnitResultTuple;
 
+import org.jacoco.core.analysis.ICounter;
+
 import javax.swing.filechooser.FileFilter;
 
 import java.awt.Desktop;
@@ -113,6 +119,12 @@ public class CoverageFrame extends SwingFrame {
 
     private final Map<OptionParser<?>,String> _storedPreferences = 
         new HashMap<OptionParser<?>,String>();
+
+    /** Whether documents are highlighted with the results of the last coverage run when they are displayed. */
+    private volatile boolean _highlightPending = false;
+
+    /** The documents highlighted with the results of the last coverage run. */
+    private final Set<OpenDefinitionsDocument> _highlighted = new HashSet<OpenDefinitionsDocument>();
   
     /** 
      * Constructs project properties frame for a new project and displays it.  
@@ -157,6 +169,12 @@ public class CoverageFrame extends SwingFrame {
         };
         _cancelButton = new JButton(cancelAction);
 
+        _model.addListener(new DummyGlobalModelListener() {
+            @Override public void activeDocumentChanged(OpenDefinitionsDocument active) {
+                _highlight(active);
+            }
+        });
+
         init();
         initDone(); /* call mandated by SwingFrame contract */
     }
@@ -175,7 +193,10 @@ public class CoverageFrame extends SwingFrame {
                 this.displayReportUsingDefaultBrowser(indexURL);
             }
 
-            //this.highlight(_mainFrame.getLastJUnitResult().getLineColors(), false);
+            /* Highlight the active document now, and others as they are displayed */
+            _highlightPending = true;
+            _highlighted.clear();
+            _highlight(_model.getActiveDocument());
             this._model.getJUnitModel().setCoverage(false, "");
         //} 
         //else {
@@ -310,109 +331,125 @@ public class CoverageFrame extends SwingFrame {
     }
 
     /**
-     * Highlights each line of code in the open files (green, yellow, or red,
-     * based on the results of running JaCoCo.
-     * 
-     * @param lineColors the colors to highlight
-     * @param selOnly true if we only want to highlight the currently-selected
-     *                document; false to highlight everything
+     * Highlights each line of code in the given document green, yellow, or
+     * red, based on the results of the last coverage run.  The coverage of
+     * the document's class is only fetched from the interpreter JVM when the
+     * document is first displayed after a run.  The highlights are removed
+     * by the next compilation.  Only runs in the event thread.
+     *
+     * @param o the document to highlight
      */
-    private void highlight(Map<String, List<String>> lineColors, boolean selOnly) {
-    
-        /* Get an iterator over the documents to be highlighted */
-        Iterator<OpenDefinitionsDocument> iter;
-        if (!selOnly) {
-            iter = _model.getDocumentNavigator().getDocuments().
-                iterator();
-        } else {
-            iter = _model.getDocumentNavigator().getSelectedDocuments().
-                iterator();
+    private void _highlight(final OpenDefinitionsDocument o) {
+        if (! _highlightPending || ! _highlighted.add(o)) {
+            return;
+        }
+        final DefinitionsPane pane = _mainFrame.getDefPaneGivenODD(o);
+        byte[] lines;
+        try {
+            lines = _model.getJUnitModel().
+                getLineCoverage(o.getQualifiedClassName());
+        } catch (ClassNameNotFoundException e) {
+            return;
+        }
+        if (lines == null) {
+            return;
         }
 
-        while (iter.hasNext()) {
-
-            /* Get the file to highlight */
-            OpenDefinitionsDocument o = iter.next(); 
-            final DefinitionsPane pane = _mainFrame.getDefPaneGivenODD(o);
-
-            try {
-                List<String> colors = lineColors.get(o.getQualifiedClassName());
-
-                /* Highlight each line */
-                for (int i = 0; i < colors.size(); i++) {
-                    String color = colors.get(i);
-              
-                    Color c = Color.black;
-                    if (color.equals("")) {
-                        continue;
-                    } else if (color.equals("green")) {
-                        c = Color.green;
-                    } else if (color.equals("red")) {
-                        c = Color.red;
-                    } else if (color.equals("yellow")) {
-                        c = Color.yellow;
-                    }
-      
-                    final HighlightInfo info = pane.getHighlightManager().
-                        addHighlight(o._getOffset(i), o._getOffset(i+1), 
-                        new ReverseHighlighter.DrJavaHighlightPainter(c));
-
-                    CompilerListener removeHighlight = new DummyCompilerListener() {
-
-                        @Override public void compileAborted(Exception e) {
-                            /**
-                             * Gets called if there are modified files and the 
-                             * user chooses NOT to save the files see bug 
-                             * report 2582488: Hangs If Testing Modified File, 
-                             * But Choose "No" for Saving
-                             */
-                            final CompilerListener listenerThis = this;
-                            _model.getCompilerModel().removeListener(listenerThis); 
-                        }
+        /* Highlight each run of lines with the same status */
+        final List<HighlightInfo> infos = new ArrayList<HighlightInfo>();
+        Element root = o.getDefaultRootElement();
+        int count = Math.min(lines.length, root.getElementCount() + 1);
+        int i = 1; /* lines are numbered from 1 */
+        while (i < count) {
+            int status = lines[i];
+            int j = i + 1;
+            while (j < count && lines[j] == status) {
+                j++;
+            }
+            Color c = _colorOf(status);
+            if (c != null) {
+                infos.add(pane.getHighlightManager().addHighlight(
+                    root.getElement(i - 1).getStartOffset(),
+                    root.getElement(j - 2).getEndOffset(),
+                    new ReverseHighlighter.DrJavaHighlightPainter(c)));
+            }
+            i = j;
+        }
 
-                        @Override public void compileEnded(File workDir, 
-                            List<? extends File> excludedFiles) {
+        CompilerListener removeHighlight = new DummyCompilerListener() {
 
-                            final CompilerListener listenerThis = this;
+            @Override public void compileAborted(Exception e) {
+                /**
+                 * Gets called if there are modified files and the 
+                 * user chooses NOT to save the files see bug 
+                 * report 2582488: Hangs If Testing Modified File, 
+                 * But Choose "No" for Saving
+                 */
+                _removeListener(this);
+            }
 
-                            try {
+            @Override public void compileEnded(File workDir, 
+                List<? extends File> excludedFiles) {
 
-                                if (_model.hasOutOfSyncDocuments() || _model.
-                                    getNumCompilerErrors() > 0) {
-                                    return;
-                                }
+                final CompilerListener listenerThis = this;
 
-                                EventQueue.invokeLater(new Runnable() {  
-                                    /**
-                                     * Defer running this code; would prefer
-                                     * to waitForInterpreter.
-                                     */
-                                    public void run() {
-                                        pane.getHighlightManager().
-                                        removeHighlight(info);
-                                    }
-                                });
-                            }
+                try {
 
-                            finally {
+                    if (_model.hasOutOfSyncDocuments() || _model.
+                        getNumCompilerErrors() > 0) {
+                        return;
+                    }
 
-                                /* Remove listener after its first execution */
-                                EventQueue.invokeLater(new Runnable() { 
-                                    public void run() { 
-                                        _model.getCompilerModel().
-                                        removeListener(listenerThis); 
-                                    }
-                                });
+                    EventQueue.invokeLater(new Runnable() {  
+                        /**
+                         * Defer running this code; would prefer
+                         * to waitForInterpreter.
+                         */
+                        public void run() {
+                            _highlightPending = false;
+                            _highlighted.remove(o);
+                            for (HighlightInfo info : infos) {
+                                pane.getHighlightManager().
+                                removeHighlight(info);
                             }
                         }
-                    }; /* end coverage listener */
+                    });
+                }
 
-                    _model.getCompilerModel().addListener(removeHighlight);
+                finally {
+                    _removeListener(listenerThis);
                 }
+            }
+        }; /* end coverage listener */
+
+        _model.getCompilerModel().addListener(removeHighlight);
+    }
 
-            } catch (ClassNameNotFoundException e) {
-                continue;
+    /** 
+     * Removes a listener from the compiler model after its first execution.
+     *
+     * @param l the listener to remove
+     */
+    private void _removeListener(final CompilerListener l) {
+        EventQueue.invokeLater(new Runnable() { 
+            public void run() { 
+                _model.getCompilerModel().removeListener(l); 
             }
+        });
+    }
+
+    /**
+     * Converts a line coverage status into a highlight color.
+     *
+     * @param status the ICounter status of the line
+     * @return the color, or null if the line contains no code
+     */
+    private static Color _colorOf(int status) {
+        switch (status) {
+            case ICounter.NOT_COVERED: return Color.red;
+            case ICounter.PARTLY_COVERED: return Color.yellow;
+            case ICounter.FULLY_COVERED: return Color.green;
+            default: return null;
         }
     }
 
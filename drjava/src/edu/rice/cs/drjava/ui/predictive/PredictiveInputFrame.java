@@ -310,8 +310,7 @@ public class PredictiveInputFrame<T extends Comparable<? super T>> extends Swing
     * @param pim predictive input model
     */
   public void setModel(boolean ignoreCase, PredictiveInputModel<T> pim) {
-    String trace = Arrays.toString(Thread.currentThread().getStackTrace());
-//    Utilities.show("PI model set to " + pim + "\nBacktrace:\n" + trace);
+//    Utilities.show("PI model set to " + pim + "\nBacktrace:\n" + Arrays.toString(Thread.currentThread().getStackTrace()));
     _pim = new PredictiveInputModel<T>(ignoreCase, pim);
     removeListener();
     updateTextField();
@@ -33,26 +33,60 @@
  * from http://www.drjava.org/ or http://sourceforge.net/projects/drjava/
  * 
  * END_COPYRIGHT_BLOCK*/
-
 package edu.rice.cs.util;
 
 import java.io.*;
 
+import java.util.ArrayList;
 import java.util.Date;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
 import java.util.TimeZone;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import edu.rice.cs.plt.lambda.Thunk;
 
 /** Logging class to record errors or unexpected behavior to a file.  The file is created in the current directory,
   * and is only used if the log is enabled.  All logs can be enabled at once with the ENABLE_ALL field.
+  * <p>
+  * Logs can also be enabled at run time with the system property {@code drjava.log}, whose value is either "all" or a
+  * comma-separated list of log names (e.g. {@code -Ddrjava.log=GlobalModel.txt,FileIndex.txt}).  Such logs are
+  * written asynchronously: the logging thread only queues the message, and a background thread writes the queued
+  * messages in batches, flushing each file once per batch.  Logs enabled in the code are written synchronously, so
+  * that every message is in the file by the time log returns.
+  * <p>
+  * Callers should not build expensive messages for disabled logs.  The variants of log that take a Thunk or a format
+  * string and arguments only produce the message if the log is enabled; other expensive messages should be guarded
+  * by isEnabled().
   * @version $Id$
   */
 public class Log {
   public static final boolean ENABLE_ALL = false;
   
+  /** The system property that enables logs at run time. */
+  public static final String ENABLE_PROPERTY = "drjava.log";
+  
+  /** Names of the logs enabled by ENABLE_PROPERTY; contains "all" if all logs are enabled. */
+  private static final Set<String> ENABLED_NAMES = new HashSet<String>();
+  static {
+    String names = null;
+    try { names = System.getProperty(ENABLE_PROPERTY); }
+    catch (SecurityException e) { /* no logs enabled */ }
+    if (names != null) {
+      for (String n: names.split(",")) { if (n.trim().length() > 0) ENABLED_NAMES.add(n.trim()); }
+    }
+  }
+  
   /** Whether this particular log is enabled in development mode. */
   protected volatile boolean _isEnabled;
   
+  /** Whether messages are queued for the background writer rather than written by the logging thread. */
+  protected volatile boolean _isAsynchronous;
+  
   /** The filename of this log. */
   protected volatile String _name;
   
@@ -72,22 +106,30 @@ public class Log {
   public Log(String name, boolean isEnabled) { this(new File(name), isEnabled); }
   
   public Log(File f, boolean isEnabled) {
+    this(f, isEnabled, ! isEnabled && (ENABLED_NAMES.contains(f.getName()) || ENABLED_NAMES.contains("all")));
+  }
+  
+  /** Creates a new Log writing to the given file, which is enabled if isEnabled or isAsynchronous is true. */
+  Log(File f, boolean isEnabled, boolean isAsynchronous) {
     _file = f;
     _name = f.getName();
-    _isEnabled = isEnabled;
+    _isAsynchronous = isAsynchronous;
+    _isEnabled = isEnabled || isAsynchronous;
     DATE_FORMAT.setTimeZone(TimeZone.getTimeZone("GMT"));
     DATE_FORMAT.setLenient(false);
     _init();
   }
   
   /** Creates the log file, if enabled. */
-  protected void _init() {
+  protected synchronized void _init() {
     if (_writer == null) {
       if (_isEnabled || ENABLE_ALL) {
         try {
           FileWriter w = new FileWriter(_file.getAbsolutePath(), true);
           _writer = new PrintWriter(w);
-          log("Log '" + _name + "' opened: " + DATE_FORMAT.format(new Date()) + " with name " + _file.getAbsolutePath());
+          _println(System.currentTimeMillis(), "Log '" + _name + "' opened: " + DATE_FORMAT.format(new Date()) + 
+                   " with name " + _file.getAbsolutePath());
+          _writer.flush();
         }
         catch (IOException ioe) {
           throw new RuntimeException("Could not create log: " + ioe);
@@ -107,16 +149,43 @@ public class Log {
   /** Prints a message to the log, if enabled.
     * @param message Message to print.
     */
-  public synchronized void log(String message) {
-    if (isEnabled()) {
-      if (_writer == null) {
-        _init();
+  public void log(String message) {
+    if (isEnabled()) _write(message);
+  }
+  
+  /** Prints the message produced by a thunk to the log, if enabled.  The thunk is not evaluated otherwise.
+    * @param message Thunk producing the message to print.
+    */
+  public void log(Thunk<? extends String> message) {
+    if (isEnabled()) _write(message.value());
+  }
+  
+  /** Prints a message formatted by String.format to the log, if enabled.  The message is not formatted otherwise.
+    * @param format Format string of the message to print.
+    * @param args Arguments referenced by the format string.
+    */
+  public void log(String format, Object... args) {
+    if (isEnabled()) _write(String.format(format, args));
+  }
+  
+  /** Writes a message, or queues it for the background writer if this log is asynchronous. */
+  private void _write(String message) {
+    if (_isAsynchronous) AsyncWriter.ONLY.enqueue(this, message);
+    else {
+      synchronized(this) {
+        _println(System.currentTimeMillis(), message);
+        _writer.flush();
       }
-      _writer.println(DATE_FORMAT.format(new Date()) + ": " + message);
-      _writer.flush();
     }
   }
   
+  /** Prints a message with the given time stamp without flushing, creating the file if necessary.  Assumes this is
+    * locked. */
+  private void _println(long time, String message) {
+    if (_writer == null) _init();
+    _writer.println(DATE_FORMAT.format(new Date(time)) + ": " + message);
+  }
+  
   /** Converts a stack trace (StackTraceElement[]) to string form 
    * @param trace trace to be converted
    * @return string representation of trace
@@ -131,7 +200,7 @@ public class Log {
     * @param s  Message to print
     * @param trace  Stack track to log
     */
-  public synchronized void log(String s, StackTraceElement[] trace) {
+  public void log(String s, StackTraceElement[] trace) {
     if (isEnabled()) log(s + traceToString(trace));
   }
   
@@ -139,7 +208,7 @@ public class Log {
     * @param s Message to print
     * @param t Throwable to log
     */
-  public synchronized void log(String s, Throwable t) {
+  public void log(String s, Throwable t) {
     if (isEnabled()) {
       StringWriter sw = new StringWriter();
       PrintWriter pw = new PrintWriter(sw);
@@ -148,10 +217,22 @@ public class Log {
     }
   }
   
-  /** Closes a log file. */
+  /** Blocks until all messages queued for the background writer so far have been written.  Returns immediately if
+    * this log is synchronous.
+    */
+  public void flush() {
+    if (_isAsynchronous) AsyncWriter.ONLY.flush();
+  }
+  
+  /** Closes a log file, after writing any queued messages. */
   public void close() {
-    _writer.close();
-    _writer = null;
+    flush();
+    synchronized(this) {
+      if (_writer != null) {
+        _writer.close();
+        _writer = null;
+      }
+    }
   }
   
   /** Parses a date printed by Date.toString(); returns null if there is a 
@@ -167,4 +248,78 @@ public class Log {
     }
     catch(ParseException pe) { return null; }
   }
+  
+  /** The background thread that writes the messages of all asynchronous logs.  It takes all queued messages at once,
+    * writes them, and flushes each file that was written to.  The time stamp of a message is taken when it is queued,
+    * but it is only formatted by the writer.
+    */
+  private static final class AsyncWriter extends Thread {
+    static final AsyncWriter ONLY = new AsyncWriter();
+    
+    private static final class Entry {
+      final Log log;
+      final long time;
+      final String message;
+      Entry(Log l, long t, String m) { log = l; time = t; message = m; }
+    }
+    
+    private final LinkedBlockingQueue<Entry> _queue = new LinkedBlockingQueue<Entry>();
+    
+    // The counters are guarded by this.
+    private long _enqueued = 0;
+    private long _written = 0;
+    private boolean _started = false;
+    
+    private AsyncWriter() {
+      super("Asynchronous Log Writer");
+      setDaemon(true);
+      setPriority(Thread.MIN_PRIORITY);
+    }
+    
+    void enqueue(Log log, String message) {
+      synchronized(this) {
+        _enqueued++;
+        if (! _started) {
+          _started = true;
+          start();
+          Runtime.getRuntime().addShutdownHook(new Thread() { public void run() { AsyncWriter.this.flush(); } });
+        }
+      }
+      _queue.add(new Entry(log, System.currentTimeMillis(), message));
+    }
+    
+    /** Blocks until all messages queued so far have been written. */
+    void flush() {
+      synchronized(this) {
+        long target = _enqueued;
+        try { while (_written < target) wait(); }
+        catch (InterruptedException e) { Thread.currentThread().interrupt(); }
+      }
+    }
+    
+    public void run() {
+      List<Entry> batch = new ArrayList<Entry>();
+      while (true) {
+        try { batch.add(_queue.take()); }
+        catch (InterruptedException e) { continue; }
+        _queue.drainTo(batch);
+        IdentityHashMap<Log, Log> written = new IdentityHashMap<Log, Log>();
+        for (Entry e: batch) {
+          synchronized(e.log) {
+            try { e.log._println(e.time, e.message); }
+            catch (RuntimeException re) { continue; /* the file could not be created; drop the message */ }
+          }
+          written.put(e.log, e.log);
+        }
+        for (Log l: written.keySet()) {
+          synchronized(l) { if (l._writer != null) l._writer.flush(); }
+        }
+        synchronized(this) {
+          _written += batch.size();
+          notifyAll();
+        }
+        batch.clear();
+      }
+    }
+  }
 }
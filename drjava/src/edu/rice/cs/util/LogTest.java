@@ -45,6 +45,7 @@ import java.util.Random;
 
 import edu.rice.cs.drjava.model.MultiThreadedTestCase;
 import edu.rice.cs.plt.io.IOUtil;
+import edu.rice.cs.plt.lambda.Thunk;
 
 /** Test cases for {@link Log}.
  *  @version $Id$
@@ -267,5 +268,54 @@ public class LogTest extends MultiThreadedTestCase {
     fin.close();
 //    System.err.println("LogTest.testConucrrentWrites complete");
   }
+  
+  /** Tests that disabled logs neither evaluate thunks nor format messages. */
+  public void testDisabledLogDoesNotFormat() {
+    Log log = new Log("logtest004.txt", false);
+    if (log.isEnabled()) return;  // enabled by ENABLE_ALL or at run time
+    log.log(new Thunk<String>() {
+      public String value() { throw new RuntimeException("Thunk evaluated"); }
+    });
+    log.log("%s", new Object() {
+      public String toString() { throw new RuntimeException("Message formatted"); }
+    });
+  }
+  
+  /** Tests that the messages of an asynchronous log are written in order once it is flushed.
+    * @throws IOException if an IO operation fails
+    * @throws InterruptedException if execution is interrupted unexpectedly
+    */
+  public void testAsynchronousLog() throws IOException, InterruptedException {
+    File file5 = IOUtil.createAndMarkTempFile("logtest005",".txt");
+    final Log log5 = new Log(file5, false, true);
+    assertTrue("Asynchronous log is enabled", log5.isEnabled());
+    
+    Thread[] threads = new Thread[NUM_THREADS];
+    for (int i = 0; i < NUM_THREADS; i++) {
+      final int n = i;
+      threads[i] = new Thread() { public void run() { log5.log("Thread %d", n); } };
+    }
+    for (int i = 0; i < NUM_THREADS; i++) threads[i].start();
+    for (int i = 0; i < NUM_THREADS; i++) threads[i].join();
+    log5.log(new Thunk<String>() { public String value() { return "Last message"; } });
+    log5.flush();
+    
+    BufferedReader fin = new BufferedReader(new FileReader(file5));
+    String log5OpenMsg = "Log '" + file5.getName() + "' opened: ";
+    assertEquals("Incorrect log open message", log5OpenMsg, 
+                 getStringAfterDate(fin.readLine()).substring(0, log5OpenMsg.length()));
+    boolean[] seen = new boolean[NUM_THREADS];
+    for (int i = 0; i < NUM_THREADS; i++) {
+      String s = fin.readLine();
+      assertNotNull("Date of message", log5.parse(s));
+      String msg = getStringAfterDate(s);
+      assertTrue("Log message " + msg, msg.startsWith("Thread "));
+      seen[Integer.parseInt(msg.substring(7))] = true;
+    }
+    for (int i = 0; i < NUM_THREADS; i++) assertTrue("Message of thread " + i, seen[i]);
+    assertEquals("Log message", "Last message", getStringAfterDate(fin.readLine()));
+    assertEquals("End of log expected", null, fin.readLine());
+    fin.close();
+    log5.close();
+  }
 }
-
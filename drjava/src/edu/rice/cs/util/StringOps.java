@@ -151,6 +151,52 @@ public abstract class StringOps {
     return fullString;
   }
   
+  /** Finds the first occurrence of word in text at or after fromIndex, like String.indexOf, but works on any
+   * CharSequence (such as a document view) without copying it.
+   * @param text the text to search
+   * @param word the non-empty word to search for
+   * @param fromIndex the index from which to start the search
+   * @param matchCase false if characters should be compared ignoring case
+   * @return the index of the first match, or -1 if there is none
+   */
+  public static int indexOf(CharSequence text, String word, int fromIndex, boolean matchCase) {
+    int last = text.length() - word.length();
+    for (int i = Math.max(fromIndex, 0); i <= last; i++) {
+      if (regionMatches(text, i, word, matchCase)) return i;
+    }
+    return -1;
+  }
+  
+  /** Finds the last occurrence of word in text at or before fromIndex, like String.lastIndexOf, but works on any
+   * CharSequence (such as a document view) without copying it.
+   * @param text the text to search
+   * @param word the non-empty word to search for
+   * @param fromIndex the index from which to start the backward search
+   * @param matchCase false if characters should be compared ignoring case
+   * @return the index of the last match, or -1 if there is none
+   */
+  public static int lastIndexOf(CharSequence text, String word, int fromIndex, boolean matchCase) {
+    for (int i = Math.min(fromIndex, text.length() - word.length()); i >= 0; i--) {
+      if (regionMatches(text, i, word, matchCase)) return i;
+    }
+    return -1;
+  }
+  
+  /** @return true iff word occurs in text at offset; characters are compared as in String.equalsIgnoreCase
+   * if matchCase is false */
+  private static boolean regionMatches(CharSequence text, int offset, String word, boolean matchCase) {
+    for (int j = 0; j < word.length(); j++) {
+      char c1 = text.charAt(offset + j);
+      char c2 = word.charAt(j);
+      if (c1 == c2) continue;
+      if (matchCase) return false;
+      char u1 = Character.toUpperCase(c1);
+      char u2 = Character.toUpperCase(c2);
+      if (u1 != u2 && Character.toLowerCase(u1) != Character.toLowerCase(u2)) return false;
+    }
+    return true;
+  }
+  
   /** Converts the given string to a valid Java string literal.
    * All back slashes, quotes, new-lines, and tabs are converted
    * to their escap character form, and the sourounding quotes 
@@ -54,6 +54,24 @@ public class StringOpsTest extends DrJavaTestCase {
     assertEquals("testReplace:", "cabc", StringOps.replace(test, "cabc", "c"));
   }
   
+  /** Tests that indexOf and lastIndexOf on a CharSequence agree with the String methods. */
+  public void testIndexOf() {
+    CharSequence text = new StringBuilder("abcABCabc");
+    assertEquals("first match", 0, StringOps.indexOf(text, "abc", 0, true));
+    assertEquals("match from index", 6, StringOps.indexOf(text, "abc", 1, true));
+    assertEquals("case-insensitive match", 3, StringOps.indexOf(text, "abc", 1, false));
+    assertEquals("no match", -1, StringOps.indexOf(text, "abd", 0, false));
+    assertEquals("last match", 6, StringOps.lastIndexOf(text, "abc", 9, true));
+    assertEquals("last match from index", 0, StringOps.lastIndexOf(text, "abc", 5, true));
+    assertEquals("case-insensitive last match", 3, StringOps.lastIndexOf(text, "ABC", 5, false));
+    assertEquals("negative index", -1, StringOps.lastIndexOf(text, "abc", -1, true));
+    String s = text.toString();
+    for (int i = -1; i <= s.length() + 1; i++) {
+      assertEquals("indexOf " + i, s.indexOf("bc", i), StringOps.indexOf(text, "bc", i, true));
+      assertEquals("lastIndexOf " + i, s.lastIndexOf("bc", i), StringOps.lastIndexOf(text, "bc", i, true));
+    }
+  }
+  
   public void testEscapeUnEscapeFileName() {
     assertEquals("", StringOps.escapeFileName(""));
     assertEquals("abc123", StringOps.escapeFileName("abc123"));
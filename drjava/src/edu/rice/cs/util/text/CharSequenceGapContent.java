@@ -0,0 +1,147 @@
+/*BEGIN_COPYRIGHT_BLOCK
+ *
+ * Copyright (c) 2001-2016, JavaPLT group at Rice University (drjava@rice.edu)
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *    * Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the names of DrJava, the JavaPLT group, Rice University, nor the
+ *      names of its contributors may be used to endorse or promote products
+ *      derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * This software is Open Source Initiative approved Open Source Software.
+ * Open Source Initative Approved is a trademark of the Open Source Initiative.
+ * 
+ * This file is part of DrJava.  Download the current version of this project
+ * from http://www.drjava.org/ or http://sourceforge.net/projects/drjava/
+ * 
+ * END_COPYRIGHT_BLOCK*/
+
+
+package edu.rice.cs.util.text;
+
+import java.util.ConcurrentModificationException;
+
+import javax.swing.text.BadLocationException;
+import javax.swing.text.GapContent;
+import javax.swing.undo.UndoableEdit;
+
+/** A GapContent that can expose any range of its text as a CharSequence that reads directly from the gap buffer, so
+  * clients that only scan the text (searching, matching, encoding) do not have to copy it into a new String.  Edits
+  * keep the amortized O(1) cost of a gap buffer for localized typing, and positions are maintained by GapContent.
+  * <p>
+  * A view is only valid until the next modification of the content; any access after a modification throws a
+  * ConcurrentModificationException.  Views must therefore be used under the same locking discipline as
+  * {@code getText}, which in DrJava means inside the event thread.
+  * @version $Id$
+  */
+public class CharSequenceGapContent extends GapContent {
+  
+  /** Number of modifications applied to this content; used to detect stale views. */
+  private volatile int _modCount = 0;
+  
+  /** Creates a new content with the default initial buffer size. */
+  public CharSequenceGapContent() { super(); }
+  
+  /** Creates a new content with the given initial buffer size.
+    * @param initialLength the initial size of the buffer
+    */
+  public CharSequenceGapContent(int initialLength) { super(initialLength); }
+  
+  public UndoableEdit insertString(int where, String str) throws BadLocationException {
+    _modCount++;
+    return super.insertString(where, str);
+  }
+  
+  public UndoableEdit remove(int where, int nitems) throws BadLocationException {
+    _modCount++;
+    return super.remove(where, nitems);
+  }
+  
+  /** Returns a view of the specified range of this content without copying it.
+    * @param where the offset of the first character of the view
+    * @param len the number of characters in the view
+    * @return a CharSequence that is valid until the next modification of this content
+    * @throws BadLocationException if the range does not lie within this content
+    */
+  public CharSequence getCharSequence(int where, int len) throws BadLocationException {
+    if (where < 0 || len < 0 || where + len > length()) {
+      throw new BadLocationException("Invalid range [" + where + ", " + (where + len) + ")", where);
+    }
+    return new View(where, len);
+  }
+  
+  /** A read-only window onto the gap buffer.  The buffer, gap bounds and modification count are captured when the
+    * view is created; the buffer is only reallocated or shifted by a modification, which is detected by charAt. */
+  private final class View implements CharSequence {
+    private final char[] _array;
+    private final int _gapStart;
+    private final int _gapLength;
+    private final int _offset;
+    private final int _length;
+    private final int _expectedModCount;
+    
+    View(int offset, int length) {
+      _array = (char[]) getArray();
+      _gapStart = getGapStart();
+      _gapLength = getGapEnd() - _gapStart;
+      _offset = offset;
+      _length = length;
+      _expectedModCount = _modCount;
+    }
+    
+    private View(View outer, int offset, int length) {
+      _array = outer._array;
+      _gapStart = outer._gapStart;
+      _gapLength = outer._gapLength;
+      _offset = offset;
+      _length = length;
+      _expectedModCount = outer._expectedModCount;
+    }
+    
+    public int length() { return _length; }
+    
+    public char charAt(int index) {
+      if (index < 0 || index >= _length) { throw new IndexOutOfBoundsException("Index: " + index); }
+      if (_modCount != _expectedModCount) { throw new ConcurrentModificationException(); }
+      int i = _offset + index;
+      return (i < _gapStart) ? _array[i] : _array[i + _gapLength];
+    }
+    
+    public CharSequence subSequence(int start, int end) {
+      if (start < 0 || end > _length || start > end) {
+        throw new IndexOutOfBoundsException("Range: [" + start + ", " + end + ")");
+      }
+      return new View(this, _offset + start, end - start);
+    }
+    
+    /** Copies the viewed characters into a new String. */
+    public String toString() {
+      if (_modCount != _expectedModCount) { throw new ConcurrentModificationException(); }
+      int end = _offset + _length;
+      if (end <= _gapStart) { return new String(_array, _offset, _length); }
+      if (_offset >= _gapStart) { return new String(_array, _offset + _gapLength, _length); }
+      StringBuilder sb = new StringBuilder(_length);
+      sb.append(_array, _offset, _gapStart - _offset);
+      sb.append(_array, _gapStart + _gapLength, end - _gapStart);
+      return sb.toString();
+    }
+  }
+}
@@ -0,0 +1,98 @@
+/*BEGIN_COPYRIGHT_BLOCK
+ *
+ * Copyright (c) 2001-2016, JavaPLT group at Rice University (drjava@rice.edu)
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *    * Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the names of DrJava, the JavaPLT group, Rice University, nor the
+ *      names of its contributors may be used to endorse or promote products
+ *      derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * This software is Open Source Initiative approved Open Source Software.
+ * Open Source Initative Approved is a trademark of the Open Source Initiative.
+ * 
+ * This file is part of DrJava.  Download the current version of this project
+ * from http://www.drjava.org/ or http://sourceforge.net/projects/drjava/
+ * 
+ * END_COPYRIGHT_BLOCK*/
+
+
+package edu.rice.cs.util.text;
+
+import java.util.ConcurrentModificationException;
+
+import javax.swing.text.BadLocationException;
+
+import edu.rice.cs.drjava.DrJavaTestCase;
+
+/** Tests the views provided by CharSequenceGapContent.
+  * @version $Id$
+  */
+public class CharSequenceGapContentTest extends DrJavaTestCase {
+  
+  /** Tests that views agree with getString on both sides of the gap. */
+  public void testViewsAcrossGap() throws BadLocationException {
+    CharSequenceGapContent content = new CharSequenceGapContent(4);
+    content.insertString(0, "hello world");
+    content.insertString(5, ",");  // moves the gap into the middle of the text
+    String expected = content.getString(0, content.length() - 1);
+    assertEquals("text", "hello, world", expected);
+    
+    CharSequence view = content.getCharSequence(0, expected.length());
+    assertEquals("length", expected.length(), view.length());
+    for (int i = 0; i < expected.length(); i++) assertEquals("char " + i, expected.charAt(i), view.charAt(i));
+    assertEquals("toString", expected, view.toString());
+    assertEquals("subSequence spanning the gap", "o, w", view.subSequence(4, 8).toString());
+    assertEquals("view of a range", "world", content.getCharSequence(7, 5).toString());
+  }
+  
+  /** Tests that a view cannot be used after the content is modified. */
+  public void testStaleView() throws BadLocationException {
+    CharSequenceGapContent content = new CharSequenceGapContent();
+    content.insertString(0, "abc");
+    CharSequence view = content.getCharSequence(0, 3);
+    content.remove(1, 1);
+    try {
+      view.charAt(0);
+      fail("stale view should throw");
+    }
+    catch (ConcurrentModificationException e) { /* expected */ }
+  }
+  
+  /** Tests that illegal ranges are rejected. */
+  public void testBadRange() {
+    CharSequenceGapContent content = new CharSequenceGapContent();
+    try {
+      content.getCharSequence(0, 5);
+      fail("range beyond the content should throw");
+    }
+    catch (BadLocationException e) { /* expected */ }
+  }
+  
+  /** Tests that SwingDocument serves its text through the view. */
+  public void testSwingDocumentView() throws BadLocationException {
+    SwingDocument doc = new SwingDocument();
+    doc.insertString(0, "one three", null);
+    doc.insertString(4, "two ", null);
+    assertEquals("document view", "two three", doc.getCharSequence(4, 9).toString());
+    assertEquals("document view matches getText", doc.getText(), doc.getCharSequence(0, doc.getLength()).toString());
+  }
+}
@@ -39,6 +39,7 @@ package edu.rice.cs.util.text;
 import java.awt.print.Pageable;
 
 import javax.swing.text.DefaultStyledDocument;
+import javax.swing.text.StyleContext;
 import javax.swing.text.AttributeSet;
 import javax.swing.text.Position;
 import javax.swing.text.BadLocationException;
@@ -69,7 +70,13 @@ public class SwingDocument extends DefaultStyledDocument implements EditDocument
   
   /** Creates a new document adapter for a Swing StyledDocument. TODO: convert _styles and _condition to lazily 
     * initialized volatiles as soon as support for Java 1.4 is dropped and the double-check idiom is safe. */
-  public SwingDocument() { 
+  public SwingDocument() { this(new CharSequenceGapContent()); }
+  
+  /** Creates a new document adapter for a Swing StyledDocument that stores its text in the given content.
+    * @param content the storage for the text of this document
+    */
+  protected SwingDocument(Content content) {
+    super(content, new StyleContext());
     _styles = new HashMap<String, AttributeSet>();
     _condition = new DocumentEditCondition();
   }
@@ -187,6 +194,25 @@ public class SwingDocument extends DefaultStyledDocument implements EditDocument
     catch (BadLocationException e) { throw new EditDocumentException(e); }
   }
   
+  /** Returns a portion of the document as a CharSequence.  If the content of this document supports it, the sequence
+    * is a view of the document text rather than a copy; such a view is only valid until the next modification of this
+    * document, so it must be used under the same locking discipline as a sequence of reads.
+    * @param offs First offset of the desired text
+    * @param len Number of characters to return
+    * @return the specified text
+    * @throws BadLocationException if the offset or length are illegal
+    */
+  public CharSequence getCharSequence(int offs, int len) throws BadLocationException {
+    if (offs < 0 || len < 0 || offs + len > getLength()) {
+      throw new BadLocationException("Invalid range [" + offs + ", " + (offs + len) + ")", offs);
+    }
+    Content content = getContent();
+    if (content instanceof CharSequenceGapContent) {
+      return ((CharSequenceGapContent) content).getCharSequence(offs, len);
+    }
+    return getText(offs, len);
+  }
+  
   /** Gets the document text; this method is threadsafe. */
   public String getText() { 
     try { return getText(0, getLength()); }  // calls method defined in DefaultStyledDocument
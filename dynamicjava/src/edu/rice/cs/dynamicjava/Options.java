@@ -37,4 +37,6 @@ public class Options {
   public boolean prohibitBoxing() { return false; }
   /** Disallow unchecked casting conversion. */
   public boolean prohibitUncheckedCasts() { return true; }
+  /** Compile the bodies of methods declared in the interpreter to bytecode where possible. */
+  public boolean compileMethodBodies() { return false; }
 }
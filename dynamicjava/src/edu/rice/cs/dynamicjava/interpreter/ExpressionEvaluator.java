@@ -1,6 +1,7 @@
 package edu.rice.cs.dynamicjava.interpreter;
 
 import java.lang.reflect.Array;
+import java.util.List;
 import edu.rice.cs.plt.lambda.Lambda;
 import edu.rice.cs.plt.lambda.Lambda2;
 import edu.rice.cs.plt.lambda.Box;
@@ -12,6 +13,7 @@ import koala.dynamicjava.tree.visitor.*;
 
 import edu.rice.cs.dynamicjava.Options;
 import edu.rice.cs.dynamicjava.symbol.LocalVariable;
+import edu.rice.cs.dynamicjava.symbol.MethodInvoker;
 
 import static koala.dynamicjava.interpreter.NodeProperties.*;
 
@@ -85,14 +87,24 @@ public class ExpressionEvaluator extends AbstractVisitor<Object> implements Lamb
   }
   
   private Object handleMethodCall(MethodCall node, Object receiver) {
-    Iterable<Object> args;
-    if (node.getArguments() == null) { args = IterUtil.empty(); }
-    else { args = IterUtil.mapSnapshot(node.getArguments(), this); }
-
-    try { return getMethod(node).evaluate(receiver, args, _bindings, _options); }
+    List<Expression> argExps = node.getArguments();
+    Object[] args;
+    if (argExps == null || argExps.isEmpty()) { args = NO_ARGS; }
+    else {
+      args = new Object[argExps.size()];
+      int i = 0;
+      for (Expression exp : argExps) { args[i++] = value(exp); }
+    }
+    
+    MethodInvoker invoker;
+    if (hasMethodInvoker(node)) { invoker = getMethodInvoker(node); }
+    else { invoker = setMethodInvoker(node, MethodInvoker.forMethod(getMethod(node))); }
+    try { return invoker.invoke(receiver, args, _bindings, _options); }
     catch (EvaluatorException e) { throw new WrappedException(e); }
   }
   
+  private static final Object[] NO_ARGS = new Object[0];
+  
     
   @Override public Object visit(SimpleAllocation node) {
     return handleConstructor(node, null, node.getArguments());
@@ -0,0 +1,1143 @@
+package edu.rice.cs.dynamicjava.interpreter;
+
+import java.lang.reflect.Modifier;
+import java.util.*;
+import edu.rice.cs.plt.iter.IterUtil;
+
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.tree.MethodNode;
+
+import edu.rice.cs.dynamicjava.symbol.*;
+import edu.rice.cs.dynamicjava.symbol.type.*;
+import koala.dynamicjava.tree.*;
+import koala.dynamicjava.tree.visitor.*;
+
+import static org.objectweb.asm.Opcodes.*;
+import static koala.dynamicjava.interpreter.NodeProperties.*;
+
+/**
+ * Translates the body of a type-checked method declaration directly to bytecode, as an alternative to
+ * the stub produced by {@link TreeCompiler}, which forwards every invocation to the interpreter.  The
+ * translation is driven by the annotations left on the AST by the type checker: types, resolved
+ * variables, fields and methods, conversions, and translations.
+ * <p>
+ * Only a subset of the language is supported: local variables (unless they are referenced by a nested
+ * class), unlabeled {@code if}, {@code while}, {@code do} and {@code for} statements, {@code break},
+ * {@code continue}, {@code return} and {@code throw}; primitive arithmetic, comparisons and string
+ * concatenation; assignments to locals, fields and array elements; array creation and access; and
+ * fields, methods and constructors that can be linked directly from the compiled class.  Anything else
+ * &mdash; a {@code try} or {@code switch} statement, a nested class, a variable from the enclosing
+ * interpreter context, a non-public member of another class &mdash; rejects the whole method, and
+ * {@link #compile} returns {@code null} so that the caller can fall back to the interpreted stub.</p>
+ */
+class MethodBodyCompiler {
+
+  private static final String STRING_BUILDER_NAME = "java/lang/StringBuilder";
+
+  private final TreeCompiler _compiler;
+  private final TreeClass _treeClass;
+  private final String _name;
+  private final TypeSystem _ts;
+
+  private MethodVisitor _mv;
+  private boolean _isStatic;
+  private Type _returnType;
+  private Map<LocalVariable, Integer> _locals;
+  private int _nextLocal;
+  /** Targets of unlabeled break and continue statements, innermost loop first. */
+  private LinkedList<Label> _breakTargets;
+  private LinkedList<Label> _continueTargets;
+
+  /**
+   * @param compiler  The compiler of the class declaring the methods to be translated
+   * @param treeClass  The class being compiled
+   * @param name  The internal name of {@code treeClass}
+   * @param ts  The type system used to check the class
+   */
+  public MethodBodyCompiler(TreeCompiler compiler, TreeClass treeClass, String name, TypeSystem ts) {
+    _compiler = compiler;
+    _treeClass = treeClass;
+    _name = name;
+    _ts = ts;
+  }
+
+  /**
+   * Translate the given method.  The parameters other than {@code ast} are those of the method stub
+   * that would otherwise be produced, so that the result is interchangeable with it.  Static methods
+   * take an additional leading {@code RuntimeBindings} parameter.
+   * @return  A complete method, to be passed to a {@code ClassWriter} that computes the maximum
+   *          stack and local sizes; {@code null} if the body contains an unsupported construct.
+   */
+  public MethodNode compile(MethodDeclaration ast, int access, String descriptor, String signature,
+                            String[] exceptions) {
+    MethodNode result = new MethodNode(access, ast.getName(), descriptor, signature, exceptions);
+    _mv = result;
+    _isStatic = Modifier.isStatic(access);
+    _returnType = erase(getType(ast.getReturnType()));
+    _locals = new IdentityHashMap<LocalVariable, Integer>();
+    _nextLocal = 1; // "this" or the RuntimeBindings parameter
+    _breakTargets = new LinkedList<Label>();
+    _continueTargets = new LinkedList<Label>();
+    try {
+      for (FormalParameter p : ast.getParameters()) { declareLocal(getVariable(p)); }
+      result.visitCode();
+      ast.getBody().acceptVisitor(new StatementCompiler());
+      // Like the interpreter, produce null or a zero primitive if the body completes normally
+      if (isVoid(_returnType)) { _mv.visitInsn(RETURN); }
+      else {
+        pushZero(_returnType);
+        _mv.visitInsn(opcode(_returnType, IRETURN));
+      }
+      result.visitMaxs(0, 0);
+      result.visitEnd();
+      return result;
+    }
+    catch (UnsupportedConstructException e) { return null; }
+  }
+
+  /** Thrown when the method contains something that can't be translated. */
+  @SuppressWarnings("serial")
+  private static class UnsupportedConstructException extends RuntimeException {
+    /** The exception only unwinds the translation, so there is no need to record the stack. */
+    @Override public Throwable fillInStackTrace() { return this; }
+  }
+
+  private static UnsupportedConstructException unsupported() { return new UnsupportedConstructException(); }
+
+
+  private class StatementCompiler extends AbstractVisitor<Void> {
+
+    @Override public Void defaultCase(Node node) { throw unsupported(); }
+
+    @Override public Void visit(BlockStatement node) {
+      for (Node stmt : node.getStatements()) { stmt.acceptVisitor(this); }
+      return null;
+    }
+
+    @Override public Void visit(EmptyStatement node) { return null; }
+
+    @Override public Void visit(ExpressionStatement node) {
+      if (hasStatementTranslation(node)) { getStatementTranslation(node).acceptVisitor(this); }
+      else { pop(value(node.getExpression())); }
+      return null;
+    }
+
+    @Override public Void visit(VariableDeclaration node) {
+      LocalVariable var = getVariable(node);
+      Type t = erase(var.type());
+      int slot = declareLocal(var);
+      // As in StatementEvaluator, the variable holds its initial value while the initializer is evaluated
+      pushZero(t);
+      _mv.visitVarInsn(opcode(t, ISTORE), slot);
+      if (node.getInitializer() != null) {
+        coerce(value(node.getInitializer()), t);
+        _mv.visitVarInsn(opcode(t, ISTORE), slot);
+      }
+      return null;
+    }
+
+    @Override public Void visit(IfThenStatement node) {
+      Label end = new Label();
+      jump(node.getCondition(), false, end);
+      node.getThenStatement().acceptVisitor(this);
+      _mv.visitLabel(end);
+      return null;
+    }
+
+    @Override public Void visit(IfThenElseStatement node) {
+      Label elseLabel = new Label();
+      Label end = new Label();
+      jump(node.getCondition(), false, elseLabel);
+      node.getThenStatement().acceptVisitor(this);
+      _mv.visitJumpInsn(GOTO, end);
+      _mv.visitLabel(elseLabel);
+      node.getElseStatement().acceptVisitor(this);
+      _mv.visitLabel(end);
+      return null;
+    }
+
+    @Override public Void visit(WhileStatement node) {
+      Label body = new Label();
+      Label test = new Label();
+      Label end = new Label();
+      _mv.visitJumpInsn(GOTO, test);
+      _mv.visitLabel(body);
+      loopBody(node.getBody(), end, test);
+      _mv.visitLabel(test);
+      jump(node.getCondition(), true, body);
+      _mv.visitLabel(end);
+      return null;
+    }
+
+    @Override public Void visit(DoStatement node) {
+      Label body = new Label();
+      Label test = new Label();
+      Label end = new Label();
+      _mv.visitLabel(body);
+      loopBody(node.getBody(), end, test);
+      _mv.visitLabel(test);
+      jump(node.getCondition(), true, body);
+      _mv.visitLabel(end);
+      return null;
+    }
+
+    @Override public Void visit(ForStatement node) {
+      if (node.getInitialization() != null) {
+        for (Node init : node.getInitialization()) { init.acceptVisitor(this); }
+      }
+      Label body = new Label();
+      Label update = new Label();
+      Label test = new Label();
+      Label end = new Label();
+      _mv.visitJumpInsn(GOTO, test);
+      _mv.visitLabel(body);
+      loopBody(node.getBody(), end, update);
+      _mv.visitLabel(update);
+      if (node.getUpdate() != null) {
+        for (Node u : node.getUpdate()) { u.acceptVisitor(this); }
+      }
+      _mv.visitLabel(test);
+      if (node.getCondition() == null) { _mv.visitJumpInsn(GOTO, body); }
+      else { jump(node.getCondition(), true, body); }
+      _mv.visitLabel(end);
+      return null;
+    }
+
+    private void loopBody(Node body, Label breakTarget, Label continueTarget) {
+      _breakTargets.addFirst(breakTarget);
+      _continueTargets.addFirst(continueTarget);
+      body.acceptVisitor(this);
+      _breakTargets.removeFirst();
+      _continueTargets.removeFirst();
+    }
+
+    @Override public Void visit(BreakStatement node) {
+      if (node.getLabel() != null || _breakTargets.isEmpty()) { throw unsupported(); }
+      _mv.visitJumpInsn(GOTO, _breakTargets.getFirst());
+      return null;
+    }
+
+    @Override public Void visit(ContinueStatement node) {
+      if (node.getLabel() != null || _continueTargets.isEmpty()) { throw unsupported(); }
+      _mv.visitJumpInsn(GOTO, _continueTargets.getFirst());
+      return null;
+    }
+
+    @Override public Void visit(ReturnStatement node) {
+      if (node.getExpression() == null) { _mv.visitInsn(RETURN); }
+      else {
+        coerce(value(node.getExpression()), _returnType);
+        _mv.visitInsn(opcode(_returnType, IRETURN));
+      }
+      return null;
+    }
+
+    @Override public Void visit(ThrowStatement node) {
+      if (!isReference(value(node.getExpression()))) { throw unsupported(); }
+      _mv.visitInsn(ATHROW);
+      return null;
+    }
+
+  }
+
+
+  /**
+   * Push the value of the given expression, following the conventions of
+   * {@link ExpressionEvaluator#value}: constant values and translations take precedence over the
+   * expression itself, and any conversion or runtime check is applied to the result.
+   * @return  The erased type of the value on the stack
+   */
+  private Type value(Expression exp) {
+    Type result = uncheckedValue(exp);
+    if (hasCheckedType(exp)) {
+      // Other than casts (handled by the CastExpression case), checks are only attached to
+      // field accesses and method calls, where the expected type is the type of the expression
+      if (!(exp instanceof FieldAccess || exp instanceof MethodCall)) { throw unsupported(); }
+      result = cast(result, getType(exp));
+    }
+    return result;
+  }
+
+  /** Push the value of the given expression, ignoring its {@code CHECKED_TYPE} (if any). */
+  private Type uncheckedValue(Expression exp) {
+    Type result;
+    if (hasValue(exp) && isPushableConstant(exp)) { result = constant(getValue(exp)); }
+    else if (hasTranslation(exp)) { result = value(getTranslation(exp)); }
+    else { result = exp.acceptVisitor(_expressionCompiler); }
+    if (hasConvertedType(exp)) { result = convert(result, getConvertedType(exp).value()); }
+    return result;
+  }
+
+  /**
+   * Values of boxed types may be recorded as constants; the interpreter doesn't distinguish them from
+   * primitives, but here they must be produced by the (boxing) expression itself.
+   */
+  private boolean isPushableConstant(Expression exp) {
+    Object val = getValue(exp);
+    return val == null || val instanceof String || !isReference(erase(getType(exp)));
+  }
+
+  private final ExpressionCompiler _expressionCompiler = new ExpressionCompiler();
+
+  /** Pushes the value of an expression; the result is the erased type of that value. */
+  private class ExpressionCompiler extends AbstractVisitor<Type> {
+
+    @Override public Type defaultCase(Node node) { throw unsupported(); }
+
+    @Override public Type visit(Literal node) { return constant(node.getValue()); }
+
+    @Override public Type visit(VariableAccess node) {
+      LocalVariable var = getVariable(node);
+      Type t = erase(var.type());
+      _mv.visitVarInsn(opcode(t, ILOAD), slot(var));
+      return t;
+    }
+
+    @Override public Type visit(ThisExpression node) {
+      loadThis(getDJClass(node));
+      return erase(getType(node));
+    }
+
+    @Override public Type visit(SimpleFieldAccess node) {
+      DJField f = getField(node);
+      if (f.isStatic()) { return getStatic(f); }
+      else {
+        loadThis(hasDJClass(node) ? getDJClass(node) : null);
+        return getInstanceField(f, _treeClass, true);
+      }
+    }
+
+    @Override public Type visit(ObjectFieldAccess node) {
+      DJField f = getField(node);
+      if (f instanceof ArrayLengthField) {
+        if (!isArray(value(node.getExpression()))) { throw unsupported(); }
+        _mv.visitInsn(ARRAYLENGTH);
+        return TypeSystem.INT;
+      }
+      else if (f.isStatic()) { throw unsupported(); }
+      else {
+        Type receiverT = value(node.getExpression());
+        return getInstanceField(f, receiverClass(receiverT), false);
+      }
+    }
+
+    @Override public Type visit(StaticFieldAccess node) { return getStatic(getField(node)); }
+
+    @Override public Type visit(SimpleMethodCall node) {
+      return call(node, null, hasDJClass(node) ? getDJClass(node) : null);
+    }
+
+    @Override public Type visit(ObjectMethodCall node) { return call(node, node.getExpression(), null); }
+
+    @Override public Type visit(StaticMethodCall node) { return call(node, null, null); }
+
+    @Override public Type visit(SimpleAllocation node) {
+      if (hasEnclosingThis(node)) { throw unsupported(); }
+      DJConstructor k = getConstructor(node).declaredSignature();
+      DJClass c = k.declaringClass();
+      // Constructors of classes compiled by TreeCompiler take additional arguments
+      if (!(c instanceof JavaClass) || !isAccessible(c) || k.accessibility() != Access.PUBLIC ||
+          (c.declaringClass() != null && !c.isStatic())) {
+        throw unsupported();
+      }
+      String owner = TreeCompiler.className(c);
+      _mv.visitTypeInsn(NEW, owner);
+      _mv.visitInsn(DUP);
+      String paramsDescriptor = arguments(node.getArguments(), k.parameters());
+      _mv.visitMethodInsn(INVOKESPECIAL, owner, "<init>", paramsDescriptor + "V", false);
+      return erase(getType(node));
+    }
+
+    @Override public Type visit(ArrayAllocation node) {
+      if (node.getInitialization() != null) { return value(node.getInitialization()); }
+      Type t = erase(getType(node));
+      if (!isArray(t)) { throw unsupported(); }
+      List<Expression> sizes = node.getSizes();
+      for (Expression size : sizes) { coerce(value(size), TypeSystem.INT); }
+      if (sizes.size() == 1) { newArray(((ArrayType) t).ofType()); }
+      else { _mv.visitMultiANewArrayInsn(descriptor(t), sizes.size()); }
+      return t;
+    }
+
+    @Override public Type visit(ArrayInitializer node) {
+      if (!hasType(node)) { throw unsupported(); }
+      Type t = erase(getType(node));
+      if (!isArray(t)) { throw unsupported(); }
+      Type elementT = erase(((ArrayType) t).ofType());
+      List<Expression> cells = node.getCells();
+      pushInt(cells.size());
+      newArray(elementT);
+      int i = 0;
+      for (Expression cell : cells) {
+        _mv.visitInsn(DUP);
+        pushInt(i++);
+        coerce(value(cell), elementT);
+        _mv.visitInsn(opcode(elementT, IASTORE));
+      }
+      return t;
+    }
+
+    @Override public Type visit(ArrayAccess node) {
+      Type elementT = arrayElement(node);
+      _mv.visitInsn(opcode(elementT, IALOAD));
+      return elementT;
+    }
+
+    @Override public Type visit(SimpleAssignExpression node) {
+      Expression lhs = node.getLeftExpression();
+      while (hasTranslation(lhs)) { lhs = getTranslation(lhs); }
+      if (lhs instanceof VariableAccess) {
+        LocalVariable var = getVariable(lhs);
+        Type t = erase(var.type());
+        int slot = slot(var);
+        coerce(value(node.getRightExpression()), t);
+        dup(t, 0);
+        _mv.visitVarInsn(opcode(t, ISTORE), slot);
+        return t;
+      }
+      else if (lhs instanceof ArrayAccess) {
+        Type elementT = arrayElement((ArrayAccess) lhs);
+        coerce(value(node.getRightExpression()), elementT);
+        dup(elementT, 2);
+        _mv.visitInsn(opcode(elementT, IASTORE));
+        return elementT;
+      }
+      else if (lhs instanceof FieldAccess) {
+        DJField f = getField(lhs);
+        Type fieldT = erase(f.type());
+        String owner;
+        if (f.isStatic()) {
+          owner = staticOwner(f.declaringClass(), f.accessibility());
+          coerce(value(node.getRightExpression()), fieldT);
+          dup(fieldT, 0);
+          _mv.visitFieldInsn(PUTSTATIC, owner, f.declaredName(), descriptor(fieldT));
+        }
+        else {
+          if (lhs instanceof SimpleFieldAccess) {
+            loadThis(hasDJClass(lhs) ? getDJClass(lhs) : null);
+            owner = instanceOwner(f.declaringClass(), f.accessibility(), _treeClass, true);
+          }
+          else if (lhs instanceof ObjectFieldAccess && !(f instanceof ArrayLengthField)) {
+            Type receiverT = value(((ObjectFieldAccess) lhs).getExpression());
+            owner = instanceOwner(f.declaringClass(), f.accessibility(), receiverClass(receiverT), false);
+          }
+          else { throw unsupported(); }
+          coerce(value(node.getRightExpression()), fieldT);
+          dup(fieldT, 1);
+          _mv.visitFieldInsn(PUTFIELD, owner, f.declaredName(), descriptor(fieldT));
+        }
+        return fieldT;
+      }
+      else { throw unsupported(); }
+    }
+
+    @Override public Type visit(AddAssignExpression node) {
+      if (getOperation(node) == ExpressionEvaluator.CONCATENATE) {
+        int slot = slot(assignedLocal(node.getLeftExpression(), TypeSystem.STRING));
+        _mv.visitTypeInsn(NEW, STRING_BUILDER_NAME);
+        _mv.visitInsn(DUP);
+        _mv.visitMethodInsn(INVOKESPECIAL, STRING_BUILDER_NAME, "<init>", "()V", false);
+        _mv.visitVarInsn(ALOAD, slot);
+        append(TypeSystem.STRING);
+        append(value(node.getRightExpression()));
+        _mv.visitMethodInsn(INVOKEVIRTUAL, STRING_BUILDER_NAME, "toString", "()Ljava/lang/String;", false);
+        _mv.visitInsn(DUP);
+        _mv.visitVarInsn(ASTORE, slot);
+        return TypeSystem.STRING;
+      }
+      else { return opAssign(node, IADD); }
+    }
+
+    @Override public Type visit(SubtractAssignExpression node) { return opAssign(node, ISUB); }
+    @Override public Type visit(MultiplyAssignExpression node) { return opAssign(node, IMUL); }
+    @Override public Type visit(DivideAssignExpression node) { return opAssign(node, IDIV); }
+    @Override public Type visit(RemainderAssignExpression node) { return opAssign(node, IREM); }
+    @Override public Type visit(BitAndAssignExpression node) { return opAssign(node, IAND); }
+    @Override public Type visit(BitOrAssignExpression node) { return opAssign(node, IOR); }
+    @Override public Type visit(ExclusiveOrAssignExpression node) { return opAssign(node, IXOR); }
+    @Override public Type visit(ShiftLeftAssignExpression node) { return opAssign(node, ISHL); }
+    @Override public Type visit(ShiftRightAssignExpression node) { return opAssign(node, ISHR); }
+    @Override public Type visit(UnsignedShiftRightAssignExpression node) { return opAssign(node, IUSHR); }
+
+    /**
+     * Compile a compound assignment.  Only local variables whose type is unchanged by promotion
+     * are supported.
+     */
+    private Type opAssign(AssignExpression node, int intOpcode) {
+      int slot = slot(assignedLocal(node.getLeftExpression(), null));
+      Type leftT = value(getLeftExpression(node)); // the left operand, after promotion
+      Type varT = erase(getVariable(translated(node.getLeftExpression())).type());
+      if (sort(leftT) != sort(varT) || !isArithmetic(varT, intOpcode)) { throw unsupported(); }
+      binaryOperands(leftT, node.getRightExpression(), intOpcode);
+      _mv.visitInsn(opcode(varT, intOpcode));
+      dup(varT, 0);
+      _mv.visitVarInsn(opcode(varT, ISTORE), slot);
+      return varT;
+    }
+
+    @Override public Type visit(PreIncrement node) { return increment(node.getExpression(), 1, true); }
+    @Override public Type visit(PreDecrement node) { return increment(node.getExpression(), -1, true); }
+    @Override public Type visit(PostIncrement node) { return increment(node.getExpression(), 1, false); }
+    @Override public Type visit(PostDecrement node) { return increment(node.getExpression(), -1, false); }
+
+    /** Compile an increment or decrement of a local variable of type int, long, float, or double. */
+    private Type increment(Expression exp, int delta, boolean pre) {
+      LocalVariable var = assignedLocal(exp, null);
+      Type t = erase(var.type());
+      int slot = slot(var);
+      int sort = sort(t);
+      if (sort == org.objectweb.asm.Type.INT) {
+        if (!pre) { _mv.visitVarInsn(ILOAD, slot); }
+        _mv.visitIincInsn(slot, delta);
+        if (pre) { _mv.visitVarInsn(ILOAD, slot); }
+      }
+      else if (sort == org.objectweb.asm.Type.LONG || sort == org.objectweb.asm.Type.FLOAT ||
+               sort == org.objectweb.asm.Type.DOUBLE) {
+        _mv.visitVarInsn(opcode(t, ILOAD), slot);
+        if (!pre) { dup(t, 0); }
+        if (sort == org.objectweb.asm.Type.LONG) { _mv.visitInsn(LCONST_1); }
+        else if (sort == org.objectweb.asm.Type.FLOAT) { _mv.visitInsn(FCONST_1); }
+        else { _mv.visitInsn(DCONST_1); }
+        _mv.visitInsn(opcode(t, delta > 0 ? IADD : ISUB));
+        if (pre) { dup(t, 0); }
+        _mv.visitVarInsn(opcode(t, ISTORE), slot);
+      }
+      else { throw unsupported(); }
+      return t;
+    }
+
+    @Override public Type visit(PlusExpression node) { return numericValue(node.getExpression()); }
+
+    @Override public Type visit(MinusExpression node) {
+      Type t = numericValue(node.getExpression());
+      _mv.visitInsn(opcode(t, INEG));
+      return t;
+    }
+
+    @Override public Type visit(ComplementExpression node) {
+      Type t = numericValue(node.getExpression());
+      if (sort(t) == org.objectweb.asm.Type.LONG) { _mv.visitLdcInsn(-1L); }
+      else if (isIntLike(t)) { _mv.visitInsn(ICONST_M1); }
+      else { throw unsupported(); }
+      _mv.visitInsn(opcode(t, IXOR));
+      return t;
+    }
+
+    @Override public Type visit(AddExpression node) {
+      if (getOperation(node) == ExpressionEvaluator.CONCATENATE) {
+        _mv.visitTypeInsn(NEW, STRING_BUILDER_NAME);
+        _mv.visitInsn(DUP);
+        _mv.visitMethodInsn(INVOKESPECIAL, STRING_BUILDER_NAME, "<init>", "()V", false);
+        appendOperands(node);
+        _mv.visitMethodInsn(INVOKEVIRTUAL, STRING_BUILDER_NAME, "toString", "()Ljava/lang/String;", false);
+        return TypeSystem.STRING;
+      }
+      else { return binary(node, IADD); }
+    }
+
+    /** Append both operands of a concatenation, flattening nested concatenations on the left. */
+    private void appendOperands(AddExpression node) {
+      Expression left = node.getLeftExpression();
+      if (left instanceof AddExpression && getOperation(left) == ExpressionEvaluator.CONCATENATE &&
+          !hasValue(left) && !hasTranslation(left) && !hasConvertedType(left) && !hasCheckedType(left)) {
+        appendOperands((AddExpression) left);
+      }
+      else { append(value(left)); }
+      append(value(node.getRightExpression()));
+    }
+
+    @Override public Type visit(SubtractExpression node) { return binary(node, ISUB); }
+    @Override public Type visit(MultiplyExpression node) { return binary(node, IMUL); }
+    @Override public Type visit(DivideExpression node) { return binary(node, IDIV); }
+    @Override public Type visit(RemainderExpression node) { return binary(node, IREM); }
+    @Override public Type visit(BitAndExpression node) { return binary(node, IAND); }
+    @Override public Type visit(BitOrExpression node) { return binary(node, IOR); }
+    @Override public Type visit(ExclusiveOrExpression node) { return binary(node, IXOR); }
+    @Override public Type visit(ShiftLeftExpression node) { return binary(node, ISHL); }
+    @Override public Type visit(ShiftRightExpression node) { return binary(node, ISHR); }
+    @Override public Type visit(UnsignedShiftRightExpression node) { return binary(node, IUSHR); }
+
+    private Type binary(BinaryExpression node, int intOpcode) {
+      Type leftT = value(node.getLeftExpression());
+      if (!isArithmetic(leftT, intOpcode)) { throw unsupported(); }
+      binaryOperands(leftT, node.getRightExpression(), intOpcode);
+      _mv.visitInsn(opcode(leftT, intOpcode));
+      return leftT;
+    }
+
+    @Override public Type visit(NotExpression node) { return booleanValue(node); }
+    @Override public Type visit(AndExpression node) { return booleanValue(node); }
+    @Override public Type visit(OrExpression node) { return booleanValue(node); }
+    @Override public Type visit(EqualExpression node) { return booleanValue(node); }
+    @Override public Type visit(NotEqualExpression node) { return booleanValue(node); }
+    @Override public Type visit(LessExpression node) { return booleanValue(node); }
+    @Override public Type visit(LessOrEqualExpression node) { return booleanValue(node); }
+    @Override public Type visit(GreaterExpression node) { return booleanValue(node); }
+    @Override public Type visit(GreaterOrEqualExpression node) { return booleanValue(node); }
+
+    /** Materialize a boolean-valued operator as 0 or 1. */
+    private Type booleanValue(Expression node) {
+      Label isTrue = new Label();
+      Label end = new Label();
+      if (!jumpOperator(node, true, isTrue)) { throw unsupported(); }
+      _mv.visitInsn(ICONST_0);
+      _mv.visitJumpInsn(GOTO, end);
+      _mv.visitLabel(isTrue);
+      _mv.visitInsn(ICONST_1);
+      _mv.visitLabel(end);
+      return TypeSystem.BOOLEAN;
+    }
+
+    @Override public Type visit(InstanceOfExpression node) {
+      if (!isReference(value(node.getExpression()))) { throw unsupported(); }
+      _mv.visitTypeInsn(INSTANCEOF, internalName(erase(getType(node.getReferenceType()))));
+      return TypeSystem.BOOLEAN;
+    }
+
+    @Override public Type visit(CastExpression node) {
+      Expression exp = node.getExpression();
+      Type t = uncheckedValue(exp);
+      Type targetT = erase(getType(node));
+      if (isReference(targetT)) {
+        if (hasCheckedType(exp) && !isObject(targetT)) {
+          _mv.visitTypeInsn(CHECKCAST, internalName(targetT));
+          return targetT;
+        }
+        else { return cast(t, targetT); }
+      }
+      // primitive conversions are attached to exp or to the cast itself, and are applied by value()
+      else { return t; }
+    }
+
+    @Override public Type visit(ConditionalExpression node) {
+      Type t = erase(getType(node));
+      Label elseLabel = new Label();
+      Label end = new Label();
+      jump(node.getConditionExpression(), false, elseLabel);
+      coerce(value(node.getIfTrueExpression()), t);
+      _mv.visitJumpInsn(GOTO, end);
+      _mv.visitLabel(elseLabel);
+      coerce(value(node.getIfFalseExpression()), t);
+      _mv.visitLabel(end);
+      return t;
+    }
+
+  }
+
+
+  /* Control flow */
+
+  /** Jump to {@code target} if the given boolean expression evaluates to {@code jumpIf}. */
+  private void jump(Expression exp, boolean jumpIf, Label target) {
+    if (hasValue(exp) && getValue(exp) instanceof Boolean) {
+      if ((Boolean) getValue(exp) == jumpIf) { _mv.visitJumpInsn(GOTO, target); }
+    }
+    else if (hasTranslation(exp) || hasConvertedType(exp) || hasCheckedType(exp) ||
+             !jumpOperator(exp, jumpIf, target)) {
+      if (sort(value(exp)) != org.objectweb.asm.Type.BOOLEAN) { throw unsupported(); }
+      _mv.visitJumpInsn(jumpIf ? IFNE : IFEQ, target);
+    }
+  }
+
+  /**
+   * Compile a boolean operator as a conditional jump, avoiding the materialization of intermediate
+   * boolean values.
+   * @return  {@code false} if {@code exp} is not a boolean operator (no code was generated)
+   */
+  private boolean jumpOperator(Expression exp, boolean jumpIf, Label target) {
+    if (exp instanceof NotExpression) {
+      jump(((NotExpression) exp).getExpression(), !jumpIf, target);
+    }
+    else if (exp instanceof AndExpression || exp instanceof OrExpression) {
+      BinaryExpression bin = (BinaryExpression) exp;
+      // "a && b" is true iff neither operand is false; "a || b" is false iff neither operand is true
+      boolean shortCircuit = (exp instanceof OrExpression);
+      if (jumpIf == shortCircuit) {
+        jump(bin.getLeftExpression(), jumpIf, target);
+        jump(bin.getRightExpression(), jumpIf, target);
+      }
+      else {
+        Label skip = new Label();
+        jump(bin.getLeftExpression(), shortCircuit, skip);
+        jump(bin.getRightExpression(), jumpIf, target);
+        _mv.visitLabel(skip);
+      }
+    }
+    else if (exp instanceof EqualExpression) { compare((BinaryExpression) exp, IFEQ, jumpIf, target); }
+    else if (exp instanceof NotEqualExpression) { compare((BinaryExpression) exp, IFNE, jumpIf, target); }
+    else if (exp instanceof LessExpression) { compare((BinaryExpression) exp, IFLT, jumpIf, target); }
+    else if (exp instanceof LessOrEqualExpression) { compare((BinaryExpression) exp, IFLE, jumpIf, target); }
+    else if (exp instanceof GreaterExpression) { compare((BinaryExpression) exp, IFGT, jumpIf, target); }
+    else if (exp instanceof GreaterOrEqualExpression) { compare((BinaryExpression) exp, IFGE, jumpIf, target); }
+    else { return false; }
+    return true;
+  }
+
+  /**
+   * Compare the operands of the given expression and jump if the comparison's result is {@code jumpIf}.
+   * @param cmp  One of {@code IFEQ}, {@code IFNE}, {@code IFLT}, {@code IFGE}, {@code IFGT}, or {@code IFLE}
+   */
+  private void compare(BinaryExpression node, int cmp, boolean jumpIf, Label target) {
+    Type leftT = value(node.getLeftExpression());
+    Type rightT = value(node.getRightExpression());
+    // IFEQ/IFNE, IFLT/IFGE, and IFGT/IFLE are adjacent opcodes
+    int op = jumpIf ? cmp : (((cmp - IFEQ) ^ 1) + IFEQ);
+    if (isReference(leftT) || isReference(rightT)) {
+      if (!isReference(leftT) || !isReference(rightT) || (cmp != IFEQ && cmp != IFNE)) { throw unsupported(); }
+      _mv.visitJumpInsn(op - IFEQ + IF_ACMPEQ, target);
+    }
+    else if (isIntLike(leftT) || sort(leftT) == org.objectweb.asm.Type.BOOLEAN) {
+      if (!isIntLike(rightT) && sort(rightT) != org.objectweb.asm.Type.BOOLEAN) { throw unsupported(); }
+      _mv.visitJumpInsn(op - IFEQ + IF_ICMPEQ, target);
+    }
+    else {
+      if (sort(leftT) != sort(rightT)) { throw unsupported(); }
+      // A NaN operand makes every comparison but != false: use the variant that produces the
+      // result that fails the test
+      boolean nanIsGreater = (cmp == IFLT || cmp == IFLE);
+      switch (sort(leftT)) {
+        case org.objectweb.asm.Type.LONG: _mv.visitInsn(LCMP); break;
+        case org.objectweb.asm.Type.FLOAT: _mv.visitInsn(nanIsGreater ? FCMPG : FCMPL); break;
+        case org.objectweb.asm.Type.DOUBLE: _mv.visitInsn(nanIsGreater ? DCMPG : DCMPL); break;
+        default: throw unsupported();
+      }
+      _mv.visitJumpInsn(op, target);
+    }
+  }
+
+
+  /* Members */
+
+  /** Load {@code this}, which must be the instance of the class being compiled. */
+  private void loadThis(DJClass c) {
+    if (_isStatic || !_treeClass.equals(c)) { throw unsupported(); }
+    _mv.visitVarInsn(ALOAD, 0);
+  }
+
+  /** Push the RuntimeBindings expected by static methods of classes compiled by TreeCompiler. */
+  private void loadBindings() {
+    _mv.visitVarInsn(ALOAD, 0);
+    if (!_isStatic) {
+      _mv.visitFieldInsn(GETFIELD, _name, TreeCompiler.BINDINGS_FACTORY_FIELD,
+                         TreeCompiler.BINDINGS_FACTORY_DESCRIPTOR);
+      _mv.visitVarInsn(ALOAD, 0);
+      _mv.visitMethodInsn(INVOKEVIRTUAL, TreeCompiler.BINDINGS_FACTORY_NAME, "value",
+                          TreeCompiler.BINDINGS_FACTORY_VALUE_DESCRIPTOR, false);
+    }
+  }
+
+  private Type getStatic(DJField f) {
+    if (f instanceof ArrayLengthField) { throw unsupported(); }
+    Type t = erase(f.type());
+    String owner = staticOwner(f.declaringClass(), f.accessibility());
+    _mv.visitFieldInsn(GETSTATIC, owner, f.declaredName(), descriptor(t));
+    return t;
+  }
+
+  /** Get an instance field of the receiver on the stack. */
+  private Type getInstanceField(DJField f, DJClass receiverC, boolean implicitThis) {
+    if (f instanceof ArrayLengthField) { throw unsupported(); }
+    Type t = erase(f.type());
+    String owner = instanceOwner(f.declaringClass(), f.accessibility(), receiverC, implicitThis);
+    _mv.visitFieldInsn(GETFIELD, owner, f.declaredName(), descriptor(t));
+    return t;
+  }
+
+  /**
+   * Invoke a method.
+   * @param receiver  The receiver expression of an ObjectMethodCall; otherwise {@code null}
+   * @param implicitThis  The class of the implicit receiver of a SimpleMethodCall; otherwise {@code null}
+   */
+  private Type call(MethodCall node, Expression receiver, DJClass implicitThis) {
+    DJMethod m = getMethod(node).declaredSignature();
+    if (m instanceof SpecialMethod) { throw unsupported(); }
+    DJClass declaring = m.declaringClass();
+    boolean isTree = declaring instanceof TreeClass;
+    if (!isTree && !(declaring instanceof JavaClass)) { throw unsupported(); }
+    String prefix = "";
+    int opcode;
+    String owner;
+    boolean ownerIsInterface;
+    if (m.isStatic()) {
+      if (receiver != null) { throw unsupported(); }
+      owner = staticOwner(declaring, m.accessibility());
+      opcode = INVOKESTATIC;
+      ownerIsInterface = declaring.isInterface();
+      if (isTree) {
+        loadBindings();
+        prefix = TreeCompiler.RUNTIME_BINDINGS_DESCRIPTOR;
+      }
+    }
+    else {
+      DJClass receiverC;
+      if (receiver == null) {
+        loadThis(implicitThis);
+        receiverC = _treeClass;
+      }
+      else { receiverC = receiverClass(value(receiver)); }
+      owner = instanceOwner(declaring, m.accessibility(), receiverC, receiver == null);
+      ownerIsInterface = owner.equals(TreeCompiler.className(declaring)) ? declaring.isInterface() :
+                                                                             receiverC.isInterface();
+      if (m.accessibility() == Access.PRIVATE) { opcode = INVOKESPECIAL; }
+      else if (ownerIsInterface) { opcode = INVOKEINTERFACE; }
+      else { opcode = INVOKEVIRTUAL; }
+    }
+    String paramsDescriptor = arguments(node.getArguments(), m.parameters());
+    Type returnT = erase(m.returnType());
+    String descriptor = "(" + prefix + paramsDescriptor.substring(1) + descriptor(returnT);
+    _mv.visitMethodInsn(opcode, owner, m.declaredName(), descriptor, ownerIsInterface);
+    if (isVoid(returnT)) { return returnT; }
+    // the declared return type may be a type variable
+    else { return cast(returnT, getType(node)); }
+  }
+
+  /**
+   * Push the given arguments, converted to the erased types of the given parameters.
+   * @return  The parameter list part of a method descriptor, including the parentheses
+   */
+  private String arguments(List<Expression> args, Iterable<LocalVariable> params) {
+    if (args == null) { args = Collections.emptyList(); }
+    if (args.size() != IterUtil.sizeOf(params)) { throw unsupported(); }
+    StringBuilder result = new StringBuilder("(");
+    Iterator<LocalVariable> paramIter = params.iterator();
+    for (Expression arg : args) {
+      Type paramT = erase(paramIter.next().type());
+      coerce(value(arg), paramT);
+      result.append(descriptor(paramT));
+    }
+    return result.append(")").toString();
+  }
+
+  /**
+   * Determine the owner class of a reference to a static member, or reject the member if it can't be
+   * accessed from the compiled class without the interpreter's reflective access.
+   */
+  private String staticOwner(DJClass declaring, Access access) {
+    if (declaring == null) { throw unsupported(); }
+    if (declaring.equals(_treeClass) || (access == Access.PUBLIC && isAccessible(declaring))) {
+      return TreeCompiler.className(declaring);
+    }
+    throw unsupported();
+  }
+
+  /**
+   * Determine the owner class of a reference to an instance member, or reject the member if it can't be
+   * accessed from the compiled class without the interpreter's reflective access.  Where possible, the
+   * static type of the receiver is used, because the declaring class may be inaccessible (as in a public
+   * method inherited from a package-private class).
+   * @param receiverC  The erased class of the receiver; {@code null} for an array
+   * @param implicitThis  Whether the receiver is {@code this} of the compiled class
+   */
+  private String instanceOwner(DJClass declaring, Access access, DJClass receiverC, boolean implicitThis) {
+    if (declaring == null) { throw unsupported(); }
+    boolean own = declaring.equals(_treeClass);
+    if (!own && access != Access.PUBLIC && !(access == Access.PROTECTED && implicitThis)) { throw unsupported(); }
+    if (access == Access.PRIVATE) { return TreeCompiler.className(declaring); }
+    // invokeinterface can't refer to the methods of Object inherited by an interface
+    boolean receiverUsable = receiverC != null && isAccessible(receiverC) &&
+                             (declaring.isInterface() || !receiverC.isInterface());
+    if (receiverUsable) { return TreeCompiler.className(receiverC); }
+    else if (isAccessible(declaring)) { return TreeCompiler.className(declaring); }
+    else { throw unsupported(); }
+  }
+
+  /** Whether the compiled class can refer to the given class. */
+  private boolean isAccessible(DJClass c) {
+    if (c.equals(_treeClass)) { return true; }
+    else if (c instanceof TreeClass) {
+      // TreeCompiler promotes default access to public
+      return c.accessibility() == Access.PUBLIC || c.accessibility() == Access.PACKAGE;
+    }
+    else { return c instanceof JavaClass && c.accessibility() == Access.PUBLIC; }
+  }
+
+  /** The class of a receiver of the given (erased) type; {@code null} for arrays. */
+  private DJClass receiverClass(Type t) {
+    if (t instanceof ClassType) { return ((ClassType) t).ofClass(); }
+    else if (isArray(t)) { return null; }
+    else { throw unsupported(); }
+  }
+
+
+  /* Locals and arrays */
+
+  private int declareLocal(LocalVariable var) {
+    int result = _nextLocal;
+    _nextLocal += size(erase(var.type()));
+    _locals.put(var, result);
+    return result;
+  }
+
+  /** The slot of a variable declared by the method; variables from enclosing scopes are not supported. */
+  private int slot(LocalVariable var) {
+    Integer result = _locals.get(var);
+    if (result == null) { throw unsupported(); }
+    return result;
+  }
+
+  private static Expression translated(Expression exp) {
+    while (hasTranslation(exp)) { exp = getTranslation(exp); }
+    return exp;
+  }
+
+  /**
+   * The local variable assigned by a compound assignment or increment.
+   * @param expectedT  The required type of the variable, or {@code null} for any type
+   */
+  private LocalVariable assignedLocal(Expression exp, Type expectedT) {
+    exp = translated(exp);
+    if (!(exp instanceof VariableAccess)) { throw unsupported(); }
+    LocalVariable var = getVariable(exp);
+    if (expectedT != null && !erase(var.type()).equals(expectedT)) { throw unsupported(); }
+    return var;
+  }
+
+  /** Push an array and an index; the result is the element type. */
+  private Type arrayElement(ArrayAccess node) {
+    Type arrayT = value(node.getExpression());
+    if (!isArray(arrayT)) { throw unsupported(); }
+    coerce(value(node.getCellNumber()), TypeSystem.INT);
+    return erase(((ArrayType) arrayT).ofType());
+  }
+
+  /** Create a one-dimensional array with the given element type; the length is on the stack. */
+  private void newArray(Type elementT) {
+    elementT = erase(elementT);
+    switch (sort(elementT)) {
+      case org.objectweb.asm.Type.BOOLEAN: _mv.visitIntInsn(NEWARRAY, T_BOOLEAN); break;
+      case org.objectweb.asm.Type.CHAR: _mv.visitIntInsn(NEWARRAY, T_CHAR); break;
+      case org.objectweb.asm.Type.BYTE: _mv.visitIntInsn(NEWARRAY, T_BYTE); break;
+      case org.objectweb.asm.Type.SHORT: _mv.visitIntInsn(NEWARRAY, T_SHORT); break;
+      case org.objectweb.asm.Type.INT: _mv.visitIntInsn(NEWARRAY, T_INT); break;
+      case org.objectweb.asm.Type.LONG: _mv.visitIntInsn(NEWARRAY, T_LONG); break;
+      case org.objectweb.asm.Type.FLOAT: _mv.visitIntInsn(NEWARRAY, T_FLOAT); break;
+      case org.objectweb.asm.Type.DOUBLE: _mv.visitIntInsn(NEWARRAY, T_DOUBLE); break;
+      default: _mv.visitTypeInsn(ANEWARRAY, internalName(elementT));
+    }
+  }
+
+
+  /* Values and conversions */
+
+  /** Push a constant, as produced by the type checker or a literal. */
+  private Type constant(Object val) {
+    if (val == null) { _mv.visitInsn(ACONST_NULL); return TypeSystem.NULL; }
+    else if (val instanceof String) { _mv.visitLdcInsn(val); return TypeSystem.STRING; }
+    else if (val instanceof Boolean) { pushInt((Boolean) val ? 1 : 0); return TypeSystem.BOOLEAN; }
+    else if (val instanceof Character) { pushInt((Character) val); return TypeSystem.CHAR; }
+    else if (val instanceof Byte) { pushInt((Byte) val); return TypeSystem.BYTE; }
+    else if (val instanceof Short) { pushInt((Short) val); return TypeSystem.SHORT; }
+    else if (val instanceof Integer) { pushInt((Integer) val); return TypeSystem.INT; }
+    else if (val instanceof Long) { _mv.visitLdcInsn(val); return TypeSystem.LONG; }
+    else if (val instanceof Float) { _mv.visitLdcInsn(val); return TypeSystem.FLOAT; }
+    else if (val instanceof Double) { _mv.visitLdcInsn(val); return TypeSystem.DOUBLE; }
+    else { throw unsupported(); }
+  }
+
+  private void pushInt(int val) {
+    if (val >= -1 && val <= 5) { _mv.visitInsn(ICONST_0 + val); }
+    else if (val >= Byte.MIN_VALUE && val <= Byte.MAX_VALUE) { _mv.visitIntInsn(BIPUSH, val); }
+    else if (val >= Short.MIN_VALUE && val <= Short.MAX_VALUE) { _mv.visitIntInsn(SIPUSH, val); }
+    else { _mv.visitLdcInsn(val); }
+  }
+
+  /** Push the initial value of a variable of the given type: null or a zero primitive. */
+  private void pushZero(Type t) {
+    switch (sort(t)) {
+      case org.objectweb.asm.Type.LONG: _mv.visitInsn(LCONST_0); break;
+      case org.objectweb.asm.Type.FLOAT: _mv.visitInsn(FCONST_0); break;
+      case org.objectweb.asm.Type.DOUBLE: _mv.visitInsn(DCONST_0); break;
+      case org.objectweb.asm.Type.ARRAY: case org.objectweb.asm.Type.OBJECT: _mv.visitInsn(ACONST_NULL); break;
+      default: _mv.visitInsn(ICONST_0);
+    }
+  }
+
+  /** Apply a primitive conversion, as in {@link ExpressionEvaluator#convert}. */
+  private Type convert(Type from, Class<?> to) {
+    Type toT = primitiveType(to);
+    int fromSort = sort(from);
+    int toSort = sort(toT);
+    if (fromSort == toSort) { return toT; }
+    if (fromSort == org.objectweb.asm.Type.BOOLEAN || toSort == org.objectweb.asm.Type.BOOLEAN || !isPrimitive(from)) {
+      throw unsupported();
+    }
+    int fromCategory = isIntLike(from) ? org.objectweb.asm.Type.INT : fromSort;
+    int toCategory = isIntLike(toT) ? org.objectweb.asm.Type.INT : toSort;
+    if (fromCategory != toCategory) {
+      switch (fromCategory) {
+        case org.objectweb.asm.Type.INT:
+          _mv.visitInsn(toCategory == org.objectweb.asm.Type.LONG ? I2L :
+                        toCategory == org.objectweb.asm.Type.FLOAT ? I2F : I2D);
+          break;
+        case org.objectweb.asm.Type.LONG:
+          _mv.visitInsn(toCategory == org.objectweb.asm.Type.INT ? L2I :
+                        toCategory == org.objectweb.asm.Type.FLOAT ? L2F : L2D);
+          break;
+        case org.objectweb.asm.Type.FLOAT:
+          _mv.visitInsn(toCategory == org.objectweb.asm.Type.INT ? F2I :
+                        toCategory == org.objectweb.asm.Type.LONG ? F2L : F2D);
+          break;
+        default:
+          _mv.visitInsn(toCategory == org.objectweb.asm.Type.INT ? D2I :
+                        toCategory == org.objectweb.asm.Type.LONG ? D2L : D2F);
+      }
+    }
+    switch (toSort) {
+      case org.objectweb.asm.Type.BYTE: _mv.visitInsn(I2B); break;
+      case org.objectweb.asm.Type.CHAR: _mv.visitInsn(I2C); break;
+      case org.objectweb.asm.Type.SHORT: if (fromSort != org.objectweb.asm.Type.BYTE) { _mv.visitInsn(I2S); } break;
+    }
+    return toT;
+  }
+
+  private static Type primitiveType(Class<?> c) {
+    if (c.equals(boolean.class)) { return TypeSystem.BOOLEAN; }
+    else if (c.equals(char.class)) { return TypeSystem.CHAR; }
+    else if (c.equals(byte.class)) { return TypeSystem.BYTE; }
+    else if (c.equals(short.class)) { return TypeSystem.SHORT; }
+    else if (c.equals(int.class)) { return TypeSystem.INT; }
+    else if (c.equals(long.class)) { return TypeSystem.LONG; }
+    else if (c.equals(float.class)) { return TypeSystem.FLOAT; }
+    else if (c.equals(double.class)) { return TypeSystem.DOUBLE; }
+    else { throw unsupported(); }
+  }
+
+  /**
+   * Make the value on the stack, of type {@code actual}, usable where {@code expected} is required.
+   * The type checker has already inserted any conversions; at most, an erased reference needs a cast.
+   */
+  private void coerce(Type actual, Type expected) {
+    expected = erase(expected);
+    if (isReference(expected)) {
+      if (!isReference(actual)) { throw unsupported(); }
+      cast(actual, expected);
+    }
+    else if (sort(actual) != sort(expected) && !(isIntLike(actual) && isIntLike(expected))) {
+      throw unsupported();
+    }
+  }
+
+  /** Cast the reference on the stack to the erasure of {@code target}, unless that is known to be unnecessary. */
+  private Type cast(Type actual, Type target) {
+    target = erase(target);
+    if (!isReference(target) || !isReference(actual)) {
+      if (sort(actual) != sort(target)) { throw unsupported(); }
+      return actual;
+    }
+    else if (isObject(target) || _ts.isSubtype(actual, target)) { return actual; }
+    else {
+      _mv.visitTypeInsn(CHECKCAST, internalName(target));
+      return target;
+    }
+  }
+
+  /** Append the value on the stack to the StringBuilder below it. */
+  private void append(Type t) {
+    String paramDescriptor;
+    switch (sort(t)) {
+      case org.objectweb.asm.Type.BOOLEAN: paramDescriptor = "Z"; break;
+      case org.objectweb.asm.Type.CHAR: paramDescriptor = "C"; break;
+      case org.objectweb.asm.Type.BYTE: case org.objectweb.asm.Type.SHORT:
+      case org.objectweb.asm.Type.INT: paramDescriptor = "I"; break;
+      case org.objectweb.asm.Type.LONG: paramDescriptor = "J"; break;
+      case org.objectweb.asm.Type.FLOAT: paramDescriptor = "F"; break;
+      case org.objectweb.asm.Type.DOUBLE: paramDescriptor = "D"; break;
+      default:
+        // append(char[]) would not match the interpreter, which uses toString()
+        paramDescriptor = t.equals(TypeSystem.STRING) ? "Ljava/lang/String;" : "Ljava/lang/Object;";
+    }
+    _mv.visitMethodInsn(INVOKEVIRTUAL, STRING_BUILDER_NAME, "append",
+                        "(" + paramDescriptor + ")Ljava/lang/StringBuilder;", false);
+  }
+
+  /** Push the right operand of a binary operator whose left operand (of type {@code leftT}) is on the stack. */
+  private void binaryOperands(Type leftT, Expression right, int intOpcode) {
+    Type rightT = value(right);
+    if (intOpcode == ISHL || intOpcode == ISHR || intOpcode == IUSHR) {
+      // the shift distance is promoted separately
+      if (sort(rightT) == org.objectweb.asm.Type.LONG) { _mv.visitInsn(L2I); }
+      else if (!isIntLike(rightT)) { throw unsupported(); }
+    }
+    else if (sort(rightT) != sort(leftT) && !(isIntLike(rightT) && isIntLike(leftT))) { throw unsupported(); }
+  }
+
+  /** Whether the given (int-based) arithmetic instruction can be applied to operands of type {@code t}. */
+  private boolean isArithmetic(Type t, int intOpcode) {
+    int sort = sort(t);
+    switch (intOpcode) {
+      case IAND: case IOR: case IXOR:
+        return sort == org.objectweb.asm.Type.BOOLEAN || isIntLike(t) || sort == org.objectweb.asm.Type.LONG;
+      case ISHL: case ISHR: case IUSHR:
+        return isIntLike(t) || sort == org.objectweb.asm.Type.LONG;
+      default:
+        return isPrimitive(t) && sort != org.objectweb.asm.Type.BOOLEAN;
+    }
+  }
+
+  private Type numericValue(Expression exp) {
+    Type t = value(exp);
+    if (!isPrimitive(t) || sort(t) == org.objectweb.asm.Type.BOOLEAN) { throw unsupported(); }
+    return t;
+  }
+
+  /**
+   * Duplicate the value on top of the stack, of type {@code t}, and insert the copy below the
+   * given number of stack words.
+   */
+  private void dup(Type t, int below) {
+    boolean wide = size(t) == 2;
+    switch (below) {
+      case 0: _mv.visitInsn(wide ? DUP2 : DUP); break;
+      case 1: _mv.visitInsn(wide ? DUP2_X1 : DUP_X1); break;
+      default: _mv.visitInsn(wide ? DUP2_X2 : DUP_X2); break;
+    }
+  }
+
+  private void pop(Type t) {
+    switch (size(t)) {
+      case 0: break;
+      case 1: _mv.visitInsn(POP); break;
+      default: _mv.visitInsn(POP2);
+    }
+  }
+
+
+  /* Types */
+
+  private Type erase(Type t) { return _ts.erase(t); }
+
+  private String descriptor(Type t) { return _compiler.typeDescriptor(t); }
+
+  private org.objectweb.asm.Type asmType(Type t) { return org.objectweb.asm.Type.getType(descriptor(t)); }
+
+  private String internalName(Type t) { return asmType(t).getInternalName(); }
+
+  private int sort(Type t) { return asmType(t).getSort(); }
+
+  private int size(Type t) { return asmType(t).getSize(); }
+
+  /** The variant of the given int-based instruction (such as ILOAD or IADD) for the given type. */
+  private int opcode(Type t, int intOpcode) { return asmType(t).getOpcode(intOpcode); }
+
+  private boolean isVoid(Type t) { return sort(t) == org.objectweb.asm.Type.VOID; }
+
+  private boolean isArray(Type t) { return t instanceof ArrayType; }
+
+  private boolean isObject(Type t) { return sort(t) == org.objectweb.asm.Type.OBJECT && t.equals(TypeSystem.OBJECT); }
+
+  private boolean isReference(Type t) {
+    int sort = sort(t);
+    return sort == org.objectweb.asm.Type.OBJECT || sort == org.objectweb.asm.Type.ARRAY;
+  }
+
+  private boolean isPrimitive(Type t) { return !isReference(t) && !isVoid(t); }
+
+  /** Whether values of the given type are represented by an int, and are not booleans. */
+  private boolean isIntLike(Type t) {
+    int sort = sort(t);
+    return sort == org.objectweb.asm.Type.CHAR || sort == org.objectweb.asm.Type.BYTE ||
+           sort == org.objectweb.asm.Type.SHORT || sort == org.objectweb.asm.Type.INT;
+  }
+
+}
@@ -0,0 +1,69 @@
+package edu.rice.cs.dynamicjava.interpreter;
+
+import junit.framework.TestCase;
+
+import edu.rice.cs.dynamicjava.Options;
+
+/**
+ * Checks that TreeCompiler translates supported method bodies with {@link MethodBodyCompiler} rather than
+ * producing stubs that invoke the interpreter.  A compiled method calls itself directly, so its recursive
+ * invocations are adjacent on the stack; a stub's invocations are separated by the interpreter's frames.
+ */
+public class MethodBodyCompilerTest extends TestCase {
+  
+  private static final String FIB =
+    "class Fib {\n" +
+    "  static int fib(int n) { if (n < 2) { return n; } return fib(n - 1) + fib(n - 2); }\n" +
+    "  static StackTraceElement[] trace(int n) {\n" +
+    "    if (n == 0) { return new Throwable().getStackTrace(); }\n" +
+    "    return trace(n - 1);\n" +
+    "  }\n" +
+    "  static StackTraceElement[] interpretedTrace(int n) {\n" + // try statements aren't supported
+    "    try { if (n == 0) { return new Throwable().getStackTrace(); } return interpretedTrace(n - 1); }\n" +
+    "    finally {}\n" +
+    "  }\n" +
+    "}";
+  
+  private Interpreter _interpreter;
+  
+  public void setUp() throws InterpreterException {
+    _interpreter = new Interpreter(new Options() {
+      @Override public boolean compileMethodBodies() { return true; }
+    });
+    _interpreter.interpret(FIB);
+  }
+  
+  private Object eval(String exp) throws InterpreterException { return _interpreter.interpret(exp).unwrap(); }
+  
+  public void testRecursiveMethod() throws InterpreterException {
+    assertEquals(6765, eval("Fib.fib(20)"));
+  }
+  
+  public void testCompiledMethodIsNotInterpreted() throws InterpreterException {
+    String className = (String) eval("Fib.class.getName()");
+    StackTraceElement[] trace = (StackTraceElement[]) eval("Fib.trace(3)");
+    for (int i = 0; i <= 3; i++) {
+      assertEquals("frame " + i, className, trace[i].getClassName());
+      assertEquals("frame " + i, "trace", trace[i].getMethodName());
+    }
+  }
+  
+  public void testUnsupportedMethodIsInterpreted() throws InterpreterException {
+    String className = (String) eval("Fib.class.getName()");
+    StackTraceElement[] trace = (StackTraceElement[]) eval("Fib.interpretedTrace(3)");
+    int invocations = 0;
+    boolean interpreterFrames = false;
+    for (StackTraceElement frame : trace) {
+      if (frame.getClassName().equals(className) && frame.getMethodName().equals("interpretedTrace")) {
+        invocations++;
+        if (invocations == 4) { break; }
+      }
+      else if (invocations > 0 && frame.getClassName().startsWith("edu.rice.cs.dynamicjava.interpreter.")) {
+        interpreterFrames = true;
+      }
+    }
+    assertEquals(4, invocations);
+    assertTrue("interpreter frames between invocations", interpreterFrames);
+  }
+  
+}
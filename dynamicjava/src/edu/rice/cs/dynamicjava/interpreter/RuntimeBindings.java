@@ -2,8 +2,8 @@ package edu.rice.cs.dynamicjava.interpreter;
 
 import java.util.Map;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Collections;
-import edu.rice.cs.plt.tuple.Pair;
 import edu.rice.cs.plt.iter.IterUtil;
 
 import edu.rice.cs.dynamicjava.symbol.*;
@@ -16,62 +16,102 @@ import edu.rice.cs.dynamicjava.symbol.type.VariableType;
   * the calling context.  Without this flexibility, it would have to be determined at what point
   * (if any) in the calling context's chain of environments the function declaration and the calling
   * context share a common lexical scope.
+  * <p>
+  * Each instance is a frame holding a few variables in a pair of arrays, and lookups follow the chain
+  * of parents until the variable is found.  Frames are typically very small -- a single declaration,
+  * the parameters of a method, or the variables declared directly in a block (see
+  * {@link #RuntimeBindings(RuntimeBindings, List)}) -- so a scan of the frame is cheaper than hashing.</p>
   */
 public class RuntimeBindings {
   
-  public static final RuntimeBindings EMPTY = new RuntimeBindings();
+  private static final LocalVariable[] NO_VARS = new LocalVariable[0];
+  private static final Object[] NO_VALS = new Object[0];
+  private static final DJClass[] NO_CLASSES = new DJClass[0];
+  
+  public static final RuntimeBindings EMPTY = new RuntimeBindings(); // must follow the constants above
   
   private final RuntimeBindings _parent;
-  private final Map<LocalVariable, Object> _vars;
+  private final LocalVariable[] _vars;
+  private final Object[] _vals; // mutable; parallel to _vars
   private final Map<VariableType, Type> _tvars; // might be useful someday...
-  private final Map<DJClass, Object> _thisVals;
+  private final DJClass[] _thisClasses;
+  private final Object[] _thisVals; // parallel to _thisClasses
   
   public RuntimeBindings(RuntimeBindings parent, Map<LocalVariable, Object> vars,
                          Map<VariableType, Type> tvars, Map<DJClass, Object> thisVals) {
     _parent = parent;
-    _vars = new HashMap<LocalVariable, Object>(vars);
-    _tvars = new HashMap<VariableType, Type>(tvars);
-    _thisVals = new HashMap<DJClass, Object>(thisVals);
+    _vars = vars.keySet().toArray(new LocalVariable[vars.size()]);
+    _vals = new Object[_vars.length];
+    for (int i = 0; i < _vars.length; i++) { _vals[i] = vars.get(_vars[i]); }
+    _tvars = tvars.isEmpty() ? Collections.<VariableType, Type>emptyMap()
+                             : new HashMap<VariableType, Type>(tvars);
+    _thisClasses = thisVals.keySet().toArray(new DJClass[thisVals.size()]);
+    _thisVals = new Object[_thisClasses.length];
+    for (int i = 0; i < _thisClasses.length; i++) { _thisVals[i] = thisVals.get(_thisClasses[i]); }
+  }
+  
+  private RuntimeBindings(RuntimeBindings parent, LocalVariable[] vars, Object[] vals,
+                          DJClass[] thisClasses, Object[] thisVals) {
+    _parent = parent;
+    _vars = vars;
+    _vals = vals;
+    _tvars = Collections.emptyMap();
+    _thisClasses = thisClasses;
+    _thisVals = thisVals;
   }
   
   private RuntimeBindings() {
-    this(null, Collections.<LocalVariable, Object>emptyMap(),
-         Collections.<VariableType, Type>emptyMap(), Collections.<DJClass, Object>emptyMap());
+    this(null, NO_VARS, NO_VALS, NO_CLASSES, NO_VALS);
   }
   
   public RuntimeBindings(RuntimeBindings parent, LocalVariable var, Object val) {
-    this(parent, Collections.singletonMap(var, val), Collections.<VariableType, Type>emptyMap(),
-         Collections.<DJClass, Object>emptyMap());
+    this(parent, new LocalVariable[]{ var }, new Object[]{ val }, NO_CLASSES, NO_VALS);
   }
   
   public RuntimeBindings(RuntimeBindings parent, Iterable<LocalVariable> vars, Iterable<Object> vals) {
-    this(parent, makeMap(vars, vals), Collections.<VariableType, Type>emptyMap(),
-         Collections.<DJClass, Object>emptyMap());
+    this(parent, IterUtil.toArray(vars, LocalVariable.class), IterUtil.toArray(vals, Object.class),
+         NO_CLASSES, NO_VALS);
+    if (_vars.length != _vals.length) { throw new IllegalArgumentException("Mismatched variable values"); }
   }
   
-  private static <K, V> Map<K, V> makeMap(Iterable<? extends K> keys, Iterable<? extends V> vals) {
-    Map<K, V> result = new HashMap<K, V>();
-    for (Pair<K, V> entry : IterUtil.zip(keys, vals)) { result.put(entry.first(), entry.second()); }
-    return result;
+  /**
+   * Create a frame for all the variables declared in a block, each initially bound to {@code null}.
+   * The block's declarations then initialize the variables in place (see {@link #declares}), rather
+   * than each allocating a new frame.
+   */
+  public RuntimeBindings(RuntimeBindings parent, List<LocalVariable> vars) {
+    this(parent, vars.toArray(new LocalVariable[vars.size()]), new Object[vars.size()], NO_CLASSES, NO_VALS);
   }
   
   public RuntimeBindings(RuntimeBindings parent, DJClass thisClass, Object thisObj) {
-      this(parent, Collections.<LocalVariable, Object>emptyMap(),
-           Collections.<VariableType, Type>emptyMap(), Collections.singletonMap(thisClass, thisObj));
+    this(parent, NO_VARS, NO_VALS, new DJClass[]{ thisClass }, new Object[]{ thisObj });
+  }
+  
+  /** Whether the given variable belongs to this frame (ignoring the parent frames). */
+  public boolean declares(LocalVariable v) {
+    return indexOf(v) >= 0;
   }
   
   public Object get(LocalVariable v) {
-    if (_vars.containsKey(v)) { return _vars.get(v); }
-    else if (_parent != null) { return _parent.get(v); }
-    else { throw new IllegalArgumentException("Variable " + v + " is undefined"); }
+    RuntimeBindings b = this;
+    do {
+      int i = b.indexOf(v);
+      if (i >= 0) { return b._vals[i]; }
+      b = b._parent;
+    } while (b != null);
+    throw new IllegalArgumentException("Variable " + v + " is undefined");
   }
   
   public void set(LocalVariable v, Object val) {
-    if (_vars.containsKey(v)) { _vars.put(v, val); }
-    else if (_parent != null) { _parent.set(v, val); }
-    else { throw new IllegalArgumentException("Variable " + v + " is undefined"); }
+    RuntimeBindings b = this;
+    do {
+      int i = b.indexOf(v);
+      if (i >= 0) { b._vals[i] = val; return; }
+      b = b._parent;
+    } while (b != null);
+    throw new IllegalArgumentException("Variable " + v + " is undefined");
   }
-
+  
   public Type get(VariableType v) {
     if (_tvars.containsKey(v)) { return _tvars.get(v); }
     else if (_parent != null) { return _parent.get(v); }
@@ -79,9 +119,24 @@ public class RuntimeBindings {
   }
   
   public Object getThis(DJClass c) {
-    if (_thisVals.containsKey(c)) { return _thisVals.get(c); }
-    else if (_parent != null) { return _parent.getThis(c); }
-    else { throw new IllegalArgumentException("This value " + c + " is undefined"); }
+    RuntimeBindings b = this;
+    do {
+      DJClass[] classes = b._thisClasses;
+      for (int i = 0; i < classes.length; i++) {
+        if (classes[i].equals(c)) { return b._thisVals[i]; }
+      }
+      b = b._parent;
+    } while (b != null);
+    throw new IllegalArgumentException("This value " + c + " is undefined");
   }
-
+  
+  /** LocalVariables are unique, so an identity test is sufficient. */
+  private int indexOf(LocalVariable v) {
+    LocalVariable[] vars = _vars;
+    for (int i = 0; i < vars.length; i++) {
+      if (vars[i] == v) { return i; }
+    }
+    return -1;
+  }
+  
 }
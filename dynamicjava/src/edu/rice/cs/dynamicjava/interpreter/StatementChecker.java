@@ -78,6 +78,7 @@ import java.util.Set;
 import java.util.HashSet;
 import java.util.List;
 import java.util.LinkedList;
+import java.util.ArrayList;
 import edu.rice.cs.plt.iter.IterUtil;
 import edu.rice.cs.plt.tuple.Pair;
 import edu.rice.cs.plt.tuple.Option;
@@ -730,6 +731,12 @@ public class StatementChecker extends AbstractVisitor<TypeContext> implements La
    */
   @Override public TypeContext visit(BlockStatement node) {
     checkList(node.getStatements());
+    List<LocalVariable> vars = new ArrayList<LocalVariable>();
+    for (Node stmt : node.getStatements()) {
+      if (hasStatementTranslation(stmt)) { stmt = getStatementTranslation(stmt); }
+      if (stmt instanceof VariableDeclaration) { vars.add(getVariable(stmt)); }
+    }
+    setBlockVariables(node, vars);
     return context;
   }
   
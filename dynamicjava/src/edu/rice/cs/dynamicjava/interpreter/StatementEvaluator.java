@@ -83,10 +83,14 @@ public class StatementEvaluator extends AbstractVisitor<StatementEvaluator.Resul
   @Override public Result visit(VariableDeclaration node) {
     // even when an initializer is present, there may be a reference to the uninitialized
     // variable in the initializer
+    LocalVariable var = getVariable(node);
     Object init = SymbolUtil.initialValue(getErasedType(node).value());
-    RuntimeBindings newB = new RuntimeBindings(_bindings, getVariable(node), init);
+    RuntimeBindings newB;
+    // a variable declared directly in a block already has a slot in the block's frame
+    if (_bindings.declares(var)) { newB = _bindings; newB.set(var, init); }
+    else { newB = new RuntimeBindings(_bindings, var, init); }
     if (node.getInitializer() != null) {
-      newB.set(getVariable(node), new ExpressionEvaluator(newB, _opt).value(node.getInitializer()));
+      newB.set(var, new ExpressionEvaluator(newB, _opt).value(node.getInitializer()));
     }
     return new Result(newB);
   }
@@ -363,7 +367,11 @@ public class StatementEvaluator extends AbstractVisitor<StatementEvaluator.Resul
   }
   
   @Override public Result visit(BlockStatement node) {
-    return evaluateSequence(node.getStatements());
+    if (hasBlockVariables(node) && !getBlockVariables(node).isEmpty()) {
+      RuntimeBindings frame = new RuntimeBindings(_bindings, getBlockVariables(node));
+      return new StatementEvaluator(frame, _opt).evaluateSequence(node.getStatements());
+    }
+    else { return evaluateSequence(node.getStatements()); }
   }
   
   
@@ -30,6 +30,11 @@ public class TopLevelTest {
     "java5/ExplicitGenericMethods.jlbench"
   };
   
+  /** Options under which the bodies of declared methods are compiled to bytecode. */
+  private static final Options COMPILED_METHODS = new Options() {
+    @Override public boolean compileMethodBodies() { return true; }
+  };
+  
   public static Test suite() throws IOException {
     Iterable<String> excludes = IterUtil.asIterable(notYetSupported);
     ZipFile jlbenchJar = new ZipFile("lib/buildlib/jlbench-base.jar");
@@ -41,6 +46,7 @@ public class TopLevelTest {
     TestSuite result = new TestSuite();
     for (Benchmark b : IterUtil.collapse(benchmarks)) {
       result.addTest(new JLBenchTestWrapper(b, Options.DEFAULT));
+      result.addTest(new JLBenchTestWrapper(b, COMPILED_METHODS));
     }
     return result;
   }
@@ -72,7 +78,9 @@ public class TopLevelTest {
       finally { result.endTest(this); }
     }
     
-    public String toString() { return "<" + _b.name() + ">"; }
+    public String toString() {
+      return "<" + _b.name() + (_opt.compileMethodBodies() ? ", compiled methods" : "") + ">";
+    }
     
     private void turnOffLogging(TestResult result) {
       try {
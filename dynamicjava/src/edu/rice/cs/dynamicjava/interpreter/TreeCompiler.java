@@ -12,6 +12,7 @@ import edu.rice.cs.plt.collect.CollectUtil;
 
 import org.objectweb.asm.MethodVisitor;
 import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.tree.MethodNode;
 
 import edu.rice.cs.dynamicjava.Options;
 import edu.rice.cs.dynamicjava.symbol.*;
@@ -71,13 +72,13 @@ import static koala.dynamicjava.tree.ModifierSet.Modifier.*;
 public class TreeCompiler {
   
   private static final String ADAPTER_FIELD = "$adapter";
-  private static final String BINDINGS_FACTORY_FIELD = "$bindingsFactory";
+  static final String BINDINGS_FACTORY_FIELD = "$bindingsFactory";
   
   private static final String RUNTIME_BINDINGS_NAME =
     org.objectweb.asm.Type.getInternalName(RuntimeBindings.class);
   private static final String EVALUATION_ADAPTER_NAME =
     org.objectweb.asm.Type.getInternalName(EvaluationAdapter.class);
-  private static final String BINDINGS_FACTORY_NAME =
+  static final String BINDINGS_FACTORY_NAME =
     org.objectweb.asm.Type.getInternalName(BindingsFactory.class);
   private static final String TREE_CLASS_LOADER_NAME =
     org.objectweb.asm.Type.getInternalName(TreeClassLoader.class);
@@ -106,11 +107,11 @@ public class TreeCompiler {
     org.objectweb.asm.Type.getDescriptor(Float.class);
   private static final String DOUBLE_DESCRIPTOR =
     org.objectweb.asm.Type.getDescriptor(Double.class);
-  private static final String RUNTIME_BINDINGS_DESCRIPTOR =
+  static final String RUNTIME_BINDINGS_DESCRIPTOR =
     org.objectweb.asm.Type.getDescriptor(RuntimeBindings.class);
   private static final String EVALUATION_ADAPTER_DESCRIPTOR =
     org.objectweb.asm.Type.getDescriptor(EvaluationAdapter.class);
-  private static final String BINDINGS_FACTORY_DESCRIPTOR =
+  static final String BINDINGS_FACTORY_DESCRIPTOR =
     org.objectweb.asm.Type.getDescriptor(BindingsFactory.class);
   
     
@@ -147,7 +148,8 @@ public class TreeCompiler {
   //private ClassWriter _realWriter;
   public byte[] bytecode() {
     if (_classWriter == null) {
-      _classWriter = new ClassWriter(0);
+      // Compiled method bodies leave the computation of stack and local sizes to ASM
+      _classWriter = new ClassWriter(_opt.compileMethodBodies() ? ClassWriter.COMPUTE_MAXS : 0);
       //_realWriter = new ClassWriter(0);
       //_classWriter = new org.objectweb.asm.util.CheckClassAdapter(_realWriter);
       compileClass(_treeClass.declaration());
@@ -623,6 +625,13 @@ public class TreeCompiler {
       methodSig = sigBuilder.toString();
     }
     
+    if (_java5 && _opt.compileMethodBodies() && !Modifier.isAbstract(access) && !Modifier.isNative(access)) {
+      MethodNode body = new MethodBodyCompiler(this, _treeClass, _name, _opt.typeSystem())
+                          .compile(ast, access, methodDescriptor, methodSig, extractClassNames(exceptions));
+      // if the body can't be compiled, fall back to a stub that invokes the interpreter
+      if (body != null) { body.accept(_classWriter); return; }
+    }
+    
     final MethodVisitor mv = _classWriter.visitMethod(access, ast.getName(), methodDescriptor,
                                                       methodSig, extractClassNames(exceptions));
     
@@ -1008,9 +1017,9 @@ public class TreeCompiler {
   private static String typeSignature(Type t) { return encodeType(t); }
   
   /** Nonstatic because it depends on field _opt. */
-  private String typeDescriptor(Type t) { return encodeType(_opt.typeSystem().erase(t)); }
+  String typeDescriptor(Type t) { return encodeType(_opt.typeSystem().erase(t)); }
   
-  private static String className(DJClass c) { return c.fullName().replace('.', '/'); }
+  static String className(DJClass c) { return c.fullName().replace('.', '/'); }
   
   private static DJClass extractClass(Type t) {
     if (t instanceof ClassType) { return ((ClassType) t).ofClass(); }
@@ -1436,7 +1445,7 @@ public class TreeCompiler {
   private static final String MAKE_BINDINGS_FACTORY_DESCRIPTOR =
     "(" + RUNTIME_BINDINGS_DESCRIPTOR + ")" + BINDINGS_FACTORY_DESCRIPTOR;
   
-  private static final String BINDINGS_FACTORY_VALUE_DESCRIPTOR =
+  static final String BINDINGS_FACTORY_VALUE_DESCRIPTOR =
     "(" + OBJECT_DESCRIPTOR + ")" + RUNTIME_BINDINGS_DESCRIPTOR;
   
 }
@@ -1,8 +1,11 @@
 package edu.rice.cs.dynamicjava.symbol;
 
+import java.lang.ref.SoftReference;
 import java.lang.reflect.*;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.Map;
+import java.util.WeakHashMap;
 import edu.rice.cs.plt.lambda.Lambda;
 import edu.rice.cs.plt.lambda.Thunk;
 import edu.rice.cs.plt.lambda.LazyThunk;
@@ -56,22 +59,28 @@ public class Java5Class extends JavaClass {
     return superC == null ? superIs : IterUtil.compose(superC, superIs);
   }
   
-  @Override public Iterable<DJField> declaredFields() {
+  @Override protected Iterable<DJField> wrapFields() {
     // CONVERT_FIELD is shadowed here to create a Java5Field
     return IterUtil.mapSnapshot(IterUtil.asIterable(_c.getDeclaredFields()), CONVERT_FIELD);
   }
   
-  @Override public Iterable<DJConstructor> declaredConstructors() {
+  @Override protected Iterable<DJConstructor> wrapConstructors() {
     // CONVERT_CONSTRUCTOR is shadowed here to create a Java5Constructor
     return IterUtil.mapSnapshot(IterUtil.asIterable(_c.getDeclaredConstructors()), CONVERT_CONSTRUCTOR);
   }
   
-  @Override public Iterable<DJMethod> declaredMethods() {
+  @Override protected Iterable<DJMethod> wrapMethods() {
     // CONVERT_METHOD is shadowed here to create a Java5Method
     Iterable<Method> ms = IterUtil.filter(IterUtil.asIterable(_c.getDeclaredMethods()), IS_NOT_BRIDGE);
     return IterUtil.mapSnapshot(ms, CONVERT_METHOD);
   }
   
+  /** Java5Class wrappers are distinct from those of JavaClass, so they are cached separately. */
+  @Override protected Members members() { return membersOf(JAVA5_MEMBERS, _c); }
+  
+  private static final Map<Class<?>, SoftReference<Members>> JAVA5_MEMBERS =
+    new WeakHashMap<Class<?>, SoftReference<Members>>();
+  
   private static final Predicate<Method> IS_NOT_BRIDGE = new Predicate<Method>() {
     public boolean contains(Method m) { return !m.isBridge(); }
   };
@@ -2,6 +2,9 @@ package edu.rice.cs.dynamicjava.symbol;
 
 import java.util.List;
 import java.util.ArrayList;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.lang.ref.SoftReference;
 import java.lang.reflect.*;
 
 import edu.rice.cs.dynamicjava.Options;
@@ -84,17 +87,74 @@ public class JavaClass implements DJClass {
   }
   
   public Iterable<DJField> declaredFields() {
-    return IterUtil.mapSnapshot(IterUtil.asIterable(_c.getDeclaredFields()), CONVERT_FIELD);
+    Members members = members();
+    Iterable<DJField> result = members.fields;
+    if (result == null) { result = wrapFields(); members.fields = result; }
+    return result;
   }
   
   public Iterable<DJConstructor> declaredConstructors() {
-    return IterUtil.mapSnapshot(IterUtil.asIterable(_c.getDeclaredConstructors()), CONVERT_CONSTRUCTOR);
+    Members members = members();
+    Iterable<DJConstructor> result = members.constructors;
+    if (result == null) { result = wrapConstructors(); members.constructors = result; }
+    return result;
   }
   
   public Iterable<DJMethod> declaredMethods() {
+    Members members = members();
+    Iterable<DJMethod> result = members.methods;
+    if (result == null) { result = wrapMethods(); members.methods = result; }
+    return result;
+  }
+  
+  /** Create wrappers for the declared fields.  The result is shared by all instances wrapping the class. */
+  protected Iterable<DJField> wrapFields() {
+    return IterUtil.mapSnapshot(IterUtil.asIterable(_c.getDeclaredFields()), CONVERT_FIELD);
+  }
+  
+  /** Create wrappers for the declared constructors.  The result is shared by all instances wrapping the class. */
+  protected Iterable<DJConstructor> wrapConstructors() {
+    return IterUtil.mapSnapshot(IterUtil.asIterable(_c.getDeclaredConstructors()), CONVERT_CONSTRUCTOR);
+  }
+  
+  /** Create wrappers for the declared methods.  The result is shared by all instances wrapping the class. */
+  protected Iterable<DJMethod> wrapMethods() {
     return IterUtil.mapSnapshot(IterUtil.asIterable(_c.getDeclaredMethods()), CONVERT_METHOD);
   }
   
+  /**
+   * The member wrappers of the wrapped class.  Instances of this class are created freely (every
+   * reference to a class in a type creates one), so the members are cached per Class object rather
+   * than per instance.  Overridden by subclasses that create different wrappers.
+   */
+  protected Members members() { return membersOf(MEMBERS, _c); }
+  
+  private static final Map<Class<?>, SoftReference<Members>> MEMBERS =
+    new WeakHashMap<Class<?>, SoftReference<Members>>();
+  
+  /**
+   * Get the members of {@code c} from the given cache, creating them if necessary.  The wrappers refer to
+   * their Class, so the cached values are soft references; otherwise, the weak keys could never be cleared.
+   */
+  protected static Members membersOf(Map<Class<?>, SoftReference<Members>> cache, Class<?> c) {
+    synchronized (cache) {
+      SoftReference<Members> ref = cache.get(c);
+      Members result = (ref == null) ? null : ref.get();
+      if (result == null) { result = new Members(); cache.put(c, new SoftReference<Members>(result)); }
+      return result;
+    }
+  }
+  
+  /**
+   * Lazily-initialized member wrappers of a class.  Races are benign: concurrent initializations produce
+   * equivalent wrappers, and one of them wins.
+   */
+  protected static class Members {
+    volatile Iterable<DJField> fields = null;
+    volatile Iterable<DJConstructor> constructors = null;
+    volatile Iterable<DJMethod> methods = null;
+  }
+  
   public Iterable<DJClass> declaredClasses() {
     return IterUtil.mapSnapshot(IterUtil.asIterable(_c.getDeclaredClasses()), CONVERT_CLASS);
   }
@@ -328,9 +388,11 @@ public class JavaClass implements DJClass {
                   "sun.reflect.NativeConstructorAccessorImpl.newInstance0" };
   
   
-  protected class JavaMethod implements DJMethod {
+  protected class JavaMethod implements DJMethod, MethodInvoker.Invokable {
     protected final Method _m;
     private final Thunk<Iterable<LocalVariable>> _params;
+    private volatile MethodInvoker _invoker; // created lazily
+    private volatile boolean _accessibilitySet = false;
     public JavaMethod(Method m) { _m = m; _params = makeParamThunk(); /* allows overriding */ }
     protected Thunk<Iterable<LocalVariable>> makeParamThunk() { return paramFactory(_m.getParameterTypes()); }
     public String declaredName() { return _m.getName(); }
@@ -353,13 +415,19 @@ public class JavaClass implements DJClass {
       if (!isStatic() && receiver == null) {
         throw new WrappedException(new EvaluatorException(new NullPointerException()));
       }
+      return invoke(receiver, IterUtil.toArray(args, Object.class));
+    }
+    
+    /** Invoke the method reflectively.  Accessibility is relaxed (if possible) before the first invocation. */
+    private Object invoke(Object receiver, Object[] args) throws EvaluatorException {
+      if (!_accessibilitySet) {
+        try { _m.setAccessible(true); }
+        catch (SecurityException e) { debug.log(e); /* ignore -- we can't relax accessibility */ }
+        _accessibilitySet = true;
+      }
       
-      try { _m.setAccessible(true); }
-      catch (SecurityException e) { debug.log(e); /* ignore -- we can't relax accessibility */ }
-      
-      Object[] argsArray = IterUtil.toArray(args, Object.class);
       try {
-        return _m.invoke(receiver, argsArray);
+        return _m.invoke(receiver, args);
       }
       catch (InvocationTargetException e) {
         throw new EvaluatorException(e.getCause(), METHOD_EXTRA_STACK);
@@ -378,6 +446,21 @@ public class JavaClass implements DJClass {
       }
     }
     
+    public MethodInvoker invoker() {
+      MethodInvoker result = _invoker;
+      if (result == null) {
+        result = new MethodInvoker() {
+          public Object invoke(Object receiver, Object[] args, RuntimeBindings bindings, Options options)
+              throws EvaluatorException {
+            if (!isStatic() && receiver == null) { throw new EvaluatorException(new NullPointerException()); }
+            return JavaMethod.this.invoke(receiver, args);
+          }
+        };
+        _invoker = result;
+      }
+      return result;
+    }
+    
     public String toString() { return "JavaMethod(" + declaredName() + ")"; }
   }
   
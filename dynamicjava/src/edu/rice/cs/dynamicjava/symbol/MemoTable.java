@@ -0,0 +1,56 @@
+package edu.rice.cs.dynamicjava.symbol;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded, thread-safe table of memoized results.  When the table is full, the least-recently-used
+ * entry is discarded.  Keys are compared with {@code equals}; identity semantics can be achieved with
+ * keys like {@link edu.rice.cs.plt.tuple.IdentityPair}.  Hits and misses are counted, so the table's
+ * effectiveness can be reported (see {@link #toString}).
+ */
+class MemoTable<K, V> {
+
+  private final String _name;
+  private final Map<K, V> _map;
+  private long _hits;
+  private long _misses;
+
+  @SuppressWarnings("serial")
+  public MemoTable(String name, final int capacity) {
+    _name = name;
+    _map = new LinkedHashMap<K, V>(16, 0.75f, true) {
+      @Override protected boolean removeEldestEntry(Map.Entry<K, V> eldest) { return size() > capacity; }
+    };
+    _hits = 0;
+    _misses = 0;
+  }
+
+  /** Get the value memoized for {@code key}, or {@code null} if there is none. */
+  public synchronized V get(K key) {
+    V result = _map.get(key);
+    if (result == null) { _misses++; } else { _hits++; }
+    return result;
+  }
+
+  /** Memoize {@code value} (which must not be {@code null}) for {@code key}. */
+  public synchronized void put(K key, V value) { _map.put(key, value); }
+
+  public synchronized long hits() { return _hits; }
+
+  public synchronized long misses() { return _misses; }
+
+  /** Discard all entries and reset the counters. */
+  public synchronized void clear() {
+    _map.clear();
+    _hits = 0;
+    _misses = 0;
+  }
+
+  public synchronized String toString() {
+    long total = _hits + _misses;
+    long rate = (total == 0) ? 0 : (_hits * 100 / total);
+    return _name + ": " + _hits + " hits, " + _misses + " misses (" + rate + "%), " + _map.size() + " entries";
+  }
+
+}
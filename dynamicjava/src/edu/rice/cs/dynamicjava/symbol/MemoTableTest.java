@@ -0,0 +1,109 @@
+package edu.rice.cs.dynamicjava.symbol;
+
+import java.io.StringReader;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import koala.dynamicjava.tree.Node;
+import koala.dynamicjava.parser.wrapper.JavaCCParser;
+import edu.rice.cs.dynamicjava.Options;
+import edu.rice.cs.dynamicjava.interpreter.ImportContext;
+import edu.rice.cs.dynamicjava.interpreter.StatementChecker;
+
+/**
+ * Tests the eviction policy and counters of MemoTable.  The main method is a benchmark of checking
+ * collection-heavy generic code, which exercises StandardTypeSystem's memo tables.
+ */
+public class MemoTableTest extends TestCase {
+  
+  public void testHitsAndMisses() {
+    MemoTable<String, Integer> t = new MemoTable<String, Integer>("test", 4);
+    assertNull(t.get("a"));
+    t.put("a", 1);
+    assertEquals(Integer.valueOf(1), t.get("a"));
+    assertEquals(Integer.valueOf(1), t.get(new String("a")));
+    assertEquals(2, t.hits());
+    assertEquals(1, t.misses());
+    assertEquals("test: 2 hits, 1 misses (66%), 1 entries", t.toString());
+    
+    t.clear();
+    assertNull(t.get("a"));
+    assertEquals(0, t.hits());
+    assertEquals(1, t.misses());
+  }
+  
+  public void testLeastRecentlyUsedIsEvicted() {
+    MemoTable<String, Integer> t = new MemoTable<String, Integer>("test", 3);
+    t.put("a", 1);
+    t.put("b", 2);
+    t.put("c", 3);
+    t.get("a"); // b is now the least recently used
+    t.put("d", 4);
+    assertNull(t.get("b"));
+    assertEquals(Integer.valueOf(1), t.get("a"));
+    assertEquals(Integer.valueOf(3), t.get("c"));
+    assertEquals(Integer.valueOf(4), t.get("d"));
+    
+    t.put("c", 30); // replacing a value also counts as a use; a is now the least recently used
+    t.put("e", 5);
+    assertNull(t.get("a"));
+    assertEquals(Integer.valueOf(30), t.get("c"));
+    assertEquals(Integer.valueOf(4), t.get("d"));
+    assertEquals(Integer.valueOf(5), t.get("e"));
+  }
+  
+  public void testCapacity() {
+    int capacity = StandardTypeSystem.MEMO_CAPACITY;
+    assertEquals(4096, capacity);
+    MemoTable<Integer, Integer> t = new MemoTable<Integer, Integer>("test", capacity);
+    for (int i = 0; i < capacity; i++) { t.put(i, i); }
+    assertTrue(t.toString().endsWith(capacity + " entries"));
+    t.get(0);
+    for (int i = capacity; i < capacity + 100; i++) { t.put(i, i); }
+    assertTrue(t.toString().endsWith(capacity + " entries"));
+    assertEquals(Integer.valueOf(0), t.get(0));
+    for (int i = 1; i <= 100; i++) { assertNull(t.get(i)); }
+    for (int i = 101; i < capacity + 100; i++) { assertEquals(Integer.valueOf(i), t.get(i)); }
+  }
+  
+  
+  private static final int WARMUP_ROUNDS = 3;
+  private static final int TIMED_ROUNDS = 5;
+  
+  /**
+   * Benchmark: checks a script of the given number of statements (default 1,200) that builds and queries
+   * Maps, Lists and Sets through java.util.Collections.  The memo tables are cleared before each round, so
+   * every round checks the script from scratch.  Prints the mean checking time over TIMED_ROUNDS rounds
+   * that follow WARMUP_ROUNDS untimed ones, and the memo statistics of the last round.
+   */
+  public static void main(String[] args) {
+    int statements = (args.length > 0) ? Integer.parseInt(args[0]) : 1200;
+    StringBuilder sb = new StringBuilder("import java.util.*;\n");
+    for (int i = 0; i < statements / 8; i++) {
+      sb.append("{ Map<String, List<Integer>> m = new HashMap<String, List<Integer>>();\n");
+      sb.append("  List<Integer> l = new ArrayList<Integer>(Arrays.asList(").append(i).append(", 2, 1));\n");
+      sb.append("  m.put(\"k").append(i).append("\", l);\n");
+      sb.append("  Collections.sort(m.get(\"k").append(i).append("\"));\n");
+      sb.append("  Set<Map.Entry<String, List<Integer>>> es = m.entrySet();\n");
+      sb.append("  SortedSet<String> keys = new TreeSet<String>(m.keySet());\n");
+      sb.append("  Integer max = Collections.max(l);\n");
+      sb.append("  int n = es.iterator().next().getValue().size() + keys.first().length() + max; }\n");
+    }
+    String code = sb.toString();
+    Options opt = Options.DEFAULT;
+    StandardTypeSystem ts = (StandardTypeSystem) opt.typeSystem();
+    
+    long time = 0;
+    for (int round = 0; round < WARMUP_ROUNDS + TIMED_ROUNDS; round++) {
+      List<Node> tree = new JavaCCParser(new StringReader(code), opt).parseStream();
+      ts.clearMemos();
+      long start = System.nanoTime();
+      new StatementChecker(new ImportContext(MemoTableTest.class.getClassLoader(), opt), opt).checkList(tree);
+      if (round >= WARMUP_ROUNDS) { time += System.nanoTime() - start; }
+    }
+    System.out.println(statements + " statements: check " + time / TIMED_ROUNDS / 1000000 + " ms");
+    System.out.println(ts.memoStatistics());
+  }
+  
+}
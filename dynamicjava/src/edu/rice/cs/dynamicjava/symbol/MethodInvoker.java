@@ -0,0 +1,47 @@
+package edu.rice.cs.dynamicjava.symbol;
+
+import edu.rice.cs.plt.iter.IterUtil;
+
+import edu.rice.cs.dynamicjava.Options;
+import edu.rice.cs.dynamicjava.interpreter.RuntimeBindings;
+import edu.rice.cs.dynamicjava.interpreter.EvaluatorException;
+
+/**
+ * A prepared means of invoking a particular method.  A call site can create an invoker when it is first
+ * evaluated (see {@link #forMethod}) and reuse it for subsequent evaluations.  Unlike
+ * {@link DJMethod#evaluate}, arguments are passed as an array, and methods of compiled classes are invoked
+ * directly with {@link java.lang.reflect.Method#invoke}, their accessibility having been relaxed only once.
+ */
+public abstract class MethodInvoker {
+
+  /**
+   * Invoke the method with the given receiver (ignored for static methods) and arguments.  The
+   * arguments have already been converted to the types of the method's parameters.
+   */
+  public abstract Object invoke(Object receiver, Object[] args, RuntimeBindings bindings, Options options)
+    throws EvaluatorException;
+
+  /** Create an invoker for the given method. */
+  public static MethodInvoker forMethod(DJMethod m) {
+    DJMethod declared = m.declaredSignature();
+    if (declared instanceof Invokable) { return ((Invokable) declared).invoker(); }
+    else { return new EvaluatingInvoker(m); }
+  }
+
+  /** Implemented by methods that can produce a more efficient invoker than one based on {@code evaluate}. */
+  interface Invokable {
+    /** Get an invoker for this method.  Creation may be expensive, so callers should reuse the result. */
+    MethodInvoker invoker();
+  }
+
+  /** Delegates to {@link DJMethod#evaluate}. */
+  private static class EvaluatingInvoker extends MethodInvoker {
+    private final DJMethod _m;
+    public EvaluatingInvoker(DJMethod m) { _m = m; }
+    public Object invoke(Object receiver, Object[] args, RuntimeBindings bindings, Options options)
+        throws EvaluatorException {
+      return _m.evaluate(receiver, IterUtil.asIterable(args), bindings, options);
+    }
+  }
+
+}
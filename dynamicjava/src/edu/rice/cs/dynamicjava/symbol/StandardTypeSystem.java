@@ -3,6 +3,7 @@ package edu.rice.cs.dynamicjava.symbol;
 import java.util.*;
 
 import edu.rice.cs.plt.tuple.Pair;
+import edu.rice.cs.plt.tuple.Quad;
 import edu.rice.cs.plt.tuple.Option;
 import edu.rice.cs.plt.tuple.Wrapper;
 import edu.rice.cs.plt.recur.*;
@@ -52,6 +53,23 @@ public abstract class StandardTypeSystem extends TypeSystem {
    */
   private final boolean _strictClassEquality;
   
+  /** Capacity of each of the memo tables below. */
+  static final int MEMO_CAPACITY = 4096;
+  
+  /*
+   * Memoized results of common queries.  Types are immutable and cache their hash codes, so results are
+   * keyed by structural equality, as in the subtyping algorithms (which treat equal types as subtypes).
+   * Identity keys would rarely hit: the checker creates new but equal type objects for every expression.
+   * A class or variable that is redefined is represented by new, unequal symbols.
+   */
+  private final MemoTable<Pair<Type, Type>, Boolean> _subtypeMemo =
+    new MemoTable<Pair<Type, Type>, Boolean>("isSubtype", MEMO_CAPACITY);
+  private final MemoTable<Type, Type> _eraseMemo = new MemoTable<Type, Type>("erase", MEMO_CAPACITY);
+  private final MemoTable<Quad<Type, String, Access.Module, Boolean>,
+                          PredicateSet<DJMethod>> _methodsMemo =
+    new MemoTable<Quad<Type, String, Access.Module, Boolean>,
+                  PredicateSet<DJMethod>>("method candidates", MEMO_CAPACITY);
+  
   protected StandardTypeSystem(Options opt, boolean boxingInMostSpecific, boolean useExplicitTypeArgs,
                                 boolean strictClassEquality) {
     _opt  = opt;
@@ -68,9 +86,36 @@ public abstract class StandardTypeSystem extends TypeSystem {
 
   /**
    * Determine if {@code subT} is a subtype of {@code superT}.  This is a recursive
-   * (in terms of {@link #isEqual}), transitive relation.
+   * (in terms of {@link #isEqual}), transitive relation.  Results are memoized; subclasses
+   * implement the test in {@link #computeIsSubtype}.
+   */
+  public boolean isSubtype(Type subT, Type superT) {
+    Pair<Type, Type> key = new Pair<Type, Type>(subT, superT);
+    Boolean result = _subtypeMemo.get(key);
+    if (result == null) {
+      result = computeIsSubtype(subT, superT);
+      _subtypeMemo.put(key, result);
+    }
+    return result;
+  }
+  
+  /** Determine if {@code subT} is a subtype of {@code superT}, without consulting the memo table. */
+  protected abstract boolean computeIsSubtype(Type subT, Type superT);
+  
+  /** Describe the effectiveness of the memo tables (hits, misses, and size). */
+  public String memoStatistics() {
+    return _subtypeMemo + "; " + _eraseMemo + "; " + _methodsMemo;
+  }
+  
+  /**
+   * Discard all memoized results.  Method lookups depend on the accessibility options, so this must be
+   * called when an {@link Options} instance changes them.
    */
-  public abstract boolean isSubtype(Type subT, Type superT);
+  public void clearMemos() {
+    _subtypeMemo.clear();
+    _eraseMemo.clear();
+    _methodsMemo.clear();
+  }
   
   /** Compute a common supertype of the given list of types. */
   public abstract Type join(Iterable<? extends Type> ts);
@@ -439,7 +484,16 @@ public abstract class StandardTypeSystem extends TypeSystem {
    * Compute the erased type of {@code t}.  The result is guaranteed to be reifiable (according
    * to {@link #isReifiable}) and a supertype of {@code t}.
    */
-  public Type erase(Type t) { return t.apply(ERASE); }
+  public Type erase(Type t) {
+    // the erasure of these is the type itself, which is cheaper to return than to look up
+    if (t instanceof SimpleClassType || t instanceof RawClassType || t instanceof PrimitiveType) { return t; }
+    Type result = _eraseMemo.get(t);
+    if (result == null) {
+      result = t.apply(ERASE);
+      _eraseMemo.put(t, result);
+    }
+    return result;
+  }
   
   private static final TypeVisitorLambda<Type> ERASE = new TypeAbstractVisitor<Type>() {
     public Type defaultCase(Type t) { return t; }
@@ -1854,7 +1908,7 @@ public abstract class StandardTypeSystem extends TypeSystem {
                          Option<Type> expected) throws UnmatchedLookupException {
       debug.logStart(new String[]{"t","name","onlyStatic"}, wrap(t), _name, _onlyStatic); try {
         
-      PredicateSet<DJMethod> candidates = findAll(t);
+      PredicateSet<DJMethod> candidates = findAllMemoized(t);
       Iterable<FunctionInvocationCandidate<DJMethod>> best = bestInvocations(candidates, targs, args, expected);
       // TODO: provide more error-message information
       int matches = IterUtil.sizeOf(best);
@@ -1870,6 +1924,29 @@ public abstract class StandardTypeSystem extends TypeSystem {
       } finally { debug.logEnd(); }
     }
     
+    /**
+     * Like {@link #findAll}, but memoized where the result is independent of capture.  A lookup in
+     * a type with wildcards captures the type, and each capture must produce fresh variables.
+     */
+    private PredicateSet<DJMethod> findAllMemoized(Type t) {
+      boolean ground = t instanceof SimpleClassType || t instanceof RawClassType;
+      if (t instanceof ParameterizedClassType) {
+        ground = true;
+        for (Type arg : ((ParameterizedClassType) t).typeArguments()) {
+          if (arg instanceof Wildcard) { ground = false; break; }
+        }
+      }
+      if (!ground) { return findAll(t); }
+      Quad<Type, String, Access.Module, Boolean> key =
+        Quad.make(t, _name, _accessModule, _onlyStatic);
+      PredicateSet<DJMethod> result = _methodsMemo.get(key);
+      if (result == null) {
+        result = findAll(t);
+        _methodsMemo.put(key, result);
+      }
+      return result;
+    }
+    
     protected Iterable<DJMethod> declaredMatches(Type t) {
       return t.apply(new TypeAbstractVisitor<Iterable<DJMethod>>() {
         private boolean matches(DJMethod m) {
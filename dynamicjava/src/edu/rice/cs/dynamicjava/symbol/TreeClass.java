@@ -428,7 +428,7 @@ public class TreeClass implements DJClass {
   }
 
   
-  private class TreeMethod implements DJMethod {
+  private class TreeMethod implements DJMethod, MethodInvoker.Invokable {
     private MethodDeclaration _m;
     private Thunk<DJMethod> _loaded;
     
@@ -488,6 +488,22 @@ public class TreeClass implements DJClass {
       return _loaded.value().evaluate(receiver, args, bindings, options);
     }
     
+    public MethodInvoker invoker() {
+      final MethodInvoker loadedInvoker = MethodInvoker.forMethod(_loaded.value());
+      if (!isStatic()) { return loadedInvoker; }
+      else {
+        return new MethodInvoker() {
+          public Object invoke(Object receiver, Object[] args, RuntimeBindings bindings, Options options)
+              throws EvaluatorException {
+            Object[] fullArgs = new Object[args.length+1];
+            fullArgs[0] = bindings;
+            System.arraycopy(args, 0, fullArgs, 1, args.length);
+            return loadedInvoker.invoke(receiver, fullArgs, bindings, options);
+          }
+        };
+      }
+    }
+    
     public String toString() { return "TreeMethod(" + declaredName() + ")"; }
   }
     
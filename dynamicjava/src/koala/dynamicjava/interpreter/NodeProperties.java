@@ -28,6 +28,7 @@
 
 package koala.dynamicjava.interpreter;
 
+import java.util.List;
 import koala.dynamicjava.interpreter.error.ExecutionError;
 import koala.dynamicjava.tree.Node;
 import koala.dynamicjava.tree.Expression;
@@ -291,6 +292,27 @@ public class NodeProperties {
       public LocalVariable value(Node n) { return getVariable(n); }
     };
     
+
+    /**
+     * The LocalVariables declared directly by the statements of a block, in order.  At run time, a
+     * single frame holding all of these variables is allocated each time the block is executed.
+     */
+    public final static String BLOCK_VARIABLES = "blockVariables";
+    
+    @SuppressWarnings("unchecked")
+    public static List<LocalVariable> getBlockVariables(Node n) {
+      return (List<LocalVariable>) n.getProperty(BLOCK_VARIABLES);
+    }
+    
+    public static List<LocalVariable> setBlockVariables(Node n, List<LocalVariable> vars) {
+      n.setProperty(BLOCK_VARIABLES, vars);
+      return vars;
+    }
+    
+    public static boolean hasBlockVariables(Node n) {
+      return n.hasProperty(BLOCK_VARIABLES);
+    }
+    
     
     /** DJConstructor used by a constructor invocation */
     public final static String CONSTRUCTOR = "constructor";
@@ -340,6 +362,22 @@ public class NodeProperties {
     public static boolean hasMethod(Node n) {
       return n.hasProperty(METHOD);
     }
+    
+    /** Invoker for the method of a method invocation, created when the invocation is first evaluated */
+    public final static String METHOD_INVOKER = "methodInvoker";
+    
+    public static MethodInvoker getMethodInvoker(Node n) {
+      return (MethodInvoker) n.getProperty(METHOD_INVOKER);
+    }
+    
+    public static MethodInvoker setMethodInvoker(Node n, MethodInvoker inv) {
+      n.setProperty(METHOD_INVOKER, inv);
+      return inv;
+    }
+    
+    public static boolean hasMethodInvoker(Node n) {
+      return n.hasProperty(METHOD_INVOKER);
+    }
 
 
     /** DJClass declared by a class declaration or referenced by "this" */
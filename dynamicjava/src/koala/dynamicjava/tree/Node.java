@@ -76,14 +76,25 @@ import koala.dynamicjava.tree.visitor.*;
  */
 
 public abstract class Node implements SourceInfo.Wrapper {
-  private final Map<String,Object> properties;
+  /** Number of properties stored inline before spilling to {@link #moreProperties}. */
+  private static final int INLINE_PROPERTIES = 8;
+  
+  /*
+   * Properties are set and read very frequently during checking and evaluation, and most nodes have
+   * only a handful of them.  Rather than allocating a HashMap for each node, the first few are stored in
+   * a pair of small arrays (allocated on first use); the rare extras spill into a map.  Names are
+   * almost always the constants declared in NodeProperties, so they are first compared by identity.
+   */
+  private String[] propertyNames;
+  private Object[] propertyValues; // parallel to propertyNames
+  private int propertyCount;
+  private Map<String, Object> moreProperties;
   private SourceInfo sourceInfo;
   
   
   protected Node(SourceInfo si) {
     assert si != null;
     sourceInfo = si;
-    properties = new HashMap<String, Object>();
   } 
   
   /** Returns the sourceInfo. */
@@ -109,7 +120,27 @@ public abstract class Node implements SourceInfo.Wrapper {
    * @param value the new value to set
    */
   public void setProperty(String name, Object value) {
-    properties.put(name, value);
+    int i = propertyIndex(name);
+    if (i >= 0) { propertyValues[i] = value; }
+    else if (moreProperties != null && moreProperties.containsKey(name)) { moreProperties.put(name, value); }
+    else if (propertyCount < INLINE_PROPERTIES) {
+      if (propertyNames == null) {
+        propertyNames = new String[2];
+        propertyValues = new Object[2];
+      }
+      else if (propertyCount == propertyNames.length) {
+        int newLength = Math.min(propertyCount * 2, INLINE_PROPERTIES);
+        propertyNames = Arrays.copyOf(propertyNames, newLength);
+        propertyValues = Arrays.copyOf(propertyValues, newLength);
+      }
+      propertyNames[propertyCount] = name;
+      propertyValues[propertyCount] = value;
+      propertyCount++;
+    }
+    else {
+      if (moreProperties == null) { moreProperties = new HashMap<String, Object>(); }
+      moreProperties.put(name, value);
+    }
   }
   
   /**
@@ -118,10 +149,10 @@ public abstract class Node implements SourceInfo.Wrapper {
    * @return null if the property was not previously set
    */
   public Object getProperty(String name) {
-    if (!properties.containsKey(name)) { 
-      throw new IllegalStateException("Property '" + name + "' is not initialized");
-    }
-    return properties.get(name);
+    int i = propertyIndex(name);
+    if (i >= 0) { return propertyValues[i]; }
+    else if (moreProperties != null && moreProperties.containsKey(name)) { return moreProperties.get(name); }
+    else { throw new IllegalStateException("Property '" + name + "' is not initialized"); }
   }
   
   /**
@@ -129,7 +160,10 @@ public abstract class Node implements SourceInfo.Wrapper {
    * @return a set of string
    */
   public Set<String> getProperties() {
-    return properties.keySet();
+    Set<String> result = new LinkedHashSet<String>();
+    for (int i = 0; i < propertyCount; i++) { result.add(propertyNames[i]); }
+    if (moreProperties != null) { result.addAll(moreProperties.keySet()); }
+    return result;
   }
   
   /**
@@ -137,15 +171,32 @@ public abstract class Node implements SourceInfo.Wrapper {
    * @param name the name of the property
    */
   public boolean hasProperty(String name) {
-    return properties.containsKey(name);
+    return propertyIndex(name) >= 0 || (moreProperties != null && moreProperties.containsKey(name));
   }
   
   /** Change the names of all properties by prefixing each name with the given string. */
   public void archiveProperties(String prefix) {
-    Map<String, Object> newProps = new HashMap<String, Object>();
-    for (Map.Entry<String, Object> e : properties.entrySet()) { newProps.put(prefix + e.getKey(), e.getValue()); }
-    properties.clear();
-    properties.putAll(newProps);
+    for (int i = 0; i < propertyCount; i++) { propertyNames[i] = prefix + propertyNames[i]; }
+    if (moreProperties != null) {
+      Map<String, Object> newProps = new HashMap<String, Object>();
+      for (Map.Entry<String, Object> e : moreProperties.entrySet()) {
+        newProps.put(prefix + e.getKey(), e.getValue());
+      }
+      moreProperties = newProps;
+    }
+  }
+  
+  /** The index of the given property in the inline arrays, or -1 if it is not stored there. */
+  private int propertyIndex(String name) {
+    String[] names = propertyNames;
+    int count = propertyCount;
+    for (int i = 0; i < count; i++) {
+      if (names[i] == name) { return i; }
+    }
+    for (int i = 0; i < count; i++) {
+      if (names[i].equals(name)) { return i; }
+    }
+    return -1;
   }
   
   /**
@@ -0,0 +1,187 @@
+/*BEGIN_COPYRIGHT_BLOCK
+ *
+ * Copyright (c) 2001-2010, JavaPLT group at Rice University (drjava@rice.edu)
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *    * Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the names of DrJava, the JavaPLT group, Rice University, nor the
+ *      names of its contributors may be used to endorse or promote products
+ *      derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * This software is Open Source Initiative approved Open Source Software.
+ * Open Source Initative Approved is a trademark of the Open Source Initiative.
+ * 
+ * This file is part of DrJava.  Download the current version of this project
+ * from http://www.drjava.org/ or http://sourceforge.net/projects/drjava/
+ * 
+ * END_COPYRIGHT_BLOCK*/
+
+package koala.dynamicjava.tree;
+
+import java.io.StringReader;
+import java.util.*;
+
+import junit.framework.TestCase;
+
+import edu.rice.cs.dynamicjava.Options;
+import edu.rice.cs.dynamicjava.interpreter.*;
+import koala.dynamicjava.interpreter.NodeProperties;
+import koala.dynamicjava.parser.wrapper.JavaCCParser;
+
+/** Tests the property storage of Node: inline arrays for the first few properties, a map beyond them.  The main
+  * method is a memory and throughput benchmark of checking and evaluating a large script.
+  */
+public class NodeTest extends TestCase {
+  
+  private static Node _node() { return new IntegerLiteral("1"); }
+  
+  public void testNoProperties() {
+    Node n = _node();
+    assertFalse(n.hasProperty(NodeProperties.TYPE));
+    assertTrue(n.getProperties().isEmpty());
+    try { n.getProperty(NodeProperties.TYPE); fail("Expected IllegalStateException"); }
+    catch (IllegalStateException e) { /* expected */ }
+  }
+  
+  public void testInlineProperties() {
+    Node n = _node();
+    n.setProperty(NodeProperties.TYPE, "t");
+    n.setProperty(NodeProperties.VARIABLE_TYPE, null);
+    assertEquals("t", n.getProperty(NodeProperties.TYPE));
+    assertTrue(n.hasProperty(NodeProperties.VARIABLE_TYPE));
+    assertNull(n.getProperty(NodeProperties.VARIABLE_TYPE));
+    
+    // a name that is equal but not identical finds the same entry
+    String copy = new String(NodeProperties.TYPE);
+    assertTrue(n.hasProperty(copy));
+    n.setProperty(copy, "u");
+    assertEquals("u", n.getProperty(NodeProperties.TYPE));
+    assertEquals(Arrays.asList(NodeProperties.TYPE, NodeProperties.VARIABLE_TYPE),
+                 new ArrayList<String>(n.getProperties()));
+  }
+  
+  public void testSpillPastInlineCapacity() {
+    Node n = _node();
+    for (int i = 0; i < 20; i++) { n.setProperty("p" + i, i); }
+    for (int i = 0; i < 20; i++) {
+      assertTrue(n.hasProperty("p" + i));
+      assertEquals(i, n.getProperty("p" + i));
+    }
+    List<String> expected = new ArrayList<String>();
+    for (int i = 0; i < 20; i++) { expected.add("p" + i); }
+    Set<String> props = n.getProperties();
+    assertEquals(20, props.size());
+    assertEquals(expected.subList(0, 8), new ArrayList<String>(props).subList(0, 8));
+    assertEquals(new HashSet<String>(expected), props);
+    
+    // updates go to wherever the property is already stored
+    n.setProperty("p3", "inline");
+    n.setProperty("p15", "spilled");
+    assertEquals("inline", n.getProperty("p3"));
+    assertEquals("spilled", n.getProperty("p15"));
+    assertEquals(20, n.getProperties().size());
+    assertFalse(n.hasProperty("p20"));
+  }
+  
+  public void testGetPropertiesIsSnapshot() {
+    Node n = _node();
+    n.setProperty("a", 1);
+    Set<String> props = n.getProperties();
+    n.setProperty("b", 2);
+    assertEquals(Collections.singleton("a"), props);
+  }
+  
+  public void testArchiveProperties() {
+    Node n = _node();
+    for (int i = 0; i < 10; i++) { n.setProperty("p" + i, i); }
+    n.archiveProperties("old.");
+    for (int i = 0; i < 10; i++) {
+      assertFalse(n.hasProperty("p" + i));
+      assertEquals(i, n.getProperty("old.p" + i));
+    }
+    
+    // archived names stay put; new properties with the old names are added alongside them
+    n.setProperty("p0", "new");
+    n.setProperty("p9", "new9");
+    assertEquals("new", n.getProperty("p0"));
+    assertEquals("new9", n.getProperty("p9"));
+    assertEquals(0, n.getProperty("old.p0"));
+    assertEquals(9, n.getProperty("old.p9"));
+    assertEquals(12, n.getProperties().size());
+  }
+  
+  
+  private static final int WARMUP_ROUNDS = 2;
+  private static final int TIMED_ROUNDS = 3;
+  
+  private static List<Node> _parse(String code) {
+    return new JavaCCParser(new StringReader(code), Options.DEFAULT).parseStream();
+  }
+  
+  private static long _usedHeap() {
+    Runtime rt = Runtime.getRuntime();
+    for (int i = 0; i < 3; i++) { System.gc(); }
+    return rt.totalMemory() - rt.freeMemory();
+  }
+  
+  private static String _mb(long bytes) { return String.format("%.1f MB", bytes / (1024.0 * 1024.0)); }
+  
+  /** Benchmark: a script of the given number of statements (default 12,000) is parsed, checked by
+    * StatementChecker, and run by StatementEvaluator (which drives ExpressionEvaluator).  Prints the heap
+    * retained by the parsed and the checked tree, then the mean checking and evaluation times over
+    * TIMED_ROUNDS rounds that follow WARMUP_ROUNDS untimed ones.
+    */
+  public static void main(String[] args) {
+    int statements = (args.length > 0) ? Integer.parseInt(args[0]) : 12000;
+    StringBuilder sb = new StringBuilder("long total = 0;\n");
+    for (int i = 0; i < statements / 4; i++) {
+      sb.append("{ int a = ").append(i).append("; a = a * 3 + (a % 7); ");
+      sb.append("String s = \"x\" + a + Math.max(a, 5); total += s.length() + (a > 100 ? 1 : 0); }\n");
+    }
+    String code = sb.toString();
+    Options opt = Options.DEFAULT;
+    TypeContext ctx = new ImportContext(NodeTest.class.getClassLoader(), opt);
+    
+    long base = _usedHeap();
+    List<Node> tree = _parse(code);
+    long parsed = _usedHeap();
+    new StatementChecker(ctx, opt).checkList(tree);
+    long checked = _usedHeap();
+    System.out.println(statements + " statements: parsed tree " + _mb(parsed - base) + ", checked tree " +
+                       _mb(checked - base) + " (" + tree.size() + " top-level nodes)");
+    tree = null;
+    
+    long checkTime = 0;
+    long evalTime = 0;
+    for (int round = 0; round < WARMUP_ROUNDS + TIMED_ROUNDS; round++) {
+      List<Node> t = _parse(code);
+      long start = System.nanoTime();
+      new StatementChecker(ctx, opt).checkList(t);
+      long mid = System.nanoTime();
+      new StatementEvaluator(RuntimeBindings.EMPTY, opt).evaluateSequence(t);
+      long end = System.nanoTime();
+      if (round >= WARMUP_ROUNDS) { checkTime += mid - start; evalTime += end - mid; }
+    }
+    System.out.println("check: " + checkTime / TIMED_ROUNDS / 1000000 + " ms, evaluate: " +
+                       evalTime / TIMED_ROUNDS / 1000000 + " ms");
+  }
+  
+}
@@ -94,4 +94,36 @@ public class JExprParserTest extends TestCase {
                    lf(sf.toString()));
     }
   }
+  
+  /** Parsers in different threads each attribute their nodes to their own file. */
+  public void testConcurrentParsersKeepTheirFiles() throws Throwable {
+    final File[] testFiles = new File("testFiles").listFiles(new FileFilter() {
+      public boolean accept(File pathName) {
+        return pathName.getAbsolutePath().endsWith(".test");
+      }
+    });
+    assertTrue(testFiles.length >= 2);
+    
+    final Throwable[] failure = new Throwable[1];
+    Thread[] threads = new Thread[testFiles.length];
+    for (int i = 0; i < threads.length; i++) {
+      final File currFile = testFiles[i];
+      threads[i] = new Thread() {
+        public void run() {
+          try {
+            for (int round = 0; round < 5; round++) {
+              SourceFile sf = new JExprParser(currFile).SourceFile();
+              for (TypeDefBase td : sf.getTypes()) {
+                assertEquals("Wrong file for " + td.getName().getText(), currFile, td.getSourceInfo().getFile());
+              }
+            }
+          }
+          catch (Throwable t) { synchronized (failure) { if (failure[0] == null) failure[0] = t; } }
+        }
+      };
+    }
+    for (Thread t : threads) { t.start(); }
+    for (Thread t : threads) { t.join(); }
+    if (failure[0] != null) throw failure[0];
+  }
 }
@@ -38,7 +38,15 @@ package edu.rice.cs.javalanglevels;
 
 import java.lang.reflect.Modifier;
 import java.io.*;
+import java.net.URL;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
 
 import org.objectweb.asm.*;
 
@@ -88,6 +96,9 @@ public class LanguageLevelConverter {
   public static final Hashtable<SymbolData, LanguageLevelVisitor> _newSDs = 
     new Hashtable<SymbolData, LanguageLevelVisitor>();
   
+  /** The number of worker threads that parse files; tests may change it to use the worker pool on any machine. */
+  static int _parserThreads = Runtime.getRuntime().availableProcessors();
+  
   /**Holds any parse exceptions that are encountered*/
   private LinkedList<JExprParseException> _parseExceptions = new LinkedList<JExprParseException>();
   
@@ -119,6 +130,9 @@ public class LanguageLevelConverter {
     assert SymbolData.INT_TYPE.isAssignableTo(objectSD, true);
   }
   
+  /** Tracks the jars on the search path, and caches the signatures of the library classes they define. */
+  private static final LibrarySymbolCache LIBRARY_CACHE = new LibrarySymbolCache();
+  
     /** We'll use this class loader to look up resources (*not* to load classes) */
   private static final Thunk<ClassLoader> RESOURCES = new Thunk<ClassLoader>() {
     private Options _cachedOptions = null;
@@ -129,6 +143,10 @@ public class LanguageLevelConverter {
         Iterable<File> searchPath = IterUtil.<File>compose(LanguageLevelConverter.OPT.bootClassPath(),
                                                      LanguageLevelConverter.OPT.classPath());
         _cachedResult = new PathClassLoader(EmptyClassLoader.INSTANCE, searchPath);
+        // Library symbols read from the old path may no longer be the ones the new path defines
+        if (! LIBRARY_CACHE.update(searchPath, LanguageLevelConverter.OPT.symbolCacheDir())) {
+          symbolTable.clearLibrary();
+        }
       }
       return _cachedResult;
     }
@@ -169,19 +187,27 @@ public class LanguageLevelConverter {
     _log.log("***** _classFile2SymbolData(" + qualifiedClassName + ", " + programRoot + ") called");
     
     ClassReader reader = null;
+    File jar = null; // the jar defining the class, if any; such classes belong to the library level of the table
+    LibrarySymbolCache.ClassSignature cached = null;
     try {
       String fileName = qualifiedClassName.replace('.', '/') + ".class";
       _log.log("***** reading class file: " + fileName);
-      InputStream stream = RESOURCES.value().getResourceAsStream(fileName);
-      if (stream == null && programRoot != null) {
+      URL url = RESOURCES.value().getResource(fileName);
+      InputStream stream = null;
+      if (url != null) {
+        jar = LibrarySymbolCache.jarFile(url);
+        if (jar != null) { cached = LIBRARY_CACHE.lookup(jar, qualifiedClassName); }
+        if (cached == null) { stream = url.openStream(); }
+      }
+      else if (programRoot != null) {
         stream = PathClassLoader.getResourceInPathAsStream(fileName, new File(programRoot));
       }
-      if (stream == null) { 
+      if (stream == null && cached == null) { 
         _log.log("***** class file was empty! *****");
         return null; 
       }
       // Let IOUtil handle the stream here, because it closes it when it's done, unlike ASM.
-      reader = new ClassReader(IOUtil.toByteArray(stream));
+      if (cached == null) { reader = new ClassReader(IOUtil.toByteArray(stream)); }
     }
     catch (IOException e) { return null; }
     
@@ -194,9 +220,10 @@ public class LanguageLevelConverter {
     
     if (sdLookup == null)  { // create a continuation for sd
       sd = new SymbolData(qualifiedClassName); 
-      LanguageLevelConverter.symbolTable.put(qualifiedClassName, sd);
     }
     else { sd = sdLookup; }
+    if (jar != null) { LanguageLevelConverter.symbolTable.putLibrary(qualifiedClassName, sd); }
+    else if (sdLookup == null) { LanguageLevelConverter.symbolTable.put(qualifiedClassName, sd); }
     
     assert LanguageLevelConverter.symbolTable.contains(sd);
     
@@ -301,7 +328,11 @@ public class LanguageLevelConverter {
       
     };
     _log.log("***** Loading member signatures for file system class " + qualifiedClassName + " and all of its unloaded supertypes");
-    reader.accept(extractData, ClassReader.SKIP_CODE);
+    if (cached != null) { cached.replay(extractData); }
+    else if (jar != null) {
+      reader.accept(LIBRARY_CACHE.recorder(jar, qualifiedClassName, extractData), ClassReader.SKIP_CODE);
+    }
+    else { reader.accept(extractData, ClassReader.SKIP_CODE); }
 //    System.err.println("####### Finished loading " + qualifiedClassName);
     
     // Remove the class from the list of continuations to resolve.
@@ -391,8 +422,17 @@ public class LanguageLevelConverter {
     OPT = options;
 //    System.err.println("Options = " + options);
     assert symbolTable != null;
-    symbolTable.clear();
+    // Symbols for library classes are kept unless the search path has changed (see RESOURCES)
+    symbolTable.clearProject();
+    RESOURCES.value();
     _newSDs.clear();
+    try { return _convert(files, sourceToTopLevelClassMap); }
+    finally { LIBRARY_CACHE.flush(); }
+  }
+  
+  /** The body of {@link #convert(File[], Options, Map)}, after the symbol table has been reset. */
+  private Pair<LinkedList<JExprParseException>, LinkedList<Pair<String, JExpressionIF>>>
+    _convert(File[] files, Map<File,Set<String>> sourceToTopLevelClassMap) {
     
     /**initialize so we don't get null pointer exception*/
     // We need a LinkedList for errors to be shared by the visitors to each file.
@@ -445,51 +485,45 @@ public class LanguageLevelConverter {
     /* Maintains the list of Full Java files, which are parsed for symbols and checked for gross errors. */
     LinkedList<File> javaFiles = new LinkedList<File>();
     
+    /* Parsing is independent for each file, so all files are parsed concurrently up front.  The passes below update 
+     * the static symbol table and run sequentially in the order of files. */
+    List<Future<SourceFile>> parsed = _parseAll(files);
+    
     /** First pass: classfication and conformance checking */
-    for (File f : files) {    
+    for (int i = 0; i < files.length; i++) {
+      File f = files[i];
       try {
 //        if (filesNotToCheck.contains(f)) continue;  // Detects equal File objects
         
-        // Check for a null file
-        BufferedReader tempBr = new BufferedReader(new FileReader(f));
-        String firstLine = tempBr.readLine();
-        tempBr.close();
-        if (firstLine == null) continue;
+        SourceFile sf;
+        try { sf = _await(parsed.get(i)); }
+        catch (ParseException pe) {
+          // If there is a ParseException, go to next file.
+          _addParseException(pe);
+          _log.log("GENERATED (non-Parse) exception in parsing file " + f);
+          continue;
+        }
+        if (sf == null) continue;  // an empty file
         
         if (isAdvancedFile(f))  advanced.addLast(f);
         else if (isFullJavaFile(f)) javaFiles.addLast(f);
         
         if (isJavaFile(f)) {  /* a .dj0, .dj1, .dj2,, .dj, or .java file; all but .dj and .java are legacy */
-          System.out.flush();
-          SourceFile sf = null;
-          JExprParser jep = new JExprParser(f);
-          try { 
-            _log.log("Parsing " + f);
-            sf = jep.SourceFile();  // Does the SourceFile method parse the file f embedded in jep?  NO!
-            // Parse the classes in sf
-            final Set<String> topLevelClasses = new HashSet<String>();
-            final SourceFile fsf = sf;
-            for (TypeDefBase t: sf.getTypes()) {
-              t.visit(new JExpressionIFAbstractVisitor<Void>() {
-                public Void forClassDef(ClassDef that) {
-                  String className = that.getName().getText();
-                  _log.log("Class '" + className + "' found in file " + fsf);
-                  topLevelClasses.add(className); 
-                  return null; 
-                }
-                public Void defaultCase(JExpressionIF that) { return null; }
-              });
-            }
-            sourceToTopLevelClassMap.put(f, topLevelClasses);
-            _log.log("Completed parsing " + f);
-          } 
-          catch (ParseException pe) {
-            // If there is a ParseException, go to next file.
-            _addParseException(pe);
-            _log.log("GENERATED (non-Parse) exception in parsing file " + sf);
-            continue;
+          // Record the top-level classes in sf
+          final Set<String> topLevelClasses = new HashSet<String>();
+          final SourceFile fsf = sf;
+          for (TypeDefBase t: sf.getTypes()) {
+            t.visit(new JExpressionIFAbstractVisitor<Void>() {
+              public Void forClassDef(ClassDef that) {
+                String className = that.getName().getText();
+                _log.log("Class '" + className + "' found in file " + fsf);
+                topLevelClasses.add(className); 
+                return null; 
+              }
+              public Void defaultCase(JExpressionIF that) { return null; }
+            });
           }
-          catch (Exception pe) { throw new UnexpectedException(pe); }  // catch any other Exceptions thrown in parsing
+          sourceToTopLevelClassMap.put(f, topLevelClasses);
           
           LinkedList<String> importedPackageBase = new LinkedList<String>();
           importedPackageBase.add("java.lang");
@@ -598,6 +632,11 @@ public class LanguageLevelConverter {
         SourceFile sf = triple.getSecond();
         File f = triple.getThird();
         
+        if (OPT.skipUpToDate() && _isUpToDate(f)) {
+          _log.log("Skipping up-to-date file " + f);
+          continue;
+        }
+        
         if (isAdvancedFile(f)) { toAugment.addLast(triple); }
         else if (isLanguageLevelFile(f)) {
           // This is a hack to get around the following problem.  Basically, when we autobox in isAssignableTo in 
@@ -737,6 +776,85 @@ public class LanguageLevelConverter {
       LinkedList<Pair<String, JExpressionIF>>>(_parseExceptions, _visitorErrors);
   }
   
+  /** Starts parsing the given files on a pool of worker threads.  Each JExprParser has its own state, and the trees 
+    * it builds are not shared until they are handed to the (sequential) visitor passes.
+    * @return for each file, in order, the parsed file, or null if the file is empty or not a Java-like file
+    */
+  private static List<Future<SourceFile>> _parseAll(File[] files) {
+    List<Future<SourceFile>> result = new ArrayList<Future<SourceFile>>(files.length);
+    int threads = Math.min(files.length, _parserThreads);
+    if (threads <= 1) {
+      for (final File f : files) {
+        FutureTask<SourceFile> task = new FutureTask<SourceFile>(new Callable<SourceFile>() {
+          public SourceFile call() throws Exception { return _parse(f); }
+        });
+        task.run();
+        result.add(task);
+      }
+      return result;
+    }
+    
+    ExecutorService pool = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+      public Thread newThread(Runnable r) {
+        Thread t = new Thread(r, "Language Level Parser");
+        t.setDaemon(true);
+        return t;
+      }
+    });
+    try {
+      for (final File f : files) {
+        result.add(pool.submit(new Callable<SourceFile>() {
+          public SourceFile call() throws Exception { return _parse(f); }
+        }));
+      }
+    }
+    finally { pool.shutdown(); }  // the submitted tasks still run
+    return result;
+  }
+  
+  /** Parses a single file.
+    * @return the parsed file, or null if the file is empty or not a Java-like file
+    */
+  private static SourceFile _parse(File f) throws IOException, ParseException {
+    // Check for a null file
+    BufferedReader tempBr = new BufferedReader(new FileReader(f));
+    String firstLine;
+    try { firstLine = tempBr.readLine(); }
+    finally { tempBr.close(); }
+    if (firstLine == null || ! isJavaFile(f)) return null;
+    
+    _log.log("Parsing " + f);
+    SourceFile sf = new JExprParser(f).SourceFile();
+    _log.log("Completed parsing " + f);
+    return sf;
+  }
+  
+  /** Waits for the result of {@link #_parse}, rethrowing the exception it threw (if any). */
+  private static SourceFile _await(Future<SourceFile> parsed) throws IOException, ParseException {
+    boolean interrupted = false;
+    try {
+      while (true) {
+        try { return parsed.get(); }
+        catch (InterruptedException e) { interrupted = true; }
+        catch (ExecutionException e) {
+          Throwable cause = e.getCause();
+          if (cause instanceof IOException) throw (IOException) cause;
+          if (cause instanceof ParseException) throw (ParseException) cause;
+          if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+          if (cause instanceof Error) throw (Error) cause;
+          throw new UnexpectedException(cause);  // catch any other Exceptions thrown in parsing
+        }
+      }
+    }
+    finally { if (interrupted) Thread.currentThread().interrupt(); }
+  }
+  
+  /** @return true if the .java file generated from f is newer than f */
+  private static boolean _isUpToDate(File f) {
+    File javaFile = getJavaForLLFile(f);
+    return javaFile.lastModified() > f.lastModified();
+  }
+  
   /** If a file name ends with .dj0, it is an Elementary File*/
   public static boolean isElementaryFile(File f) { return f.getPath().endsWith(".dj0"); } 
   /** If a file name ends with .dj1, it is an Intermediate File*/
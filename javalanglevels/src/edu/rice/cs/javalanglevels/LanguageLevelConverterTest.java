@@ -0,0 +1,172 @@
+/*BEGIN_COPYRIGHT_BLOCK
+ *
+ * Copyright (c) 2001-2010, JavaPLT group at Rice University (drjava@rice.edu)
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *    * Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the names of DrJava, the JavaPLT group, Rice University, nor the
+ *      names of its contributors may be used to endorse or promote products
+ *      derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * This software is Open Source Initiative approved Open Source Software.
+ * Open Source Initative Approved is a trademark of the Open Source Initiative.
+ * 
+ * This file is part of DrJava.  Download the current version of this project
+ * from http://www.drjava.org/ or http://sourceforge.net/projects/drjava/
+ * 
+ * END_COPYRIGHT_BLOCK*/
+
+package edu.rice.cs.javalanglevels;
+
+import java.io.*;
+import java.util.*;
+
+import edu.rice.cs.javalanglevels.tree.*;
+import junit.framework.TestCase;
+import edu.rice.cs.plt.io.IOUtil;
+import edu.rice.cs.plt.iter.*;
+import edu.rice.cs.plt.reflect.JavaVersion;
+
+import static edu.rice.cs.javalanglevels.ElementaryLevelTest.lf;
+
+/** Tests the conversion of several files at once, which are parsed on the worker pool of the converter, and the 
+  * skipping of files whose generated .java file is up to date. */
+public class LanguageLevelConverterTest extends TestCase {
+  
+  private int _savedThreads;
+  private File _tempDir;
+  
+  public void setUp() throws IOException {
+    // Use the worker pool even on a single processor
+    _savedThreads = LanguageLevelConverter._parserThreads;
+    LanguageLevelConverter._parserThreads = 4;
+    _tempDir = IOUtil.createAndMarkTempDirectory("llconverter", "");
+  }
+  
+  public void tearDown() {
+    LanguageLevelConverter._parserThreads = _savedThreads;
+    IOUtil.deleteRecursively(_tempDir);
+  }
+  
+  private File _write(String name, String text) throws IOException {
+    File f = new File(_tempDir, name);
+    IOUtil.writeStringToFile(f, text);
+    return f;
+  }
+  
+  private static Pair<LinkedList<JExprParseException>, LinkedList<Pair<String, JExpressionIF>>> 
+    _convert(boolean skipUpToDate, File... files) {
+    Options options = new Options(JavaVersion.JAVA_8, IterUtil.make(new File("lib/buildlib/junit.jar")), 
+                                  IOUtil.parsePath(System.getProperty("sun.boot.class.path", "")), skipUpToDate);
+    return new LanguageLevelConverter().convert(files, options);
+  }
+  
+  /** The files of IntermediateLevelTest, which refer to each other, convert as when parsed one at a time. */
+  public void testConcurrentConversion() throws IOException {
+    File directory = new File("testFiles/forIntermediateLevelTest");
+    File[] testFiles = directory.listFiles(new FileFilter() {
+      public boolean accept(File pathName) { return pathName.getAbsolutePath().endsWith(".dj1"); }
+    });
+    
+    for (int round = 0; round < 3; round++) {
+      Pair<LinkedList<JExprParseException>, LinkedList<Pair<String, JExpressionIF>>> result = 
+        _convert(false, testFiles);
+      assertEquals("should be no parse exceptions", new LinkedList<JExprParseException>(), result.getFirst());
+      assertEquals("should be no visitor exceptions", new LinkedList<Pair<String, JExpressionIF>>(), 
+                   result.getSecond());
+      
+      for (File f : testFiles) {
+        String fileName = f.getAbsolutePath();
+        fileName = fileName.substring(0, fileName.length() - 4);
+        File correctFile = new File(fileName + ".expected");
+        if (correctFile.exists()) {
+          assertEquals("File " + f.getName() + " should have been augmented correctly.",
+                       lf(IOUtil.toString(correctFile)), lf(IOUtil.toString(new File(fileName + ".java"))));
+        }
+      }
+    }
+  }
+  
+  /** Parse exceptions and unreadable files are reported in the order of the files, whichever thread parses them. */
+  public void testParseErrorsInFileOrder() throws IOException {
+    File bad1 = _write("Bad1.dj", "class Bad1 { int m( { return 1; } }\n");
+    File good = _write("Good.dj", "class Good {\n  int m() { return 1; }\n}\n");
+    File bad2 = _write("Bad2.dj", "class Bad2 { int m() { return 1 } }\n");
+    File missing = new File(_tempDir, "Missing.dj");
+    
+    for (File[] files : Arrays.asList(new File[] { bad1, good, missing, bad2 }, 
+                                      new File[] { bad2, missing, good, bad1 })) {
+      Pair<LinkedList<JExprParseException>, LinkedList<Pair<String, JExpressionIF>>> result = _convert(false, files);
+      List<File> parseErrorFiles = new ArrayList<File>();
+      for (JExprParseException pe : result.getFirst()) { parseErrorFiles.add(pe.getFile().getCanonicalFile()); }
+      List<File> badFiles = new ArrayList<File>();
+      for (File f : files) { if (f != good && f != missing) badFiles.add(f.getCanonicalFile()); }
+      assertEquals("parse exceptions should follow the order of the files", badFiles, parseErrorFiles);
+      
+      assertEquals("the unreadable file should be reported", 1, result.getSecond().size());
+      assertTrue("the unreadable file should be reported", 
+                 result.getSecond().getFirst().getFirst().contains(missing.getName()));
+      assertFalse("nothing should be augmented after an error", new File(_tempDir, "Good.java").exists());
+    }
+  }
+  
+  /** Errors found while resolving the references of the files are reported in the order of the files. */
+  public void testVisitorErrorsInFileOrder() throws IOException {
+    File e1 = _write("E1.dj", "class E1 extends Undefined1 { }\n");
+    File e2 = _write("E2.dj", "class E2 extends Undefined2 { }\n");
+    File good = _write("Good.dj", "class Good extends E1 { }\n");
+    
+    for (File[] files : Arrays.asList(new File[] { e1, good, e2 }, new File[] { e2, good, e1 })) {
+      LinkedList<Pair<String, JExpressionIF>> errors = _convert(false, files).getSecond();
+      int first = _indexOf(errors, (files[0] == e1) ? "Undefined1" : "Undefined2");
+      int second = _indexOf(errors, (files[0] == e1) ? "Undefined2" : "Undefined1");
+      assertTrue("errors should be reported for both files: " + errors, first >= 0 && second >= 0);
+      assertTrue("errors should follow the order of the files: " + errors, first < second);
+    }
+  }
+  
+  private static int _indexOf(List<Pair<String, JExpressionIF>> errors, String text) {
+    for (int i = 0; i < errors.size(); i++) { if (errors.get(i).getFirst().contains(text)) return i; }
+    return -1;
+  }
+  
+  /** With skipUpToDate, a file whose generated .java file is newer is not converted again. */
+  public void testSkipUpToDate() throws IOException {
+    File source = _write("Foo.dj", "class Foo {\n  int m() { return 1; }\n}\n");
+    File javaFile = new File(_tempDir, "Foo.java");
+    assertTrue(_convert(false, source).getSecond().isEmpty());
+    String generated = IOUtil.toString(javaFile);
+    
+    String edited = "class Foo { int m() { return 2; } }\n";
+    IOUtil.writeStringToFile(javaFile, edited);
+    javaFile.setLastModified(source.lastModified() + 10000);
+    assertTrue(_convert(true, source).getSecond().isEmpty());
+    assertEquals("an up-to-date file should be skipped", edited, IOUtil.toString(javaFile));
+    
+    assertTrue(_convert(false, source).getSecond().isEmpty());
+    assertEquals("without skipUpToDate, the file should be converted", generated, IOUtil.toString(javaFile));
+    
+    IOUtil.writeStringToFile(javaFile, edited);
+    javaFile.setLastModified(source.lastModified() - 10000);
+    assertTrue(_convert(true, source).getSecond().isEmpty());
+    assertEquals("an out-of-date file should be converted", generated, IOUtil.toString(javaFile));
+  }
+}
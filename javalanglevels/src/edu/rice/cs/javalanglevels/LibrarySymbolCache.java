@@ -0,0 +1,343 @@
+/*BEGIN_COPYRIGHT_BLOCK
+ *
+ * Copyright (c) 2001-2010, JavaPLT group at Rice University (drjava@rice.edu)
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *    * Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the names of DrJava, the JavaPLT group, Rice University, nor the
+ *      names of its contributors may be used to endorse or promote products
+ *      derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * This software is Open Source Initiative approved Open Source Software.
+ * Open Source Initative Approved is a trademark of the Open Source Initiative.
+ * 
+ * This file is part of DrJava.  Download the current version of this project
+ * from http://www.drjava.org/ or http://sourceforge.net/projects/drjava/
+ * 
+ * END_COPYRIGHT_BLOCK*/
+
+package edu.rice.cs.javalanglevels;
+
+import java.io.*;
+import java.net.JarURLConnection;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.*;
+
+import org.objectweb.asm.*;
+
+import edu.rice.cs.javalanglevels.util.Log;
+import edu.rice.cs.javalanglevels.util.UnexpectedException;
+import edu.rice.cs.plt.io.IOUtil;
+
+/** Keeps track of the library class path (the jars from which {@link Symboltable} library symbols are read), and
+  * caches the member signatures of library classes on disk, so that a new session can build their SymbolDatas
+  * without opening and parsing the class files.
+  * <p>
+  * A class's signature is the sequence of ASM visitor calls that {@link LanguageLevelConverter} uses to build a
+  * SymbolData: the class header, followed by its fields and methods.  Signatures are recorded as a class file is
+  * read (see {@link #recorder}) and replayed in later sessions (see {@link #lookup}).  There is one cache file per
+  * jar; it is keyed by the jar's length and modification time and by the JDK version, and it is ignored (and
+  * eventually rewritten) if any of these change.</p>
+  */
+class LibrarySymbolCache {
+  
+  private static final Log _log = new Log("LibrarySymbolCache.txt", false);
+  
+  private static final int MAGIC = 0x4c4c5359; // "LLSY"
+  private static final int FORMAT_VERSION = 1;
+  
+  private static final byte FIELD = 'F';
+  private static final byte METHOD = 'M';
+  private static final byte END = 'E';
+  
+  /** The library search path most recently passed to {@link #update}, or {@code null}. */
+  private List<File> _path = null;
+  /** Length and modification time of each jar in {@code _path}. */
+  private Map<File, String> _stamps = new HashMap<File, String>();
+  /** Directory for cache files, or {@code null} if signatures are not cached on disk. */
+  private File _dir = null;
+  private final Map<File, JarCache> _jars = new HashMap<File, JarCache>();
+  
+  /** Set the library search path and the cache directory (which may be {@code null}), to be used for the following
+    * lookups.
+    * @return  {@code true} iff library symbols read using the previous search path are still valid: the previous
+    *          path is a prefix of {@code path} (so every class resolves to the same class file) and none of the
+    *          previous path's jars have changed.
+    */
+  public boolean update(Iterable<? extends File> path, File dir) {
+    List<File> newPath = new ArrayList<File>();
+    for (File f : path) { newPath.add(f); }
+    Map<File, String> newStamps = new HashMap<File, String>();
+    for (File f : newPath) {
+      if (f.isFile()) { newStamps.put(f, _stamp(f)); }
+    }
+    
+    boolean valid = _path != null && _path.size() <= newPath.size() && _path.equals(newPath.subList(0, _path.size()));
+    if (valid) {
+      for (File f : _path) {
+        String stamp = _stamps.get(f);
+        if (stamp != null && ! stamp.equals(newStamps.get(f))) { valid = false; break; }
+      }
+    }
+    
+    // Discard the signatures of changed jars, and all signatures if the directory changed
+    boolean sameDir = (dir == null) ? (_dir == null) : dir.equals(_dir);
+    Iterator<Map.Entry<File, JarCache>> jarIter = _jars.entrySet().iterator();
+    while (jarIter.hasNext()) {
+      Map.Entry<File, JarCache> e = jarIter.next();
+      if (! sameDir || ! e.getValue()._stamp.equals(newStamps.get(e.getKey()))) { jarIter.remove(); }
+    }
+    
+    _path = newPath;
+    _stamps = newStamps;
+    _dir = dir;
+    _log.log("update(" + newPath + ", " + dir + "): library symbols valid = " + valid);
+    return valid;
+  }
+  
+  /** Get the cached signature of the given class, which is defined in the given jar, or {@code null} if it is not
+    * available.
+    */
+  public ClassSignature lookup(File jar, String className) {
+    JarCache cache = _jarCache(jar);
+    if (cache == null) { return null; }
+    byte[] bytes = cache._entries.get(className);
+    return (bytes == null) ? null : new ClassSignature(bytes);
+  }
+  
+  /** Wrap {@code delegate} so that the signature it is given is recorded for the given class, which is defined in the
+    * given jar.  The result is {@code delegate} itself if signatures are not cached on disk.
+    */
+  public ClassVisitor recorder(File jar, String className, ClassVisitor delegate) {
+    JarCache cache = _jarCache(jar);
+    if (cache == null) { return delegate; }
+    else { return new Recorder(cache, className, delegate); }
+  }
+  
+  /** Write out the cache files of jars for which new signatures have been recorded.  Failures are ignored. */
+  public void flush() {
+    for (JarCache cache : _jars.values()) {
+      if (cache._modified) {
+        try { cache.write(); }
+        catch (IOException e) { _log.log("Can't write " + cache._file + ": " + e); }
+        cache._modified = false;
+      }
+    }
+  }
+  
+  /** The jar file containing the given resource, or {@code null} if it is not a resource in a local jar. */
+  public static File jarFile(URL resource) {
+    if (! resource.getProtocol().equals("jar")) { return null; }
+    try {
+      URL jarURL = ((JarURLConnection) resource.openConnection()).getJarFileURL();
+      if (! jarURL.getProtocol().equals("file")) { return null; }
+      return new File(jarURL.toURI());
+    }
+    catch (IOException e) { return null; }
+    catch (URISyntaxException e) { return null; }
+    catch (IllegalArgumentException e) { return null; }
+  }
+  
+  private static String _stamp(File jar) { return jar.length() + "/" + jar.lastModified(); }
+  
+  /** The cache for the given jar, loaded on first use; {@code null} if there is no cache directory, or if the jar is
+    * not on the current path. */
+  private JarCache _jarCache(File jar) {
+    if (_dir == null) { return null; }
+    JarCache result = _jars.get(jar);
+    if (result == null) {
+      String stamp = _stamps.get(jar);
+      if (stamp == null) { return null; }
+      result = new JarCache(jar, stamp);
+      _jars.put(jar, result);
+    }
+    return result;
+  }
+  
+  /** The signatures of the classes in one jar. */
+  private class JarCache {
+    private final String _stamp;
+    private final String _key;
+    private final File _file;
+    private final Map<String, byte[]> _entries = new HashMap<String, byte[]>();
+    private boolean _modified = false;
+    
+    public JarCache(File jar, String stamp) {
+      _stamp = stamp;
+      _key = jar.getAbsolutePath() + "|" + stamp + "|" + System.getProperty("java.version");
+      String jarPath = jar.getAbsolutePath();
+      _file = new File(_dir, jar.getName() + "-" + Integer.toHexString(jarPath.hashCode()) + ".llsym");
+      try { _read(); }
+      catch (IOException e) {
+        _log.log("Can't read " + _file + ": " + e);
+        _entries.clear();
+      }
+    }
+    
+    public void add(String className, byte[] signature) {
+      _entries.put(className, signature);
+      _modified = true;
+    }
+    
+    /** Read the file, if it exists and has the same key. */
+    private void _read() throws IOException {
+      if (! _file.isFile()) { return; }
+      DataInputStream in = new DataInputStream(new ByteArrayInputStream(IOUtil.toByteArray(_file)));
+      if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION || ! in.readUTF().equals(_key)) {
+        _log.log("Ignoring stale cache " + _file);
+        return;
+      }
+      int count = in.readInt();
+      for (int i = 0; i < count; i++) {
+        String className = in.readUTF();
+        byte[] signature = new byte[in.readInt()];
+        in.readFully(signature);
+        _entries.put(className, signature);
+      }
+      _log.log("Read " + count + " signatures from " + _file);
+    }
+    
+    /** Write all entries to a temporary file, and then move it into place. */
+    public void write() throws IOException {
+      IOUtil.attemptMkdirs(_dir);
+      File temp = new File(_dir, _file.getName() + ".tmp");
+      DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+      try {
+        out.writeInt(MAGIC);
+        out.writeInt(FORMAT_VERSION);
+        out.writeUTF(_key);
+        out.writeInt(_entries.size());
+        for (Map.Entry<String, byte[]> e : _entries.entrySet()) {
+          out.writeUTF(e.getKey());
+          out.writeInt(e.getValue().length);
+          out.write(e.getValue());
+        }
+      }
+      finally { out.close(); }
+      if (! temp.renameTo(_file)) {
+        // Windows won't rename over an existing file
+        _file.delete();
+        if (! temp.renameTo(_file)) { throw new IOException("Can't rename " + temp); }
+      }
+      _log.log("Wrote " + _entries.size() + " signatures to " + _file);
+    }
+  }
+  
+  /** A recorded class signature. */
+  public static class ClassSignature {
+    private final byte[] _bytes;
+    private ClassSignature(byte[] bytes) { _bytes = bytes; }
+    
+    /** Make the calls to {@code v} that a ClassReader would make when reading the class with
+      * {@code ClassReader.SKIP_CODE}, omitting attributes, annotations, and generic signatures. */
+    public void replay(ClassVisitor v) {
+      try {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(_bytes));
+        int access = in.readInt();
+        String name = in.readUTF();
+        String sup = in.readBoolean() ? in.readUTF() : null;
+        v.visit(in.readInt(), access, name, null, sup, _readStrings(in));
+        for (byte tag = in.readByte(); tag != END; tag = in.readByte()) {
+          if (tag == FIELD) { v.visitField(in.readInt(), in.readUTF(), in.readUTF(), null, null); }
+          else if (tag == METHOD) { v.visitMethod(in.readInt(), in.readUTF(), in.readUTF(), null, _readStrings(in)); }
+          else { throw new IOException("Unrecognized tag " + tag); }
+        }
+        v.visitEnd();
+      }
+      catch (IOException e) { throw new UnexpectedException(e); }
+    }
+    
+    private static String[] _readStrings(DataInputStream in) throws IOException {
+      int size = in.readInt();
+      if (size < 0) { return null; }
+      String[] result = new String[size];
+      for (int i = 0; i < size; i++) { result[i] = in.readUTF(); }
+      return result;
+    }
+  }
+  
+  /** Records the signature passed to a delegate ClassVisitor. */
+  private static class Recorder extends ClassVisitor {
+    private final JarCache _cache;
+    private final String _className;
+    private final ByteArrayOutputStream _bytes = new ByteArrayOutputStream();
+    private final DataOutputStream _out = new DataOutputStream(_bytes);
+    
+    public Recorder(JarCache cache, String className, ClassVisitor delegate) {
+      super(Opcodes.ASM4, delegate);
+      _cache = cache;
+      _className = className;
+    }
+    
+    public void visit(int version, int access, String name, String sig, String sup, String[] interfaces) {
+      try {
+        _out.writeInt(access);
+        _out.writeUTF(name);
+        _out.writeBoolean(sup != null);
+        if (sup != null) { _out.writeUTF(sup); }
+        _out.writeInt(version);
+        _writeStrings(interfaces);
+      }
+      catch (IOException e) { throw new UnexpectedException(e); }
+      super.visit(version, access, name, sig, sup, interfaces);
+    }
+    
+    public FieldVisitor visitField(int access, String name, String desc, String sig, Object value) {
+      try {
+        _out.writeByte(FIELD);
+        _out.writeInt(access);
+        _out.writeUTF(name);
+        _out.writeUTF(desc);
+      }
+      catch (IOException e) { throw new UnexpectedException(e); }
+      return super.visitField(access, name, desc, sig, value);
+    }
+    
+    public MethodVisitor visitMethod(int access, String name, String desc, String sig, String[] exceptions) {
+      // record before delegating: the delegate may modify exceptions
+      try {
+        _out.writeByte(METHOD);
+        _out.writeInt(access);
+        _out.writeUTF(name);
+        _out.writeUTF(desc);
+        _writeStrings(exceptions);
+      }
+      catch (IOException e) { throw new UnexpectedException(e); }
+      return super.visitMethod(access, name, desc, sig, exceptions);
+    }
+    
+    public void visitEnd() {
+      try { _out.writeByte(END); }
+      catch (IOException e) { throw new UnexpectedException(e); }
+      _cache.add(_className, _bytes.toByteArray());
+      super.visitEnd();
+    }
+    
+    private void _writeStrings(String[] strings) throws IOException {
+      if (strings == null) { _out.writeInt(-1); }
+      else {
+        _out.writeInt(strings.length);
+        for (String s : strings) { _out.writeUTF(s); }
+      }
+    }
+  }
+}
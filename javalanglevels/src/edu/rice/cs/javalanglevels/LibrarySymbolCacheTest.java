@@ -0,0 +1,143 @@
+/*BEGIN_COPYRIGHT_BLOCK
+ *
+ * Copyright (c) 2001-2010, JavaPLT group at Rice University (drjava@rice.edu)
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *    * Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the names of DrJava, the JavaPLT group, Rice University, nor the
+ *      names of its contributors may be used to endorse or promote products
+ *      derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * This software is Open Source Initiative approved Open Source Software.
+ * Open Source Initative Approved is a trademark of the Open Source Initiative.
+ * 
+ * This file is part of DrJava.  Download the current version of this project
+ * from http://www.drjava.org/ or http://sourceforge.net/projects/drjava/
+ * 
+ * END_COPYRIGHT_BLOCK*/
+
+package edu.rice.cs.javalanglevels;
+
+import java.io.*;
+import java.util.*;
+
+import org.objectweb.asm.*;
+
+import junit.framework.TestCase;
+import edu.rice.cs.plt.io.IOUtil;
+
+/** Tests the recording, persistence, and invalidation of library class signatures. */
+public class LibrarySymbolCacheTest extends TestCase {
+  
+  private File _tempDir;
+  private File _jar;
+  private File _cacheDir;
+  
+  public void setUp() throws IOException {
+    _tempDir = IOUtil.createAndMarkTempDirectory("llsymbols", "");
+    File junitJar = LibrarySymbolCache.jarFile(TestCase.class.getResource("TestCase.class"));
+    assertNotNull("junit should be loaded from a jar", junitJar);
+    _jar = new File(_tempDir, "junit.jar");
+    IOUtil.copyFile(junitJar, _jar);
+    _cacheDir = new File(_tempDir, "cache");
+  }
+  
+  public void tearDown() { IOUtil.deleteRecursively(_tempDir); }
+  
+  /** Records the visitor calls made for a class, omitting the parts that are not cached. */
+  private static class Log extends ClassVisitor {
+    public final List<String> calls = new ArrayList<String>();
+    public Log() { super(Opcodes.ASM4); }
+    public void visit(int version, int access, String name, String sig, String sup, String[] interfaces) {
+      calls.add("class " + access + " " + name + " " + sup + " " + Arrays.toString(interfaces));
+    }
+    public FieldVisitor visitField(int access, String name, String desc, String sig, Object value) {
+      calls.add("field " + access + " " + name + " " + desc);
+      return null;
+    }
+    public MethodVisitor visitMethod(int access, String name, String desc, String sig, String[] exceptions) {
+      calls.add("method " + access + " " + name + " " + desc + " " + Arrays.toString(exceptions));
+      // the converter rewrites exception names in place; the recorded signature must not be affected
+      if (exceptions != null) { Arrays.fill(exceptions, "x"); }
+      return null;
+    }
+    public void visitEnd() { calls.add("end"); }
+  }
+  
+  private List<String> _read(LibrarySymbolCache cache) throws IOException {
+    ClassReader reader = new ClassReader(IOUtil.toByteArray(TestCase.class.getResourceAsStream("Assert.class")));
+    Log log = new Log();
+    reader.accept(cache.recorder(_jar, "junit.framework.Assert", log), ClassReader.SKIP_CODE);
+    return log.calls;
+  }
+  
+  private List<String> _replay(LibrarySymbolCache.ClassSignature sig) {
+    Log log = new Log();
+    sig.replay(log);
+    return log.calls;
+  }
+  
+  public void testRoundTrip() throws IOException {
+    LibrarySymbolCache cache = new LibrarySymbolCache();
+    assertFalse(cache.update(Arrays.asList(_jar), _cacheDir));
+    assertNull(cache.lookup(_jar, "junit.framework.Assert"));
+    List<String> expected = _read(cache);
+    assertEquals(expected, _replay(cache.lookup(_jar, "junit.framework.Assert")));
+    cache.flush();
+    
+    // a new session reads the signature from disk
+    LibrarySymbolCache cache2 = new LibrarySymbolCache();
+    assertFalse(cache2.update(Arrays.asList(_jar), _cacheDir));
+    LibrarySymbolCache.ClassSignature sig = cache2.lookup(_jar, "junit.framework.Assert");
+    assertNotNull(sig);
+    assertEquals(expected, _replay(sig));
+    assertNull(cache2.lookup(_jar, "junit.framework.TestCase"));
+  }
+  
+  public void testNoCacheDir() throws IOException {
+    LibrarySymbolCache cache = new LibrarySymbolCache();
+    cache.update(Arrays.asList(_jar), null);
+    _read(cache);
+    assertNull(cache.lookup(_jar, "junit.framework.Assert"));
+  }
+  
+  public void testInvalidation() throws IOException {
+    LibrarySymbolCache cache = new LibrarySymbolCache();
+    cache.update(Arrays.asList(_jar), _cacheDir);
+    _read(cache);
+    cache.flush();
+    
+    // extending the path keeps library symbols; reordering or changing a jar discards them
+    File other = new File(_tempDir, "other.jar");
+    assertTrue(cache.update(Arrays.asList(_jar, other), _cacheDir));
+    assertFalse(cache.update(Arrays.asList(other, _jar), _cacheDir));
+    assertNotNull(cache.lookup(_jar, "junit.framework.Assert"));
+    
+    assertTrue(_jar.setLastModified(_jar.lastModified() - 10000));
+    assertFalse(cache.update(Arrays.asList(_jar), _cacheDir));
+    assertNull(cache.lookup(_jar, "junit.framework.Assert"));
+    
+    // nor is the stale file used by a new session
+    LibrarySymbolCache cache2 = new LibrarySymbolCache();
+    cache2.update(Arrays.asList(_jar), _cacheDir);
+    assertNull(cache2.lookup(_jar, "junit.framework.Assert"));
+  }
+}
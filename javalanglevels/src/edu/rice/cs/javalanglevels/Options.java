@@ -46,6 +46,8 @@ public class Options {
   private final JavaVersion _javaVersion;
   private final Iterable<? extends File> _bootClassPath;
   private final Iterable<? extends File> _classPath;
+  private final boolean _skipUpToDate;
+  private final File _symbolCacheDir;
   
   public static final Options DEFAULT = new Options(JavaVersion.JAVA_8, EmptyIterable.<File>make());
   
@@ -55,12 +57,30 @@ public class Options {
   
   public Options(JavaVersion javaVersion, Iterable<? extends File> classPath,
                  Iterable<? extends File> bootClassPath) {
+    this(javaVersion, classPath, bootClassPath, false);
+  }
+  
+  /** @param skipUpToDate whether to skip type-checking and converting language level files whose generated .java file
+    *        is newer than the language level file */
+  public Options(JavaVersion javaVersion, Iterable<? extends File> classPath,
+                 Iterable<? extends File> bootClassPath, boolean skipUpToDate) {
+    this(javaVersion, classPath, bootClassPath, skipUpToDate, null);
+  }
+  
+  /** @param symbolCacheDir  directory in which to cache the signatures of library classes between sessions, or
+    *        {@code null} if they should not be cached on disk */
+  public Options(JavaVersion javaVersion, Iterable<? extends File> classPath,
+                 Iterable<? extends File> bootClassPath, boolean skipUpToDate, File symbolCacheDir) {
     _javaVersion = javaVersion;
     _classPath = classPath;
     _bootClassPath = bootClassPath;
+    _skipUpToDate = skipUpToDate;
+    _symbolCacheDir = symbolCacheDir;
   }
   
   public JavaVersion javaVersion() { return _javaVersion; }
   public Iterable<? extends File> bootClassPath() { return _bootClassPath; }
   public Iterable<? extends File> classPath() { return _classPath; }
+  public boolean skipUpToDate() { return _skipUpToDate; }
+  public File symbolCacheDir() { return _symbolCacheDir; }
 }
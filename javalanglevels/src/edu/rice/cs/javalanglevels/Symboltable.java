@@ -37,37 +37,64 @@
 package edu.rice.cs.javalanglevels;
 import java.util.*;
 
-/** This class is obselescent.  It now has no function.
-  * This class extends Hashtable so that we can have extra functionality in the put function.
-  * A Symboltable is specifically a Hashtable of Strings to SymbolData.  The put function
-  * checks to see if the specified SymbolData is already in the table.  If so, it simply updates its
-  * fields.
+/** A Symboltable maps fully qualified class names to SymbolDatas.  It has two levels:
+  * <ul>
+  * <li>The project level (the inherited Hashtable) holds symbols for the classes being converted, continuations, and
+  *     anything else put in the table.</li>
+  * <li>The library level holds symbols read from class files in jars (see {@link #putLibrary}).  These survive
+  *     {@link #clearProject}, so a conversion does not have to re-read the class files that the previous conversion
+  *     already read.  Library symbols only refer to other library symbols.</li>
+  * </ul>
+  * Lookups consult the project level first.  The methods that are used by the converter are overridden to consider
+  * both levels; the other Hashtable methods (iteration, in particular) only see the project level.
   */
-
 public class Symboltable extends Hashtable<String, SymbolData> {
   
-//  /** Augments put function of hash table.  If the specified SymbolData is already in
-//    * the table, simply update its fields.  Otherwise, do a normal put operation.
-//    * ALARM: this does not work 
-//    */
-//  public void put(String name, SymbolData sd, SymbolData oldSd) {
-//    if (oldSd != null) {
-//      /**Replace all its fields with those of sd.*/
-//      oldSd.setIsContinuation(sd.isContinuation());
-//      oldSd.setTypeParameters(sd.getTypeParameters());
-//      oldSd.setMethods(sd.getMethods());
-//      oldSd.setSuperClass(sd.getSuperClass());
-//      oldSd.setInterfaces(sd.getInterfaces());
-//      oldSd.setOuterData(sd.getOuterData());
-//      oldSd.setInnerClasses(sd.getInnerClasses());
-//    }
-//    // Enter new symbol in this
-//    super.put(sd.getName(), sd);
-////    return sd;
-//  }
+  private final HashMap<String, SymbolData> _library = new HashMap<String, SymbolData>();
+  
+  public synchronized SymbolData get(Object name) {
+    SymbolData result = super.get(name);
+    return (result == null) ? _library.get(name) : result;
+  }
+  
+  /** Put {@code sd} at the project level, unless it is already the library symbol for {@code name}. */
+  public synchronized SymbolData put(String name, SymbolData sd) {
+    SymbolData librarySD = _library.get(name);
+    if (librarySD == sd) { return librarySD; }
+    else { return super.put(name, sd); }
+  }
+  
+  /** Put {@code sd} at the library level, removing any project-level entry for {@code name}. */
+  public synchronized void putLibrary(String name, SymbolData sd) {
+    super.remove(name);
+    _library.put(name, sd);
+  }
+  
+  /** Whether {@code name} is bound at the library level. */
+  public synchronized boolean isLibrary(String name) { return _library.containsKey(name); }
+  
+  public synchronized boolean containsKey(Object name) { return super.containsKey(name) || _library.containsKey(name); }
+  
+  public synchronized boolean contains(Object sd) { return super.contains(sd) || _library.containsValue(sd); }
+  
+  public boolean containsValue(Object sd) { return contains(sd); }
+  
+  /** Remove {@code name} from both levels. */
+  public synchronized SymbolData remove(Object name) {
+    SymbolData result = super.remove(name);
+    SymbolData librarySD = _library.remove(name);
+    return (result == null) ? librarySD : result;
+  }
+  
+  /** Clear both levels. */
+  public synchronized void clear() {
+    super.clear();
+    _library.clear();
+  }
   
-//  /** Overloaded version of preceding method; oldSd defaults to null. */
-//  public SymbolData put(String name, SymbolData sd) { return put(name, sd, null); }
+  /** Clear the project level, keeping the library level. */
+  public synchronized void clearProject() { super.clear(); }
   
-//  public SymbolData get (String name) { return super.get(name); }
-}
\ No newline at end of file
+  /** Clear the library level, keeping the project level. */
+  public synchronized void clearLibrary() { _library.clear(); }
+}
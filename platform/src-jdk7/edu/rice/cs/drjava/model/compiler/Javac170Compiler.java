@@ -38,8 +38,12 @@ import java.io.*;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Iterator;
 
@@ -50,6 +54,9 @@ import javax.tools.Diagnostic;
 import javax.tools.DiagnosticCollector;
 import javax.tools.StandardJavaFileManager;
 import javax.tools.ToolProvider;
+import com.sun.source.util.JavacTask;
+import com.sun.source.util.TaskEvent;
+import com.sun.source.util.TaskListener;
 
 // DJError class is not in the same package as this
 import edu.rice.cs.drjava.model.DJError;
@@ -62,11 +69,27 @@ import static edu.rice.cs.plt.debug.DebugUtil.error;
 
 /** An implementation of JavacCompiler that supports compiling with the java 1.7.0 or later compiler.  Must be compiled
  *  using javac 1.7.0 or later.
+ *  <p>The compiler and its file manager are kept between compilations.  javac's file manager caches the indexes of the
+ *  jars it opens, so the class path and boot class path are only read once.  The file manager is replaced when the
+ *  class path, the boot class path, or the size or time stamp of one of their jars changes, and when 
+ *  {@link #resetCaches} is called.  Note that the cached jars stay open in the meantime.</p>
  * **TODO** Rename this class as Javac170PlusCompiler.java
  *  @version $Id$
  */
 public class Javac170Compiler extends JavacCompiler { // Javac170FilteringCompiler {
   
+  /** The compiler, created on first use. */
+  private JavaCompiler _compiler = null;
+  
+  /** The file manager shared by all compilations while {@link #_fileManagerKey} does not change. */
+  private StandardJavaFileManager _fileManager = null;
+  
+  /** The class path entries _fileManager has been used with, including the size and time stamp of the jars. */
+  private String _fileManagerKey = null;
+  
+  /** The time in milliseconds spent in each phase of the last compilation. */
+  private volatile Map<String, Long> _lastPhaseTimes = Collections.emptyMap();
+  
   public Javac170Compiler(JavaVersion.FullVersion version, String location, List<? extends File> defaultBootClassPath) {
     super(version, location, defaultBootClassPath);
   }
@@ -107,9 +130,10 @@ public class Javac170Compiler extends JavacCompiler { // Javac170FilteringCompil
     *  @param showWarnings  Whether compiler warnings should be shown or ignored.
     *  @return Errors that occurred. If no errors, should be zero length (not null).
     */
-  public List<? extends DJError> compile(List<? extends File> files, List<? extends File> classPath, 
-                                               List<? extends File> sourcePath, File destination, 
-                                               List<? extends File> bootClassPath, String sourceVersion, boolean showWarnings) {
+  public synchronized List<? extends DJError> compile(List<? extends File> files, List<? extends File> classPath, 
+                                                     List<? extends File> sourcePath, File destination, 
+                                                     List<? extends File> bootClassPath, String sourceVersion, 
+                                                     boolean showWarnings) {
     debug.logStart("compile()");
     debug.logValues(new String[]{ "this", "files", "classPath", "sourcePath", "destination", "bootClassPath", 
       "sourceVersion", "showWarnings" },
@@ -117,39 +141,54 @@ public class Javac170Compiler extends JavacCompiler { // Javac170FilteringCompil
 
     Iterable<String> options = _createOptions(classPath, sourcePath, destination, bootClassPath, sourceVersion, showWarnings);
     LinkedList<DJError> errors = new LinkedList<DJError>();
+    _lastPhaseTimes = Collections.emptyMap();
 
     // This is the class that javax.tools.ToolProvider.getSystemJavaCompiler() uses.
     // We create an instance of that class directly, bypassing ToolProvider, because ToolProvider returns null
     // if DrJava is started with just the JRE, instead of with the JDK, even if tools.jar is later made available
     // to the class loader.
-    JavaCompiler compiler = null;
-    try {
-      compiler = (JavaCompiler)(Class.forName("com.sun.tools.javac.api.JavacTool").newInstance());
-    }
-    catch(ClassNotFoundException e) {
-      errors.addFirst(new DJError("Compile exception: " + e, false));
-      error.log(e);
-      return errors;
-    }
-    catch(InstantiationException e) {
-      errors.addFirst(new DJError("Compile exception: " + e, false));
-      error.log(e);
-      return errors;
+    if (_compiler == null) {
+      try {
+        _compiler = (JavaCompiler)(Class.forName("com.sun.tools.javac.api.JavacTool").newInstance());
+      }
+      catch(ClassNotFoundException e) {
+        errors.addFirst(new DJError("Compile exception: " + e, false));
+        error.log(e);
+        return errors;
+      }
+      catch(InstantiationException e) {
+        errors.addFirst(new DJError("Compile exception: " + e, false));
+        error.log(e);
+        return errors;
+      }
+      catch(IllegalAccessException e) {
+        errors.addFirst(new DJError("Compile exception: " + e, false));
+        error.log(e);
+        return errors;
+      }
     }
-    catch(IllegalAccessException e) {
-      errors.addFirst(new DJError("Compile exception: " + e, false));
-      error.log(e);
-      return errors;
+    
+    String key = _pathKey(classPath) + File.pathSeparator + 
+      _pathKey(bootClassPath == null ? _defaultBootClassPath : bootClassPath);
+    if (_fileManager == null || ! key.equals(_fileManagerKey)) {
+      resetCaches();
+      // the file manager outlives the diagnostic collector of a single compilation, so it gets no listener
+      _fileManager = _compiler.getStandardFileManager(null, null, null);
+      _fileManagerKey = key;
     }
     
-    /** Default FileManager provided by Context class */
     DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<JavaFileObject>();
-    StandardJavaFileManager fileManager = compiler.getStandardFileManager(diagnostics, null, null);    
-    Iterable<? extends JavaFileObject> fileObjects = fileManager.getJavaFileObjectsFromFiles(files);
+    Iterable<? extends JavaFileObject> fileObjects = _fileManager.getJavaFileObjectsFromFiles(files);
+    PhaseTimer timer = new PhaseTimer();
     
     try {
 //      System.err.println("Calling '" + compiler + "' with options " + options);
-      compiler.getTask(null, fileManager, diagnostics, options, null, fileObjects).call();
+      JavaCompiler.CompilationTask task = 
+        _compiler.getTask(null, _fileManager, diagnostics, options, null, fileObjects);
+      if (task instanceof JavacTask) { ((JavacTask) task).setTaskListener(timer); }
+      long start = System.nanoTime();
+      task.call();
+      _lastPhaseTimes = timer.getTimes(System.nanoTime() - start);
       for (Diagnostic<? extends JavaFileObject> d: diagnostics.getDiagnostics()) {
         Diagnostic.Kind dt = d.getKind();
         boolean isWarning = false;  // init required by javac
@@ -177,17 +216,81 @@ public class Javac170Compiler extends JavacCompiler { // Javac170FilteringCompil
           errors.add(new DJError(d.getMessage(null), isWarning));
         }
       }
-      fileManager.close();
+      _fileManager.flush();
     }
     catch(Throwable t) {  // compiler threw an exception/error (typically out of memory error)
       errors.addFirst(new DJError("Compile exception: " + t, false));
       error.log(t);
+      resetCaches();
     }
     
     debug.logEnd("compile()");
     return errors;
   }
   
+  /** Closes the shared file manager, releasing the cached jar indexes. */
+  public synchronized void resetCaches() {
+    if (_fileManager != null) {
+      try { _fileManager.close(); }
+      catch (IOException e) { error.log(e); }
+    }
+    _fileManager = null;
+    _fileManagerKey = null;
+  }
+  
+  public Map<String, Long> getLastPhaseTimes() { return _lastPhaseTimes; }
+  
+  /** Describes a path such that the description changes whenever a jar on it is replaced. */
+  private static String _pathKey(List<? extends File> path) {
+    if (path == null) { return ""; }
+    StringBuilder sb = new StringBuilder();
+    for (File f : path) {
+      sb.append(f.getPath());
+      if (f.isFile()) { sb.append('@').append(f.length()).append('/').append(f.lastModified()); }
+      sb.append(File.pathSeparatorChar);
+    }
+    return sb.toString();
+  }
+  
+  /** Accumulates the wall-clock time spent in each phase of a compilation.  Phases such as entering fire one event per
+    * compilation unit, with all units started before the first one finishes, so a phase is timed from the start of
+    * its first open event to the end of its last one. */
+  private static class PhaseTimer implements TaskListener {
+    private final Map<TaskEvent.Kind, Integer> _open = new EnumMap<TaskEvent.Kind, Integer>(TaskEvent.Kind.class);
+    private final Map<TaskEvent.Kind, Long> _started = new EnumMap<TaskEvent.Kind, Long>(TaskEvent.Kind.class);
+    private final Map<TaskEvent.Kind, Long> _elapsed = new LinkedHashMap<TaskEvent.Kind, Long>();
+    
+    public void started(TaskEvent e) {
+      TaskEvent.Kind k = e.getKind();
+      Integer open = _open.get(k);
+      if (open == null || open == 0) { _started.put(k, System.nanoTime()); }
+      _open.put(k, (open == null) ? 1 : open + 1);
+      if (! _elapsed.containsKey(k)) { _elapsed.put(k, 0L); }
+    }
+    
+    public void finished(TaskEvent e) {
+      TaskEvent.Kind k = e.getKind();
+      Integer open = _open.get(k);
+      if (open == null || open == 0) { return; }
+      _open.put(k, open - 1);
+      if (open == 1) { _elapsed.put(k, _elapsed.get(k) + System.nanoTime() - _started.get(k)); }
+    }
+    
+    /** @param total the duration of the whole compilation, in nanoseconds
+      * @return the elapsed time of each phase and of the whole compilation, in milliseconds */
+    public Map<String, Long> getTimes(long total) {
+      Map<String, Long> result = new LinkedHashMap<String, Long>();
+      for (Map.Entry<TaskEvent.Kind, Long> e : _elapsed.entrySet()) {
+        // ANALYZE covers attribution and flow analysis
+        String name = (e.getKey() == TaskEvent.Kind.ANALYZE) ? "attribute" : 
+          e.getKey().name().toLowerCase(Locale.US).replace('_', ' ');
+        result.put(name, e.getValue() / 1000000L);
+      }
+      result.put("total", total / 1000000L);
+      return result;
+    }
+  }
+  
   private Iterable<String> _createOptions(List<? extends File> classPath, List<? extends File> sourcePath, File destination, 
                                           List<? extends File> bootClassPath, String sourceVersion, boolean showWarnings) {    
     if (bootClassPath == null) { bootClassPath = _defaultBootClassPath; }
@@ -2,6 +2,7 @@ package edu.rice.cs.drjava.model.compiler;
 
 import java.util.List;
 import java.util.LinkedList;
+import java.util.Map;
 import java.io.File;
 import edu.rice.cs.plt.reflect.JavaVersion;
 
@@ -18,6 +19,20 @@ public class Javac170CompilerTest extends TestCase {
     assertTrue(doCompile(c, "testFiles/IterableTest.java").isEmpty());
   }
   
+  public void testRepeatedCompileRecordsPhaseTimes() {
+    Javac170Compiler c = new Javac170Compiler(JavaVersion.CURRENT_FULL, "", null);
+    assertTrue(c.getLastPhaseTimes().isEmpty());
+    for (int i = 0; i < 2; i++) {
+      assertTrue(doCompile(c, "testFiles/IterableTest.java").isEmpty());
+      Map<String, Long> times = c.getLastPhaseTimes();
+      assertTrue(times.containsKey("parse"));
+      assertTrue(times.containsKey("generate"));
+      assertTrue(times.containsKey("total"));
+    }
+    c.resetCaches();
+    assertTrue(doCompile(c, "testFiles/IterableTest.java").isEmpty());
+  }
+  
   private static List<? extends DJError> doCompile(CompilerInterface c, String... files) {
     return c.compile(fileList(files), null, null, null, null, null, true);
   }
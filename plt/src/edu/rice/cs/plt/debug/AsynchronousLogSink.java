@@ -1,5 +1,6 @@
 package edu.rice.cs.plt.debug;
 
+import java.io.Flushable;
 import java.io.IOException;
 import java.util.Queue;
 import java.util.concurrent.ConcurrentLinkedQueue;
@@ -23,6 +24,9 @@ import edu.rice.cs.plt.lambda.WrappedException;
  * problem, users may invoke {@link #flush} at any time, which will block until all messages in a nonempty 
  * queue have been recorded; additionally, by default a shutdown hook is registered which attempts to flush
  * the queue before program shutdown completes.</p>
+ * 
+ * <p>If the delegate is {@link Flushable}, it is flushed whenever the queue has been emptied, so a delegate
+ * that buffers its output (like {@link FileLogSink#batched}) writes each burst of messages at once.</p>
  */
 public class AsynchronousLogSink implements LogSink {
   
@@ -100,6 +104,10 @@ public class AsynchronousLogSink implements LogSink {
         while (!_queue.isEmpty()) {
           _queue.remove().send(_delegate);
         }
+        if (_delegate instanceof Flushable) {
+          try { ((Flushable) _delegate).flush(); }
+          catch (IOException e) { throw new WrappedException(e); }
+        }
         synchronized (AsynchronousLogSink.this) {
           if (_queue.isEmpty()) { // verify state after we have a lock
             _nonemptyNotifier.reset();
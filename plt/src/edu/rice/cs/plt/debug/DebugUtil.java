@@ -170,10 +170,10 @@ public final class DebugUtil {
       else { return null; } // malformed descriptor
     }
     else if (desc.startsWith("~")) {
-      result = new AsynchronousLogSink(makeAtomicLogSink(desc.substring(1), defaultName));
+      result = new AsynchronousLogSink(makeAtomicLogSink(desc.substring(1), defaultName, true));
     }
     else {
-      result = makeAtomicLogSink(desc, defaultName);
+      result = makeAtomicLogSink(desc, defaultName, false);
     }
     
     if (!filters.isEmpty()) {
@@ -212,7 +212,8 @@ public final class DebugUtil {
     return result;
   }
   
-  private static LogSink makeAtomicLogSink(String descriptor, String defaultName) {
+  /** @param batched  Whether the sink will be wrapped in an AsynchronousLogSink, which flushes it after each batch */
+  private static LogSink makeAtomicLogSink(String descriptor, String defaultName, boolean batched) {
     String[] split = TextUtil.split(descriptor, ":", 2, Bracket.PARENTHESES, Bracket.APOSTROPHES).array();
     String name = split[0].trim();
     String arg = (split.length > 1) ? split[1].trim() : ""; 
@@ -248,8 +249,8 @@ public final class DebugUtil {
         else if (name.equals("file")) {
           if (arg.equals("")) { arg = defaultName.toLowerCase().replace(' ', '-') + "-log.txt"; }
           String workingDir = System.getProperty("plt.log.working.dir");
-          if (workingDir == null) { result = new FileLogSink(arg); }
-          else { result = new FileLogSink(new File(workingDir, arg)); }
+          File f = (workingDir == null) ? new File(arg) : new File(workingDir, arg);
+          result = batched ? FileLogSink.batched(f) : new FileLogSink(f);
         }
         else if (name.equals("assert")) {
           result = AssertEmptyLogSink.INSTANCE;
@@ -34,8 +34,11 @@ OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 
 package edu.rice.cs.plt.debug;
 
+import java.io.File;
+import java.io.IOException;
 import java.io.Serializable;
 
+import edu.rice.cs.plt.io.IOUtil;
 import edu.rice.cs.plt.lambda.Thunk;
 import junit.framework.TestCase;
 
@@ -87,6 +90,32 @@ public class DebugUtilTest extends TestCase {
     finally { debug = oldDebug; error = oldError; }
   }
   
+  public void testLazyMessages() throws IOException, InterruptedException {
+    Thunk<String> failing = new Thunk<String>() {
+      public String value() { throw new RuntimeException("evaluated"); }
+    };
+    Object unprintable = new Object() {
+      public String toString() { throw new RuntimeException("formatted"); }
+    };
+    VoidLog.INSTANCE.log(failing);
+    VoidLog.INSTANCE.log("%s", unprintable);
+    
+    try { new StandardLog(new AckLogSink()).log("%s-%d", "x", 3); fail("No response from AckLogSink"); }
+    catch (AckLogSink.Ack e) { assertEquals("x-3", e.logMessage().text().unwrap()); }
+    
+    File f = IOUtil.createAndMarkTempFile("debugutil", ".txt");
+    FileLogSink fileSink = FileLogSink.batched(f);
+    AsynchronousLogSink sink = new AsynchronousLogSink(fileSink, false);
+    Log l = new StandardLog(sink);
+    l.log(new Thunk<String>() { public String value() { return "lazy message"; } });
+    l.log("formatted %s", "message");
+    sink.flush();
+    String text = IOUtil.toString(f);
+    assertTrue(text.contains("lazy message"));
+    assertTrue(text.contains("formatted message"));
+    fileSink.close();
+  }
+  
   private void probeRMIAckLog(Log l) {
     try { l.logStart(); fail("No response from AckLogSink"); }
     catch (AckLogSink.Ack e) { assertEquals("logStart", e.methodName()); }
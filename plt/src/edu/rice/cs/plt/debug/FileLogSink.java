@@ -46,10 +46,11 @@ import edu.rice.cs.plt.text.TextUtil;
  * A log sink that writes tagged, indented text to a file.  The file is not opened until required for logging,
  * and is closed on program exit.
  */
-public class FileLogSink extends IndentedTextLogSink {
+public class FileLogSink extends IndentedTextLogSink implements Flushable {
   
   private final Thunk<BufferedWriter> _writer;
   private volatile boolean _active;
+  private volatile boolean _flushEachMessage = true;
   
   public FileLogSink(String filename) { this(new File(filename), null, true); }
   
@@ -112,8 +113,25 @@ public class FileLogSink extends IndentedTextLogSink {
     });
   }
   
+  /**
+   * Create a sink that does not flush the file after each message.  Intended to be wrapped in an
+   * {@link AsynchronousLogSink}, which calls {@link #flush} whenever it has recorded all queued messages.
+   */
+  public static FileLogSink batched(File f) {
+    FileLogSink result = new FileLogSink(f);
+    result._flushEachMessage = false;
+    return result;
+  }
+  
   @Override protected BufferedWriter writer(Message m) { return _writer.value(); }
   
+  @Override protected boolean flushEachMessage() { return _flushEachMessage; }
+  
+  /** Flush the file stream, if it has been opened. */
+  public void flush() throws IOException {
+    if (_active) { _writer.value().flush(); }
+  }
+  
   /** Close the file stream. */
   public void close() throws IOException {
     if (_active) { _writer.value().close(); _active = false; }
@@ -76,6 +76,9 @@ public abstract class IndentedTextLogSink extends TextLogSink {
 
   /** Get a BufferedWriter for outputting the given message. */
   protected abstract BufferedWriter writer(Message m);
+  
+  /** Whether the writer is flushed after each message.  Subclasses that are flushed by other means may return false. */
+  protected boolean flushEachMessage() { return true; }
    
   protected void write(Message m, SizedIterable<String> text) {
     BufferedWriter w = writer(m);
@@ -113,7 +116,7 @@ public abstract class IndentedTextLogSink extends TextLogSink {
         w.write(s);
         w.newLine();
       }
-      w.flush();
+      if (flushEachMessage()) { w.flush(); }
     }
     catch (IOException e) {
       // Throw an exception, because otherwise the lack of anything in the log will be interpreted as evidence
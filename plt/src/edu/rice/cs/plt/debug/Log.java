@@ -34,6 +34,8 @@ OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 
 package edu.rice.cs.plt.debug;
 
+import edu.rice.cs.plt.lambda.Thunk;
+
 /** 
  * A log allows messages and other information to be recorded during program execution.  Implementations should
  * be thread-safe.
@@ -46,6 +48,18 @@ public interface Log {
   /** Record the given message */
   public void log(String message);
   
+  /**
+   * Record the message produced by the given thunk.  The thunk is only evaluated if the message is actually
+   * recorded, so expensive messages cost nothing when logging is disabled.
+   */
+  public void log(Thunk<? extends String> message);
+  
+  /**
+   * Record the message produced by {@link String#format(String, Object...)}.  The message is only formatted
+   * if it is actually recorded.
+   */
+  public void log(String format, Object... args);
+  
   /** Record the given exception (or other throwable); may be {@code null} */
   public void log(Throwable t);
   
@@ -35,6 +35,7 @@ OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 package edu.rice.cs.plt.debug;
 
 import edu.rice.cs.plt.debug.LogSink.*;
+import edu.rice.cs.plt.lambda.Thunk;
 
 /** A log that acts as a front end for a LogSink. */
 public class StandardLog implements Log {
@@ -53,6 +54,14 @@ public class StandardLog implements Log {
     _sink.log(new StandardMessage(new ThreadSnapshot(), message, EMPTY, EMPTY));
   }
 
+  public void log(Thunk<? extends String> message) {
+    _sink.log(new StandardMessage(new ThreadSnapshot(), message.value(), EMPTY, EMPTY));
+  }
+
+  public void log(String format, Object... args) {
+    _sink.log(new StandardMessage(new ThreadSnapshot(), String.format(format, args), EMPTY, EMPTY));
+  }
+
   public void log(Throwable t) {
     _sink.logError(new ErrorMessage(new ThreadSnapshot(), t));
   }
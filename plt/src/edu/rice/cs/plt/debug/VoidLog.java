@@ -34,6 +34,8 @@ OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 
 package edu.rice.cs.plt.debug;
 
+import edu.rice.cs.plt.lambda.Thunk;
+
 /** A log that ignores all logging requests.  All method invocations return immediately. */
 public class VoidLog implements Log {
   
@@ -43,6 +45,8 @@ public class VoidLog implements Log {
   
   public void log() {}
   public void log(String message) {}
+  public void log(Thunk<? extends String> message) {}
+  public void log(String format, Object... args) {}
   public void log(Throwable t) {}
   public void log(String message, Throwable t) {}
   
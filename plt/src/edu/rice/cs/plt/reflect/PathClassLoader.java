@@ -35,14 +35,23 @@ OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 package edu.rice.cs.plt.reflect;
 
 import java.net.URL;
-import java.net.URLClassLoader;
 import java.net.MalformedURLException;
 import java.io.File;
 import java.io.InputStream;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
-import java.util.LinkedList;
+import java.util.Map;
+import java.util.Set;
+import java.util.StringTokenizer;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
 
 import edu.rice.cs.plt.io.IOUtil;
 import edu.rice.cs.plt.iter.IterUtil;
@@ -61,6 +70,12 @@ import static edu.rice.cs.plt.debug.DebugUtil.debug;
   * later transitively resolves the referenced classes, they may no longer exist, or may be
   * shadowed.  This is not a unique problem, however -- the standard system class loader is
   * based on an underlying file system that may also change in arbitrary ways at any time.
+  * <p>
+  * If the path is a {@link VersionedPath}, changes are detected by comparing its version; otherwise,
+  * the path is compared to a snapshot on every lookup.  Each jar on the path is indexed by package
+  * when it is first searched, so a lookup only searches the jars that contain the resource's package.
+  * Directories are not indexed: their contents (a build directory, for example) may change at any
+  * time.</p>
   */
 public class PathClassLoader extends AbstractClassLoader {
   
@@ -99,8 +114,14 @@ public class PathClassLoader extends AbstractClassLoader {
   }
 
   private final Iterable<? extends File> _path;
-  private URLClassLoader _urlLoader;
-  private Iterable<File> _urlLoaderPath;
+  /** Non-null iff {@code _path} is a VersionedPath. */
+  private final VersionedPath _versionedPath;
+  /** The entries to search; updated when the path changes. */
+  private volatile Entry[] _entries;
+  /** The version of {@code _versionedPath} reflected by {@code _entries}. */
+  private volatile long _entriesVersion;
+  /** The contents of {@code _path} reflected by {@code _entries} (used if the path is not versioned). */
+  private volatile Iterable<File> _entriesPath;
 
   /** Create a path class loader with the default parent ({@link ClassLoader#getSystemClassLoader})
     * and the specified path.
@@ -114,7 +135,9 @@ public class PathClassLoader extends AbstractClassLoader {
   public PathClassLoader(Iterable<? extends File> path) {
     super();
     _path = path;
-    updateURLLoader();
+    _versionedPath = (path instanceof VersionedPath) ? (VersionedPath) path : null;
+    _entries = new Entry[0];
+    updateEntries();
   }
   
   /** Create a path class loader with the given parent and path */
@@ -124,33 +147,52 @@ public class PathClassLoader extends AbstractClassLoader {
   public PathClassLoader(ClassLoader parent, Iterable<? extends File> path) {
     super(parent);
     _path = path;
-    updateURLLoader();
+    _versionedPath = (path instanceof VersionedPath) ? (VersionedPath) path : null;
+    _entries = new Entry[0];
+    updateEntries();
     _log.log("Constructing PathClassLoader with parent " + parent + " and path '" + path + "'");
   }
 
-  private void updateURLLoader() {
-    _urlLoaderPath = IterUtil.snapshot(_path);
-    List<URL> urls = new LinkedList<URL>();
-    for (File f : _urlLoaderPath) {
-      try { urls.add(f.toURI().toURL()); }
-      catch (IllegalArgumentException e) { error.log(e); }
-      catch (MalformedURLException e) { error.log(e); }
-      // just skip the path element if there's an error
+  /** Rebuild {@code _entries} from the current path.  Entries for files that were already on the path
+    * are reused (and keep their indices), unless the file is a jar that has since been modified.
+    */
+  private synchronized void updateEntries() {
+    // read the version first: if the path changes during the snapshot, the next lookup updates again
+    long version = (_versionedPath == null) ? 0 : _versionedPath.version();
+    Iterable<File> path = IterUtil.snapshot(_path);
+    Map<File, Entry> old = new HashMap<File, Entry>();
+    for (Entry e : _entries) { old.put(e.file(), e); }
+    List<Entry> entries = new ArrayList<Entry>();
+    for (File f : path) {
+      Entry e = old.get(f);
+      entries.add((e != null && e.isCurrent()) ? e : new Entry(f, Collections.<File>emptySet()));
+    }
+    // Dropped jars are not closed: a concurrent lookup may still be using them
+    _entries = entries.toArray(new Entry[entries.size()]);
+    _entriesPath = path;
+    _entriesVersion = version;
+  }
+  
+  /** The entries reflecting the current path. */
+  private Entry[] entries() {
+    if (_versionedPath != null) {
+      if (_versionedPath.version() != _entriesVersion) { updateEntries(); }
     }
-    _urlLoader = new URLClassLoader(urls.toArray(new URL[urls.size()]), EmptyClassLoader.INSTANCE);
+    else if (!IterUtil.isEqual(_path, _entriesPath)) { updateEntries(); }
+    return _entries;
   }
   
   /** This override is defined solely to trace calls to this method; it immediately invokes the
     * overridden code.
     */
   @Override protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
-    _log.log("PathClassLoader.loadClass(" + name + ", " + resolve + ") called");
+    _log.log("PathClassLoader.loadClass(%s, %s) called", name, resolve);
     return super.loadClass(name, resolve);
   }
   
   @Override 
   protected Class<?> findClass(String name) throws ClassNotFoundException {
-    _log.log("PathClassLoader.findClass(" + name + ") called");
+    _log.log("PathClassLoader.findClass(%s) called", name);
     URL resource = findResource(name.replace('.', '/') + ".class");
     if (resource == null) { throw new ClassNotFoundException(); }
     else {
@@ -170,13 +212,161 @@ public class PathClassLoader extends AbstractClassLoader {
   
   @Override 
   protected URL findResource(String name) {
-    if (!IterUtil.isEqual(_path, _urlLoaderPath)) { updateURLLoader(); }
-    return _urlLoader.findResource(name);
+    String pkg = packageOf(name);
+    for (Entry e : entries()) {
+      URL result = e.find(name, pkg);
+      if (result != null) { return result; }
+    }
+    return null;
   }
   
   @Override 
   protected Enumeration<URL> findResources(String name) throws IOException {
-    if (!IterUtil.isEqual(_path, _urlLoaderPath)) { updateURLLoader(); }
-    return _urlLoader.findResources(name);
+    String pkg = packageOf(name);
+    List<URL> result = new ArrayList<URL>();
+    for (Entry e : entries()) { e.findAll(name, pkg, result); }
+    return Collections.enumeration(result);
+  }
+  
+  /** The directory part of a resource name ({@code "a/b"} for {@code "a/b/C.class"}), or {@code ""}. */
+  private static String packageOf(String resourceName) {
+    int slash = resourceName.lastIndexOf('/');
+    return (slash < 0) ? "" : resourceName.substring(0, slash);
   }
+  
+  
+  /** A directory or jar file on the path.  The kind of entry is determined when it is first searched.
+    * If the file doesn't exist at that point, nothing is found until the entry is replaced after a change
+    * to the path (the same behavior as a {@code URLClassLoader} created when the path changes).
+    */
+  private static final class Entry {
+    private static final int UNKNOWN = 0;
+    private static final int DIRECTORY = 1;
+    private static final int JAR = 2;
+    private static final int INVALID = 3;
+    private static final int MISSING = 4;
+    
+    private final File _file;
+    /** Files that contain this one by way of their manifest class paths; they are not searched again. */
+    private final Set<File> _containers;
+    private volatile int _kind;
+    // the following are set when _kind becomes JAR
+    private JarFile _jar;
+    private String _jarURL;
+    private long _length;
+    private long _lastModified;
+    private Set<String> _packages;
+    private Entry[] _manifestPath;
+    
+    public Entry(File file, Set<File> containers) {
+      _file = file;
+      _containers = containers;
+      _kind = UNKNOWN;
+    }
+    
+    public File file() { return _file; }
+    
+    /** False if this is a jar that has since been modified, or a file that didn't exist. */
+    public synchronized boolean isCurrent() {
+      switch (_kind) {
+        case JAR: return _file.length() == _length && _file.lastModified() == _lastModified;
+        case MISSING: return false;
+        default: return true;
+      }
+    }
+    
+    /** Locate the given resource, which is in package {@code pkg}, in this entry. */
+    public URL find(String name, String pkg) {
+      switch (kind()) {
+        case DIRECTORY: {
+          File f = new File(_file, name);
+          if (f.exists()) {
+            try { return f.toURI().toURL(); }
+            catch (MalformedURLException e) { error.log(e); }
+          }
+          return null;
+        }
+        case JAR: {
+          if (_packages.contains(pkg) && _jar.getEntry(name) != null) { return jarURL(name); }
+          for (Entry e : _manifestPath) {
+            URL result = e.find(name, pkg);
+            if (result != null) { return result; }
+          }
+          return null;
+        }
+        default: return null;
+      }
+    }
+    
+    /** Add all matches for the given resource in this entry to {@code result}. */
+    public void findAll(String name, String pkg, List<URL> result) {
+      if (kind() == JAR) {
+        if (_packages.contains(pkg) && _jar.getEntry(name) != null) { result.add(jarURL(name)); }
+        for (Entry e : _manifestPath) { e.findAll(name, pkg, result); }
+      }
+      else {
+        URL url = find(name, pkg);
+        if (url != null) { result.add(url); }
+      }
+    }
+    
+    private URL jarURL(String name) {
+      try { return new URL(_jarURL + name); }
+      catch (MalformedURLException e) { error.log(e); return null; }
+    }
+    
+    private int kind() {
+      int result = _kind;
+      return (result == UNKNOWN) ? initKind() : result;
+    }
+    
+    private synchronized int initKind() {
+      if (_kind == UNKNOWN) {
+        if (_file.isDirectory()) { _kind = DIRECTORY; }
+        else if (_file.isFile()) {
+          try { indexJar(); _kind = JAR; }
+          catch (IOException e) { debug.log(e); _kind = INVALID; }
+        }
+        else { _kind = MISSING; }
+      }
+      return _kind;
+    }
+    
+    /** Open the jar file and record the packages it contains and its manifest class path. */
+    private void indexJar() throws IOException {
+      _length = _file.length();
+      _lastModified = _file.lastModified();
+      _jar = new JarFile(_file);
+      _jarURL = "jar:" + _file.toURI().toURL() + "!/";
+      Set<String> packages = new HashSet<String>();
+      Enumeration<JarEntry> jarEntries = _jar.entries();
+      while (jarEntries.hasMoreElements()) {
+        JarEntry je = jarEntries.nextElement();
+        if (!je.isDirectory()) { packages.add(packageOf(je.getName())); }
+      }
+      _packages = packages;
+      
+      List<Entry> manifestPath = new ArrayList<Entry>();
+      Manifest m = _jar.getManifest();
+      String classPath = (m == null) ? null : m.getMainAttributes().getValue(Attributes.Name.CLASS_PATH);
+      if (classPath != null) {
+        Set<File> containers = new HashSet<File>(_containers);
+        containers.add(_file);
+        StringTokenizer tokens = new StringTokenizer(classPath);
+        while (tokens.hasMoreTokens()) {
+          // manifest class path entries are relative URLs
+          try {
+            URL url = new URL(_file.toURI().toURL(), tokens.nextToken());
+            if (url.getProtocol().equals("file")) {
+              File f = new File(url.toURI());
+              if (!containers.contains(f)) { manifestPath.add(new Entry(f, containers)); }
+            }
+          }
+          catch (Exception e) { debug.log(e); /* skip malformed entries */ }
+        }
+      }
+      _manifestPath = manifestPath.toArray(new Entry[manifestPath.size()]);
+    }
+  }
+  
 }
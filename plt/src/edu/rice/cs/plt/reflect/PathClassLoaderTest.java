@@ -34,7 +34,15 @@ OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 
 package edu.rice.cs.plt.reflect;
 
-import java.io.File;
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+
+import edu.rice.cs.plt.io.IOUtil;
 
 public class PathClassLoaderTest extends ClassLoaderTestCase {
   
@@ -121,6 +129,73 @@ public class PathClassLoaderTest extends ClassLoaderTestCase {
     assertCannotGet(lC, "D");
   }
   
+  public void testLoadsJar() throws Exception {
+    File tempDir = IOUtil.createAndMarkTempDirectory("plt", "");
+    try {
+      File aJar = makeJar(new File(tempDir, "a.jar"), null, A_DIR, "pkg/A.class");
+      File dJar = makeJar(new File(tempDir, "d.jar"), null, D_DIR, "D.class");
+      PathClassLoader l = new PathClassLoader(BASE_LOADER, INTBOX_DIR, aJar, B_DIR, C_DIR, dJar);
+      assertLoadsClassAsLoader(l, "pkg.A");
+      assertLoadsClassAsLoader(l, "D");
+      assertHasResource(l, "pkg/A.class");
+      assertDoesNotHaveResource(l, "pkg/A.java");
+      assertCanGet(l, "pkg.A", 1);
+      assertCanGet(l, "D", 4);
+      
+      // a jar's manifest class path is searched after the jar itself
+      File refJar = makeJar(new File(tempDir, "ref.jar"), "a.jar d.jar", D_DIR, "D.java");
+      PathClassLoader lRef = new PathClassLoader(BASE_LOADER, INTBOX_DIR, refJar, B_DIR, C_DIR);
+      assertCanGet(lRef, "pkg.A", 1);
+      assertCanGet(lRef, "D", 4);
+      assertHasResource(lRef, "D.java");
+    }
+    finally { IOUtil.deleteRecursively(tempDir); }
+  }
+  
+  public void testDynamicPath() throws Exception {
+    List<File> path = new ArrayList<File>();
+    path.add(INTBOX_DIR);
+    PathClassLoader l = new PathClassLoader(BASE_LOADER, path);
+    assertLoadsClassAsLoader(l, "pkg.IntBox");
+    assertDoesNotLoadClass(l, "pkg.A");
+    path.add(A_DIR);
+    assertCanGet(l, "pkg.A", 1);
+  }
+  
+  public void testVersionedPath() throws Exception {
+    final List<File> path = new ArrayList<File>();
+    final long[] version = { 0 };
+    path.add(INTBOX_DIR);
+    VersionedPath vPath = new VersionedPath() {
+      public long version() { return version[0]; }
+      public java.util.Iterator<File> iterator() { return path.iterator(); }
+    };
+    PathClassLoader l = new PathClassLoader(BASE_LOADER, vPath);
+    assertLoadsClassAsLoader(l, "pkg.IntBox");
+    path.add(A_DIR);
+    // the loader relies on the version to detect changes
+    assertDoesNotLoadClass(l, "pkg.A");
+    version[0]++;
+    assertCanGet(l, "pkg.A", 1);
+  }
+  
+  /** Create a jar containing the given file (a path relative to {@code root}), and optionally a manifest
+    * class path.
+    */
+  private static File makeJar(File jar, String classPath, File root, String name) throws IOException {
+    Manifest m = new Manifest();
+    m.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+    if (classPath != null) { m.getMainAttributes().put(Attributes.Name.CLASS_PATH, classPath); }
+    JarOutputStream out = new JarOutputStream(new FileOutputStream(jar), m);
+    try {
+      out.putNextEntry(new JarEntry(name));
+      out.write(IOUtil.toByteArray(new File(root, name)));
+      out.closeEntry();
+    }
+    finally { out.close(); }
+    return jar;
+  }
+  
   private void assertCanGet(ClassLoader l, String className, int value) throws Exception {
     Class<?> c = l.loadClass(className);
     Object instance = c.newInstance();
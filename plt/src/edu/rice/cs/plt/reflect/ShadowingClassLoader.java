@@ -101,9 +101,9 @@ public class ShadowingClassLoader extends ClassLoader {
     * the parent class loader.
     */
   @Override protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
-    _log.log("ShadowingClassLoader.loadClass(" + name + ", " + resolve + ") called");
+    _log.log("ShadowingClassLoader.loadClass(%s, %s) called", name, resolve);
     if ((_filterBootClasses || !isBootClass(name)) && matchesPrefixes(name) == _blackList) {
-      _log.log("Class " + name + " is being shadowed");
+      _log.log("Class %s is being shadowed", name);
       throw new ClassNotFoundException(name + " is being shadowed");
     }
     else {